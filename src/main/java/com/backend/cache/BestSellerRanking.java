@@ -0,0 +1,203 @@
+package com.backend.cache;
+
+import com.backend.common.SalesWindow;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Số lượng bán theo ngày của từng sản phẩm trong SalesWindow.MAX_DAYS ngày gần nhất, gom theo danh mục.
+ * Mỗi sản phẩm giữ một vòng MAX_DAYS ô (ô = epochDay % MAX_DAYS), ô cũ tự bị ghi đè khi sang ngày mới.
+ * Mỗi danh mục cache sẵn top-K của từng cửa sổ, chỉ tính lại khi có đơn mới/hủy trong danh mục đó hoặc sang ngày.
+ * Top-K của cây danh mục = trộn top-K của từng danh mục con (mỗi sản phẩm chỉ thuộc một danh mục nên kết quả chính xác).
+ */
+@Component
+public class BestSellerRanking {
+
+    // Số phần tử tối đa giữ trong top-K cache của mỗi danh mục (giới hạn trên của limit ở API)
+    public static final int MAX_TOP = 50;
+
+    public record Entry(long productId, long categoryId, long day, int quantity) {
+    }
+
+    private record Ranked(long productId, long quantity) {
+    }
+
+    private static final Comparator<Ranked> WEAKEST_FIRST = Comparator.comparingLong(Ranked::quantity)
+            .thenComparing(Comparator.comparingLong(Ranked::productId).reversed());
+
+    private static final class ProductSales {
+        private final long productId;
+        private volatile long categoryId;
+        private final long[] days = new long[SalesWindow.MAX_DAYS];
+        private final int[] quantities = new int[SalesWindow.MAX_DAYS];
+
+        private ProductSales(long productId, long categoryId) {
+            this.productId = productId;
+            this.categoryId = categoryId;
+        }
+
+        private synchronized void add(long day, int quantity) {
+            int slot = (int) Math.floorMod(day, (long) SalesWindow.MAX_DAYS);
+            if (days[slot] != day) {
+                days[slot] = day;
+                quantities[slot] = 0;
+            }
+            quantities[slot] = Math.max(0, quantities[slot] + quantity);
+        }
+
+        private synchronized long sum(long fromDay, long toDay) {
+            long total = 0;
+            for (int slot = 0; slot < days.length; slot++) {
+                if (days[slot] >= fromDay && days[slot] <= toDay) {
+                    total += quantities[slot];
+                }
+            }
+            return total;
+        }
+
+        private synchronized void forEachDay(long fromDay, Consumer<Entry> consumer) {
+            for (int slot = 0; slot < days.length; slot++) {
+                if (days[slot] >= fromDay && quantities[slot] > 0) {
+                    consumer.accept(new Entry(productId, categoryId, days[slot], quantities[slot]));
+                }
+            }
+        }
+    }
+
+    // Top-K đã tính, hợp lệ khi version và ngày còn khớp
+    private record CachedTop(long version, long day, Map<SalesWindow, List<Ranked>> top) {
+    }
+
+    private static final class CategoryRanking {
+        private final Set<ProductSales> products = ConcurrentHashMap.newKeySet();
+        // Tăng mỗi lần số liệu trong danh mục thay đổi
+        private final AtomicLong version = new AtomicLong();
+        private volatile CachedTop cachedTop;
+    }
+
+    private static final class State {
+        private final ConcurrentHashMap<Long, ProductSales> products = new ConcurrentHashMap<>();
+        private final ConcurrentHashMap<Long, CategoryRanking> categories = new ConcurrentHashMap<>();
+    }
+
+    private volatile State state = new State();
+
+    /**
+     * Cộng (quantity > 0) hoặc trừ (quantity < 0) số lượng bán của một sản phẩm vào ngày day (epochDay).
+     */
+    public void add(long productId, long categoryId, long day, int quantity) {
+        add(state, productId, categoryId, day, quantity);
+    }
+
+    /**
+     * Thay toàn bộ số liệu bằng entries (cộng lần lượt theo thứ tự), đổi một lần nên người đọc không thấy trạng thái dở dang.
+     * Lệnh add() chạy song song có thể rơi vào bản cũ: người gọi phải chặn add() trong lúc thay.
+     */
+    public void replace(Collection<Entry> entries) {
+        State next = new State();
+        for (Entry entry : entries) {
+            add(next, entry.productId(), entry.categoryId(), entry.day(), entry.quantity());
+        }
+        state = next;
+    }
+
+    private static void add(State state, long productId, long categoryId, long day, int quantity) {
+        Map<Long, CategoryRanking> categories = state.categories;
+        ProductSales sales = state.products.computeIfAbsent(productId, id -> new ProductSales(id, categoryId));
+        if (sales.categoryId != categoryId) {
+            // Sản phẩm đã chuyển danh mục: dời toàn bộ thống kê sang danh mục mới
+            CategoryRanking previous = categories.get(sales.categoryId);
+            if (previous != null) {
+                previous.products.remove(sales);
+                previous.version.incrementAndGet();
+            }
+            sales.categoryId = categoryId;
+        }
+        sales.add(day, quantity);
+        CategoryRanking ranking = categories.computeIfAbsent(categoryId, id -> new CategoryRanking());
+        ranking.products.add(sales);
+        ranking.version.incrementAndGet();
+    }
+
+    /**
+     * Top sản phẩm bán chạy nhất trong các danh mục categoryIds, theo số lượng bán trong cửa sổ giảm dần
+     * (hòa thì ID nhỏ trước). Sản phẩm không bán được cái nào trong cửa sổ không được trả về.
+     */
+    public List<Long> top(Collection<Long> categoryIds, SalesWindow window, int limit, long today) {
+        int k = Math.min(limit, MAX_TOP);
+        PriorityQueue<Ranked> heap = new PriorityQueue<>(k + 1, WEAKEST_FIRST);
+        Map<Long, CategoryRanking> categories = state.categories;
+        for (Long categoryId : categoryIds) {
+            CategoryRanking ranking = categories.get(categoryId);
+            if (ranking == null) {
+                continue;
+            }
+            for (Ranked ranked : categoryTop(ranking, window, today)) {
+                heap.offer(ranked);
+                if (heap.size() > k) {
+                    heap.poll();
+                }
+            }
+        }
+        List<Long> result = new ArrayList<>(heap.size());
+        while (!heap.isEmpty()) {
+            result.add(heap.poll().productId());
+        }
+        Collections.reverse(result);
+        return result;
+    }
+
+    /**
+     * Duyệt các ô khác 0 từ ngày fromDay trở đi (dùng để ghi snapshot).
+     */
+    public void forEach(long fromDay, Consumer<Entry> consumer) {
+        state.products.values().forEach(sales -> sales.forEachDay(fromDay, consumer));
+    }
+
+    public void clear() {
+        state = new State();
+    }
+
+    private List<Ranked> categoryTop(CategoryRanking ranking, SalesWindow window, long today) {
+        CachedTop cached = ranking.cachedTop;
+        long version = ranking.version.get();
+        if (cached == null || cached.version() != version || cached.day() != today) {
+            // Đọc version trước khi tính: nếu có add() song song, version đã tăng và lần đọc sau sẽ tính lại
+            Map<SalesWindow, List<Ranked>> top = new EnumMap<>(SalesWindow.class);
+            for (SalesWindow w : SalesWindow.values()) {
+                top.put(w, computeTop(ranking, w, today));
+            }
+            cached = new CachedTop(version, today, top);
+            ranking.cachedTop = cached;
+        }
+        return cached.top().get(window);
+    }
+
+    private List<Ranked> computeTop(CategoryRanking ranking, SalesWindow window, long today) {
+        long fromDay = today - window.getDays() + 1;
+        PriorityQueue<Ranked> heap = new PriorityQueue<>(MAX_TOP + 1, WEAKEST_FIRST);
+        for (ProductSales sales : ranking.products) {
+            long quantity = sales.sum(fromDay, today);
+            if (quantity <= 0) {
+                continue;
+            }
+            heap.offer(new Ranked(sales.productId, quantity));
+            if (heap.size() > MAX_TOP) {
+                heap.poll();
+            }
+        }
+        return List.copyOf(heap);
+    }
+}
@@ -0,0 +1,254 @@
+package com.backend.cache;
+
+import com.backend.event.CartClearedEvent;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Giỏ hàng của từng user trong bộ nhớ: LRU theo user (tối đa max-users giỏ), mỗi giỏ là các dòng
+ * (cartItemId, productId, quantity). Đổi số lượng / xóa dòng chỉ áp dụng trong bộ nhớ và được CartService
+ * ghi gộp định kỳ (write-behind); giỏ dirty bị đẩy khỏi LRU được giữ riêng trong {@code evicted} cho tới khi được ghi.
+ * Dòng mới được INSERT ngay (client cần cartItemId do DB sinh) rồi mới đưa vào giỏ.
+ * {@link CartClearedEvent} chỉ bỏ giỏ trên instance này; giỏ được ghi ở instance khác được CartService bỏ ra
+ * qua {@link #invalidateIfStale} (job đồng bộ so tbl_carts.change_version với {@link Cart#getVersion()}).
+ */
+@Component
+public class CartCache {
+
+    public record Line(Long cartItemId, Long productId, int quantity) {
+    }
+
+    public static final class Cart {
+        private final Long cartId;
+        private final AtomicLong version;                            // tbl_carts.change_version sau lần đọc/ghi gần nhất
+        private final Map<Long, Line> lines = new LinkedHashMap<>(); // Theo cartItemId, giữ thứ tự thêm vào
+        private final Set<Long> updatedIds = new HashSet<>();        // Dòng đổi số lượng chưa ghi DB
+        private final Set<Long> deletedIds = new HashSet<>();        // Dòng đã xóa chưa ghi DB
+        private boolean touched;                                     // Có thay đổi chưa ghi tbl_carts.updated_at
+
+        public Cart(Long cartId, long version, List<Line> storedLines) {
+            this.cartId = cartId;
+            this.version = new AtomicLong(version);
+            storedLines.forEach(line -> lines.put(line.cartItemId(), line));
+        }
+
+        public Long getCartId() {
+            return cartId;
+        }
+
+        // Không dùng khóa của giỏ: được đổi trong lúc giữ khóa dòng tbl_carts, còn request giữ khóa giỏ có thể đang chờ dòng đó
+        public long getVersion() {
+            return version.get();
+        }
+
+        public boolean compareAndSetVersion(long expected, long updated) {
+            return version.compareAndSet(expected, updated);
+        }
+
+        public synchronized List<Line> lines() {
+            return List.copyOf(lines.values());
+        }
+
+        public synchronized Line findLine(Long cartItemId) {
+            return lines.get(cartItemId);
+        }
+
+        public synchronized Line findLineByProduct(Long productId) {
+            for (Line line : lines.values()) {
+                if (line.productId().equals(productId)) {
+                    return line;
+                }
+            }
+            return null;
+        }
+
+        // Dòng vừa được INSERT (đã có trong DB, không cần ghi lại)
+        public synchronized void addLine(Line line) {
+            lines.put(line.cartItemId(), line);
+            touched = true;
+        }
+
+        public synchronized void setQuantity(Long cartItemId, int quantity) {
+            Line line = lines.get(cartItemId);
+            if (line != null && line.quantity() != quantity) {
+                lines.put(cartItemId, new Line(cartItemId, line.productId(), quantity));
+                updatedIds.add(cartItemId);
+                touched = true;
+            }
+        }
+
+        public synchronized void removeLine(Long cartItemId) {
+            if (lines.remove(cartItemId) != null) {
+                updatedIds.remove(cartItemId);
+                deletedIds.add(cartItemId);
+                touched = true;
+            }
+        }
+
+        private synchronized boolean isDirty() {
+            return touched || !updatedIds.isEmpty() || !deletedIds.isEmpty();
+        }
+    }
+
+    // Thay đổi cần ghi của một giỏ: số lượng mới theo cartItemId và các dòng cần xóa (ảnh chụp lúc lấy ra).
+    // Mọi giỏ có thay đổi (kể cả chỉ thêm dòng) đều được cập nhật updated_at để job dọn giỏ bỏ quên không xóa nhầm
+    public record DirtyCart(Long userId, Cart cart, Map<Long, Integer> quantities, Set<Long> deletedIds) {
+    }
+
+    private final Map<Long, Cart> carts;
+    private final Map<Long, Cart> evicted = new ConcurrentHashMap<>();
+
+    public CartCache(@Value("${app.cart.max-users:50000}") int maxUsers) {
+        this.carts = new LinkedHashMap<>(256, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, Cart> eldest) {
+                if (size() <= maxUsers) {
+                    return false;
+                }
+                if (eldest.getValue().isDirty()) {
+                    evicted.put(eldest.getKey(), eldest.getValue());
+                }
+                return true;
+            }
+        };
+    }
+
+    /**
+     * Giỏ của user trong bộ nhớ, hoặc null nếu cần đọc từ DB (gọi {@link #putIfAbsent} với dữ liệu đã đọc).
+     */
+    public synchronized Cart get(Long userId) {
+        Cart cart = carts.get(userId);
+        if (cart == null) {
+            // User quay lại trước khi giỏ bị đẩy ra kịp ghi DB: dùng lại giỏ đó
+            cart = evicted.remove(userId);
+            if (cart != null) {
+                carts.put(userId, cart);
+            }
+        }
+        return cart;
+    }
+
+    // Hai request cùng đọc DB cho một user: giỏ được đưa vào trước thắng
+    public synchronized Cart putIfAbsent(Long userId, Cart loaded) {
+        Cart existing = get(userId);
+        if (existing != null) {
+            return existing;
+        }
+        carts.put(userId, loaded);
+        return loaded;
+    }
+
+    // Bỏ giỏ khỏi bộ nhớ kể cả thay đổi chưa ghi (dòng của giỏ đã bị xóa trong DB, ví dụ sau khi đặt hàng)
+    public synchronized void invalidate(Long userId) {
+        carts.remove(userId);
+        evicted.remove(userId);
+    }
+
+    /**
+     * Bỏ giỏ của user nếu DB đã có bản mới hơn (giỏ khác, hoặc change_version lớn hơn bản trong bộ nhớ).
+     * Version nhỏ hơn bản trong bộ nhớ là lần ghi của chính instance này chưa commit: giữ nguyên.
+     */
+    public synchronized boolean invalidateIfStale(Long userId, Long cartId, long version) {
+        Cart cart = carts.containsKey(userId) ? carts.get(userId) : evicted.get(userId);
+        if (cart == null || (cart.getCartId().equals(cartId) && cart.getVersion() >= version)) {
+            return false;
+        }
+        invalidate(userId);
+        return true;
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onCartCleared(CartClearedEvent event) {
+        invalidate(event.userId());
+    }
+
+    /**
+     * Lấy thay đổi chưa ghi của mọi giỏ (kể cả giỏ đã bị đẩy khỏi LRU) và đánh dấu là sạch.
+     * Gọi {@link #markWritten} khi ghi xong hoặc {@link #markFailed} khi ghi lỗi.
+     */
+    public List<DirtyCart> drainDirty() {
+        List<Map.Entry<Long, Cart>> candidates;
+        synchronized (this) {
+            candidates = new ArrayList<>(carts.entrySet());
+        }
+        candidates.addAll(evicted.entrySet());
+        List<DirtyCart> dirty = new ArrayList<>();
+        for (Map.Entry<Long, Cart> entry : candidates) {
+            DirtyCart item = snapshot(entry.getKey(), entry.getValue(), true);
+            if (item != null) {
+                dirty.add(item);
+            }
+        }
+        return dirty;
+    }
+
+    /**
+     * Thay đổi chưa ghi của giỏ một user (null nếu không có), không đánh dấu là sạch: ghi lại cùng giá trị
+     * ở lần flush kế tiếp không đổi kết quả, và transaction ghi nó có rollback thì thay đổi vẫn còn để flush.
+     */
+    public DirtyCart peekDirty(Long userId) {
+        Cart cart;
+        synchronized (this) {
+            cart = carts.containsKey(userId) ? carts.get(userId) : evicted.get(userId);
+        }
+        return cart != null ? snapshot(userId, cart, false) : null;
+    }
+
+    private DirtyCart snapshot(Long userId, Cart cart, boolean markClean) {
+        synchronized (cart) {
+            if (!cart.isDirty()) {
+                return null;
+            }
+            Map<Long, Integer> quantities = new HashMap<>();
+            for (Long cartItemId : cart.updatedIds) {
+                Line line = cart.lines.get(cartItemId);
+                if (line != null) {
+                    quantities.put(cartItemId, line.quantity());
+                }
+            }
+            DirtyCart dirty = new DirtyCart(userId, cart, quantities, Set.copyOf(cart.deletedIds));
+            if (markClean) {
+                cart.updatedIds.clear();
+                cart.deletedIds.clear();
+                cart.touched = false;
+            }
+            return dirty;
+        }
+    }
+
+    public void markWritten(DirtyCart written) {
+        evicted.remove(written.userId(), written.cart());
+    }
+
+    public void markFailed(DirtyCart failed) {
+        Cart cart = failed.cart();
+        synchronized (cart) {
+            for (Long cartItemId : failed.quantities().keySet()) {
+                if (cart.lines.containsKey(cartItemId)) {
+                    cart.updatedIds.add(cartItemId); // Số lượng lấy lại từ dòng hiện tại ở lần ghi sau
+                }
+            }
+            cart.deletedIds.addAll(failed.deletedIds());
+            cart.touched = true;
+        }
+    }
+
+    public synchronized boolean contains(Long userId) {
+        return carts.containsKey(userId) || evicted.containsKey(userId);
+    }
+
+    public synchronized int size() {
+        return carts.size();
+    }
+}
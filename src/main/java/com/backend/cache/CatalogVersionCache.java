@@ -0,0 +1,127 @@
+package com.backend.cache;
+
+import com.backend.common.ResourceVersion;
+import com.backend.event.CatalogChangedEvent;
+import com.backend.event.CategoryChangedEvent;
+import com.backend.model.CacheVersionEntity;
+import com.backend.repository.CacheVersionRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.Date;
+
+/**
+ * Validator (ETag/Last-Modified) cho các GET danh sách sản phẩm, giữ trong bộ nhớ: không query tbl_products mỗi request.
+ * Version "catalog" trong tbl_cache_versions tăng trong transaction thay đổi catalog (CatalogChangedEvent, CategoryChangedEvent,
+ * kể cả khi sản phẩm hết hàng); instance khác thấy version mới sau một chu kỳ poll.
+ * <p>
+ * Các bộ đếm trong body (tồn kho, đã bán, điểm/số đánh giá, lượt xem) và thứ tự BEST_SELLING/RATING/MOST_REVIEWED
+ * đổi theo từng đơn hàng/đánh giá nhưng không tăng version (tránh một dòng nóng bị khóa trong mọi checkout).
+ * Vì vậy validator là weak ETag và gồm thêm số thứ tự cửa sổ thời gian {@code app.catalog-version.stats-lag-ms}:
+ * client có thể nhận 304 với bộ đếm cũ tối đa một cửa sổ (mặc định 30 giây), sau đó ETag đổi và body được tải lại.
+ */
+@Component
+@Slf4j(topic = "CATALOG-VERSION-CACHE")
+@RequiredArgsConstructor
+public class CatalogVersionCache {
+
+    public static final String VERSION_NAME = "catalog";
+
+    private record Snapshot(long version, Date updatedAt) {
+    }
+
+    // Validator đã tính cho một snapshot trong một cửa sổ thống kê (tránh hash lại mỗi request)
+    private record Validator(Snapshot snapshot, long window, ResourceVersion resourceVersion) {
+    }
+
+    private final CacheVersionRepository cacheVersionRepository;
+
+    @Value("${app.catalog-version.stats-lag-ms:30000}")
+    private long statsLagMs;
+
+    private volatile Snapshot snapshot;
+    private volatile Validator validator;
+
+    public ResourceVersion getVersion() {
+        Snapshot current = snapshot;
+        if (current == null) {
+            current = refresh();
+        }
+        long window = System.currentTimeMillis() / statsLagMs;
+        Validator cached = validator;
+        if (cached != null && cached.snapshot() == current && cached.window() == window) {
+            return cached.resourceVersion();
+        }
+        // Last-Modified = đầu cửa sổ hiện tại: client chỉ gửi If-Modified-Since cũng nhận bộ đếm mới sau mỗi cửa sổ
+        Date windowStart = new Date(window * statsLagMs);
+        Date lastModified = current.updatedAt() != null && current.updatedAt().after(windowStart) ? current.updatedAt() : windowStart;
+        ResourceVersion resourceVersion = ResourceVersion.of("products", current.version(), window, lastModified).weak();
+        validator = new Validator(current, window, resourceVersion);
+        return resourceVersion;
+    }
+
+    // Tăng version trong chính transaction thay đổi: instance khác chỉ thấy version mới khi dữ liệu đã commit
+    @TransactionalEventListener(phase = TransactionPhase.BEFORE_COMMIT)
+    public void bumpVersionOnCatalogChanged(CatalogChangedEvent event) {
+        cacheVersionRepository.increment(VERSION_NAME);
+    }
+
+    // Tên/cây danh mục nằm trong response và bộ lọc theo cây con
+    @TransactionalEventListener(phase = TransactionPhase.BEFORE_COMMIT)
+    public void bumpVersionOnCategoryChanged(CategoryChangedEvent event) {
+        cacheVersionRepository.increment(VERSION_NAME);
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onCatalogChanged(CatalogChangedEvent event) {
+        refresh();
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onCategoryChanged(CategoryChangedEvent event) {
+        refresh();
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void initialize() {
+        if (cacheVersionRepository.findVersion(VERSION_NAME) == null) {
+            CacheVersionEntity version = new CacheVersionEntity();
+            version.setName(VERSION_NAME);
+            version.setVersion(0L);
+            version.setUpdatedAt(new Date());
+            try {
+                cacheVersionRepository.save(version);
+            } catch (DataIntegrityViolationException e) {
+                log.debug("Cache version row '{}' created concurrently by another instance", VERSION_NAME);
+            }
+        }
+        refresh();
+    }
+
+    @Scheduled(fixedDelayString = "${app.catalog-version.poll-interval-ms:5000}",
+            initialDelayString = "${app.catalog-version.poll-interval-ms:5000}")
+    public void pollVersion() {
+        Snapshot current = snapshot;
+        Long version = cacheVersionRepository.findVersion(VERSION_NAME);
+        if (current != null && version != null && version != current.version()) {
+            log.debug("Catalog version changed from {} to {} on another instance", current.version(), version);
+            refresh();
+        }
+    }
+
+    private Snapshot refresh() {
+        Snapshot refreshed = cacheVersionRepository.findById(VERSION_NAME)
+                .map(row -> new Snapshot(row.getVersion(), row.getUpdatedAt()))
+                .orElseGet(() -> new Snapshot(-1, null)); // Chưa có dòng version (trước initialize)
+        snapshot = refreshed;
+        return refreshed;
+    }
+}
@@ -0,0 +1,88 @@
+package com.backend.cache;
+
+import com.backend.event.CategoryChangedEvent;
+import com.backend.repository.CategoryRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Cache trong bộ nhớ: categoryId -> ID của chính nó và toàn bộ danh mục con cháu.
+ * Dựng lại từ cột path (một query) sau mỗi lần cây danh mục thay đổi,
+ * nên lọc sản phẩm theo cây con chỉ còn là một predicate "category_id IN (...)".
+ */
+@Component
+@Slf4j(topic = "CATEGORY-HIERARCHY-CACHE")
+@RequiredArgsConstructor
+public class CategoryHierarchyCache {
+
+    private final CategoryRepository categoryRepository;
+
+    // Snapshot bất biến; null nghĩa là cần dựng lại
+    private volatile Map<Long, List<Long>> subtreeIds;
+    // Tăng mỗi lần invalidate, để một lần load đang chạy dở không ghi đè snapshot cũ lên
+    private final AtomicLong generation = new AtomicLong();
+
+    public List<Long> getSubtreeIds(Long categoryId) {
+        List<Long> ids = snapshot().get(categoryId);
+        return ids != null ? ids : List.of(categoryId); // Danh mục chưa biết: giữ hành vi lọc đúng ID
+    }
+
+    // Nạp trước snapshot (warm-up khi khởi động)
+    public void warmUp() {
+        snapshot();
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onCategoryChanged(CategoryChangedEvent event) {
+        log.info("Category {} changed, invalidating hierarchy cache", event.categoryId());
+        generation.incrementAndGet();
+        subtreeIds = null;
+    }
+
+    private Map<Long, List<Long>> snapshot() {
+        Map<Long, List<Long>> current = subtreeIds;
+        if (current == null) {
+            synchronized (this) {
+                current = subtreeIds;
+                if (current == null) {
+                    long loadedGeneration = generation.get();
+                    current = load();
+                    if (generation.get() == loadedGeneration) {
+                        subtreeIds = current;
+                    }
+                }
+            }
+        }
+        return current;
+    }
+
+    private Map<Long, List<Long>> load() {
+        Map<Long, List<Long>> result = new HashMap<>();
+        for (Object[] row : categoryRepository.findAllPaths()) {
+            Long id = (Long) row[0];
+            String path = (String) row[1];
+            result.computeIfAbsent(id, k -> new ArrayList<>()).add(id);
+            if (path == null) {
+                continue; // Chưa backfill: chỉ chứa chính nó
+            }
+            // "/1/5/12/": 12 thuộc cây con của 1 và 5
+            for (String ancestor : path.split("/")) {
+                if (ancestor.isEmpty()) {
+                    continue;
+                }
+                Long ancestorId = Long.valueOf(ancestor);
+                if (!ancestorId.equals(id)) {
+                    result.computeIfAbsent(ancestorId, k -> new ArrayList<>()).add(id);
+                }
+            }
+        }
+        result.replaceAll((k, v) -> List.copyOf(v));
+        log.info("Category hierarchy cache loaded with {} categories", result.size());
+        return Map.copyOf(result);
+    }
+}
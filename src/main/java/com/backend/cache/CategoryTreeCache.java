@@ -0,0 +1,195 @@
+package com.backend.cache;
+
+import com.backend.common.ResourceVersion;
+import com.backend.controller.response.CategoryBreadcrumbResponse;
+import com.backend.controller.response.CategoryTreeResponse;
+import com.backend.event.CategoryChangedEvent;
+import com.backend.event.CategoryProductCountChangedEvent;
+import com.backend.model.CacheVersionEntity;
+import com.backend.repository.CacheVersionRepository;
+import com.backend.repository.CategoryRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Snapshot bất biến của toàn bộ cây danh mục (tên, số sản phẩm, con), dựng sẵn response cho menu.
+ * Đọc không truy vấn DB; snapshot được thay mới (copy-on-write) sau khi thay đổi danh mục/số sản phẩm commit.
+ * Đồng bộ giữa các instance qua version "category-tree" trong tbl_cache_versions: tăng trong transaction thay đổi,
+ * các instance khác poll định kỳ và phát lại CategoryChangedEvent cục bộ khi thấy version khác.
+ */
+@Component
+@Slf4j(topic = "CATEGORY-TREE-CACHE")
+@RequiredArgsConstructor
+public class CategoryTreeCache {
+
+    public static final String VERSION_NAME = "category-tree";
+
+    private record Node(Long id, String name, Long parentId) {
+    }
+
+    private record Snapshot(long version, Map<Long, Node> nodes, List<CategoryTreeResponse> roots, ResourceVersion resourceVersion) {
+    }
+
+    private final CategoryRepository categoryRepository;
+    private final CacheVersionRepository cacheVersionRepository;
+    private final ApplicationEventPublisher eventPublisher;
+
+    private volatile Snapshot snapshot;
+
+    public List<CategoryTreeResponse> getTree() {
+        return snapshot().roots();
+    }
+
+    // ETag/Last-Modified của cây hiện tại (không truy vấn DB)
+    public ResourceVersion getVersion() {
+        return snapshot().resourceVersion();
+    }
+
+    /**
+     * Đường dẫn từ danh mục gốc tới danh mục categoryId; rỗng nếu danh mục không tồn tại.
+     */
+    public List<CategoryBreadcrumbResponse> getBreadcrumb(Long categoryId) {
+        Map<Long, Node> nodes = snapshot().nodes();
+        List<CategoryBreadcrumbResponse> breadcrumb = new ArrayList<>();
+        Node node = nodes.get(categoryId);
+        while (node != null && breadcrumb.size() <= nodes.size()) {
+            breadcrumb.add(CategoryBreadcrumbResponse.builder().id(node.id()).name(node.name()).build());
+            node = node.parentId() != null ? nodes.get(node.parentId()) : null;
+        }
+        Collections.reverse(breadcrumb);
+        return breadcrumb;
+    }
+
+    public void warmUp() {
+        snapshot();
+    }
+
+    // Tăng version trong chính transaction thay đổi: instance khác chỉ thấy version mới khi dữ liệu đã commit
+    @TransactionalEventListener(phase = TransactionPhase.BEFORE_COMMIT)
+    public void bumpVersionOnCategoryChanged(CategoryChangedEvent event) {
+        cacheVersionRepository.increment(VERSION_NAME);
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.BEFORE_COMMIT)
+    public void bumpVersionOnProductCountChanged(CategoryProductCountChangedEvent event) {
+        cacheVersionRepository.increment(VERSION_NAME);
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onCategoryChanged(CategoryChangedEvent event) {
+        rebuild();
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onProductCountChanged(CategoryProductCountChangedEvent event) {
+        rebuild();
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void initialize() {
+        if (cacheVersionRepository.findVersion(VERSION_NAME) == null) {
+            CacheVersionEntity version = new CacheVersionEntity();
+            version.setName(VERSION_NAME);
+            version.setVersion(0L);
+            version.setUpdatedAt(new Date());
+            try {
+                cacheVersionRepository.save(version);
+            } catch (DataIntegrityViolationException e) {
+                log.debug("Cache version row '{}' created concurrently by another instance", VERSION_NAME);
+            }
+        }
+        rebuild();
+    }
+
+    // Thay đổi từ instance khác: phát lại event cục bộ để mọi cache danh mục (cây, cây con) cùng làm mới
+    @Scheduled(fixedDelayString = "${app.category-tree.poll-interval-ms:5000}",
+            initialDelayString = "${app.category-tree.poll-interval-ms:5000}")
+    public void pollVersion() {
+        Snapshot current = snapshot;
+        Long version = cacheVersionRepository.findVersion(VERSION_NAME);
+        if (current != null && version != null && version != current.version()) {
+            log.info("Category tree version changed from {} to {} on another instance, refreshing", current.version(), version);
+            eventPublisher.publishEvent(new CategoryChangedEvent(null));
+        }
+    }
+
+    private Snapshot snapshot() {
+        Snapshot current = snapshot;
+        return current != null ? current : rebuild();
+    }
+
+    private synchronized Snapshot rebuild() {
+        long startedAt = System.currentTimeMillis();
+        // Đọc version trước dữ liệu: nếu có thay đổi xen giữa, lần poll sau sẽ dựng lại
+        Long storedVersion = cacheVersionRepository.findVersion(VERSION_NAME);
+        long version = storedVersion != null ? storedVersion : 0;
+
+        Map<Long, Object[]> rows = new HashMap<>();
+        Map<Long, List<Long>> childIds = new HashMap<>();
+        List<Long> rootIds = new ArrayList<>();
+        long lastModified = 0;
+        for (Object[] row : categoryRepository.findTreeRows()) {
+            Long id = (Long) row[0];
+            Long parentId = (Long) row[2];
+            rows.put(id, row);
+            if (parentId == null) {
+                rootIds.add(id);
+            } else {
+                childIds.computeIfAbsent(parentId, k -> new ArrayList<>()).add(id);
+            }
+            if (row[3] instanceof Date updatedAt) {
+                lastModified = Math.max(lastModified, updatedAt.getTime());
+            }
+        }
+
+        Map<Long, Node> nodes = new HashMap<>(rows.size() * 2);
+        List<CategoryTreeResponse> roots = buildChildren(rootIds, rows, childIds, nodes);
+        Snapshot built = new Snapshot(version, Map.copyOf(nodes), roots,
+                ResourceVersion.of(VERSION_NAME, version, new Date(lastModified)));
+        snapshot = built;
+        log.info("Category tree snapshot v{} built with {} categories in {} ms",
+                version, nodes.size(), System.currentTimeMillis() - startedAt);
+        return built;
+    }
+
+    // Dựng từ lá lên gốc; con sắp theo tên để menu ổn định
+    private List<CategoryTreeResponse> buildChildren(List<Long> ids, Map<Long, Object[]> rows, Map<Long, List<Long>> childIds,
+                                                     Map<Long, Node> nodes) {
+        List<CategoryTreeResponse> children = new ArrayList<>(ids.size());
+        for (Long id : ids) {
+            Object[] row = rows.get(id);
+            List<CategoryTreeResponse> grandChildren = buildChildren(childIds.getOrDefault(id, List.of()), rows, childIds, nodes);
+            // Số sản phẩm lấy từ cột đếm của tbl_categories (CategoryService duy trì)
+            long directCount = ((Number) row[4]).longValue();
+            long productCount = ((Number) row[5]).longValue();
+            CategoryTreeResponse response = CategoryTreeResponse.builder()
+                    .id(id)
+                    .name((String) row[1])
+                    .directProductCount(directCount)
+                    .productCount(productCount)
+                    .children(grandChildren)
+                    .build();
+            nodes.put(id, new Node(id, (String) row[1], (Long) row[2]));
+            children.add(response);
+        }
+        children.sort(Comparator.comparing(CategoryTreeResponse::getName, String.CASE_INSENSITIVE_ORDER)
+                .thenComparing(CategoryTreeResponse::getId));
+        return List.copyOf(children);
+    }
+}
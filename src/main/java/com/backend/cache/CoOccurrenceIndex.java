@@ -0,0 +1,82 @@
+package com.backend.cache;
+
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Ma trận đồng xuất hiện sản phẩm trong cùng đơn hàng, giữ trong bộ nhớ:
+ * productId -> (productId khác -> số đơn có cả hai). Mỗi hàng là một LongIntHashMap (mảng nguyên thủy).
+ * Dữ liệu được nạp/cập nhật bởi ProductRecommendationService.
+ * <p>
+ * Chỉ đúng trên một instance: sau backfill lúc khởi động, mỗi instance chỉ cộng đơn đặt/hủy của chính nó,
+ * nên khi chạy nhiều instance các ma trận lệch nhau cho tới lần khởi động lại. Chấp nhận được vì "mua cùng" chỉ là gợi ý
+ * và sai lệch là phần đơn mới so với toàn bộ lịch sử; nếu cần khớp hơn thì khởi động lại định kỳ (rolling restart).
+ */
+@Component
+public class CoOccurrenceIndex {
+
+    private final ConcurrentHashMap<Long, LongIntHashMap> rows = new ConcurrentHashMap<>();
+
+    /**
+     * Cộng (delta = 1) hoặc trừ (delta = -1) một đơn hàng vào ma trận.
+     */
+    public void addOrder(long[] productIds, int delta) {
+        long[] distinct = Arrays.stream(productIds).distinct().toArray();
+        if (distinct.length < 2) {
+            return; // Đơn một sản phẩm không có cặp nào
+        }
+        for (long productId : distinct) {
+            LongIntHashMap row = rows.computeIfAbsent(productId, id -> new LongIntHashMap());
+            synchronized (row) {
+                for (long other : distinct) {
+                    if (other != productId) {
+                        row.addTo(other, delta);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Top-K sản phẩm hay được mua cùng, theo số đơn giảm dần (hòa thì ID nhỏ trước).
+     * Duyệt một hàng của ma trận với heap kích thước K: O(n log K), n là số sản phẩm từng mua cùng.
+     */
+    public List<Long> topNeighbours(long productId, int limit) {
+        LongIntHashMap row = rows.get(productId);
+        if (row == null || limit <= 0) {
+            return List.of();
+        }
+        // Phần tử đầu heap là ứng viên "yếu" nhất trong K phần tử đang giữ
+        PriorityQueue<long[]> heap = new PriorityQueue<>(limit + 1, (a, b) -> a[1] != b[1]
+                ? Long.compare(a[1], b[1])
+                : Long.compare(b[0], a[0]));
+        synchronized (row) {
+            row.forEach((other, count) -> {
+                heap.offer(new long[]{other, count});
+                if (heap.size() > limit) {
+                    heap.poll();
+                }
+            });
+        }
+        List<Long> result = new ArrayList<>(heap.size());
+        while (!heap.isEmpty()) {
+            result.add(heap.poll()[0]);
+        }
+        Collections.reverse(result);
+        return result;
+    }
+
+    public int productCount() {
+        return rows.size();
+    }
+
+    public void clear() {
+        rows.clear();
+    }
+}
@@ -0,0 +1,132 @@
+package com.backend.cache;
+
+/**
+ * Map long -> int dùng open addressing (linear probing) trên hai mảng nguyên thủy,
+ * không boxing Long/Integer nên tốn khoảng 12 byte mỗi entry thay vì ~50 byte của HashMap.
+ * Khóa phải khác 0 (ID trong DB luôn dương). Không thread-safe: người dùng tự đồng bộ.
+ */
+public final class LongIntHashMap {
+
+    private static final long EMPTY = 0L;
+    private static final float LOAD_FACTOR = 0.6f;
+
+    private long[] keys;
+    private int[] values;
+    private int size;
+    private int resizeAt;
+
+    public LongIntHashMap() {
+        this(8);
+    }
+
+    public LongIntHashMap(int expectedSize) {
+        int capacity = Integer.highestOneBit(Math.max(4, (int) (expectedSize / LOAD_FACTOR)) - 1) << 1;
+        allocate(capacity);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int get(long key) {
+        int slot = findSlot(key);
+        return keys[slot] == key ? values[slot] : 0;
+    }
+
+    /**
+     * Cộng delta vào giá trị của key (mặc định 0). Entry có giá trị <= 0 sau khi cộng bị xóa.
+     *
+     * @return giá trị mới
+     */
+    public int addTo(long key, int delta) {
+        if (key == EMPTY) {
+            throw new IllegalArgumentException("Key must not be 0");
+        }
+        int slot = findSlot(key);
+        if (keys[slot] == key) {
+            int updated = values[slot] + delta;
+            if (updated <= 0) {
+                removeAt(slot);
+                return 0;
+            }
+            values[slot] = updated;
+            return updated;
+        }
+        if (delta <= 0) {
+            return 0;
+        }
+        keys[slot] = key;
+        values[slot] = delta;
+        if (++size >= resizeAt) {
+            rehash(keys.length << 1);
+        }
+        return delta;
+    }
+
+    public void forEach(Consumer consumer) {
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] != EMPTY) {
+                consumer.accept(keys[i], values[i]);
+            }
+        }
+    }
+
+    @FunctionalInterface
+    public interface Consumer {
+        void accept(long key, int value);
+    }
+
+    // Slot chứa key, hoặc slot trống đầu tiên nếu key chưa có
+    private int findSlot(long key) {
+        int mask = keys.length - 1;
+        int slot = mix(key) & mask;
+        while (keys[slot] != EMPTY && keys[slot] != key) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    // Xóa kiểu backward-shift: dời các entry phía sau về để chuỗi probing không bị đứt (không cần tombstone)
+    private void removeAt(int slot) {
+        int mask = keys.length - 1;
+        int gap = slot;
+        int next = (gap + 1) & mask;
+        while (keys[next] != EMPTY) {
+            int ideal = mix(keys[next]) & mask;
+            // Entry ở "next" được dời về "gap" nếu vị trí lý tưởng của nó không nằm trong (gap, next]
+            if (((next - ideal) & mask) >= ((next - gap) & mask)) {
+                keys[gap] = keys[next];
+                values[gap] = values[next];
+                gap = next;
+            }
+            next = (next + 1) & mask;
+        }
+        keys[gap] = EMPTY;
+        values[gap] = 0;
+        size--;
+    }
+
+    private void rehash(int capacity) {
+        long[] oldKeys = keys;
+        int[] oldValues = values;
+        allocate(capacity);
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != EMPTY) {
+                int slot = findSlot(oldKeys[i]);
+                keys[slot] = oldKeys[i];
+                values[slot] = oldValues[i];
+            }
+        }
+    }
+
+    private void allocate(int capacity) {
+        keys = new long[capacity];
+        values = new int[capacity];
+        resizeAt = Math.max(1, (int) (capacity * LOAD_FACTOR));
+    }
+
+    private static int mix(long key) {
+        long h = key * 0x9E3779B97F4A7C15L; // Fibonacci hashing để ID liên tiếp không dồn cụm
+        return (int) (h ^ (h >>> 32));
+    }
+}
@@ -0,0 +1,92 @@
+package com.backend.cache;
+
+import com.backend.controller.response.ProductSummaryResponse;
+import com.backend.event.ProductChangedEvent;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * Cache LRU có giới hạn cho ProductSummaryResponse (giá, tồn kho, ảnh chính) theo productId.
+ * Entry bị xóa sau khi transaction thay đổi sản phẩm commit (ProductChangedEvent) trên instance này.
+ * Thay đổi từ instance khác (bán hàng, sửa giá) không có event cục bộ: entry hết hạn sau TTL nên giá/tồn kho
+ * chỉ lệch tối đa {@code app.cache.product-summary.ttl-ms}.
+ */
+@Component
+@Slf4j(topic = "PRODUCT-SUMMARY-CACHE")
+public class ProductSummaryCache {
+
+    private record Entry(ProductSummaryResponse summary, long loadedAtNanos) {
+    }
+
+    private final Map<Long, Entry> entries;
+    private final long ttlNanos;
+    private final LongSupplier clock;
+    // Tăng mỗi lần invalidate: kết quả đọc DB bắt đầu trước lần invalidate gần nhất không được đưa vào cache
+    private long invalidations;
+
+    @Autowired
+    public ProductSummaryCache(@Value("${app.cache.product-summary.max-size:10000}") int maxSize,
+                               @Value("${app.cache.product-summary.ttl-ms:30000}") long ttlMillis) {
+        this(maxSize, ttlMillis, System::nanoTime);
+    }
+
+    ProductSummaryCache(int maxSize, long ttlMillis, LongSupplier clock) {
+        this.ttlNanos = TimeUnit.MILLISECONDS.toNanos(ttlMillis);
+        this.clock = clock;
+        this.entries = new LinkedHashMap<>(256, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, Entry> eldest) {
+                return size() > maxSize;
+            }
+        };
+    }
+
+    /**
+     * Lấy các entry đang có trong cache; ID không có được thêm vào {@code misses}.
+     *
+     * @return mốc invalidate hiện tại, truyền lại cho {@link #putAll} sau khi đọc DB
+     */
+    public synchronized long getAll(Collection<Long> ids, Map<Long, ProductSummaryResponse> hits, Collection<Long> misses) {
+        long now = clock.getAsLong();
+        for (Long id : ids) {
+            Entry entry = entries.get(id);
+            if (entry != null && now - entry.loadedAtNanos() < ttlNanos) {
+                hits.put(id, entry.summary());
+            } else {
+                if (entry != null) {
+                    entries.remove(id); // Hết hạn: đọc lại từ DB
+                }
+                misses.add(id);
+            }
+        }
+        return invalidations;
+    }
+
+    // Mốc invalidate hiện tại, lấy trước khi tự đọc summary từ DB (ví dụ cùng query với dữ liệu khác) rồi truyền cho putAll
+    public synchronized long currentVersion() {
+        return invalidations;
+    }
+
+    public synchronized void putAll(Collection<ProductSummaryResponse> summaries, long loadedAt) {
+        if (loadedAt != invalidations) {
+            return; // Có sản phẩm thay đổi trong lúc đọc DB: bỏ qua, lần sau đọc lại
+        }
+        long now = clock.getAsLong();
+        for (ProductSummaryResponse summary : summaries) {
+            entries.put(summary.getId(), new Entry(summary, now));
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public synchronized void onProductChanged(ProductChangedEvent event) {
+        invalidations++;
+        entries.remove(event.productId());
+    }
+}
@@ -0,0 +1,54 @@
+package com.backend.cache;
+
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bộ đếm lượt xem sản phẩm trong bộ nhớ, chưa ghi xuống DB. Mỗi sản phẩm một LongAdder (phân mảnh theo thread,
+ * không tranh chấp khi nhiều request cùng xem một sản phẩm). ProductViewService định kỳ drain() và ghi gộp.
+ */
+@Component
+public class ProductViewCounter {
+
+    private final ConcurrentHashMap<Long, LongAdder> counters = new ConcurrentHashMap<>();
+
+    public void increment(Long productId) {
+        add(productId, 1);
+    }
+
+    public void add(Long productId, long delta) {
+        counters.computeIfAbsent(productId, id -> new LongAdder()).add(delta);
+    }
+
+    // Số lượt xem chưa được ghi xuống DB
+    public long pending(Long productId) {
+        LongAdder adder = counters.get(productId);
+        return adder == null ? 0 : adder.sum();
+    }
+
+    /**
+     * Lấy và reset các bộ đếm khác 0. Bộ đếm đã về 0 từ lần trước thì bị gỡ khỏi map để map không phình theo
+     * số sản phẩm từng được xem (một lượt xem rơi đúng vào lúc gỡ có thể bị mất, chấp nhận được cho thống kê).
+     */
+    public Map<Long, Long> drain() {
+        Map<Long, Long> drained = new HashMap<>();
+        counters.forEach((productId, adder) -> {
+            long count = adder.sumThenReset();
+            if (count > 0) {
+                drained.put(productId, count);
+            } else {
+                counters.remove(productId, adder);
+            }
+        });
+        return drained;
+    }
+
+    // Trả lại các bộ đếm đã drain khi ghi DB thất bại, để lần flush sau ghi tiếp
+    public void restore(Map<Long, Long> counts) {
+        counts.forEach(this::add);
+    }
+}
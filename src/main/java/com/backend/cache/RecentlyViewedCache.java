@@ -0,0 +1,187 @@
+package com.backend.cache;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Sản phẩm xem gần đây của từng user, giữ trong bộ nhớ: LRU theo user (tối đa max-users user),
+ * mỗi user một vòng (ring buffer) max-items productId không trùng, mới nhất trước.
+ * Ghi DB lười: chỉ các lịch sử "dirty" được RecentlyViewedService ghi gộp định kỳ; lịch sử dirty bị đẩy khỏi LRU
+ * được giữ riêng trong {@code evicted} cho tới khi được ghi.
+ */
+@Component
+public class RecentlyViewedCache {
+
+    public static final class History {
+        private final long[] ring;
+        private int head = -1; // Vị trí của sản phẩm xem gần nhất
+        private int size;
+        // false: chưa gộp với dữ liệu đã lưu trong DB (lịch sử được tạo từ lượt xem khi user chưa có trong bộ nhớ)
+        private boolean loaded;
+        private volatile boolean dirty;
+
+        private History(int capacity, boolean loaded) {
+            this.ring = new long[capacity];
+            this.loaded = loaded;
+        }
+
+        // Vị trí của phần tử mới thứ i (0 = mới nhất)
+        private int position(int i) {
+            return Math.floorMod(head - i, ring.length);
+        }
+
+        private synchronized void add(long productId) {
+            dirty = true;
+            for (int i = 0; i < size; i++) {
+                if (ring[position(i)] == productId) {
+                    // Đã có: dời các phần tử mới hơn lùi một ô và đưa sản phẩm lên đầu
+                    for (int j = i; j > 0; j--) {
+                        ring[position(j)] = ring[position(j - 1)];
+                    }
+                    ring[position(0)] = productId;
+                    return;
+                }
+            }
+            head = (head + 1) % ring.length;
+            ring[head] = productId;
+            size = Math.min(size + 1, ring.length);
+        }
+
+        // Gộp lịch sử đã lưu (cũ hơn mọi lượt xem trong bộ nhớ) vào cuối vòng
+        private synchronized void mergeOlder(List<Long> older) {
+            if (!loaded) {
+                for (Long productId : older) {
+                    if (size == ring.length) {
+                        break;
+                    }
+                    if (!contains(productId)) {
+                        if (head < 0) {
+                            head = 0;
+                        }
+                        ring[position(size)] = productId;
+                        size++;
+                    }
+                }
+                loaded = true;
+            }
+        }
+
+        private boolean contains(long productId) {
+            for (int i = 0; i < size; i++) {
+                if (ring[position(i)] == productId) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        public synchronized List<Long> productIds() {
+            List<Long> ids = new ArrayList<>(size);
+            for (int i = 0; i < size; i++) {
+                ids.add(ring[position(i)]);
+            }
+            return ids;
+        }
+
+        public synchronized boolean isLoaded() {
+            return loaded;
+        }
+    }
+
+    // Một lịch sử cần ghi: productIds là ảnh chụp tại thời điểm lấy ra
+    public record DirtyHistory(Long userId, History history, List<Long> productIds, boolean loaded) {
+    }
+
+    private final int maxItems;
+    private final Map<Long, History> histories;
+    private final Map<Long, History> evicted = new ConcurrentHashMap<>();
+
+    public RecentlyViewedCache(@Value("${app.recently-viewed.max-users:100000}") int maxUsers,
+                               @Value("${app.recently-viewed.max-items:20}") int maxItems) {
+        this.maxItems = maxItems;
+        this.histories = new LinkedHashMap<>(256, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, History> eldest) {
+                if (size() <= maxUsers) {
+                    return false;
+                }
+                if (eldest.getValue().dirty) {
+                    evicted.put(eldest.getKey(), eldest.getValue());
+                }
+                return true;
+            }
+        };
+    }
+
+    public void record(Long userId, Long productId) {
+        historyOf(userId).add(productId);
+    }
+
+    /**
+     * Lịch sử của user trong bộ nhớ, hoặc null nếu chưa có / chưa gộp với DB (cần gọi {@link #mergeLoaded}).
+     */
+    public synchronized History getLoaded(Long userId) {
+        History history = histories.get(userId);
+        return history != null && history.isLoaded() ? history : null;
+    }
+
+    // Gộp dữ liệu đọc từ DB vào lịch sử trong bộ nhớ (tạo mới nếu chưa có)
+    public History mergeLoaded(Long userId, List<Long> storedProductIds) {
+        History history = historyOf(userId);
+        history.mergeOlder(storedProductIds);
+        return history;
+    }
+
+    /**
+     * Lấy các lịch sử cần ghi (kể cả lịch sử đã bị đẩy khỏi LRU) và đánh dấu là sạch.
+     * Gọi {@link #markWritten} khi ghi xong hoặc {@link #markFailed} khi ghi lỗi.
+     */
+    public List<DirtyHistory> drainDirty() {
+        List<Map.Entry<Long, History>> candidates;
+        synchronized (this) {
+            candidates = new ArrayList<>(histories.entrySet());
+        }
+        candidates.addAll(evicted.entrySet());
+        List<DirtyHistory> dirty = new ArrayList<>();
+        for (Map.Entry<Long, History> entry : candidates) {
+            History history = entry.getValue();
+            synchronized (history) {
+                if (history.dirty) {
+                    history.dirty = false;
+                    dirty.add(new DirtyHistory(entry.getKey(), history, history.productIds(), history.loaded));
+                }
+            }
+        }
+        return dirty;
+    }
+
+    public void markWritten(DirtyHistory written, List<Long> storedProductIds) {
+        written.history().mergeOlder(storedProductIds);
+        evicted.remove(written.userId(), written.history());
+    }
+
+    public void markFailed(DirtyHistory failed) {
+        synchronized (failed.history()) {
+            failed.history().dirty = true;
+        }
+    }
+
+    private synchronized History historyOf(Long userId) {
+        History history = histories.get(userId);
+        if (history == null) {
+            // User quay lại trước khi lịch sử bị đẩy ra kịp ghi DB: dùng lại lịch sử đó
+            history = evicted.remove(userId);
+            if (history == null) {
+                history = new History(maxItems, false);
+            }
+            histories.put(userId, history);
+        }
+        return history;
+    }
+}
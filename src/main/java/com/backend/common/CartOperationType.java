@@ -0,0 +1,8 @@
+package com.backend.common;
+
+// Loại thao tác trong request cập nhật giỏ hàng theo lô
+public enum CartOperationType {
+    ADD,    // Thêm sản phẩm (cộng dồn nếu đã có trong giỏ): cần productId, quantity
+    UPDATE, // Đặt số lượng cho một dòng: cần cartItemId, quantity
+    REMOVE  // Xóa một dòng: cần cartItemId
+}
@@ -1,5 +1,7 @@
 package com.backend.common;
 
+import java.util.List;
+
 public enum OrderStatus {
     PENDING,       // Chờ xử lý
     PROCESSING,    // Đang xử lý
@@ -7,5 +9,12 @@ public enum OrderStatus {
     DELIVERED,     // Đã nhận hàng
     CANCELLED,     // Đã hủy
     FAILED,         // Thất bại
-    RETURNED
+    RETURNED;
+
+    // Trạng thái không tính vào thống kê bán hàng (số lượng bán, bán chạy, "mua cùng"): dùng chung cho backfill và cập nhật trực tiếp
+    public static final List<OrderStatus> NOT_COUNTED_AS_SALE = List.of(CANCELLED, FAILED);
+
+    public boolean countsAsSale() {
+        return !NOT_COUNTED_AS_SALE.contains(this);
+    }
 }
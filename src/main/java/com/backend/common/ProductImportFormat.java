@@ -0,0 +1,6 @@
+package com.backend.common;
+
+public enum ProductImportFormat {
+    CSV,    // Dòng đầu là header: sku,name,description,price,stockQuantity,categoryId,imageURLs (ảnh phân tách bằng '|')
+    NDJSON  // Mỗi dòng là một JSON object có cùng các trường với ProductCreationRequest
+}
@@ -0,0 +1,41 @@
+package com.backend.common;
+
+import lombok.Getter;
+import org.springframework.data.domain.Sort;
+
+/**
+ * Các kiểu sắp xếp cho danh sách sản phẩm.
+ * Mỗi kiểu tương ứng với một composite index (category_id, <cột sắp xếp>, id) trên tbl_products,
+ * id luôn được thêm vào cuối để thứ tự là duy nhất (bắt buộc cho keyset cursor).
+ */
+@Getter
+public enum ProductSort {
+    NEWEST("createdAt", Sort.Direction.DESC),        // Mới nhất
+    PRICE_ASC("price", Sort.Direction.ASC),          // Giá tăng dần
+    PRICE_DESC("price", Sort.Direction.DESC),        // Giá giảm dần
+    BEST_SELLING("soldCount", Sort.Direction.DESC),  // Bán chạy nhất
+    RATING("averageRating", Sort.Direction.DESC),    // Đánh giá cao nhất
+    MOST_REVIEWED("ratingCount", Sort.Direction.DESC), // Nhiều đánh giá nhất
+    BEST_SELLING_7D("soldLast7Days", Sort.Direction.DESC, true),   // Bán chạy 7 ngày (chỉ có trên card)
+    BEST_SELLING_30D("soldLast30Days", Sort.Direction.DESC, true), // Bán chạy 30 ngày (chỉ có trên card)
+    MOST_VIEWED("viewCount", Sort.Direction.DESC, true);           // Xem nhiều nhất (chỉ có trên card)
+
+    private final String property;
+    private final Sort.Direction direction;
+    // Cột chỉ tồn tại trên tbl_product_cards (không dùng được cho /products/scroll)
+    private final boolean cardOnly;
+
+    ProductSort(String property, Sort.Direction direction) {
+        this(property, direction, false);
+    }
+
+    ProductSort(String property, Sort.Direction direction, boolean cardOnly) {
+        this.property = property;
+        this.direction = direction;
+        this.cardOnly = cardOnly;
+    }
+
+    public Sort toSort() {
+        return Sort.by(direction, property).and(Sort.by(direction, "id"));
+    }
+}
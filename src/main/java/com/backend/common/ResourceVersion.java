@@ -0,0 +1,49 @@
+package com.backend.common;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Date;
+import java.util.HexFormat;
+
+/**
+ * Validator cho conditional GET: ETag (strong, hoặc weak qua {@link #weak()}) và thời điểm sửa đổi cuối (epoch millis).
+ * Được tính từ vài cột updatedAt/đếm (một query scalar), không cần load entity hay serialize body.
+ */
+public record ResourceVersion(String eTag, long lastModified) {
+
+    /**
+     * @param resource tên loại tài nguyên, giúp ETag của các endpoint khác nhau không trùng nhau
+     * @param parts    các giá trị quyết định nội dung response (updatedAt, số lượng, ...);
+     *                 giá trị Date lớn nhất được dùng làm Last-Modified
+     */
+    public static ResourceVersion of(String resource, Object... parts) {
+        StringBuilder source = new StringBuilder(resource);
+        long lastModified = -1;
+        for (Object part : parts) {
+            if (part instanceof Date date) {
+                lastModified = Math.max(lastModified, date.getTime());
+                source.append('|').append(date.getTime());
+            } else {
+                source.append('|').append(part);
+            }
+        }
+        return new ResourceVersion("\"" + resource + "-" + digest(source.toString()) + "\"", lastModified);
+    }
+
+    /**
+     * Bản weak ({@code W/"..."}) của validator: dùng khi body có thể lệch nhỏ (bộ đếm) so với ETag trong một khoảng trễ chấp nhận được.
+     */
+    public ResourceVersion weak() {
+        return eTag.startsWith("W/") ? this : new ResourceVersion("W/" + eTag, lastModified);
+    }
+
+    private static String digest(String value) {
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(value.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(hash, 0, 12);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+}
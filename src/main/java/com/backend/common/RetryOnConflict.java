@@ -0,0 +1,25 @@
+package com.backend.common;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Chạy lại method service khi transaction bị optimistic lock (@Version) từ chối, với backoff ngẫu nhiên (jitter).
+ * Advice nằm ngoài @Transactional nên mỗi lần thử là một transaction mới, đọc lại dữ liệu và kiểm tra lại nghiệp vụ.
+ * Nếu method được gọi bên trong một transaction có sẵn thì không retry (transaction ngoài đã bị đánh dấu rollback).
+ * <p>
+ * Chỉ dùng cho method mà chạy lại là an toàn: side effect ngoài DB (email, event) phải xảy ra sau khi commit.
+ *
+ * @see com.backend.config.OptimisticRetryInterceptor
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+public @interface RetryOnConflict {
+
+    // Tổng số lần thử (kể cả lần đầu); <= 0 dùng app.optimistic-retry.max-attempts
+    int maxAttempts() default 0;
+}
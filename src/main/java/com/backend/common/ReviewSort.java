@@ -0,0 +1,28 @@
+package com.backend.common;
+
+import lombok.Getter;
+import org.springframework.data.domain.Sort;
+
+/**
+ * Các kiểu sắp xếp cho danh sách review của một sản phẩm.
+ * Mỗi kiểu tương ứng với một composite index (product_id, <cột sắp xếp>, id) trên tbl_reviews,
+ * id luôn được thêm vào cuối để thứ tự là duy nhất (bắt buộc cho keyset cursor).
+ */
+@Getter
+public enum ReviewSort {
+    NEWEST("createdAt", Sort.Direction.DESC),        // Mới nhất
+    HIGHEST_RATING("rating", Sort.Direction.DESC),   // Số sao cao nhất
+    LOWEST_RATING("rating", Sort.Direction.ASC);     // Số sao thấp nhất
+
+    private final String property;
+    private final Sort.Direction direction;
+
+    ReviewSort(String property, Sort.Direction direction) {
+        this.property = property;
+        this.direction = direction;
+    }
+
+    public Sort toSort() {
+        return Sort.by(direction, property).and(Sort.by(direction, "id"));
+    }
+}
@@ -0,0 +1,25 @@
+package com.backend.common;
+
+import lombok.Getter;
+
+import java.time.LocalDate;
+
+// Cửa sổ thời gian trượt cho thống kê bán chạy (tính theo ngày, gồm cả hôm nay)
+@Getter
+public enum SalesWindow {
+    LAST_7_DAYS(7),
+    LAST_30_DAYS(30);
+
+    // Số ngày lớn nhất cần giữ trong bộ nhớ/snapshot
+    public static final int MAX_DAYS = 30;
+
+    private final int days;
+
+    SalesWindow(int days) {
+        this.days = days;
+    }
+
+    public LocalDate firstDay(LocalDate today) {
+        return today.minusDays(days - 1L);
+    }
+}
@@ -51,6 +51,7 @@ public class AppConfig {
                                 "/auth/**",
                                 "/api/v1/users/verify",
                                 "/api/v1/users/set-initial-password",
+                                "/api/v1/guest-cart", "/api/v1/guest-cart/**", // Giỏ khách (token ký, không cần đăng nhập)
                                 // Swagger UI & Actuator endpoints
                                 "/actuator/**",
                                 "/v3/api-docs/**",
@@ -69,6 +70,7 @@ public class AppConfig {
                                 "/api/v1/products/{productId}/reviews"
                         ).permitAll()
                         .requestMatchers(HttpMethod.POST, "/api/v1/users").permitAll() // Allow public registration
+                        .requestMatchers(HttpMethod.POST, "/api/v1/products/batch").permitAll() // Public batch lookup (read-only)
                         .anyRequest().authenticated() // All other requests need authentication
                 )
                 // OAuth2 Login Configuration
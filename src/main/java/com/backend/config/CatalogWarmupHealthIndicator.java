@@ -0,0 +1,25 @@
+package com.backend.config;
+
+import com.backend.service.CatalogWarmupService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+import org.springframework.stereotype.Component;
+
+/**
+ * Health "catalogWarmup": OUT_OF_SERVICE cho đến khi warm-up xong. Chỉ nằm trong nhóm readiness
+ * (management.endpoint.health.group.readiness) để load balancer chỉ chuyển traffic tới instance đã warm;
+ * /actuator/health gốc không tính indicator này (ReadinessOnlyHealthPostProcessor).
+ */
+@Component("catalogWarmup")
+@RequiredArgsConstructor
+public class CatalogWarmupHealthIndicator implements HealthIndicator {
+
+    private final CatalogWarmupService catalogWarmupService;
+
+    @Override
+    public Health health() {
+        Health.Builder builder = catalogWarmupService.isWarm() ? Health.up() : Health.outOfService();
+        return builder.withDetails(catalogWarmupService.getDetails()).build();
+    }
+}
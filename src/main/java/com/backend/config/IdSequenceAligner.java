@@ -0,0 +1,91 @@
+package com.backend.config;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.persistence.EntityManagerFactory;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.support.JdbcUtils;
+import org.springframework.stereotype.Component;
+
+import java.sql.DatabaseMetaData;
+import java.util.Map;
+
+/**
+ * Migration khi chuyển tbl_cart_items / tbl_order_items từ IDENTITY sang pooled sequence: DB cũ đã có dữ liệu
+ * theo auto-increment nên sequence mới (bắt đầu từ 1) phải được đẩy lên trên max(id) trước khi ghi dòng đầu tiên.
+ * Chạy mỗi lần khởi động, idempotent (chỉ tăng, không bao giờ lùi sequence).
+ * <p>
+ * MySQL không có sequence: Hibernate giả lập bằng bảng một dòng {@code <tên>_seq(next_val)}; H2 dùng sequence thật.
+ * <p>
+ * Chỉ hai bảng này được chuyển vì chỉ chúng được INSERT nhiều dòng trong một transaction qua JPA. Các entity còn lại
+ * giữ IDENTITY: user, giỏ, địa chỉ, đơn hàng, đánh giá, danh mục được tạo một dòng mỗi request nên không có gì để gộp batch;
+ * sản phẩm và ảnh sản phẩm được ProductImportServiceImpl INSERT bằng JDBC batch dựa vào auto-increment.
+ */
+@Slf4j(topic = "ID-SEQUENCE")
+@Component
+@RequiredArgsConstructor
+public class IdSequenceAligner {
+
+    // Phải trùng allocationSize trong @SequenceGenerator của entity
+    static final int ALLOCATION_SIZE = 50;
+
+    // sequence -> bảng dùng sequence đó
+    private static final Map<String, String> SEQUENCES = Map.of(
+            "tbl_cart_items_seq", "tbl_cart_items",
+            "tbl_order_items_seq", "tbl_order_items");
+
+    // Inject EntityManagerFactory để chắc chắn Hibernate đã tạo/cập nhật schema (bảng *_seq) trước khi chạy
+    private final EntityManagerFactory entityManagerFactory;
+    private final JdbcTemplate jdbcTemplate;
+
+    @PostConstruct
+    public void alignSequences() {
+        String database = databaseProductName();
+        SEQUENCES.forEach((sequence, table) -> {
+            Long maxId = jdbcTemplate.queryForObject("SELECT MAX(id) FROM " + table, Long.class);
+            if (maxId == null) {
+                return; // Bảng trống: sequence mặc định đã đúng
+            }
+            // Pooled optimizer cấp khối (next_val - allocationSize, next_val]; +1 để khối đầu tiên nằm hẳn trên max(id)
+            long target = maxId + ALLOCATION_SIZE + 1;
+            if (database.contains("MySQL") || database.contains("MariaDB")) {
+                alignTableSequence(sequence, target);
+            } else if (database.contains("H2")) {
+                alignNativeSequence(sequence, target);
+            } else {
+                log.warn("Cannot align id sequence {} on {}. Make sure it is above {}", sequence, database, maxId);
+            }
+        });
+    }
+
+    private void alignTableSequence(String sequence, long target) {
+        int updated = jdbcTemplate.update("UPDATE " + sequence + " SET next_val = ? WHERE next_val < ?", target, target);
+        Integer rows = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM " + sequence, Integer.class);
+        if (rows != null && rows == 0) {
+            jdbcTemplate.update("INSERT INTO " + sequence + " (next_val) VALUES (?)", target);
+            updated = 1;
+        }
+        if (updated > 0) {
+            log.info("Moved id sequence {} to {}", sequence, target);
+        }
+    }
+
+    private void alignNativeSequence(String sequence, long target) {
+        Long current = jdbcTemplate.queryForObject(
+                "SELECT BASE_VALUE FROM INFORMATION_SCHEMA.SEQUENCES WHERE UPPER(SEQUENCE_NAME) = UPPER(?)", Long.class, sequence);
+        if (current == null || current < target) {
+            jdbcTemplate.execute("ALTER SEQUENCE " + sequence + " RESTART WITH " + target);
+            log.info("Moved id sequence {} to {}", sequence, target);
+        }
+    }
+
+    private String databaseProductName() {
+        try {
+            return JdbcUtils.extractDatabaseMetaData(jdbcTemplate.getDataSource(), DatabaseMetaData::getDatabaseProductName);
+        } catch (Exception e) {
+            log.warn("Cannot read database product name: {}", e.getMessage());
+            return "";
+        }
+    }
+}
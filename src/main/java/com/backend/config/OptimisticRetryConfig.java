@@ -0,0 +1,36 @@
+package com.backend.config;
+
+import com.backend.common.RetryOnConflict;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.aop.Advisor;
+import org.springframework.aop.support.DefaultPointcutAdvisor;
+import org.springframework.aop.support.annotation.AnnotationMatchingPointcut;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.config.BeanDefinition;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.context.annotation.Role;
+import org.springframework.core.Ordered;
+
+// Đăng ký advice cho @RetryOnConflict (Spring AOP thuần, không cần AspectJ)
+@Configuration(proxyBeanMethods = false)
+public class OptimisticRetryConfig {
+
+    /**
+     * Order cao hơn TransactionInterceptor (LOWEST_PRECEDENCE) để retry bọc bên ngoài transaction:
+     * lỗi version được ném ra lúc flush/commit sẽ đi qua advice này sau khi transaction đã rollback.
+     */
+    @Bean
+    @Role(BeanDefinition.ROLE_INFRASTRUCTURE)
+    static Advisor optimisticRetryAdvisor(@Lazy MeterRegistry meterRegistry,
+                                          @Value("${app.optimistic-retry.max-attempts:3}") int maxAttempts,
+                                          @Value("${app.optimistic-retry.backoff-ms:20}") long backoffMs,
+                                          @Value("${app.optimistic-retry.max-backoff-ms:200}") long maxBackoffMs) {
+        DefaultPointcutAdvisor advisor = new DefaultPointcutAdvisor(
+                AnnotationMatchingPointcut.forMethodAnnotation(RetryOnConflict.class),
+                new OptimisticRetryInterceptor(meterRegistry, maxAttempts, backoffMs, maxBackoffMs));
+        advisor.setOrder(Ordered.HIGHEST_PRECEDENCE + 100);
+        return advisor;
+    }
+}
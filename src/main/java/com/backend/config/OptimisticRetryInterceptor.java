@@ -0,0 +1,94 @@
+package com.backend.config;
+
+import com.backend.common.RetryOnConflict;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.persistence.OptimisticLockException;
+import lombok.extern.slf4j.Slf4j;
+import org.aopalliance.intercept.MethodInterceptor;
+import org.aopalliance.intercept.MethodInvocation;
+import org.springframework.aop.ProxyMethodInvocation;
+import org.springframework.aop.support.AopUtils;
+import org.springframework.core.annotation.AnnotatedElementUtils;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Advice cho {@link RetryOnConflict}: bắt lỗi optimistic lock, chờ một khoảng ngẫu nhiên trong
+ * [0, min(maxBackoff, baseBackoff * 2^(lần thử - 1))] (full jitter, tránh các request xung đột lại cùng nhịp) rồi gọi lại.
+ * <p>
+ * Metrics (tag {@code operation} = Class.method): {@code optimistic.lock.conflicts} mỗi lần xung đột,
+ * {@code optimistic.lock.retries} mỗi lần gọi lại, {@code optimistic.lock.exhausted} khi hết số lần thử.
+ */
+@Slf4j(topic = "OPTIMISTIC-RETRY")
+public class OptimisticRetryInterceptor implements MethodInterceptor {
+
+    private final MeterRegistry meterRegistry;
+    private final int defaultMaxAttempts;
+    private final long baseBackoffMs;
+    private final long maxBackoffMs;
+
+    public OptimisticRetryInterceptor(MeterRegistry meterRegistry, int defaultMaxAttempts, long baseBackoffMs, long maxBackoffMs) {
+        this.meterRegistry = meterRegistry;
+        this.defaultMaxAttempts = defaultMaxAttempts;
+        this.baseBackoffMs = baseBackoffMs;
+        this.maxBackoffMs = maxBackoffMs;
+    }
+
+    @Override
+    public Object invoke(MethodInvocation invocation) throws Throwable {
+        Method method = AopUtils.getMostSpecificMethod(invocation.getMethod(),
+                invocation.getThis() != null ? invocation.getThis().getClass() : invocation.getMethod().getDeclaringClass());
+        String operation = method.getDeclaringClass().getSimpleName() + "." + method.getName();
+        RetryOnConflict annotation = AnnotatedElementUtils.findMergedAnnotation(method, RetryOnConflict.class);
+        int maxAttempts = annotation != null && annotation.maxAttempts() > 0 ? annotation.maxAttempts() : defaultMaxAttempts;
+
+        // Đang ở trong transaction của caller: transaction đó đã hỏng, để caller (nếu có @RetryOnConflict) tự retry
+        boolean retryable = !TransactionSynchronizationManager.isActualTransactionActive()
+                && invocation instanceof ProxyMethodInvocation;
+
+        for (int attempt = 1; ; attempt++) {
+            MethodInvocation current = attempt == 1 ? invocation : ((ProxyMethodInvocation) invocation).invocableClone();
+            try {
+                return current.proceed();
+            } catch (OptimisticLockingFailureException | OptimisticLockException e) {
+                meterRegistry.counter("optimistic.lock.conflicts", "operation", operation).increment();
+                if (!retryable) {
+                    throw e;
+                }
+                if (attempt >= maxAttempts) {
+                    meterRegistry.counter("optimistic.lock.exhausted", "operation", operation).increment();
+                    log.warn("{} still conflicting after {} attempts: {}", operation, attempt, e.getMessage());
+                    throw e;
+                }
+                long backoff = backoffMs(attempt);
+                log.info("Optimistic lock conflict in {} (attempt {}/{}), retrying in {} ms", operation, attempt, maxAttempts, backoff);
+                meterRegistry.counter("optimistic.lock.retries", "operation", operation).increment();
+                if (!sleep(backoff)) {
+                    throw e;
+                }
+            }
+        }
+    }
+
+    // Full jitter: ngẫu nhiên trong [0, min(max, base * 2^(attempt-1))]
+    long backoffMs(int attempt) {
+        long ceiling = Math.min(maxBackoffMs, baseBackoffMs << Math.min(attempt - 1, 20));
+        return ceiling <= 0 ? 0 : ThreadLocalRandom.current().nextLong(ceiling + 1);
+    }
+
+    private boolean sleep(long millis) {
+        if (millis <= 0) {
+            return true;
+        }
+        try {
+            Thread.sleep(millis);
+            return true;
+        } catch (InterruptedException interrupted) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+}
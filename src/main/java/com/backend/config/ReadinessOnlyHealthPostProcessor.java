@@ -0,0 +1,77 @@
+package com.backend.config;
+
+import org.springframework.boot.actuate.endpoint.SecurityContext;
+import org.springframework.boot.actuate.health.AdditionalHealthEndpointPath;
+import org.springframework.boot.actuate.health.HealthEndpointGroup;
+import org.springframework.boot.actuate.health.HealthEndpointGroups;
+import org.springframework.boot.actuate.health.HealthEndpointGroupsPostProcessor;
+import org.springframework.boot.actuate.health.HttpCodeStatusMapper;
+import org.springframework.boot.actuate.health.StatusAggregator;
+import org.springframework.stereotype.Component;
+
+import java.util.Set;
+
+/**
+ * Bỏ các health indicator chỉ dành cho readiness (warm-up) khỏi /actuator/health gốc: nhóm gốc mặc định gồm mọi indicator,
+ * nên khi warm-up OUT_OF_SERVICE thì cả health gốc (giám sát, liveness kiểu cũ) cũng báo lỗi.
+ * Các indicator này vẫn nằm trong nhóm readiness (management.endpoint.health.group.readiness.include).
+ */
+@Component
+public class ReadinessOnlyHealthPostProcessor implements HealthEndpointGroupsPostProcessor {
+
+    private static final Set<String> READINESS_ONLY = Set.of("catalogWarmup");
+
+    @Override
+    public HealthEndpointGroups postProcessHealthEndpointGroups(HealthEndpointGroups groups) {
+        HealthEndpointGroup primary = new PrimaryGroup(groups.getPrimary());
+        return new HealthEndpointGroups() {
+            @Override
+            public HealthEndpointGroup getPrimary() {
+                return primary;
+            }
+
+            @Override
+            public Set<String> getNames() {
+                return groups.getNames();
+            }
+
+            @Override
+            public HealthEndpointGroup get(String name) {
+                return groups.get(name);
+            }
+        };
+    }
+
+    private record PrimaryGroup(HealthEndpointGroup delegate) implements HealthEndpointGroup {
+
+        @Override
+        public boolean isMember(String name) {
+            return !READINESS_ONLY.contains(name) && delegate.isMember(name);
+        }
+
+        @Override
+        public boolean showComponents(SecurityContext securityContext) {
+            return delegate.showComponents(securityContext);
+        }
+
+        @Override
+        public boolean showDetails(SecurityContext securityContext) {
+            return delegate.showDetails(securityContext);
+        }
+
+        @Override
+        public StatusAggregator getStatusAggregator() {
+            return delegate.getStatusAggregator();
+        }
+
+        @Override
+        public HttpCodeStatusMapper getHttpCodeStatusMapper() {
+            return delegate.getHttpCodeStatusMapper();
+        }
+
+        @Override
+        public AdditionalHealthEndpointPath getAdditionalPath() {
+            return delegate.getAdditionalPath();
+        }
+    }
+}
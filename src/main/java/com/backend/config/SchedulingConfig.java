@@ -0,0 +1,10 @@
+package com.backend.config;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+// Bật các job @Scheduled (snapshot thống kê, dọn dẹp định kỳ...)
+@Configuration
+@EnableScheduling
+public class SchedulingConfig {
+}
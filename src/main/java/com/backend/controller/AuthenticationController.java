@@ -2,11 +2,15 @@ package com.backend.controller;
 
 import com.backend.controller.request.SignInRequest;
 import com.backend.controller.response.TokenResponse;
+import com.backend.controller.support.GuestCartTokens;
 import com.backend.service.AuthenticationService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.util.StringUtils;
 import org.springframework.web.bind.annotation.*;
 
 
@@ -22,10 +26,19 @@ public class AuthenticationController {
 
     @Operation(summary = "Access token", description = "Get access token and refresh token by username and password")
     @PostMapping("/access-token")
-    public TokenResponse accessToken(@RequestBody SignInRequest request) {
+    public TokenResponse accessToken(@RequestBody SignInRequest request,
+                                     HttpServletRequest httpRequest, HttpServletResponse httpResponse) {
         log.info("Access token request");
 
-        return authenticationService.getAccessToken(request);
+        // Giỏ hàng khách có thể gửi trong body, header X-Guest-Cart hoặc cookie
+        if (!StringUtils.hasText(request.getGuestCartToken())) {
+            request.setGuestCartToken(GuestCartTokens.resolve(httpRequest));
+        }
+        TokenResponse tokens = authenticationService.getAccessToken(request);
+        if (Boolean.TRUE.equals(tokens.getGuestCartMerged())) {
+            GuestCartTokens.clearCookie(httpResponse); // Đã gộp (và ghi DB) vào giỏ của user; gộp lỗi thì giữ cookie
+        }
+        return tokens;
     }
 
     @Operation(summary = "Refresh token", description = "Get access token by refresh token")
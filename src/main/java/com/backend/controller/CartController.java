@@ -1,6 +1,7 @@
 package com.backend.controller;
 
 import com.backend.controller.request.AddItemToCartRequest;
+import com.backend.controller.request.CartBatchRequest;
 import com.backend.controller.request.UpdateCartItemRequest;
 import com.backend.controller.response.CartResponse;
 // Import UserEntity nếu dùng làm Principal
@@ -110,6 +111,18 @@ public class CartController {
         return ResponseEntity.ok(updatedCart);
     }
 
+    @Operation(summary = "Apply Cart Operations", description = "Applies a list of add/update/remove operations to the user's cart at once. Either all operations are applied or none.")
+    @PostMapping("/items/batch")
+    // Không cần @PreAuthorize cụ thể - chỉ cần user đã đăng nhập
+    public ResponseEntity<CartResponse> applyCartOperations(
+            @Parameter(description = "Operations to apply, in order", required = true)
+            @Valid @RequestBody CartBatchRequest request) {
+        Long userId = getCurrentUserId();
+        log.info("Request received to apply {} cart operations for user ID: {}", request.getOperations().size(), userId);
+        CartResponse updatedCart = cartService.applyBatch(userId, request);
+        return ResponseEntity.ok(updatedCart);
+    }
+
     @Operation(summary = "Clear Cart", description = "Removes all items from the current user's cart.")
     @DeleteMapping
     // Không cần @PreAuthorize cụ thể - chỉ cần user đã đăng nhập
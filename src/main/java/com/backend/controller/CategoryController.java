@@ -1,7 +1,13 @@
 package com.backend.controller;
 
+import com.backend.common.SalesWindow;
 import com.backend.controller.request.CategoryRequest;
+import com.backend.controller.response.CategoryBreadcrumbResponse;
 import com.backend.controller.response.CategoryResponse;
+import com.backend.controller.response.CategoryTreeResponse;
+import com.backend.controller.response.ProductSummaryResponse;
+import com.backend.controller.support.ConditionalGetSupport;
+import com.backend.service.BestSellerService;
 import com.backend.service.CategoryService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
@@ -11,6 +17,7 @@ import io.swagger.v3.oas.annotations.media.Schema;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import jakarta.validation.Valid;
+import jakarta.validation.constraints.Max;
 import jakarta.validation.constraints.Min;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -20,6 +27,7 @@ import org.springframework.http.ResponseEntity;
 // **THÊM IMPORT CHO PHÂN QUYỀN**
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.validation.annotation.Validated;
+import org.springframework.web.context.request.WebRequest;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
 
@@ -35,6 +43,7 @@ import java.util.List;
 public class CategoryController {
 
     private final CategoryService categoryService;
+    private final BestSellerService bestSellerService;
 
     @Operation(summary = "Create New Category", description = "Add a new category. (Requires ADMIN role)")
     @ApiResponse(responseCode = "201", description = "Category created successfully",
@@ -60,10 +69,42 @@ public class CategoryController {
     @GetMapping("/{categoryId}")
     // **Không cần @PreAuthorize vì đã permitAll() cho GET trong AppConfig**
     public ResponseEntity<CategoryResponse> getCategoryById(
-            @PathVariable @Min(value = 1, message = "Category ID must be positive") Long categoryId) {
+            @PathVariable @Min(value = 1, message = "Category ID must be positive") Long categoryId,
+            WebRequest webRequest) {
         log.info("Request received to get category detail for ID: {}", categoryId);
-        CategoryResponse category = categoryService.getCategoryById(categoryId);
-        return ResponseEntity.ok(category);
+        return ConditionalGetSupport.respond(webRequest, categoryService.getCategoryVersion(categoryId),
+                () -> categoryService.getCategoryById(categoryId));
+    }
+
+    @Operation(summary = "Get Category Tree", description = "The whole category tree with product counts per node (direct and including sub-categories), served from an in-memory snapshot. Supports ETag/Last-Modified. (Public Access)")
+    @ApiResponse(responseCode = "200", description = "Root categories with nested children",
+            content = @Content(array = @ArraySchema(schema = @Schema(implementation = CategoryTreeResponse.class))))
+    @GetMapping("/tree")
+    public ResponseEntity<List<CategoryTreeResponse>> getCategoryTree(WebRequest webRequest) {
+        log.info("Request received to get category tree");
+        return ConditionalGetSupport.respond(webRequest, categoryService.getCategoryTreeVersion(), categoryService::getCategoryTree);
+    }
+
+    @Operation(summary = "Get Category Breadcrumb", description = "Path from the root category down to the given category. (Public Access)")
+    @ApiResponse(responseCode = "200", description = "Breadcrumb, root first",
+            content = @Content(array = @ArraySchema(schema = @Schema(implementation = CategoryBreadcrumbResponse.class))))
+    @GetMapping("/{categoryId}/breadcrumb")
+    public ResponseEntity<List<CategoryBreadcrumbResponse>> getBreadcrumb(
+            @PathVariable @Min(value = 1, message = "Category ID must be positive") Long categoryId) {
+        log.info("Request received to get breadcrumb for category ID: {}", categoryId);
+        return ResponseEntity.ok(categoryService.getBreadcrumb(categoryId));
+    }
+
+    @Operation(summary = "Get Category Best Sellers", description = "Top selling products of a category and its subcategories over the last 7 or 30 days, most units sold first. Cancelled and failed orders are not counted. (Public Access)")
+    @ApiResponse(responseCode = "200", description = "Product summaries, best seller first",
+            content = @Content(array = @ArraySchema(schema = @Schema(implementation = ProductSummaryResponse.class))))
+    @GetMapping("/{categoryId}/best-sellers")
+    public ResponseEntity<List<ProductSummaryResponse>> getBestSellers(
+            @PathVariable @Min(value = 1, message = "Category ID must be positive") Long categoryId,
+            @RequestParam(defaultValue = "LAST_7_DAYS") SalesWindow window,
+            @RequestParam(defaultValue = "10") @Min(1) @Max(50) int limit) {
+        log.info("Request received for best sellers of category ID: {} over {}", categoryId, window);
+        return ResponseEntity.ok(bestSellerService.getBestSellers(categoryId, window, limit));
     }
 
     @Operation(summary = "Get All Categories", description = "Retrieve a list of categories. (Public Access)")
@@ -73,11 +114,12 @@ public class CategoryController {
     // **Không cần @PreAuthorize vì đã permitAll() cho GET trong AppConfig**
     public ResponseEntity<List<CategoryResponse>> getAllCategories(
             @RequestParam(defaultValue = "0") int page,
-            @RequestParam(defaultValue = "20") int size) {
+            @RequestParam(defaultValue = "20") int size,
+            WebRequest webRequest) {
         log.info("Request received to get all categories, page: {}, size: {}", page, size);
         Pageable pageable = PageRequest.of(page, size);
-        List<CategoryResponse> categories = categoryService.getAllCategories(pageable);
-        return ResponseEntity.ok(categories);
+        return ConditionalGetSupport.respond(webRequest, categoryService.getCategoriesVersion(),
+                () -> categoryService.getAllCategories(pageable));
     }
 
     @Operation(summary = "Update Category Information", description = "Update category details. (Requires ADMIN role)")
@@ -0,0 +1,74 @@
+package com.backend.controller;
+
+import com.backend.controller.request.AddItemToCartRequest;
+import com.backend.controller.request.UpdateCartItemRequest;
+import com.backend.controller.response.GuestCartResponse;
+import com.backend.controller.support.GuestCartTokens;
+import com.backend.security.GuestCartTokenCodec;
+import com.backend.service.GuestCartService;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.Min;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.ResponseEntity;
+import org.springframework.validation.annotation.Validated;
+import org.springframework.web.bind.annotation.*;
+
+/**
+ * Giỏ hàng cho khách chưa đăng nhập. Giỏ nằm hoàn toàn trong token ký (header X-Guest-Cart hoặc cookie guest_cart),
+ * mỗi response trả về token mới (trong body và cookie); server không ghi gì xuống DB.
+ */
+@Slf4j
+@RestController
+@RequestMapping("/api/v1/guest-cart")
+@Tag(name = "Guest Cart API v1", description = "APIs for the shopping cart of anonymous visitors (stateless, token based)")
+@RequiredArgsConstructor
+@Validated
+public class GuestCartController {
+
+    private final GuestCartService guestCartService;
+    private final GuestCartTokenCodec guestCartTokenCodec;
+
+    @Operation(summary = "Get Guest Cart", description = "Prices the guest cart carried by the X-Guest-Cart header or guest_cart cookie.")
+    @GetMapping
+    public ResponseEntity<GuestCartResponse> getGuestCart(HttpServletRequest request, HttpServletResponse response) {
+        return respond(response, guestCartService.getCart(GuestCartTokens.resolve(request)));
+    }
+
+    @Operation(summary = "Add Item to Guest Cart", description = "Adds a product to the guest cart and returns the new token.")
+    @PostMapping("/items")
+    public ResponseEntity<GuestCartResponse> addItem(@Valid @RequestBody AddItemToCartRequest body,
+                                                     HttpServletRequest request, HttpServletResponse response) {
+        log.info("Request received to add product {} (quantity {}) to guest cart", body.getProductId(), body.getQuantity());
+        return respond(response, guestCartService.addItem(GuestCartTokens.resolve(request), body));
+    }
+
+    @Operation(summary = "Update Guest Cart Item Quantity", description = "Sets the quantity of a product in the guest cart.")
+    @PutMapping("/items/{productId}")
+    public ResponseEntity<GuestCartResponse> updateItemQuantity(
+            @Parameter(description = "ID of the product in the guest cart", required = true)
+            @PathVariable @Min(value = 1, message = "Product ID must be positive") Long productId,
+            @Valid @RequestBody UpdateCartItemRequest body,
+            HttpServletRequest request, HttpServletResponse response) {
+        return respond(response, guestCartService.updateItemQuantity(GuestCartTokens.resolve(request), productId, body));
+    }
+
+    @Operation(summary = "Remove Item from Guest Cart", description = "Removes a product from the guest cart.")
+    @DeleteMapping("/items/{productId}")
+    public ResponseEntity<GuestCartResponse> removeItem(
+            @Parameter(description = "ID of the product in the guest cart", required = true)
+            @PathVariable @Min(value = 1, message = "Product ID must be positive") Long productId,
+            HttpServletRequest request, HttpServletResponse response) {
+        return respond(response, guestCartService.removeItem(GuestCartTokens.resolve(request), productId));
+    }
+
+    private ResponseEntity<GuestCartResponse> respond(HttpServletResponse response, GuestCartResponse cart) {
+        GuestCartTokens.writeCookie(response, cart.getToken(), guestCartTokenCodec.getTtl());
+        return ResponseEntity.ok(cart);
+    }
+}
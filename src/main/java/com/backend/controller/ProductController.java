@@ -1,9 +1,26 @@
 package com.backend.controller;
 
+import com.backend.common.ProductImportFormat;
+import com.backend.common.ResourceVersion;
+import com.backend.common.ProductSort;
+import com.backend.controller.request.ProductBatchRequest;
 import com.backend.controller.request.ProductCreationRequest;
+import com.backend.controller.request.ProductPatchRequest;
 import com.backend.controller.request.ProductUpdateRequest;
+import com.backend.controller.response.CursorPageResponse;
+import com.backend.controller.response.ProductCardResponse;
+import com.backend.controller.response.ProductImportResponse;
 import com.backend.controller.response.ProductResponse;
+import com.backend.controller.response.ProductSummaryResponse;
+import com.backend.controller.support.ConditionalGetSupport;
+import com.backend.exception.InvalidDataException;
+import com.backend.model.UserEntity;
+import com.backend.service.ProductCardService;
+import com.backend.service.ProductImportService;
+import com.backend.service.ProductRecommendationService;
 import com.backend.service.ProductService;
+import com.backend.service.ProductViewService;
+import com.backend.service.RecentlyViewedService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.media.ArraySchema;
@@ -12,18 +29,27 @@ import io.swagger.v3.oas.annotations.media.Schema;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import jakarta.validation.Valid;
+import jakarta.validation.constraints.Max;
 import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.Size;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.validation.annotation.Validated;
+import org.springframework.web.context.request.WebRequest;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
 
+import java.io.InputStream;
 import java.math.BigDecimal;
 import java.net.URI;
 import java.util.List;
@@ -37,6 +63,20 @@ import java.util.List;
 public class ProductController {
 
     private final ProductService productService;
+    private final ProductImportService productImportService;
+    private final ProductCardService productCardService;
+    private final ProductRecommendationService productRecommendationService;
+    private final RecentlyViewedService recentlyViewedService;
+    private final ProductViewService productViewService;
+
+    // ID user đang đăng nhập, null nếu là khách (các API sản phẩm là public)
+    private Long getCurrentUserIdOrNull() {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (authentication != null && authentication.isAuthenticated() && authentication.getPrincipal() instanceof UserEntity user) {
+            return user.getId();
+        }
+        return null;
+    }
 
     @Operation(summary = "Create New Product", description = "Add a new product to the catalog. (Requires ADMIN role)")
     @ApiResponse(responseCode = "201", description = "Product created successfully",
@@ -58,15 +98,58 @@ public class ProductController {
         return ResponseEntity.created(location).body(createdProduct);
     }
 
+    @Operation(summary = "Bulk Import Products", description = "Stream a CSV (text/csv, header: sku,name,description,price,stockQuantity,categoryId,imageUrls) or NDJSON (application/x-ndjson, one ProductCreationRequest per line) body. Valid rows are imported in chunks; invalid rows are reported per line. (Requires ADMIN role)")
+    @ApiResponse(responseCode = "200", description = "Import finished (see failedCount/errors for rejected rows)",
+            content = @Content(schema = @Schema(implementation = ProductImportResponse.class)))
+    @PostMapping(value = "/import", consumes = {"text/csv", "application/x-ndjson"})
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<ProductImportResponse> importProducts(
+            @RequestHeader(HttpHeaders.CONTENT_TYPE) String contentType,
+            InputStream body) {
+        ProductImportFormat format = MediaType.parseMediaType(contentType).getSubtype().contains("csv")
+                ? ProductImportFormat.CSV
+                : ProductImportFormat.NDJSON;
+        log.info("ADMIN Request received to bulk import products, format: {}", format);
+        ProductImportResponse result = productImportService.importProducts(body, format);
+        log.info("Bulk import completed: {} imported, {} failed", result.getImportedCount(), result.getFailedCount());
+        return ResponseEntity.ok(result);
+    }
+
     @Operation(summary = "Get Product by ID", description = "Retrieve detailed information for a specific product. (Public Access)")
     @ApiResponse(responseCode = "200", description = "Product found",
             content = @Content(schema = @Schema(implementation = ProductResponse.class)))
     @GetMapping("/{productId}")
     public ResponseEntity<ProductResponse> getProductById(
-            @PathVariable @Min(value = 1, message = "Product ID must be positive") Long productId) {
+            @PathVariable @Min(value = 1, message = "Product ID must be positive") Long productId,
+            WebRequest webRequest) {
         log.info("Request received to get product detail for ID: {}", productId);
-        ProductResponse product = productService.getProductById(productId);
-        return ResponseEntity.ok(product);
+        ResourceVersion version = productService.getProductVersion(productId); // 404 nếu sản phẩm không tồn tại
+        if (version != null) {
+            // Đếm cả lượt xem trả 304. viewCount không nằm trong ETag (mỗi lượt xem sẽ làm mất 304),
+            // nên viewCount trong bản client đã cache có thể trễ cho tới khi sản phẩm thay đổi
+            productViewService.recordView(productId);
+            Long userId = getCurrentUserIdOrNull();
+            if (userId != null) {
+                recentlyViewedService.recordView(userId, productId); // Chỉ cập nhật bộ nhớ, kể cả khi trả 304
+            }
+        }
+        // If-None-Match/If-Modified-Since khớp -> 304, không load sản phẩm
+        return ConditionalGetSupport.respond(webRequest, version, () -> productService.getProductById(productId));
+    }
+
+    @Operation(summary = "Recently Viewed Products", description = "Products the current user viewed most recently, newest first. (Requires authentication)")
+    @ApiResponse(responseCode = "200", description = "Product summaries, most recently viewed first",
+            content = @Content(array = @ArraySchema(schema = @Schema(implementation = ProductSummaryResponse.class))))
+    @GetMapping("/recently-viewed")
+    @PreAuthorize("isAuthenticated()")
+    public ResponseEntity<List<ProductSummaryResponse>> getRecentlyViewed(
+            @RequestParam(defaultValue = "20") @Min(1) @Max(50) int limit) {
+        Long userId = getCurrentUserIdOrNull();
+        if (userId == null) {
+            throw new IllegalStateException("Could not determine User ID from principal.");
+        }
+        log.info("Request received for recently viewed products of user ID: {}", userId);
+        return ResponseEntity.ok(recentlyViewedService.getRecentlyViewed(userId, limit));
     }
     @Operation(summary = "Get All Products", description = "Retrieve a list of products with filtering and pagination. (Public Access)")
     @ApiResponse(responseCode = "200", description = "List of products retrieved",
@@ -77,19 +160,102 @@ public class ProductController {
             @RequestParam(required = false) Long categoryId,
             @RequestParam(required = false) BigDecimal minPrice,
             @RequestParam(required = false) BigDecimal maxPrice,
+            @Parameter(description = "NEWEST, PRICE_ASC, PRICE_DESC, BEST_SELLING, RATING, MOST_REVIEWED. BEST_SELLING_7D, BEST_SELLING_30D and MOST_VIEWED are only accepted by /products/cards")
+            @RequestParam(defaultValue = "NEWEST") ProductSort sort,
             @RequestParam(defaultValue = "0") int page,
-            @RequestParam(defaultValue = "20") int size) {
+            @RequestParam(defaultValue = "20") int size,
+            WebRequest webRequest) {
+
+        log.info("Request received to get all products with params - keyword: {}, categoryId: {}, minPrice: {}, maxPrice: {}, sort: {}, page: {}, size: {}",
+                keyword, categoryId, minPrice, maxPrice, sort, page, size);
+
+        if (sort.isCardOnly()) {
+            // Cột sắp xếp chỉ có trên tbl_product_cards, không có trên ProductEntity
+            throw new InvalidDataException("Sort " + sort + " is only available on /api/v1/products/cards");
+        }
+        Pageable pageable = PageRequest.of(page, size, sort.toSort()); // Create Pageable object
+
+        return ConditionalGetSupport.respond(webRequest, productService.getCatalogVersion(),
+                () -> productService.getAllProducts(keyword, categoryId, minPrice, maxPrice, pageable)); // Return the Page object
+    }
+
+    @Operation(summary = "Scroll Products", description = "Retrieve products with keyset (cursor) pagination. Deep pages cost the same as the first page. (Public Access)")
+    @ApiResponse(responseCode = "200", description = "Page of products retrieved",
+            content = @Content(schema = @Schema(implementation = CursorPageResponse.class)))
+    @GetMapping("/scroll")
+    public ResponseEntity<CursorPageResponse<ProductResponse>> scrollProducts(
+            @RequestParam(required = false) String keyword,
+            @RequestParam(required = false) Long categoryId,
+            @RequestParam(required = false) BigDecimal minPrice,
+            @RequestParam(required = false) BigDecimal maxPrice,
+            @Parameter(description = "NEWEST, PRICE_ASC, PRICE_DESC, BEST_SELLING, RATING, MOST_REVIEWED. BEST_SELLING_7D, BEST_SELLING_30D and MOST_VIEWED are only accepted by /products/cards")
+            @RequestParam(defaultValue = "NEWEST") ProductSort sort,
+            @Parameter(description = "nextCursor from the previous page; omit for the first page")
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "20") @Min(1) @Max(100) int size,
+            WebRequest webRequest) {
+
+        log.info("Request received to scroll products with params - keyword: {}, categoryId: {}, minPrice: {}, maxPrice: {}, sort: {}, size: {}",
+                keyword, categoryId, minPrice, maxPrice, sort, size);
 
-        log.info("Request received to get all products with params - keyword: {}, categoryId: {}, minPrice: {}, maxPrice: {}, page: {}, size: {}",
-                keyword, categoryId, minPrice, maxPrice, page, size);
+        return ConditionalGetSupport.respond(webRequest, productService.getCatalogVersion(),
+                () -> productService.scrollProducts(keyword, categoryId, minPrice, maxPrice, sort, cursor, size));
+    }
+
+    @Operation(summary = "List Product Cards", description = "Lightweight listing (name, price, primary image, category, stock flag, rating, review count) served from the denormalized product card table with keyset (cursor) pagination. (Public Access)")
+    @ApiResponse(responseCode = "200", description = "Page of product cards retrieved",
+            content = @Content(schema = @Schema(implementation = CursorPageResponse.class)))
+    @GetMapping("/cards")
+    public ResponseEntity<CursorPageResponse<ProductCardResponse>> getProductCards(
+            @RequestParam(required = false) String keyword,
+            @RequestParam(required = false) Long categoryId,
+            @RequestParam(required = false) BigDecimal minPrice,
+            @RequestParam(required = false) BigDecimal maxPrice,
+            @RequestParam(defaultValue = "false") boolean inStockOnly,
+            @Parameter(description = "NEWEST, PRICE_ASC, PRICE_DESC, BEST_SELLING, RATING, MOST_REVIEWED, BEST_SELLING_7D, BEST_SELLING_30D, MOST_VIEWED")
+            @RequestParam(defaultValue = "NEWEST") ProductSort sort,
+            @Parameter(description = "nextCursor from the previous page; omit for the first page")
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "20") @Min(1) @Max(100) int size,
+            WebRequest webRequest) {
 
-        Pageable pageable = PageRequest.of(page, size); // Create Pageable object
+        log.info("Request received to list product cards with params - keyword: {}, categoryId: {}, minPrice: {}, maxPrice: {}, inStockOnly: {}, sort: {}, size: {}",
+                keyword, categoryId, minPrice, maxPrice, inStockOnly, sort, size);
 
-        Page<ProductResponse> productsPage = productService.getAllProducts(
-                keyword, categoryId, minPrice, maxPrice, pageable
-        );
+        return ConditionalGetSupport.respond(webRequest, productService.getCatalogVersion(),
+                () -> productCardService.scrollCards(keyword, categoryId, minPrice, maxPrice, inStockOnly, sort, cursor, size));
+    }
 
-        return ResponseEntity.ok(productsPage); // Return the Page object
+    @Operation(summary = "Batch Product Lookup", description = "Price, stock and primary image for up to 200 products in one call (cart, wishlist, order history). Unknown IDs are omitted. (Public Access)")
+    @ApiResponse(responseCode = "200", description = "Product summaries in the requested order",
+            content = @Content(array = @ArraySchema(schema = @Schema(implementation = ProductSummaryResponse.class))))
+    @GetMapping("/batch")
+    public ResponseEntity<List<ProductSummaryResponse>> getProductsBatch(
+            @Parameter(description = "Comma separated product IDs, e.g. ids=1,2,3")
+            @RequestParam @NotEmpty @Size(max = 200, message = "At most 200 product IDs per request") List<Long> ids) {
+        log.info("Request received for batch lookup of {} products", ids.size());
+        return ResponseEntity.ok(productCardService.getProductSummaries(ids));
+    }
+
+    @Operation(summary = "Batch Product Lookup (POST)", description = "Same as GET /batch, with the IDs in the request body for long lists. (Public Access)")
+    @ApiResponse(responseCode = "200", description = "Product summaries in the requested order",
+            content = @Content(array = @ArraySchema(schema = @Schema(implementation = ProductSummaryResponse.class))))
+    @PostMapping("/batch")
+    public ResponseEntity<List<ProductSummaryResponse>> postProductsBatch(
+            @Valid @RequestBody ProductBatchRequest request) {
+        log.info("Request received for batch lookup of {} products (POST)", request.getIds().size());
+        return ResponseEntity.ok(productCardService.getProductSummaries(request.getIds()));
+    }
+
+    @Operation(summary = "Frequently Bought Together", description = "Products most often ordered together with the given product, ranked by number of shared orders. Cancelled and failed orders are not counted. (Public Access)")
+    @ApiResponse(responseCode = "200", description = "Product summaries, most frequent first",
+            content = @Content(array = @ArraySchema(schema = @Schema(implementation = ProductSummaryResponse.class))))
+    @GetMapping("/{productId}/frequently-bought-together")
+    public ResponseEntity<List<ProductSummaryResponse>> getFrequentlyBoughtTogether(
+            @PathVariable @Min(value = 1, message = "Product ID must be positive") Long productId,
+            @RequestParam(defaultValue = "10") @Min(1) @Max(50) int limit) {
+        log.info("Request received for products frequently bought with product ID: {}", productId);
+        return ResponseEntity.ok(productRecommendationService.getFrequentlyBoughtTogether(productId, limit));
     }
 
     @Operation(summary = "Update Product Information", description = "Update product details. (Requires ADMIN role)")
@@ -105,6 +271,19 @@ public class ProductController {
         return ResponseEntity.ok(updatedProduct);
     }
 
+    @Operation(summary = "Patch Product Price/Stock", description = "Update only price and/or stock quantity; omitted fields and images are left unchanged. (Requires ADMIN role)")
+    @ApiResponse(responseCode = "200", description = "Product updated successfully",
+            content = @Content(schema = @Schema(implementation = ProductResponse.class)))
+    @PatchMapping("/{productId}")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<ProductResponse> patchProduct(
+            @PathVariable @Min(value = 1, message = "Product ID must be positive") Long productId,
+            @Valid @RequestBody ProductPatchRequest request) {
+        log.info("ADMIN Request received to patch price/stock of product ID: {}", productId);
+        ProductResponse updatedProduct = productService.patchProduct(productId, request);
+        return ResponseEntity.ok(updatedProduct);
+    }
+
     @Operation(summary = "Delete Product", description = "Remove a product. (Requires ADMIN role)")
     @ApiResponse(responseCode = "204", description = "Product deleted successfully", content = @Content)
     @DeleteMapping("/{productId}")
@@ -1,7 +1,10 @@
 package com.backend.controller;
 
+import com.backend.common.ReviewSort;
 import com.backend.controller.request.ReviewRequest;
+import com.backend.controller.response.CursorPageResponse;
 import com.backend.controller.response.ReviewResponse;
+import com.backend.controller.support.ConditionalGetSupport;
 import com.backend.model.UserEntity;
 import com.backend.service.ReviewService;
 import io.swagger.v3.oas.annotations.Operation;
@@ -13,6 +16,7 @@ import io.swagger.v3.oas.annotations.responses.ApiResponse;
 // import io.swagger.v3.oas.annotations.security.SecurityRequirement;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import jakarta.validation.Valid;
+import jakarta.validation.constraints.Max;
 import jakarta.validation.constraints.Min;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -28,6 +32,7 @@ import org.springframework.security.core.context.SecurityContextHolder;
 // Import Principal/UserDetails nếu cần
 // import com.backend.model.UserEntity;
 import org.springframework.validation.annotation.Validated;
+import org.springframework.web.context.request.WebRequest;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
 
@@ -74,15 +79,34 @@ public class ReviewController {
             @PathVariable @Min(1) Long productId,
             @RequestParam(defaultValue = "0") int page,
             @RequestParam(defaultValue = "10") int size,
-            @RequestParam(defaultValue = "createdAt,desc") String sort) {
+            @RequestParam(defaultValue = "createdAt,desc") String sort,
+            WebRequest webRequest) {
 
         log.info("Request received to get reviews for product ID: {}, page: {}, size: {}, sort: {}", productId, page, size, sort);
         String[] sortParams = sort.split(",");
         Sort sortOrder = Sort.by(Sort.Direction.fromString(sortParams[1]), sortParams[0]);
         Pageable pageable = PageRequest.of(page, size, sortOrder);
 
-        Page<ReviewResponse> reviews = reviewService.getReviewsByProductId(productId, pageable);
-        return ResponseEntity.ok(reviews);
+        return ConditionalGetSupport.respond(webRequest, reviewService.getProductReviewsVersion(productId),
+                () -> reviewService.getReviewsByProductId(productId, pageable));
+    }
+
+    @Operation(summary = "Scroll Reviews for Product", description = "Retrieves reviews for a product with keyset (cursor) pagination, authors loaded in the same query. Deep pages cost the same as the first page.")
+    @ApiResponse(responseCode = "200", description = "Page of reviews retrieved",
+            content = @Content(schema = @Schema(implementation = CursorPageResponse.class)))
+    @GetMapping("/products/{productId}/reviews/scroll")
+    public ResponseEntity<CursorPageResponse<ReviewResponse>> scrollReviewsByProduct(
+            @PathVariable @Min(1) Long productId,
+            @Parameter(description = "NEWEST, HIGHEST_RATING, LOWEST_RATING")
+            @RequestParam(defaultValue = "NEWEST") ReviewSort sort,
+            @Parameter(description = "nextCursor from the previous page; omit for the first page")
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "10") @Min(1) @Max(100) int size,
+            WebRequest webRequest) {
+
+        log.info("Request received to scroll reviews for product ID: {}, sort: {}, size: {}", productId, sort, size);
+        return ConditionalGetSupport.respond(webRequest, reviewService.getProductReviewsVersion(productId),
+                () -> reviewService.scrollReviewsByProductId(productId, sort, cursor, size));
     }
 
     @Operation(summary = "Create Review", description = "Adds a new review for a product by the current user.")
@@ -107,10 +131,11 @@ public class ReviewController {
     @GetMapping("/reviews/{reviewId}")
     // Mọi người dùng đã đăng nhập đều có thể xem review chi tiết
     public ResponseEntity<ReviewResponse> getReviewById(
-            @PathVariable @Min(1) Long reviewId) {
+            @PathVariable @Min(1) Long reviewId,
+            WebRequest webRequest) {
         log.info("Request received to get review details for ID: {}", reviewId);
-        ReviewResponse review = reviewService.getReviewById(reviewId);
-        return ResponseEntity.ok(review);
+        return ConditionalGetSupport.respond(webRequest, reviewService.getReviewVersion(reviewId),
+                () -> reviewService.getReviewById(reviewId));
     }
 
 
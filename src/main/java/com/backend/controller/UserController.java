@@ -4,6 +4,7 @@ import com.backend.controller.request.SetInitialPasswordRequest;
 import com.backend.controller.request.UserCreationRequest;
 import com.backend.controller.request.UserPasswordRequest;
 import com.backend.controller.request.UserUpdateRequest;
+import com.backend.controller.response.UserPageReponse;
 import com.backend.controller.response.UserResponse;
 import com.backend.exception.ResourceNotFoundException;
 import com.backend.model.UserEntity;
@@ -34,7 +35,6 @@ import org.springframework.web.server.ResponseStatusException; // Import Respons
 import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
 
 import java.net.URI;
-import java.util.List;
 import java.util.Map;
 import java.util.Objects; // Import Objects
 
@@ -78,16 +78,16 @@ public class UserController {
     }
 
 
-    @Operation(summary = "Get Users", description = "Get list of users (Requires ADMIN role)")
+    @Operation(summary = "Get Users", description = "Get a page of active users, optionally filtered by keyword (word prefixes of name, username, email; any part of the phone number). Requires ADMIN role.")
     @GetMapping
     @PreAuthorize("hasRole('ADMIN')")
-    public ResponseEntity<List<UserResponse>> getUsers(
+    public ResponseEntity<UserPageReponse> getUsers(
             @RequestParam(required = false) String keyword,
             @RequestParam(defaultValue = "0") int page,
             @RequestParam(defaultValue = "20") int size) {
         log.info("ADMIN request received to get users with params - keyword: {}, page: {}, size: {}", keyword, page, size);
         Pageable pageable = PageRequest.of(page, size);
-        List<UserResponse> users = userService.findAll(keyword, pageable);
+        UserPageReponse users = userService.findAll(keyword, pageable);
         return ResponseEntity.ok(users);
     }
 
@@ -0,0 +1,37 @@
+package com.backend.controller.request;
+
+import com.backend.common.CartOperationType;
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Size;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.util.List;
+
+@Getter
+@Setter
+public class CartBatchRequest {
+
+    // Áp dụng theo thứ tự; lỗi ở bất kỳ thao tác nào thì không thao tác nào được áp dụng
+    @NotEmpty(message = "At least one operation is required")
+    @Size(max = 100, message = "At most 100 operations per request")
+    private List<@Valid @NotNull Operation> operations;
+
+    @Getter
+    @Setter
+    public static class Operation {
+
+        @NotNull(message = "Operation type is required")
+        private CartOperationType type;
+
+        private Long productId;  // ADD
+
+        private Long cartItemId; // UPDATE, REMOVE
+
+        @Min(value = 1, message = "Quantity must be at least 1")
+        private Integer quantity; // ADD, UPDATE
+    }
+}
@@ -0,0 +1,18 @@
+package com.backend.controller.request;
+
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Size;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.util.List;
+
+@Getter
+@Setter
+public class ProductBatchRequest {
+
+    @NotEmpty(message = "At least one product ID is required")
+    @Size(max = 200, message = "At most 200 product IDs per request")
+    private List<@NotNull Long> ids;
+}
@@ -0,0 +1,20 @@
+package com.backend.controller.request;
+
+import jakarta.validation.constraints.DecimalMin;
+import jakarta.validation.constraints.Min;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.math.BigDecimal;
+
+// Cập nhật nhanh giá/tồn kho; trường null được giữ nguyên. Không đụng tới ảnh hay thông tin khác.
+@Getter
+@Setter
+public class ProductPatchRequest {
+
+    @DecimalMin(value = "0.0", inclusive = false, message = "Price must be positive")
+    private BigDecimal price;
+
+    @Min(value = 0, message = "Stock quantity cannot be negative")
+    private Integer stockQuantity;
+}
@@ -13,4 +13,5 @@ public class SignInRequest implements Serializable {
     private String platform; // web, mobile, tablet
     private String deviceToken; // for push notify
     private String versionApp;
+    private String guestCartToken; // Giỏ hàng khi chưa đăng nhập, được gộp vào giỏ của user (có thể lấy từ header/cookie)
 }
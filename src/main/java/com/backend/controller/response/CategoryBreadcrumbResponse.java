@@ -0,0 +1,11 @@
+package com.backend.controller.response;
+
+import lombok.Builder;
+import lombok.Getter;
+
+@Getter
+@Builder
+public class CategoryBreadcrumbResponse {
+    private final Long id;
+    private final String name;
+}
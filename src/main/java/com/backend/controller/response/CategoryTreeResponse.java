@@ -0,0 +1,17 @@
+package com.backend.controller.response;
+
+import lombok.Builder;
+import lombok.Getter;
+
+import java.util.List;
+
+// Một nút của cây danh mục; được dựng sẵn một lần cho mỗi snapshot và dùng chung cho mọi request (không sửa)
+@Getter
+@Builder
+public class CategoryTreeResponse {
+    private final Long id;
+    private final String name;
+    private final long directProductCount; // Số sản phẩm gắn trực tiếp vào danh mục
+    private final long productCount;       // Số sản phẩm của cả cây con (dùng cho menu)
+    private final List<CategoryTreeResponse> children;
+}
@@ -0,0 +1,17 @@
+package com.backend.controller.response;
+
+import lombok.Builder;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.util.List;
+
+@Getter
+@Setter
+@Builder
+public class CursorPageResponse<T> {
+    private List<T> items;
+    private int size;          // Số phần tử trên trang hiện tại
+    private boolean hasNext;   // Còn trang tiếp theo hay không
+    private String nextCursor; // Gửi lại ở tham số "cursor" để lấy trang tiếp theo (null nếu hết)
+}
@@ -0,0 +1,17 @@
+package com.backend.controller.response;
+
+import lombok.Builder;
+import lombok.Getter;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+// Giỏ hàng của khách, tính giá từ dữ liệu sản phẩm hiện tại (cartItemId luôn null: dòng được xác định bằng productId)
+@Getter
+@Builder
+public class GuestCartResponse {
+    private String token; // Token mới, client gửi lại ở request sau (header X-Guest-Cart hoặc cookie)
+    private List<CartItemResponse> items;
+    private BigDecimal totalAmount;
+    private int totalItems;
+}
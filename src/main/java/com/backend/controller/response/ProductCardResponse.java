@@ -0,0 +1,26 @@
+package com.backend.controller.response;
+
+import lombok.Builder;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.math.BigDecimal;
+
+@Getter
+@Setter
+@Builder
+public class ProductCardResponse {
+    private Long id;
+    private String name;
+    private BigDecimal price;
+    private String primaryImageUrl;
+    private Long categoryId;
+    private String categoryName;
+    private boolean inStock;
+    private Double averageRating;
+    private Long reviewCount;
+    private Long soldCount;
+    private Long soldLast7Days;
+    private Long soldLast30Days;
+    private Long viewCount;
+}
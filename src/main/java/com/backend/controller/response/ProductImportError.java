@@ -0,0 +1,14 @@
+package com.backend.controller.response;
+
+import lombok.Builder;
+import lombok.Getter;
+import lombok.Setter;
+
+@Getter
+@Setter
+@Builder
+public class ProductImportError {
+    private long lineNumber; // Dòng trong file upload (bắt đầu từ 1)
+    private String sku;      // Có thể null nếu không đọc được dòng
+    private String message;
+}
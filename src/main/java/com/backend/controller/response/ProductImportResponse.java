@@ -0,0 +1,19 @@
+package com.backend.controller.response;
+
+import lombok.Builder;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.util.List;
+
+@Getter
+@Setter
+@Builder
+public class ProductImportResponse {
+    private long totalRows;
+    private long importedCount;
+    private long failedCount;
+    private long durationMillis;
+    private List<ProductImportError> errors; // Giới hạn bởi app.product-import.max-reported-errors
+    private boolean errorsTruncated;         // true nếu có nhiều lỗi hơn số lỗi được trả về
+}
@@ -18,6 +18,11 @@ public class ProductResponse {
     private BigDecimal price;
     private String sku;
     private Integer stockQuantity;
+    private Long soldCount;       // Tổng số lượng đã bán
+    private Double averageRating; // Điểm đánh giá trung bình
+    private Long reviewCount;     // Số lượt đánh giá
+    private List<Long> ratingHistogram; // Số đánh giá theo số sao, phần tử 0 là 1 sao ... phần tử 4 là 5 sao
+    private Long viewCount;       // Lượt xem (gồm cả lượt chưa flush xuống DB)
     private Date createdAt;
     private Date updatedAt;
     private List<String> imageURLs; // Danh sách URL ảnh trả về
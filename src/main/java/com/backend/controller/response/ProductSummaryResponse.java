@@ -0,0 +1,18 @@
+package com.backend.controller.response;
+
+import lombok.Builder;
+import lombok.Getter;
+
+import java.math.BigDecimal;
+
+// Thông tin gọn để làm mới giá/tồn kho trên giỏ hàng, wishlist, lịch sử đơn (immutable, được cache)
+@Getter
+@Builder
+public class ProductSummaryResponse {
+    private final Long id;
+    private final String name;
+    private final BigDecimal price;
+    private final Integer stockQuantity;
+    private final boolean inStock;
+    private final String primaryImageUrl;
+}
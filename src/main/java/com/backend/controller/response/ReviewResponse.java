@@ -13,6 +13,7 @@ public class ReviewResponse {
     private Long reviewId; // ID của ReviewEntity
     private Long productId;
     private UserBasicResponse user; // Thông tin cơ bản của người viết review
+    private boolean verifiedPurchase; // Người viết đã nhận đơn hàng có sản phẩm này
     private Integer rating; // Điểm đánh giá (1-5)
     private String comment;
     private Date createdAt;
@@ -1,5 +1,6 @@
 package com.backend.controller.response;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
 import lombok.Builder;
 import lombok.Getter;
 
@@ -10,4 +11,8 @@ import java.io.Serializable;
 public class TokenResponse implements Serializable {
     private String accessToken;
     private String refreshToken;
+
+    // Chỉ có khi request mang giỏ khách: true nếu đã gộp vào giỏ của user (client bỏ token giỏ khách), false thì giữ lại
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private Boolean guestCartMerged;
 }
@@ -0,0 +1,38 @@
+package com.backend.controller.support;
+
+import com.backend.common.ResourceVersion;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.context.request.WebRequest;
+
+import java.time.Duration;
+import java.util.function.Supplier;
+
+/**
+ * Xử lý If-None-Match / If-Modified-Since cho các GET của catalog.
+ * Validator được kiểm tra trước; chỉ khi tài nguyên đã thay đổi mới gọi supplier để load và serialize body.
+ */
+public final class ConditionalGetSupport {
+
+    // Client/CDN được lưu nhưng phải revalidate mỗi lần (rẻ vì thường chỉ nhận 304)
+    private static final CacheControl CACHE_CONTROL = CacheControl.maxAge(Duration.ZERO).cachePublic().mustRevalidate();
+
+    private ConditionalGetSupport() {
+    }
+
+    public static <T> ResponseEntity<T> respond(WebRequest request, ResourceVersion version, Supplier<T> body) {
+        if (version == null) {
+            // Không tìm thấy tài nguyên: để service ném lỗi như bình thường
+            return ResponseEntity.ok(body.get());
+        }
+        // checkNotModified tự ghi header ETag/Last-Modified vào response
+        boolean notModified = version.lastModified() >= 0
+                ? request.checkNotModified(version.eTag(), version.lastModified())
+                : request.checkNotModified(version.eTag());
+        if (notModified) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).cacheControl(CACHE_CONTROL).build();
+        }
+        return ResponseEntity.ok().cacheControl(CACHE_CONTROL).body(body.get());
+    }
+}
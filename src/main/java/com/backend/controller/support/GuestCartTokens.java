@@ -0,0 +1,57 @@
+package com.backend.controller.support;
+
+import jakarta.servlet.http.Cookie;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseCookie;
+import org.springframework.util.StringUtils;
+
+import java.time.Duration;
+
+/**
+ * Đọc/ghi token giỏ hàng của khách: client gửi qua header {@value #HEADER} (SPA, mobile)
+ * hoặc cookie {@value #COOKIE} (cần cho đăng nhập OAuth2 vì luồng redirect không mang header).
+ */
+public final class GuestCartTokens {
+
+    public static final String HEADER = "X-Guest-Cart";
+    public static final String COOKIE = "guest_cart";
+
+    private GuestCartTokens() {
+    }
+
+    // Header được ưu tiên hơn cookie; null nếu request không có giỏ khách
+    public static String resolve(HttpServletRequest request) {
+        String header = request.getHeader(HEADER);
+        if (StringUtils.hasText(header)) {
+            return header;
+        }
+        if (request.getCookies() != null) {
+            for (Cookie cookie : request.getCookies()) {
+                if (COOKIE.equals(cookie.getName()) && StringUtils.hasText(cookie.getValue())) {
+                    return cookie.getValue();
+                }
+            }
+        }
+        return null;
+    }
+
+    public static void writeCookie(HttpServletResponse response, String token, Duration maxAge) {
+        response.addHeader(HttpHeaders.SET_COOKIE, cookie(token, maxAge).toString());
+    }
+
+    // Gọi sau khi giỏ khách đã được gộp vào giỏ của user
+    public static void clearCookie(HttpServletResponse response) {
+        response.addHeader(HttpHeaders.SET_COOKIE, cookie("", Duration.ZERO).toString());
+    }
+
+    private static ResponseCookie cookie(String value, Duration maxAge) {
+        return ResponseCookie.from(COOKIE, value)
+                .httpOnly(true)
+                .sameSite("Lax")
+                .path("/")
+                .maxAge(maxAge)
+                .build();
+    }
+}
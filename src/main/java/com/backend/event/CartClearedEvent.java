@@ -0,0 +1,8 @@
+package com.backend.event;
+
+/**
+ * Phát ra khi toàn bộ dòng trong giỏ hàng của user bị xóa khỏi DB (đặt hàng thành công, user xóa giỏ, job dọn giỏ bỏ quên).
+ * Giỏ trong bộ nhớ của user đó được bỏ đi sau khi transaction commit.
+ */
+public record CartClearedEvent(Long userId) {
+}
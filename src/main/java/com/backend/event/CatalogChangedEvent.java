@@ -0,0 +1,9 @@
+package com.backend.event;
+
+/**
+ * Phát ra khi kết quả danh sách sản phẩm có thể đổi: tạo/sửa/xóa/import sản phẩm, hoặc sản phẩm hết/có hàng trở lại.
+ * Thay đổi chỉ ở bộ đếm (số lượng bán, tồn kho vẫn còn hàng, đánh giá) không phát event này.
+ * productId null khi thay đổi nhiều sản phẩm cùng lúc.
+ */
+public record CatalogChangedEvent(Long productId) {
+}
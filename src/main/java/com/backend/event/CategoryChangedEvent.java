@@ -0,0 +1,8 @@
+package com.backend.event;
+
+/**
+ * Phát ra khi một danh mục được tạo, sửa, chuyển cha hoặc xóa.
+ * Các cache phụ thuộc vào cây danh mục lắng nghe event này sau khi transaction commit.
+ */
+public record CategoryChangedEvent(Long categoryId) {
+}
@@ -0,0 +1,6 @@
+package com.backend.event;
+
+// Phát ra khi số sản phẩm của một danh mục thay đổi (tạo/xóa sản phẩm, chuyển sản phẩm sang danh mục khác, import).
+// categoryId null: nhiều danh mục cùng thay đổi (import)
+public record CategoryProductCountChangedEvent(Long categoryId) {
+}
@@ -0,0 +1,8 @@
+package com.backend.event;
+
+import java.util.Date;
+import java.util.List;
+
+// Phát ra khi một đơn hàng rời trạng thái được tính sang CANCELLED/FAILED: các thống kê bán hàng trừ lại các dòng của đơn (theo ngày đặt)
+public record OrderCancelledEvent(Long orderId, Date orderDate, List<OrderLine> lines) {
+}
@@ -0,0 +1,5 @@
+package com.backend.event;
+
+// Một dòng của đơn hàng trong các event đơn hàng (categoryId tại thời điểm đặt, dùng cho thống kê theo danh mục)
+public record OrderLine(Long productId, Long categoryId, int quantity) {
+}
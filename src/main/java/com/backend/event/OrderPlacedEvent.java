@@ -0,0 +1,11 @@
+package com.backend.event;
+
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Phát ra trong createOrderFromCart, và khi một đơn đã hủy/thất bại được mở lại; các listener xử lý sau khi
+ * transaction commit (chỉ tính những đơn hàng thực sự được lưu).
+ */
+public record OrderPlacedEvent(Long orderId, Date orderDate, List<OrderLine> lines) {
+}
@@ -0,0 +1,8 @@
+package com.backend.event;
+
+/**
+ * Phát ra khi dữ liệu hiển thị của một sản phẩm thay đổi: thông tin/ảnh, tồn kho, số lượng bán, đánh giá,
+ * hoặc khi sản phẩm bị xóa. Dùng để cập nhật các bảng/cache đọc (ví dụ tbl_product_cards) trong cùng transaction.
+ */
+public record ProductChangedEvent(Long productId) {
+}
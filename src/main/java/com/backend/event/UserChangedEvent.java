@@ -0,0 +1,8 @@
+package com.backend.event;
+
+/**
+ * Phát ra khi user được tạo hoặc thông tin dùng để tìm kiếm (họ tên, username, email, số điện thoại) thay đổi.
+ * Dùng để cập nhật tbl_user_search_tokens trong cùng transaction.
+ */
+public record UserChangedEvent(Long userId) {
+}
@@ -0,0 +1,40 @@
+package com.backend.exception;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.ResponseStatus;
+import org.springframework.web.bind.annotation.RestControllerAdvice;
+import org.springframework.web.context.request.WebRequest;
+
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.springframework.http.HttpStatus.CONFLICT;
+
+/**
+ * Xung đột optimistic lock còn lại sau khi @RetryOnConflict đã thử hết số lần (hoặc ở thao tác không retry):
+ * trả 409 để client tải lại dữ liệu và thử lại, thay vì 500. Tách khỏi GlobalException vì advice đó đang tắt;
+ * body cùng dạng ErrorResponse của GlobalException.
+ */
+@Slf4j(topic = "CONFLICT-HANDLER")
+@RestControllerAdvice
+@Order(Ordered.HIGHEST_PRECEDENCE)
+public class OptimisticLockExceptionHandler {
+
+    @ExceptionHandler(OptimisticLockingFailureException.class)
+    @ResponseStatus(CONFLICT)
+    public Map<String, Object> handleOptimisticLockingFailure(OptimisticLockingFailureException e, WebRequest request) {
+        log.warn("Concurrent modification conflict: {}", e.getMessage());
+        Map<String, Object> errorResponse = new LinkedHashMap<>();
+        errorResponse.put("timestamp", new Date());
+        errorResponse.put("status", CONFLICT.value());
+        errorResponse.put("path", request.getDescription(false).replace("uri=", ""));
+        errorResponse.put("error", CONFLICT.getReasonPhrase());
+        errorResponse.put("message", "The resource was modified concurrently, please try again.");
+        return errorResponse;
+    }
+}
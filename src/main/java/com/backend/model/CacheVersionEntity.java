@@ -0,0 +1,29 @@
+package com.backend.model;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.util.Date;
+
+/**
+ * Số phiên bản của các cache trong bộ nhớ dùng chung giữa các instance: instance thay đổi dữ liệu tăng version
+ * trong cùng transaction, các instance khác poll bảng này và tự dựng lại cache khi thấy version khác.
+ */
+@Entity
+@Getter
+@Setter
+@Table(name = "tbl_cache_versions")
+public class CacheVersionEntity {
+
+    @Id
+    @Column(length = 100)
+    private String name;
+
+    @Column(nullable = false)
+    private Long version;
+
+    @Column(name = "updated_at")
+    @Temporal(TemporalType.TIMESTAMP)
+    private Date updatedAt;
+}
@@ -13,7 +13,10 @@ import java.util.Set;
 @Entity
 @Getter
 @Setter
-@Table(name = "tbl_carts")
+@Table(name = "tbl_carts", indexes = {
+        // Job đồng bộ giỏ giữa các instance đọc các giỏ vừa thay đổi theo updated_at
+        @Index(name = "idx_carts_updated_at", columnList = "updated_at")
+})
 public class CartEntity {
 
     @Id
@@ -30,6 +33,11 @@ public class CartEntity {
     @OneToMany(mappedBy = "cart", cascade = CascadeType.ALL, fetch = FetchType.LAZY, orphanRemoval = true)
     private Set<CartItemEntity> cartItems;
 
+    // Tăng mỗi lần dòng của giỏ được ghi xuống DB (thêm dòng, flush số lượng / dòng đã xóa, đặt hàng):
+    // giỏ trong bộ nhớ mang version lúc đọc, lệch nghĩa là instance khác đã ghi giỏ này
+    @Column(name = "change_version", nullable = false)
+    private long changeVersion;
+
     @Column(name = "created_at", updatable = false)
     @Temporal(TemporalType.TIMESTAMP)
     @CreationTimestamp
@@ -14,10 +14,17 @@ import java.util.Date;
 @Table(name = "tbl_cart_items")
 public class CartItemEntity {
 
+    // Pooled sequence (bảng tbl_cart_items_seq trên MySQL, sequence thật trên H2): mỗi lần lấy 50 ID nên Hibernate gộp được INSERT thành JDBC batch
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "cart_items_id_gen")
+    @SequenceGenerator(name = "cart_items_id_gen", sequenceName = "tbl_cart_items_seq", allocationSize = 50)
     private Long id;
 
+    // Optimistic lock; write-behind trong CartServiceImpl.flush() cũng tăng version khi ghi quantity
+    @Version
+    @Column(name = "version", nullable = false)
+    private Long version;
+
     // Quan hệ nhiều-một với CartEntity
     @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "cart_id", nullable = false)
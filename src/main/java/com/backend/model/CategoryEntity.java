@@ -13,7 +13,10 @@ import java.util.Set;
 @Entity
 @Getter
 @Setter
-@Table(name = "tbl_categories")
+@Table(name = "tbl_categories", indexes = {
+        // Tìm toàn bộ cây con bằng "path LIKE '/1/5/%'" (range scan trên index)
+        @Index(name = "idx_category_path", columnList = "path")
+})
 public class CategoryEntity {
 
     @Id
@@ -31,6 +34,19 @@ public class CategoryEntity {
     @JoinColumn(name = "parent_category_id")
     private CategoryEntity parentCategory;
 
+    // Materialized path: ID của tất cả tổ tiên và chính nó, ví dụ "/1/5/12/".
+    // Được CategoryService duy trì khi tạo/đổi danh mục cha.
+    @Column(length = 255)
+    private String path;
+
+    // Số sản phẩm gắn trực tiếp / tính cả cây con. Chỉ ghi bằng UPDATE cộng dồn (CategoryService.adjustProductCounts)
+    // và job recount, nên entity không bao giờ ghi đè giá trị cũ khi flush (updatable = false)
+    @Column(name = "direct_product_count", nullable = false, updatable = false)
+    private Long directProductCount = 0L;
+
+    @Column(name = "subtree_product_count", nullable = false, updatable = false)
+    private Long subtreeProductCount = 0L;
+
     @OneToMany(mappedBy = "parentCategory")
     private Set<CategoryEntity> subCategories; // Các danh mục con
 
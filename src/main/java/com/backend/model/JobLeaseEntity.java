@@ -0,0 +1,29 @@
+package com.backend.model;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.util.Date;
+
+/**
+ * Khóa (lease) cho job định kỳ khi chạy nhiều instance: chỉ instance đang giữ lease còn hạn mới chạy job.
+ * Lease có hạn (lockedUntil) nên instance chết giữa chừng không giữ khóa mãi.
+ */
+@Entity
+@Getter
+@Setter
+@Table(name = "tbl_job_leases")
+public class JobLeaseEntity {
+
+    @Id
+    @Column(length = 100)
+    private String name;
+
+    @Column(length = 100)
+    private String owner;
+
+    @Column(name = "locked_until", nullable = false)
+    @Temporal(TemporalType.TIMESTAMP)
+    private Date lockedUntil;
+}
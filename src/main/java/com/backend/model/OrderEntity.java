@@ -19,7 +19,8 @@ import java.util.Set;
 @Setter
 @Table(name = "tbl_orders", indexes = {
         @Index(name = "idx_order_code", columnList = "order_code", unique = true), // Index cho mã đơn hàng
-        @Index(name = "idx_order_user_id", columnList = "user_id") // Index cho user
+        @Index(name = "idx_order_user_id", columnList = "user_id"), // Index cho user
+        @Index(name = "idx_order_date", columnList = "order_date") // Dựng lại thống kê bán chạy theo ngày
 })
 public class OrderEntity {
 
@@ -27,6 +28,11 @@ public class OrderEntity {
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Long id;
 
+    // Optimistic lock: admin đổi trạng thái và khách hủy đơn cùng lúc không ghi đè nhau
+    @Version
+    @Column(name = "version", nullable = false)
+    private Long version;
+
     @Column(name = "order_code", unique = true, nullable = false, length = 50)
     private String orderCode; // Nên tạo mã này ở tầng Service
 
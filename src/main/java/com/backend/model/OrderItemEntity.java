@@ -13,8 +13,10 @@ import java.math.BigDecimal;
 @Table(name = "tbl_order_items")
 public class OrderItemEntity {
 
+    // Pooled sequence (bảng tbl_order_items_seq trên MySQL, sequence thật trên H2): mỗi lần lấy 50 ID nên Hibernate gộp được INSERT thành JDBC batch
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "order_items_id_gen")
+    @SequenceGenerator(name = "order_items_id_gen", sequenceName = "tbl_order_items_seq", allocationSize = 50)
     private Long id;
 
     // Quan hệ nhiều-một với OrderEntity
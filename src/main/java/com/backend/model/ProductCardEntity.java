@@ -0,0 +1,93 @@
+package com.backend.model;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.math.BigDecimal;
+import java.util.Date;
+
+/**
+ * Bảng đọc phi chuẩn hóa cho trang danh sách: mỗi sản phẩm một dòng, đã gộp sẵn ảnh chính,
+ * tên danh mục và số review. Chỉ được ghi bởi ProductCardService (từ ProductChangedEvent/CategoryChangedEvent),
+ * không sửa trực tiếp.
+ */
+@Entity
+@Getter
+@Setter
+@Table(name = "tbl_product_cards", indexes = {
+        // Cùng bộ index với tbl_products cho các kiểu sắp xếp ProductSort + keyset cursor
+        @Index(name = "idx_card_category_created", columnList = "category_id, created_at, product_id"),
+        @Index(name = "idx_card_category_price", columnList = "category_id, price, product_id"),
+        @Index(name = "idx_card_category_sold", columnList = "category_id, sold_count, product_id"),
+        @Index(name = "idx_card_category_rating", columnList = "category_id, average_rating, product_id"),
+        @Index(name = "idx_card_created", columnList = "created_at, product_id"),
+        @Index(name = "idx_card_price", columnList = "price, product_id"),
+        @Index(name = "idx_card_sold", columnList = "sold_count, product_id"),
+        @Index(name = "idx_card_rating", columnList = "average_rating, product_id"),
+        @Index(name = "idx_card_category_reviews", columnList = "category_id, review_count, product_id"),
+        @Index(name = "idx_card_reviews", columnList = "review_count, product_id"),
+        @Index(name = "idx_card_category_sold_7d", columnList = "category_id, sold_last_7d, product_id"),
+        @Index(name = "idx_card_category_sold_30d", columnList = "category_id, sold_last_30d, product_id"),
+        @Index(name = "idx_card_sold_7d", columnList = "sold_last_7d, product_id"),
+        @Index(name = "idx_card_sold_30d", columnList = "sold_last_30d, product_id"),
+        @Index(name = "idx_card_category_views", columnList = "category_id, view_count, product_id"),
+        @Index(name = "idx_card_views", columnList = "view_count, product_id")
+})
+public class ProductCardEntity {
+
+    // Trùng với ProductEntity.id (không tự sinh); tên field "id" để dùng chung ProductSort/ProductCursor
+    @Id
+    @Column(name = "product_id")
+    private Long id;
+
+    @Column(nullable = false, length = 255)
+    private String name;
+
+    @Column(nullable = false, precision = 10, scale = 2)
+    private BigDecimal price;
+
+    @Column(name = "primary_image_url", length = 500)
+    private String primaryImageUrl;
+
+    @Column(name = "category_id", nullable = false)
+    private Long categoryId;
+
+    @Column(name = "category_name", length = 255)
+    private String categoryName;
+
+    @Column(name = "stock_quantity", nullable = false)
+    private Integer stockQuantity;
+
+    @Column(name = "in_stock", nullable = false)
+    private Boolean inStock;
+
+    @Column(name = "average_rating", nullable = false)
+    private Double averageRating;
+
+    // Cùng tên thuộc tính với ProductEntity.ratingCount để dùng chung ProductSort.MOST_REVIEWED
+    @Column(name = "review_count", nullable = false)
+    private Long ratingCount;
+
+    @Column(name = "sold_count", nullable = false)
+    private Long soldCount;
+
+    // Số lượng bán 7/30 ngày gần nhất, lấy từ snapshot tbl_product_daily_sales (trễ tối đa một chu kỳ snapshot)
+    @Column(name = "sold_last_7d", nullable = false)
+    private Long soldLast7Days;
+
+    @Column(name = "sold_last_30d", nullable = false)
+    private Long soldLast30Days;
+
+    // Lượt xem, được cộng dồn mỗi lần ProductViewService flush
+    @Column(name = "view_count", nullable = false)
+    private Long viewCount;
+
+    @Column(name = "created_at")
+    @Temporal(TemporalType.TIMESTAMP)
+    private Date createdAt;
+
+    @Column(name = "updated_at")
+    @Temporal(TemporalType.TIMESTAMP)
+    private Date updatedAt;
+}
@@ -0,0 +1,49 @@
+package com.backend.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.io.Serializable;
+import java.time.LocalDate;
+
+/**
+ * Snapshot định kỳ của thống kê bán chạy trong bộ nhớ (BestSellerRanking): số lượng bán theo sản phẩm/ngày.
+ * Dùng để khởi động lại không phải quét toàn bộ tbl_order_items, và để tính cột bán chạy 7/30 ngày trên card.
+ */
+@Entity
+@Getter
+@Setter
+@IdClass(ProductDailySalesEntity.Key.class)
+@Table(name = "tbl_product_daily_sales", indexes = {
+        @Index(name = "idx_daily_sales_day", columnList = "sales_day")
+})
+public class ProductDailySalesEntity {
+
+    @Id
+    @Column(name = "product_id")
+    private Long productId;
+
+    @Id
+    @Column(name = "sales_day")
+    private LocalDate salesDay;
+
+    @Column(name = "category_id", nullable = false)
+    private Long categoryId;
+
+    @Column(nullable = false)
+    private Integer quantity;
+
+    @Getter
+    @Setter
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @EqualsAndHashCode
+    public static class Key implements Serializable {
+        private Long productId;
+        private LocalDate salesDay;
+    }
+}
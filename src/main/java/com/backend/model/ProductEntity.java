@@ -5,6 +5,7 @@ import jakarta.persistence.*;
 import lombok.Getter;
 import lombok.Setter;
 import org.hibernate.annotations.CreationTimestamp;
+import org.hibernate.annotations.DynamicUpdate;
 import org.hibernate.annotations.UpdateTimestamp;
 
 import java.math.BigDecimal;
@@ -15,14 +16,36 @@ import java.util.stream.Collectors;
 @Getter
 @Setter
 @Table(name = "tbl_products", indexes = {
-        @Index(name = "idx_product_sku", columnList = "sku", unique = true) // Index cho SKU
+        @Index(name = "idx_product_sku", columnList = "sku", unique = true), // Index cho SKU
+        // Index cho các kiểu sắp xếp danh sách (ProductSort) kèm keyset cursor, trong một category và toàn bộ
+        @Index(name = "idx_product_category_created", columnList = "category_id, created_at, id"),
+        @Index(name = "idx_product_category_price", columnList = "category_id, price, id"),
+        @Index(name = "idx_product_category_sold", columnList = "category_id, sold_count, id"),
+        @Index(name = "idx_product_category_rating", columnList = "category_id, average_rating, id"),
+        @Index(name = "idx_product_category_reviews", columnList = "category_id, rating_count, id"),
+        @Index(name = "idx_product_created", columnList = "created_at, id"),
+        @Index(name = "idx_product_price", columnList = "price, id"),
+        @Index(name = "idx_product_sold", columnList = "sold_count, id"),
+        @Index(name = "idx_product_rating", columnList = "average_rating, id"),
+        @Index(name = "idx_product_reviews", columnList = "rating_count, id"),
+        // MAX(updated_at) cho ETag của danh sách sản phẩm
+        @Index(name = "idx_product_updated", columnList = "updated_at")
 })
+// Chỉ UPDATE các cột thay đổi: các bộ đếm (sold_count, average_rating, rating_*) được cập nhật bằng query riêng,
+// không được để lần save() của admin ghi đè bằng giá trị cũ
+@DynamicUpdate
 public class ProductEntity {
 
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Long id;
 
+    // Optimistic lock: admin sửa sản phẩm và checkout trừ kho không ghi đè nhau (xem @RetryOnConflict).
+    // Các UPDATE cộng dồn nguyên tử (soldCount, rating) không tăng version vì không đọc-rồi-ghi và nhờ @DynamicUpdate không đụng cột khác
+    @Version
+    @Column(name = "version", nullable = false)
+    private Long version;
+
     @Column(nullable = false, length = 255)
     private String name;
 
@@ -38,8 +61,40 @@ public class ProductEntity {
     @Column(nullable = false, name = "stock_quantity")
     private Integer stockQuantity = 0; // Mặc định là 0
 
+    // Tổng số lượng đã bán (trừ đơn bị hủy), dùng cho sắp xếp BEST_SELLING
+    @Column(nullable = false, name = "sold_count")
+    private Long soldCount = 0L;
+
+    // Điểm đánh giá trung bình, dùng cho sắp xếp RATING
+    @Column(nullable = false, name = "average_rating")
+    private Double averageRating = 0.0;
+
+    // Tổng hợp đánh giá, cộng dồn khi tạo/sửa/xóa review (ProductRepository.applyRatingChange):
+    // averageRating = ratingSum / ratingCount, rating1..rating5 là số review theo số sao
+    @Column(nullable = false, name = "rating_sum")
+    private Long ratingSum = 0L;
+
+    @Column(nullable = false, name = "rating_count")
+    private Long ratingCount = 0L;
+
+    @Column(nullable = false, name = "rating_1")
+    private Long rating1 = 0L;
+
+    @Column(nullable = false, name = "rating_2")
+    private Long rating2 = 0L;
+
+    @Column(nullable = false, name = "rating_3")
+    private Long rating3 = 0L;
+
+    @Column(nullable = false, name = "rating_4")
+    private Long rating4 = 0L;
+
+    @Column(nullable = false, name = "rating_5")
+    private Long rating5 = 0L;
+
     // Quan hệ Một-Nhiều tới ProductImageEntity
     @OneToMany(mappedBy = "product", cascade = CascadeType.ALL, fetch = FetchType.LAZY, orphanRemoval = true)
+    @OrderBy("sortOrder ASC, id ASC") // Hibernate dùng LinkedHashSet, giữ đúng thứ tự ảnh
     private Set<ProductImageEntity> images = new HashSet<>();
 
     // Quan hệ nhiều-một với CategoryEntity
@@ -23,6 +23,9 @@ public class ProductImageEntity {
     @Column(name = "is_primary") // Đánh dấu ảnh chính (tùy chọn)
     private Boolean isPrimary = false;
 
+    @Column(name = "sort_order") // Thứ tự hiển thị (0 = ảnh đầu tiên, cũng là ảnh chính)
+    private Integer sortOrder = 0;
+
     // Quan hệ Nhiều-Một với ProductEntity
     @ManyToOne(fetch = FetchType.LAZY, optional = false) // Bắt buộc phải thuộc về 1 product
     @JoinColumn(name = "product_id", nullable = false)
@@ -0,0 +1,30 @@
+package com.backend.model;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.util.Date;
+
+/**
+ * Tổng lượt xem của từng sản phẩm. Chỉ được ghi gộp định kỳ bởi ProductViewService (không UPDATE mỗi lượt xem),
+ * nên có thể trễ so với thực tế tối đa một chu kỳ flush.
+ */
+@Entity
+@Getter
+@Setter
+@Table(name = "tbl_product_view_stats")
+public class ProductViewStatsEntity {
+
+    // Trùng với ProductEntity.id (không tự sinh)
+    @Id
+    @Column(name = "product_id")
+    private Long id;
+
+    @Column(name = "view_count", nullable = false)
+    private Long viewCount;
+
+    @Column(name = "updated_at")
+    @Temporal(TemporalType.TIMESTAMP)
+    private Date updatedAt;
+}
@@ -0,0 +1,49 @@
+package com.backend.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.io.Serializable;
+import java.util.Date;
+
+/**
+ * Chỉ mục "user đã mua sản phẩm": một dòng cho mỗi cặp (user, product) có ít nhất một đơn DELIVERED.
+ * OrderService duy trì khi đơn chuyển sang/rời khỏi DELIVERED; dùng cho nhãn "đã mua hàng" trên review
+ * mà không phải join tbl_order_items với tbl_orders.
+ */
+@Entity
+@Getter
+@Setter
+@IdClass(PurchaseEntity.Key.class)
+@Table(name = "tbl_purchases", indexes = {
+        // Tra theo sản phẩm cho một trang review (product_id = ? AND user_id IN (...))
+        @Index(name = "idx_purchase_product_user", columnList = "product_id, user_id")
+})
+public class PurchaseEntity {
+
+    @Id
+    @Column(name = "user_id")
+    private Long userId;
+
+    @Id
+    @Column(name = "product_id")
+    private Long productId;
+
+    @Column(name = "purchased_at", nullable = false)
+    @Temporal(TemporalType.TIMESTAMP)
+    private Date purchasedAt;
+
+    @Getter
+    @Setter
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @EqualsAndHashCode
+    public static class Key implements Serializable {
+        private Long userId;
+        private Long productId;
+    }
+}
@@ -0,0 +1,30 @@
+package com.backend.model;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.util.Date;
+
+/**
+ * Bản lưu của danh sách "xem gần đây" (RecentlyViewedCache): một dòng mỗi user, productIds mới nhất trước,
+ * nối bằng dấu phẩy. Chỉ được ghi gộp định kỳ, không ghi theo từng lượt xem.
+ */
+@Entity
+@Getter
+@Setter
+@Table(name = "tbl_recently_viewed")
+public class RecentlyViewedEntity {
+
+    // Trùng với UserEntity.id (không tự sinh)
+    @Id
+    @Column(name = "user_id")
+    private Long id;
+
+    @Column(name = "product_ids", nullable = false, length = 1000)
+    private String productIds;
+
+    @Column(name = "updated_at")
+    @Temporal(TemporalType.TIMESTAMP)
+    private Date updatedAt;
+}
@@ -13,7 +13,10 @@ import java.util.Date;
 @Getter
 @Setter
 @Table(name = "tbl_reviews", indexes = {
-        @Index(name = "idx_review_user_product", columnList = "user_id, product_id", unique = true) // Mỗi user chỉ đánh giá 1 sp 1 lần
+        @Index(name = "idx_review_user_product", columnList = "user_id, product_id", unique = true), // Mỗi user chỉ đánh giá 1 sp 1 lần
+        // Danh sách review của sản phẩm theo ReviewSort + keyset cursor
+        @Index(name = "idx_review_product_created", columnList = "product_id, created_at, id"),
+        @Index(name = "idx_review_product_rating", columnList = "product_id, rating, id")
 })
 public class ReviewEntity {
 
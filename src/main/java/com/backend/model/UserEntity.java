@@ -31,6 +31,11 @@ public class UserEntity implements UserDetails, Serializable {
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Long id;
 
+    // Optimistic lock cho các cập nhật hồ sơ/trạng thái đồng thời
+    @Version
+    @Column(name = "version", nullable = false)
+    private Long version;
+
     @Column(name = "first_name", length = 255)
     private String firstName;
 
@@ -0,0 +1,46 @@
+package com.backend.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.io.Serializable;
+
+/**
+ * Chỉ mục tìm kiếm user cho admin: mỗi từ đã chuẩn hóa (chữ thường, bỏ dấu) của họ tên, username, email,
+ * số điện thoại là một dòng (token, user_id). Tìm theo tiền tố {@code token LIKE 'kw%'} là range scan trên khóa chính
+ * thay vì quét toàn bảng tbl_users. Chỉ được ghi bởi UserSearchIndexService (từ UserChangedEvent).
+ *
+ * @see com.backend.specification.UserSearchTokens
+ */
+@Entity
+@Getter
+@Setter
+@IdClass(UserSearchTokenEntity.Key.class)
+@Table(name = "tbl_user_search_tokens", indexes = {
+        // Xóa/dựng lại token của một user khi hồ sơ thay đổi
+        @Index(name = "idx_user_search_user", columnList = "user_id")
+})
+public class UserSearchTokenEntity {
+
+    @Id
+    @Column(name = "token", length = 50)
+    private String token;
+
+    @Id
+    @Column(name = "user_id")
+    private Long userId;
+
+    @Getter
+    @Setter
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @EqualsAndHashCode
+    public static class Key implements Serializable {
+        private String token;
+        private Long userId;
+    }
+}
@@ -0,0 +1,19 @@
+package com.backend.repository;
+
+import com.backend.model.CacheVersionEntity;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface CacheVersionRepository extends JpaRepository<CacheVersionEntity, String> {
+
+    @Query("SELECT v.version FROM CacheVersionEntity v WHERE v.name = :name")
+    Long findVersion(@Param("name") String name);
+
+    @Modifying
+    @Query("UPDATE CacheVersionEntity v SET v.version = v.version + 1, v.updatedAt = CURRENT_TIMESTAMP WHERE v.name = :name")
+    int increment(@Param("name") String name);
+}
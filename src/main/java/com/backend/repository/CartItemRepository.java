@@ -4,8 +4,13 @@ import com.backend.model.CartEntity;
 import com.backend.model.CartItemEntity;
 import com.backend.model.ProductEntity;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
+import java.util.Date;
 import java.util.Optional;
 import java.util.List; // Import List
 
@@ -23,4 +28,19 @@ public interface CartItemRepository extends JpaRepository<CartItemEntity, Long>
 
     // Tùy chọn: Lấy tất cả item của một giỏ hàng (nếu không dùng eager fetch)
     List<CartItemEntity> findByCart(CartEntity cart);
-}
\ No newline at end of file
+
+    // (productId, quantity) theo thứ tự thêm vào giỏ, đọc trong transaction đặt hàng
+    @Query("SELECT ci.product.id, ci.quantity FROM CartItemEntity ci WHERE ci.cart.id = :cartId ORDER BY ci.id")
+    List<Object[]> findQuantitiesByCartId(@Param("cartId") Long cartId);
+
+    // Xóa toàn bộ dòng của giỏ bằng một câu DELETE (đặt hàng / xóa giỏ), không nạp entity
+    @Modifying
+    @Query("DELETE FROM CartItemEntity ci WHERE ci.cart.id = :cartId")
+    int deleteAllByCartId(@Param("cartId") Long cartId);
+
+    // Dòng của các giỏ bỏ quên; giỏ vừa được thêm dòng sau lúc chọn đã có updated_at mới nên được giữ
+    @Modifying
+    @Query("DELETE FROM CartItemEntity ci WHERE ci.cart.id IN " +
+            "(SELECT c.id FROM CartEntity c WHERE c.id IN :cartIds AND c.updatedAt < :cutoff)")
+    int deleteByAbandonedCarts(@Param("cartIds") Collection<Long> cartIds, @Param("cutoff") Date cutoff);
+}
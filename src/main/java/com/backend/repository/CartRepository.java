@@ -1,13 +1,68 @@
 package com.backend.repository;
 
 import com.backend.model.CartEntity;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
 import java.util.Optional;
 
 @Repository
 public interface CartRepository extends JpaRepository<CartEntity, Long> {
     // Tìm giỏ hàng theo ID người dùng
     Optional<CartEntity> findByUserId(Long userId);
-}
\ No newline at end of file
+
+    // Chỉ lấy ID giỏ (dựng giỏ trong bộ nhớ, không cần nạp entity)
+    @Query("SELECT c.id FROM CartEntity c WHERE c.user.id = :userId")
+    Optional<Long> findIdByUserId(Long userId);
+
+    // Khóa giỏ khi đặt hàng: hai lần đặt hàng cùng giỏ (hai instance / hai tab) chạy lần lượt, lần sau thấy giỏ trống
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT c FROM CartEntity c WHERE c.user.id = :userId")
+    Optional<CartEntity> findForUpdateByUserId(Long userId);
+
+    // Khóa các giỏ trước khi ghi dòng của chúng, luôn theo thứ tự id để hai lần ghi nhiều giỏ không deadlock
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT c FROM CartEntity c WHERE c.id IN :cartIds ORDER BY c.id")
+    List<CartEntity> findAllForUpdate(@Param("cartIds") Collection<Long> cartIds);
+
+    // Giỏ vừa được ghi: tăng change_version và ghi thời điểm hoạt động gần nhất (job dọn giỏ không xóa)
+    @Modifying
+    @Query("UPDATE CartEntity c SET c.changeVersion = c.changeVersion + 1, c.updatedAt = :now WHERE c.id IN :cartIds")
+    int advanceVersion(@Param("cartIds") Collection<Long> cartIds, @Param("now") Date now);
+
+    // Giỏ được ghi từ thời điểm since: (userId, cartId, changeVersion)
+    @Query("SELECT c.user.id, c.id, c.changeVersion FROM CartEntity c WHERE c.updatedAt >= :since")
+    List<Object[]> findChangedSince(@Param("since") Date since);
+
+    /**
+     * Toàn bộ dữ liệu để hiển thị giỏ trong một query: mỗi dòng giỏ một hàng
+     * (cartId, cartItemId, productId, quantity, name, price, stockQuantity, inStock, primaryImageUrl, changeVersion),
+     * thông tin sản phẩm lấy từ tbl_product_cards thay vì nạp ProductEntity + ảnh.
+     * Giỏ trống trả về một hàng chỉ có cartId; chưa có giỏ thì không có hàng nào.
+     */
+    @Query("SELECT c.id, ci.id, ci.product.id, ci.quantity, pc.name, pc.price, pc.stockQuantity, pc.inStock, pc.primaryImageUrl, c.changeVersion " +
+            "FROM CartEntity c LEFT JOIN CartItemEntity ci ON ci.cart = c " +
+            "LEFT JOIN ProductCardEntity pc ON pc.id = ci.product.id " +
+            "WHERE c.user.id = :userId ORDER BY ci.id")
+    List<Object[]> findCartView(Long userId);
+
+    // Giỏ bỏ quên: không thay đổi và không thêm dòng nào từ cutoff. Trả về (cartId, userId), duyệt keyset theo id
+    @Query("SELECT c.id, c.user.id FROM CartEntity c WHERE c.id > :afterId AND c.updatedAt < :cutoff " +
+            "AND NOT EXISTS (SELECT 1 FROM CartItemEntity ci WHERE ci.cart = c AND ci.addedAt >= :cutoff) ORDER BY c.id")
+    List<Object[]> findAbandoned(@Param("afterId") Long afterId, @Param("cutoff") Date cutoff, Pageable pageable);
+
+    // Điều kiện được kiểm tra lại khi xóa: giỏ vừa được dùng lại sau lúc chọn thì giữ nguyên
+    @Modifying
+    @Query("DELETE FROM CartEntity c WHERE c.id IN :cartIds AND c.updatedAt < :cutoff " +
+            "AND NOT EXISTS (SELECT 1 FROM CartItemEntity ci WHERE ci.cart = c)")
+    int deleteAbandoned(@Param("cartIds") Collection<Long> cartIds, @Param("cutoff") Date cutoff);
+}
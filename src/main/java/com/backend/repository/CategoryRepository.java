@@ -1,9 +1,16 @@
 package com.backend.repository;
 
 import com.backend.model.CategoryEntity;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional; // Import Optional
 
@@ -18,4 +25,69 @@ public interface CategoryRepository extends JpaRepository<CategoryEntity, Long>
 
     // Tùy chọn: Tìm các danh mục con trực tiếp của một danh mục cha
     List<CategoryEntity> findByParentCategoryId(Long parentId);
-}
\ No newline at end of file
+
+    // Lấy các ID category tồn tại trong danh sách (import hàng loạt)
+    @Query("SELECT c.id FROM CategoryEntity c WHERE c.id IN :ids")
+    List<Long> findExistingIds(@Param("ids") Collection<Long> ids);
+
+    // Cặp (id, path) của toàn bộ danh mục, dùng để dựng cache cây con trong bộ nhớ
+    @Query("SELECT c.id, c.path FROM CategoryEntity c")
+    List<Object[]> findAllPaths();
+
+    // Cặp (id, parentId) để tính lại path (backfill dữ liệu cũ)
+    @Query("SELECT c.id, p.id FROM CategoryEntity c LEFT JOIN c.parentCategory p")
+    List<Object[]> findAllParentLinks();
+
+    @Modifying
+    @Query("UPDATE CategoryEntity c SET c.path = :path WHERE c.id = :categoryId")
+    int updatePath(@Param("categoryId") Long categoryId, @Param("path") String path);
+
+    // Đổi prefix path cho toàn bộ cây con khi một danh mục được chuyển sang cha khác
+    @Modifying
+    @Query("UPDATE CategoryEntity c SET c.path = CONCAT(:newPrefix, SUBSTRING(c.path, LENGTH(:oldPrefix) + 1)) " +
+            "WHERE c.path LIKE CONCAT(:oldPrefix, '%') AND c.path <> :oldPrefix")
+    int replacePathPrefix(@Param("oldPrefix") String oldPrefix, @Param("newPrefix") String newPrefix);
+
+    // Validator cho conditional GET: danh mục và danh mục cha (tên cha nằm trong response)
+    @Query("SELECT c.updatedAt, p.updatedAt FROM CategoryEntity c LEFT JOIN c.parentCategory p WHERE c.id = :categoryId")
+    List<Object[]> findVersionById(@Param("categoryId") Long categoryId);
+
+    @Query("SELECT MAX(c.updatedAt), COUNT(c) FROM CategoryEntity c")
+    List<Object[]> findCatalogVersion();
+
+    // Danh sách phẳng có kèm danh mục cha trong cùng query (parentCategoryName), tránh N+1
+    @Override
+    @EntityGraph(attributePaths = "parentCategory")
+    Page<CategoryEntity> findAll(Pageable pageable);
+
+    // (id, name, parentId, updatedAt, directProductCount, subtreeProductCount) của toàn bộ danh mục,
+    // dùng để dựng snapshot cây trong bộ nhớ
+    @Query("SELECT c.id, c.name, p.id, c.updatedAt, c.directProductCount, c.subtreeProductCount " +
+            "FROM CategoryEntity c LEFT JOIN c.parentCategory p")
+    List<Object[]> findTreeRows();
+
+    @Query("SELECT c.id, c.path FROM CategoryEntity c WHERE c.id IN :ids")
+    List<Object[]> findPathsByIds(@Param("ids") Collection<Long> ids);
+
+    // Cộng dồn trong DB (không đọc-sửa-ghi) nên các transaction song song không ghi đè nhau
+    @Modifying
+    @Query("UPDATE CategoryEntity c SET c.directProductCount = c.directProductCount + :delta WHERE c.id = :categoryId")
+    int adjustDirectProductCount(@Param("categoryId") Long categoryId, @Param("delta") long delta);
+
+    @Modifying
+    @Query("UPDATE CategoryEntity c SET c.subtreeProductCount = c.subtreeProductCount + :delta WHERE c.id IN :ids")
+    int adjustSubtreeProductCount(@Param("ids") Collection<Long> ids, @Param("delta") long delta);
+
+    @Query("SELECT c.subtreeProductCount FROM CategoryEntity c WHERE c.id = :categoryId")
+    Long findSubtreeProductCount(@Param("categoryId") Long categoryId);
+
+    @Query("SELECT c.id, c.directProductCount, c.subtreeProductCount FROM CategoryEntity c")
+    List<Object[]> findProductCounts();
+
+    // Ghi giá trị recount chỉ khi cột vẫn là giá trị đã đọc: nếu có adjust commit xen giữa thì bỏ qua, lần sau sửa tiếp
+    @Modifying
+    @Query("UPDATE CategoryEntity c SET c.directProductCount = :direct, c.subtreeProductCount = :subtree " +
+            "WHERE c.id = :categoryId AND c.directProductCount = :expectedDirect AND c.subtreeProductCount = :expectedSubtree")
+    int setProductCounts(@Param("categoryId") Long categoryId, @Param("direct") long direct, @Param("subtree") long subtree,
+                         @Param("expectedDirect") long expectedDirect, @Param("expectedSubtree") long expectedSubtree);
+}
@@ -0,0 +1,28 @@
+package com.backend.repository;
+
+import com.backend.model.JobLeaseEntity;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Date;
+
+@Repository
+// Mỗi thao tác là một transaction riêng, commit ngay (không dùng trong transaction của job)
+public interface JobLeaseRepository extends JpaRepository<JobLeaseEntity, String> {
+
+    // Lấy (hoặc gia hạn) lease nếu đã hết hạn hoặc đang do chính owner này giữ; trả về 1 nếu thành công
+    @Transactional
+    @Modifying
+    @Query("UPDATE JobLeaseEntity l SET l.owner = :owner, l.lockedUntil = :until " +
+            "WHERE l.name = :name AND (l.lockedUntil < :now OR l.owner = :owner)")
+    int tryAcquire(@Param("name") String name, @Param("owner") String owner, @Param("now") Date now, @Param("until") Date until);
+
+    @Transactional
+    @Modifying
+    @Query("UPDATE JobLeaseEntity l SET l.lockedUntil = :now WHERE l.name = :name AND l.owner = :owner")
+    int release(@Param("name") String name, @Param("owner") String owner, @Param("now") Date now);
+}
@@ -1,10 +1,32 @@
 package com.backend.repository;
 
+import com.backend.common.OrderStatus;
 import com.backend.model.OrderItemEntity;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+
 @Repository
 public interface OrderItemRepository extends JpaRepository<OrderItemEntity, Long> {
     // Các phương thức CRUD cơ bản là đủ, vì OrderItem thường được quản lý qua OrderEntity
-}
\ No newline at end of file
+
+    // Cặp (orderId, productId) trong một khoảng ID đơn hàng, gom theo đơn (nạp ma trận đồng xuất hiện)
+    @Query("SELECT oi.order.id, oi.product.id FROM OrderItemEntity oi " +
+            "WHERE oi.order.id BETWEEN :fromOrderId AND :toOrderId AND oi.order.status NOT IN :excludedStatuses " +
+            "ORDER BY oi.order.id")
+    List<Object[]> findOrderProductPairs(@Param("fromOrderId") Long fromOrderId,
+                                         @Param("toOrderId") Long toOrderId,
+                                         @Param("excludedStatuses") Collection<OrderStatus> excludedStatuses);
+
+    // Số lượng bán theo dòng đơn từ một thời điểm (dựng lại thống kê bán chạy cho những ngày chưa có snapshot)
+    @Query("SELECT oi.product.id, oi.product.category.id, oi.order.orderDate, oi.quantity FROM OrderItemEntity oi " +
+            "WHERE oi.order.orderDate >= :fromDate AND oi.order.id <= :maxOrderId AND oi.order.status NOT IN :excludedStatuses")
+    List<Object[]> findSalesSince(@Param("fromDate") Date fromDate,
+                                  @Param("maxOrderId") Long maxOrderId,
+                                  @Param("excludedStatuses") Collection<OrderStatus> excludedStatuses);
+}
@@ -5,8 +5,10 @@ import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.JpaSpecificationExecutor; // Thêm nếu cần tìm kiếm phức tạp
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 
+import java.util.List;
 import java.util.Optional;
 
 @Repository
@@ -27,4 +29,8 @@ public interface OrderRepository extends JpaRepository<OrderEntity, Long>, JpaSp
      * Kiểm tra xem có đơn hàng nào dùng địa chỉ này làm địa chỉ thanh toán không.
      */
     boolean existsByBillingAddressId(Long billingAddressId);
-}
\ No newline at end of file
+
+    // MIN/MAX ID đơn hàng, dùng để chia khoảng khi nạp thống kê song song
+    @Query("SELECT MIN(o.id), MAX(o.id) FROM OrderEntity o")
+    List<Object[]> findIdRange();
+}
@@ -0,0 +1,70 @@
+package com.backend.repository;
+
+import com.backend.model.ProductCardEntity;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDate;
+import java.util.Collection;
+
+@Repository
+public interface ProductCardRepository extends JpaRepository<ProductCardEntity, Long>, JpaSpecificationExecutor<ProductCardEntity> {
+
+    // Dựng card từ bảng gốc: ảnh chính lấy bằng subquery theo product_id (có index FK), số review từ p.rating_count
+    String INSERT_CARDS_SELECT =
+            "INSERT INTO tbl_product_cards (product_id, name, price, primary_image_url, category_id, category_name, " +
+            "stock_quantity, in_stock, average_rating, review_count, sold_count, sold_last_7d, sold_last_30d, view_count, created_at, updated_at) " +
+            "SELECT p.id, p.name, p.price, " +
+            "(SELECT i.url FROM tbl_product_images i WHERE i.product_id = p.id ORDER BY i.is_primary DESC, i.sort_order, i.id LIMIT 1), " +
+            "c.id, c.name, p.stock_quantity, CASE WHEN p.stock_quantity > 0 THEN TRUE ELSE FALSE END, " +
+            "p.average_rating, p.rating_count, p.sold_count, 0, 0, " +
+            "COALESCE((SELECT v.view_count FROM tbl_product_view_stats v WHERE v.product_id = p.id), 0), " +
+            "p.created_at, p.updated_at " +
+            "FROM tbl_products p JOIN tbl_categories c ON c.id = p.category_id";
+
+    // Làm mới card = xóa rồi dựng lại (sản phẩm đã bị xóa thì chỉ còn bước xóa)
+    @Modifying(flushAutomatically = true)
+    @Query(value = "DELETE FROM tbl_product_cards WHERE product_id IN (:productIds)", nativeQuery = true)
+    int deleteCards(@Param("productIds") Collection<Long> productIds);
+
+    @Modifying(flushAutomatically = true)
+    @Query(value = INSERT_CARDS_SELECT + " WHERE p.id IN (:productIds)", nativeQuery = true)
+    int insertCards(@Param("productIds") Collection<Long> productIds);
+
+    @Modifying(flushAutomatically = true)
+    @Query(value = "DELETE FROM tbl_product_cards", nativeQuery = true)
+    int deleteAllCards();
+
+    @Modifying(flushAutomatically = true)
+    @Query(value = INSERT_CARDS_SELECT, nativeQuery = true)
+    int insertAllCards();
+
+    // Đổi tên danh mục: chỉ cần sửa cột category_name của các card thuộc danh mục đó
+    @Modifying(flushAutomatically = true)
+    @Query(value = "UPDATE tbl_product_cards SET category_name = (SELECT c.name FROM tbl_categories c WHERE c.id = :categoryId) " +
+            "WHERE category_id = :categoryId", nativeQuery = true)
+    int refreshCategoryName(@Param("categoryId") Long categoryId);
+
+    // Số lượng bán 7/30 ngày lấy từ snapshot theo ngày; gọi sau khi dựng card và sau mỗi lần ghi snapshot
+    String SET_SALES_WINDOWS =
+            "UPDATE tbl_product_cards SET " +
+            "sold_last_7d = COALESCE((SELECT SUM(s.quantity) FROM tbl_product_daily_sales s " +
+            "WHERE s.product_id = tbl_product_cards.product_id AND s.sales_day >= :from7Days), 0), " +
+            "sold_last_30d = COALESCE((SELECT SUM(s.quantity) FROM tbl_product_daily_sales s " +
+            "WHERE s.product_id = tbl_product_cards.product_id AND s.sales_day >= :from30Days), 0)";
+
+    @Modifying(flushAutomatically = true)
+    @Query(value = SET_SALES_WINDOWS + " WHERE product_id IN (:productIds)", nativeQuery = true)
+    int refreshSalesWindows(@Param("productIds") Collection<Long> productIds,
+                            @Param("from7Days") LocalDate from7Days,
+                            @Param("from30Days") LocalDate from30Days);
+
+    @Modifying(flushAutomatically = true)
+    @Query(value = SET_SALES_WINDOWS, nativeQuery = true)
+    int refreshAllSalesWindows(@Param("from7Days") LocalDate from7Days,
+                               @Param("from30Days") LocalDate from30Days);
+}
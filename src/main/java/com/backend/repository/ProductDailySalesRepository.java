@@ -0,0 +1,31 @@
+package com.backend.repository;
+
+import com.backend.model.ProductDailySalesEntity;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface ProductDailySalesRepository extends JpaRepository<ProductDailySalesEntity, ProductDailySalesEntity.Key> {
+
+    // Ngày của snapshot gần nhất (ngày này có thể chưa đủ số liệu)
+    @Query("SELECT MAX(s.salesDay) FROM ProductDailySalesEntity s")
+    LocalDate findLatestSalesDay();
+
+    List<ProductDailySalesEntity> findBySalesDayGreaterThanEqualAndSalesDayLessThan(LocalDate fromDay, LocalDate toDay);
+
+    // Khóa (productId, salesDay) đã có dòng, để cộng dồn delta bằng UPDATE thay vì INSERT
+    @Query("SELECT s.productId, s.salesDay FROM ProductDailySalesEntity s WHERE s.productId IN :productIds AND s.salesDay >= :fromDay")
+    List<Object[]> findKeys(@Param("productIds") Collection<Long> productIds, @Param("fromDay") LocalDate fromDay);
+
+    // Các ngày đã ra khỏi cửa sổ dài nhất
+    @Modifying(flushAutomatically = true)
+    @Query("DELETE FROM ProductDailySalesEntity s WHERE s.salesDay < :fromDay")
+    int deleteBefore(@Param("fromDay") LocalDate fromDay);
+}
@@ -1,11 +1,17 @@
 package com.backend.repository;
 
-import com.backend.model.CategoryEntity;
 import com.backend.model.ProductEntity;
+import jakarta.persistence.LockModeType;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.JpaSpecificationExecutor; // Thêm nếu cần tìm kiếm phức tạp
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 @Repository
@@ -17,7 +23,62 @@ public interface ProductRepository extends JpaRepository<ProductEntity, Long>, J
     // Tìm sản phẩm bằng SKU (có thể cần khi cập nhật)
     Optional<ProductEntity> findBySku(String sku);
 
-    long countByCategory(CategoryEntity categoryToDelete);
+    boolean existsByCategoryId(Long categoryId);
+
+    // Số sản phẩm gắn trực tiếp vào từng danh mục (recount cột đếm của tbl_categories)
+    @Query("SELECT p.category.id, COUNT(p) FROM ProductEntity p GROUP BY p.category.id")
+    List<Object[]> countGroupByCategory();
+
+    // Kiểm tra SKU trùng cho cả lô (import hàng loạt) trong một query
+    @Query("SELECT p.sku FROM ProductEntity p WHERE p.sku IN :skus")
+    List<String> findExistingSkus(@Param("skus") Collection<String> skus);
+
+    // Sản phẩm của một đơn hàng, khóa ghi tới hết transaction đặt hàng. Khóa theo thứ tự id để hai checkout
+    // chung sản phẩm không deadlock; lưu entity vẫn tăng @Version nên thao tác đọc không khóa (admin) vẫn phát hiện xung đột
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT p FROM ProductEntity p WHERE p.id IN :ids ORDER BY p.id")
+    List<ProductEntity> findAllForUpdate(@Param("ids") Collection<Long> ids);
+
+    // Cộng/trừ số lượng đã bán trực tiếp trong DB (atomic, không đọc-ghi lại entity)
+    // updatedAt cũng được cập nhật vì response sản phẩm thay đổi (ETag/Last-Modified)
+    @Modifying
+    @Query("UPDATE ProductEntity p SET p.soldCount = p.soldCount + :delta, p.updatedAt = CURRENT_TIMESTAMP WHERE p.id = :productId AND p.soldCount + :delta >= 0")
+    int incrementSoldCount(@Param("productId") Long productId, @Param("delta") long delta);
+
+    // Cộng dồn tổng hợp đánh giá khi một review đổi số sao: removed/added = 0 nghĩa là không có (tạo/xóa review).
+    // averageRating đứng đầu mệnh đề SET: MySQL gán từ trái sang phải nên biểu thức vẫn đọc giá trị cũ của sum/count
+    @Modifying
+    @Query("UPDATE ProductEntity p SET " +
+            "p.averageRating = CASE WHEN p.ratingCount + :countDelta > 0 " +
+            "THEN CAST(p.ratingSum + :added - :removed AS Double) / (p.ratingCount + :countDelta) ELSE 0.0 END, " +
+            "p.ratingSum = p.ratingSum + :added - :removed, " +
+            "p.ratingCount = p.ratingCount + :countDelta, " +
+            "p.rating1 = p.rating1 + CASE WHEN :added = 1 THEN 1 ELSE 0 END - CASE WHEN :removed = 1 THEN 1 ELSE 0 END, " +
+            "p.rating2 = p.rating2 + CASE WHEN :added = 2 THEN 1 ELSE 0 END - CASE WHEN :removed = 2 THEN 1 ELSE 0 END, " +
+            "p.rating3 = p.rating3 + CASE WHEN :added = 3 THEN 1 ELSE 0 END - CASE WHEN :removed = 3 THEN 1 ELSE 0 END, " +
+            "p.rating4 = p.rating4 + CASE WHEN :added = 4 THEN 1 ELSE 0 END - CASE WHEN :removed = 4 THEN 1 ELSE 0 END, " +
+            "p.rating5 = p.rating5 + CASE WHEN :added = 5 THEN 1 ELSE 0 END - CASE WHEN :removed = 5 THEN 1 ELSE 0 END, " +
+            "p.updatedAt = CURRENT_TIMESTAMP WHERE p.id = :productId")
+    int applyRatingChange(@Param("productId") Long productId, @Param("removed") int removed,
+                          @Param("added") int added, @Param("countDelta") int countDelta);
+
+    // (productId, ratingSum, ratingCount, rating1..rating5) của các sản phẩm đã có đánh giá (đối chiếu khi backfill)
+    @Query("SELECT p.id, p.ratingSum, p.ratingCount, p.rating1, p.rating2, p.rating3, p.rating4, p.rating5 " +
+            "FROM ProductEntity p WHERE p.ratingCount > 0")
+    List<Object[]> findRatingAggregates();
+
+    @Modifying
+    @Query("UPDATE ProductEntity p SET p.ratingSum = :sum, p.ratingCount = :count, " +
+            "p.rating1 = :r1, p.rating2 = :r2, p.rating3 = :r3, p.rating4 = :r4, p.rating5 = :r5, " +
+            "p.averageRating = CASE WHEN :count > 0 THEN CAST(:sum AS Double) / :count ELSE 0.0 END WHERE p.id = :productId")
+    int setRatingAggregates(@Param("productId") Long productId, @Param("sum") long sum, @Param("count") long count,
+                            @Param("r1") long r1, @Param("r2") long r2, @Param("r3") long r3,
+                            @Param("r4") long r4, @Param("r5") long r5);
+
+    // Validator cho conditional GET chi tiết sản phẩm: chỉ đọc vài cột, không load entity/ảnh
+    // (thay đổi ảnh cũng cập nhật p.updatedAt, xem ProductServiceImpl.updateProduct)
+    @Query("SELECT p.updatedAt, c.updatedAt FROM ProductEntity p JOIN p.category c WHERE p.id = :productId")
+    List<Object[]> findVersionById(@Param("productId") Long productId);
 
     // Spring Data JPA tự tạo các phương thức CRUD cơ bản và phân trang (findAll(Pageable))
     // Bạn có thể thêm các @Query phức tạp hơn nếu cần
@@ -0,0 +1,9 @@
+package com.backend.repository;
+
+import com.backend.model.ProductViewStatsEntity;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface ProductViewStatsRepository extends JpaRepository<ProductViewStatsEntity, Long> {
+}
@@ -0,0 +1,57 @@
+package com.backend.repository;
+
+import com.backend.model.PurchaseEntity;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+
+@Repository
+public interface PurchaseRepository extends JpaRepository<PurchaseEntity, PurchaseEntity.Key> {
+
+    boolean existsByUserIdAndProductId(Long userId, Long productId);
+
+    // Những user (trong một trang review) đã mua sản phẩm: một query cho cả trang
+    @Query("SELECT p.userId FROM PurchaseEntity p WHERE p.productId = :productId AND p.userId IN :userIds")
+    List<Long> findBuyerIds(@Param("productId") Long productId, @Param("userIds") Collection<Long> userIds);
+
+    // Phần của validator danh sách review phụ thuộc nhãn "đã mua hàng": các cặp (người viết review, sản phẩm) trong chỉ mục.
+    // COUNT bắt được cặp bị xóa, MAX(purchasedAt) bắt được cặp mới
+    @Query("SELECT COUNT(p), MAX(p.purchasedAt) FROM PurchaseEntity p WHERE p.productId = :productId " +
+            "AND p.userId IN (SELECT r.user.id FROM ReviewEntity r WHERE r.product.id = :productId)")
+    List<Object[]> findReviewerPurchaseVersion(@Param("productId") Long productId);
+
+    // Đơn chuyển sang DELIVERED: thêm các cặp (user, product) của đơn chưa có trong chỉ mục
+    @Modifying(flushAutomatically = true)
+    @Query(value = "INSERT INTO tbl_purchases (user_id, product_id, purchased_at) " +
+            "SELECT DISTINCT o.user_id, oi.product_id, :purchasedAt FROM tbl_order_items oi " +
+            "JOIN tbl_orders o ON o.id = oi.order_id WHERE o.id = :orderId " +
+            "AND NOT EXISTS (SELECT 1 FROM tbl_purchases p WHERE p.user_id = o.user_id AND p.product_id = oi.product_id)",
+            nativeQuery = true)
+    int recordDeliveredOrder(@Param("orderId") Long orderId, @Param("purchasedAt") Date purchasedAt);
+
+    // Đơn rời khỏi DELIVERED (trả hàng...): bỏ các cặp không còn đơn DELIVERED nào khác
+    @Modifying(flushAutomatically = true)
+    @Query(value = "DELETE FROM tbl_purchases " +
+            "WHERE user_id = (SELECT o.user_id FROM tbl_orders o WHERE o.id = :orderId) " +
+            "AND product_id IN (SELECT oi.product_id FROM tbl_order_items oi WHERE oi.order_id = :orderId) " +
+            "AND NOT EXISTS (SELECT 1 FROM tbl_order_items oi2 JOIN tbl_orders o2 ON o2.id = oi2.order_id " +
+            "WHERE o2.user_id = tbl_purchases.user_id AND oi2.product_id = tbl_purchases.product_id " +
+            "AND o2.status = 'DELIVERED' AND o2.id <> :orderId)",
+            nativeQuery = true)
+    int removeUndeliveredOrder(@Param("orderId") Long orderId);
+
+    // Dựng chỉ mục từ toàn bộ đơn DELIVERED (dữ liệu có từ trước khi có bảng)
+    @Modifying
+    @Query(value = "INSERT INTO tbl_purchases (user_id, product_id, purchased_at) " +
+            "SELECT o.user_id, oi.product_id, MIN(o.order_date) FROM tbl_order_items oi " +
+            "JOIN tbl_orders o ON o.id = oi.order_id WHERE o.status = 'DELIVERED' " +
+            "GROUP BY o.user_id, oi.product_id",
+            nativeQuery = true)
+    int backfillFromDeliveredOrders();
+}
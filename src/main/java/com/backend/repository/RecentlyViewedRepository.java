@@ -0,0 +1,9 @@
+package com.backend.repository;
+
+import com.backend.model.RecentlyViewedEntity;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface RecentlyViewedRepository extends JpaRepository<RecentlyViewedEntity, Long> {
+}
@@ -3,15 +3,21 @@ package com.backend.repository;
 import com.backend.model.ReviewEntity;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.List;
 import java.util.Optional;
 
 @Repository
-public interface ReviewRepository extends JpaRepository<ReviewEntity, Long> {
+public interface ReviewRepository extends JpaRepository<ReviewEntity, Long>, JpaSpecificationExecutor<ReviewEntity> {
 
-    // Tìm tất cả review của một sản phẩm (có phân trang)
+    // Tìm tất cả review của một sản phẩm (có phân trang), kèm người viết trong cùng query (tránh N+1)
+    @EntityGraph(attributePaths = "user")
     Page<ReviewEntity> findByProductId(Long productId, Pageable pageable);
 
     // Tìm review của một user cụ thể cho một sản phẩm cụ thể (để kiểm tra trùng lặp)
@@ -19,4 +25,18 @@ public interface ReviewRepository extends JpaRepository<ReviewEntity, Long> {
 
     // Tùy chọn: Tìm review bằng ID và User ID (để kiểm tra quyền sở hữu khi xóa/sửa)
     Optional<ReviewEntity> findByIdAndUserId(Long reviewId, Long userId);
-}
\ No newline at end of file
+
+    // Validator cho conditional GET: review và người viết (thông tin user nằm trong response), kèm userId/productId để tra "đã mua"
+    @Query("SELECT r.updatedAt, u.updatedAt, u.id, r.product.id FROM ReviewEntity r JOIN r.user u WHERE r.id = :reviewId")
+    List<Object[]> findVersionById(@Param("reviewId") Long reviewId);
+
+    @Query("SELECT MAX(r.updatedAt), MAX(u.updatedAt), COUNT(r) FROM ReviewEntity r JOIN r.user u WHERE r.product.id = :productId")
+    List<Object[]> findVersionByProductId(@Param("productId") Long productId);
+
+    // (productId, sum, count, số review 1..5 sao) tính từ tbl_reviews, đối chiếu với cột tổng hợp trên tbl_products
+    @Query("SELECT r.product.id, SUM(r.rating), COUNT(r), " +
+            "SUM(CASE WHEN r.rating = 1 THEN 1 ELSE 0 END), SUM(CASE WHEN r.rating = 2 THEN 1 ELSE 0 END), " +
+            "SUM(CASE WHEN r.rating = 3 THEN 1 ELSE 0 END), SUM(CASE WHEN r.rating = 4 THEN 1 ELSE 0 END), " +
+            "SUM(CASE WHEN r.rating = 5 THEN 1 ELSE 0 END) FROM ReviewEntity r GROUP BY r.product.id")
+    List<Object[]> aggregateRatingsByProduct();
+}
@@ -0,0 +1,22 @@
+package com.backend.repository;
+
+import com.backend.model.UserSearchTokenEntity;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.Collection;
+
+@Repository
+public interface UserSearchTokenRepository extends JpaRepository<UserSearchTokenEntity, UserSearchTokenEntity.Key> {
+
+    @Modifying
+    @Query("DELETE FROM UserSearchTokenEntity t WHERE t.userId = :userId")
+    int deleteByUserId(@Param("userId") Long userId);
+
+    @Modifying
+    @Query("DELETE FROM UserSearchTokenEntity t WHERE t.userId IN :userIds")
+    int deleteByUserIds(@Param("userIds") Collection<Long> userIds);
+}
@@ -0,0 +1,131 @@
+package com.backend.security;
+
+import com.backend.exception.InvalidDataException;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.StringJoiner;
+
+/**
+ * Mã hóa giỏ hàng của khách (chưa đăng nhập) thành token ký HMAC-SHA256, client tự giữ token (cookie/header).
+ * Server không lưu gì: mỗi request đọc lại token, kiểm tra chữ ký rồi tính giá từ dữ liệu sản phẩm hiện tại.
+ * <p>
+ * Định dạng: {@code base64url("v1|<hết hạn, epoch giây>|<productId>:<quantity>,...") + "." + base64url(chữ ký)}.
+ */
+@Component
+public class GuestCartTokenCodec {
+
+    private static final String VERSION = "v1";
+    private static final String ALGORITHM = "HmacSHA256";
+
+    private final SecretKeySpec key;
+    private final Duration ttl;
+    private final int maxItems;
+    private final Clock clock;
+
+    @Autowired
+    public GuestCartTokenCodec(@Value("${app.guest-cart.secret}") String secret,
+                               @Value("${app.guest-cart.ttl-days:30}") long ttlDays,
+                               @Value("${app.guest-cart.max-items:50}") int maxItems) {
+        this(secret, Duration.ofDays(ttlDays), maxItems, Clock.systemUTC());
+    }
+
+    GuestCartTokenCodec(String secret, Duration ttl, int maxItems, Clock clock) {
+        this.key = new SecretKeySpec(secret.getBytes(StandardCharsets.UTF_8), ALGORITHM);
+        this.ttl = ttl;
+        this.maxItems = maxItems;
+        this.clock = clock;
+    }
+
+    public Duration getTtl() {
+        return ttl;
+    }
+
+    // Token mới cho giỏ (productId -> quantity); hạn dùng được gia hạn mỗi lần giỏ thay đổi
+    public String encode(Map<Long, Integer> items) {
+        if (items.size() > maxItems) {
+            throw new InvalidDataException("Guest cart cannot contain more than " + maxItems + " products.");
+        }
+        StringJoiner lines = new StringJoiner(",");
+        items.forEach((productId, quantity) -> lines.add(productId + ":" + quantity));
+        long expiresAt = clock.instant().plus(ttl).getEpochSecond();
+        byte[] payload = (VERSION + "|" + expiresAt + "|" + lines).getBytes(StandardCharsets.UTF_8);
+
+        Base64.Encoder encoder = Base64.getUrlEncoder().withoutPadding();
+        return encoder.encodeToString(payload) + "." + encoder.encodeToString(sign(payload));
+    }
+
+    /**
+     * Đọc giỏ từ token (giữ thứ tự thêm vào). Token rỗng hoặc đã hết hạn được coi là giỏ trống.
+     *
+     * @throws InvalidDataException nếu token sai định dạng hoặc sai chữ ký
+     */
+    public Map<Long, Integer> decode(String token) {
+        if (!StringUtils.hasText(token)) {
+            return Collections.emptyMap();
+        }
+        int separator = token.indexOf('.');
+        if (separator <= 0) {
+            throw invalidToken();
+        }
+        byte[] payload;
+        byte[] signature;
+        try {
+            Base64.Decoder decoder = Base64.getUrlDecoder();
+            payload = decoder.decode(token.substring(0, separator));
+            signature = decoder.decode(token.substring(separator + 1));
+        } catch (IllegalArgumentException e) {
+            throw invalidToken();
+        }
+        if (!MessageDigest.isEqual(sign(payload), signature)) {
+            throw invalidToken();
+        }
+
+        String[] parts = new String(payload, StandardCharsets.UTF_8).split("\\|", -1);
+        if (parts.length != 3 || !VERSION.equals(parts[0])) {
+            throw invalidToken();
+        }
+        try {
+            if (Long.parseLong(parts[1]) < clock.instant().getEpochSecond()) {
+                return Collections.emptyMap(); // Giỏ khách đã hết hạn
+            }
+            Map<Long, Integer> items = new LinkedHashMap<>();
+            if (!parts[2].isEmpty()) {
+                for (String line : parts[2].split(",")) {
+                    int colon = line.indexOf(':');
+                    items.put(Long.valueOf(line.substring(0, colon)), Integer.valueOf(line.substring(colon + 1)));
+                }
+            }
+            return items;
+        } catch (RuntimeException e) {
+            throw invalidToken(); // Chỉ xảy ra nếu khóa bị lộ / payload do phiên bản khác tạo ra
+        }
+    }
+
+    private byte[] sign(byte[] payload) {
+        try {
+            Mac mac = Mac.getInstance(ALGORITHM);
+            mac.init(key);
+            return mac.doFinal(payload);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Cannot sign guest cart token", e);
+        }
+    }
+
+    private InvalidDataException invalidToken() {
+        return new InvalidDataException("Invalid guest cart token.");
+    }
+}
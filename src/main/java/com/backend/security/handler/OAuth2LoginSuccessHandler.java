@@ -1,6 +1,8 @@
 package com.backend.security.handler;
 
+import com.backend.controller.support.GuestCartTokens;
 import com.backend.model.UserEntity;
+import com.backend.service.GuestCartService;
 import com.backend.service.JwtService;
 import com.backend.service.UserService;
 import jakarta.servlet.ServletException;
@@ -24,6 +26,7 @@ public class OAuth2LoginSuccessHandler implements AuthenticationSuccessHandler {
 
     private final UserService userService;
     private final JwtService jwtService;
+    private final GuestCartService guestCartService;
 
     @Value("${app.frontend-url}") // Inject frontend URL from properties
     private String frontendUrl;
@@ -57,6 +60,17 @@ public class OAuth2LoginSuccessHandler implements AuthenticationSuccessHandler {
         // Find or create the user in the local database
         UserEntity localUser = userService.processOAuthPostLogin(email, firstName, lastName, pictureUrl);
 
+        // Merge the guest cart kept in the cookie (headers are not available in the redirect flow)
+        String guestCartToken = GuestCartTokens.resolve(request);
+        if (guestCartToken != null) {
+            try {
+                guestCartService.mergeIntoUserCart(localUser.getId(), guestCartToken);
+                GuestCartTokens.clearCookie(response); // Chỉ bỏ cookie khi giỏ đã được ghi vào giỏ của user
+            } catch (Exception e) {
+                log.warn("Could not merge guest cart into cart of user {}: {}", localUser.getId(), e.getMessage());
+            }
+        }
+
         // Generate JWT access token for the authenticated user
         String accessToken = jwtService.generateAccessToken(localUser.getId(), localUser.getUsername(), localUser.getAuthorities());
         // Optionally generate a refresh token if needed
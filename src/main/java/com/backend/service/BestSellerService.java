@@ -0,0 +1,19 @@
+package com.backend.service;
+
+import com.backend.common.SalesWindow;
+import com.backend.controller.response.ProductSummaryResponse;
+
+import java.util.List;
+
+public interface BestSellerService {
+
+    // Sản phẩm bán chạy nhất trong danh mục (gồm cả danh mục con) trong cửa sổ thời gian, nhiều nhất trước
+    List<ProductSummaryResponse> getBestSellers(Long categoryId, SalesWindow window, int limit);
+
+    // Ghi chênh lệch bán hàng của instance này xuống tbl_product_daily_sales, cập nhật cột bán chạy trên card các sản phẩm đó
+    // và nạp lại ranking trong bộ nhớ từ bảng (gồm đơn của các instance khác)
+    void snapshot();
+
+    // true khi thống kê đã được nạp lại sau khởi động
+    boolean isReady();
+}
@@ -1,9 +1,12 @@
 package com.backend.service;
 
 import com.backend.controller.request.AddItemToCartRequest;
+import com.backend.controller.request.CartBatchRequest;
 import com.backend.controller.request.UpdateCartItemRequest;
 import com.backend.controller.response.CartResponse;
 
+import java.util.Map;
+
 public interface CartService {
 
     // Lấy giỏ hàng của người dùng (tạo nếu chưa có)
@@ -18,6 +21,24 @@ public interface CartService {
     // Xóa sản phẩm khỏi giỏ hàng
     CartResponse removeItemFromCart(Long userId, Long cartItemId);
 
+    // Áp dụng nhiều thao tác thêm/cập nhật/xóa cùng lúc (tất cả hoặc không), trả về giỏ sau khi áp dụng
+    CartResponse applyBatch(Long userId, CartBatchRequest request);
+
+    // Gộp giỏ của khách (productId -> quantity) vào giỏ của user, số lượng giới hạn theo tồn kho
+    void mergeGuestItems(Long userId, Map<Long, Integer> guestItems);
+
+    // Dòng giỏ để đặt hàng (productId -> quantity) đọc từ DB, giỏ bị khóa tới hết transaction đang chạy
+    Map<Long, Integer> getCheckoutItems(Long userId);
+
     // Xóa toàn bộ giỏ hàng
     void clearCart(Long userId);
+
+    // Ghi các thay đổi số lượng / dòng đã xóa (đang giữ trong bộ nhớ) xuống tbl_cart_items
+    void flush();
+
+    // Bỏ khỏi bộ nhớ các giỏ vừa được ghi ở instance khác (job định kỳ, chạy trên mọi instance)
+    void syncChangedCarts();
+
+    // Xóa giỏ hàng không được dùng trong nhiều ngày (job định kỳ, chạy trên một instance)
+    void sweepAbandonedCarts();
 }
\ No newline at end of file
@@ -0,0 +1,12 @@
+package com.backend.service;
+
+import java.util.Map;
+
+public interface CatalogWarmupService {
+
+    // true khi warm-up đã xong (hoặc đã quá thời gian chờ): instance sẵn sàng nhận traffic
+    boolean isWarm();
+
+    // Trạng thái từng bước warm-up, hiển thị trong health detail
+    Map<String, Object> getDetails();
+}
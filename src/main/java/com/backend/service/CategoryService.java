@@ -1,10 +1,14 @@
 package com.backend.service;
 
+import com.backend.common.ResourceVersion;
 import com.backend.controller.request.CategoryRequest;
+import com.backend.controller.response.CategoryBreadcrumbResponse;
 import com.backend.controller.response.CategoryResponse;
+import com.backend.controller.response.CategoryTreeResponse;
 import org.springframework.data.domain.Pageable;
 
 import java.util.List;
+import java.util.Map;
 
 public interface CategoryService {
 
@@ -18,4 +22,25 @@ public interface CategoryService {
     CategoryResponse updateCategory(Long categoryId, CategoryRequest request);
 
     void deleteCategory(Long categoryId);
-}
\ No newline at end of file
+
+    // Validator (ETag/Last-Modified) cho GET chi tiết; null nếu danh mục không tồn tại
+    ResourceVersion getCategoryVersion(Long categoryId);
+
+    // Validator cho GET danh sách danh mục; null nếu chưa có danh mục nào
+    ResourceVersion getCategoriesVersion();
+
+    // Toàn bộ cây danh mục kèm số sản phẩm, đọc từ snapshot trong bộ nhớ
+    List<CategoryTreeResponse> getCategoryTree();
+
+    // Validator cho GET cây danh mục (không truy vấn DB)
+    ResourceVersion getCategoryTreeVersion();
+
+    // Đường dẫn từ gốc tới danh mục (breadcrumb), đọc từ snapshot trong bộ nhớ
+    List<CategoryBreadcrumbResponse> getBreadcrumb(Long categoryId);
+
+    // Cộng/trừ số sản phẩm (categoryId -> delta) cho danh mục và toàn bộ tổ tiên, trong transaction của caller
+    void adjustProductCounts(Map<Long, Long> deltaByCategoryId);
+
+    // Tính lại toàn bộ cột đếm sản phẩm từ tbl_products (sửa sai lệch nếu có)
+    void recountProductCounts();
+}
@@ -0,0 +1,20 @@
+package com.backend.service;
+
+import com.backend.controller.request.AddItemToCartRequest;
+import com.backend.controller.request.UpdateCartItemRequest;
+import com.backend.controller.response.GuestCartResponse;
+
+// Giỏ hàng của khách chưa đăng nhập: toàn bộ nằm trong token ký, không ghi DB
+public interface GuestCartService {
+
+    GuestCartResponse getCart(String token);
+
+    GuestCartResponse addItem(String token, AddItemToCartRequest request);
+
+    GuestCartResponse updateItemQuantity(String token, Long productId, UpdateCartItemRequest request);
+
+    GuestCartResponse removeItem(String token, Long productId);
+
+    // Gộp giỏ khách vào giỏ của user vừa đăng nhập; token rỗng/hết hạn thì bỏ qua
+    void mergeIntoUserCart(Long userId, String token);
+}
@@ -0,0 +1,12 @@
+package com.backend.service;
+
+import java.time.Duration;
+
+public interface JobLeaseService {
+
+    // Giữ lease của job trong khoảng ttl (gọi lại để gia hạn); false nếu instance khác đang giữ
+    boolean tryAcquire(String jobName, Duration ttl);
+
+    // Trả lease ngay khi job xong để lần chạy kế tiếp (ở bất kỳ instance nào) không phải chờ hết hạn
+    void release(String jobName);
+}
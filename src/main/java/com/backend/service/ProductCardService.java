@@ -0,0 +1,29 @@
+package com.backend.service;
+
+import com.backend.common.ProductSort;
+import com.backend.controller.response.CursorPageResponse;
+import com.backend.controller.response.ProductCardResponse;
+import com.backend.controller.response.ProductSummaryResponse;
+
+import java.math.BigDecimal;
+import java.util.Collection;
+import java.util.List;
+
+public interface ProductCardService {
+
+    // Danh sách card (phân trang keyset), đọc từ tbl_product_cards không join
+    CursorPageResponse<ProductCardResponse> scrollCards(String keyword, Long categoryId, BigDecimal minPrice, BigDecimal maxPrice,
+                                                        boolean inStockOnly, ProductSort sort, String cursor, int size);
+
+    // Giá/tồn kho/ảnh chính cho nhiều sản phẩm trong một lần gọi, theo thứ tự ID yêu cầu (ID không tồn tại bị bỏ qua)
+    List<ProductSummaryResponse> getProductSummaries(List<Long> productIds);
+
+    // Dựng lại toàn bộ bảng card từ bảng gốc
+    void rebuildAllCards();
+
+    // Cập nhật cột bán chạy 7/30 ngày của mọi card từ snapshot tbl_product_daily_sales
+    void refreshSalesWindows();
+
+    // Như trên nhưng chỉ cho các sản phẩm có số liệu bán vừa thay đổi
+    void refreshSalesWindows(Collection<Long> productIds);
+}
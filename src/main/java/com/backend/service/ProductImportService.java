@@ -0,0 +1,12 @@
+package com.backend.service;
+
+import com.backend.common.ProductImportFormat;
+import com.backend.controller.response.ProductImportResponse;
+
+import java.io.InputStream;
+
+public interface ProductImportService {
+
+    // Đọc luồng CSV/NDJSON từng dòng, ghi theo từng chunk (mỗi chunk một transaction)
+    ProductImportResponse importProducts(InputStream content, ProductImportFormat format);
+}
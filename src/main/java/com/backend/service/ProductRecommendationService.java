@@ -0,0 +1,14 @@
+package com.backend.service;
+
+import com.backend.controller.response.ProductSummaryResponse;
+
+import java.util.List;
+
+public interface ProductRecommendationService {
+
+    // Các sản phẩm hay được mua cùng đơn với productId, nhiều nhất trước
+    List<ProductSummaryResponse> getFrequentlyBoughtTogether(Long productId, int limit);
+
+    // true khi ma trận đồng xuất hiện đã nạp xong dữ liệu lịch sử
+    boolean isReady();
+}
@@ -1,7 +1,11 @@
 package com.backend.service;
 
+import com.backend.common.ProductSort;
+import com.backend.common.ResourceVersion;
 import com.backend.controller.request.ProductCreationRequest;
+import com.backend.controller.request.ProductPatchRequest;
 import com.backend.controller.request.ProductUpdateRequest;
+import com.backend.controller.response.CursorPageResponse;
 import com.backend.controller.response.ProductResponse;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable; // Import Pageable
@@ -17,7 +21,20 @@ public interface ProductService {
 
     Page<ProductResponse> getAllProducts(String keyword, Long categoryId, BigDecimal minPrice, BigDecimal maxPrice, Pageable pageable);
 
+    // Phân trang keyset: cursor = null cho trang đầu, sau đó dùng nextCursor của trang trước
+    CursorPageResponse<ProductResponse> scrollProducts(String keyword, Long categoryId, BigDecimal minPrice, BigDecimal maxPrice,
+                                                       ProductSort sort, String cursor, int size);
+
     ProductResponse updateProduct(Long productId, ProductUpdateRequest request);
 
+    // Chỉ sửa giá/tồn kho (trường null giữ nguyên), không đụng tới ảnh
+    ProductResponse patchProduct(Long productId, ProductPatchRequest request);
+
     void deleteProduct(Long productId);
+
+    // Validator (ETag/Last-Modified) cho GET chi tiết; null nếu sản phẩm không tồn tại
+    ResourceVersion getProductVersion(Long productId);
+
+    // Validator (weak) cho GET danh sách (mọi bộ lọc/sắp xếp), đọc từ bộ nhớ (CatalogVersionCache); bộ đếm có thể trễ một cửa sổ thống kê
+    ResourceVersion getCatalogVersion();
 }
@@ -0,0 +1,16 @@
+package com.backend.service;
+
+import java.util.Collection;
+import java.util.Map;
+
+public interface ProductViewService {
+
+    // Ghi nhận một lượt xem (chỉ tăng bộ đếm trong bộ nhớ)
+    void recordView(Long productId);
+
+    // Tổng lượt xem (đã ghi DB + đang chờ flush) của các sản phẩm, một query cho cả danh sách
+    Map<Long, Long> getViewCounts(Collection<Long> productIds);
+
+    // Ghi gộp các lượt xem đang chờ xuống tbl_product_view_stats và cột view_count trên card
+    void flush();
+}
@@ -0,0 +1,21 @@
+package com.backend.service;
+
+import com.backend.common.OrderStatus;
+
+import java.util.Collection;
+import java.util.Set;
+
+public interface PurchaseService {
+
+    // User đã nhận ít nhất một đơn (DELIVERED) có sản phẩm này chưa
+    boolean hasPurchased(Long userId, Long productId);
+
+    // Các user trong danh sách đã mua sản phẩm (tra một lần cho cả trang review)
+    Set<Long> findBuyers(Long productId, Collection<Long> userIds);
+
+    // Số cặp (người viết review, sản phẩm) trong chỉ mục và thời điểm mua mới nhất: phần "đã mua hàng" của ETag danh sách review
+    Object[] getReviewerPurchaseVersion(Long productId);
+
+    // Cập nhật chỉ mục khi đơn chuyển sang hoặc rời khỏi DELIVERED, trong transaction của caller
+    void onOrderStatusChanged(Long orderId, OrderStatus oldStatus, OrderStatus newStatus);
+}
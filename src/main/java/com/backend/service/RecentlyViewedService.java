@@ -0,0 +1,17 @@
+package com.backend.service;
+
+import com.backend.controller.response.ProductSummaryResponse;
+
+import java.util.List;
+
+public interface RecentlyViewedService {
+
+    // Ghi nhận user vừa xem sản phẩm (chỉ cập nhật bộ nhớ)
+    void recordView(Long userId, Long productId);
+
+    // Sản phẩm xem gần đây, mới nhất trước (sản phẩm đã bị xóa được bỏ qua)
+    List<ProductSummaryResponse> getRecentlyViewed(Long userId, int limit);
+
+    // Ghi các danh sách đã thay đổi xuống tbl_recently_viewed
+    void flush();
+}
@@ -1,6 +1,9 @@
 package com.backend.service;
 
+import com.backend.common.ResourceVersion;
+import com.backend.common.ReviewSort;
 import com.backend.controller.request.ReviewRequest;
+import com.backend.controller.response.CursorPageResponse;
 import com.backend.controller.response.ReviewResponse;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
@@ -10,6 +13,9 @@ public interface ReviewService {
     // Lấy danh sách review cho một sản phẩm (phân trang)
     Page<ReviewResponse> getReviewsByProductId(Long productId, Pageable pageable);
 
+    // Danh sách review theo keyset cursor (không OFFSET), kèm người viết trong cùng query
+    CursorPageResponse<ReviewResponse> scrollReviewsByProductId(Long productId, ReviewSort sort, String cursor, int size);
+
     // Tạo review mới cho sản phẩm (cần userId và productId)
     ReviewResponse createReview(Long userId, Long productId, ReviewRequest request);
 
@@ -21,4 +27,10 @@ public interface ReviewService {
 
     // Xóa review (cần userId để kiểm tra quyền sở hữu hoặc role Admin)
     void deleteReview(Long reviewId, Long userId);
-}
\ No newline at end of file
+
+    // Validator (ETag/Last-Modified) cho GET chi tiết review; null nếu review không tồn tại
+    ResourceVersion getReviewVersion(Long reviewId);
+
+    // Validator cho GET danh sách review của sản phẩm; null nếu sản phẩm chưa có review
+    ResourceVersion getProductReviewsVersion(Long productId);
+}
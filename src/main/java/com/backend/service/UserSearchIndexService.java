@@ -0,0 +1,10 @@
+package com.backend.service;
+
+public interface UserSearchIndexService {
+
+    // Dựng lại token tìm kiếm của một user (gọi trong transaction ghi user)
+    void reindexUser(Long userId);
+
+    // Dựng lại toàn bộ tbl_user_search_tokens từ tbl_users (chỉ một instance chạy, instance khác bỏ qua)
+    void rebuildAll();
+}
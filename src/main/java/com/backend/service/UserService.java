@@ -4,16 +4,17 @@ import com.backend.controller.request.SetInitialPasswordRequest;
 import com.backend.controller.request.UserCreationRequest;
 import com.backend.controller.request.UserPasswordRequest;
 import com.backend.controller.request.UserUpdateRequest;
+import com.backend.controller.response.UserPageReponse;
 import com.backend.controller.response.UserResponse;
 import com.backend.exception.ResourceNotFoundException;
 import com.backend.model.UserEntity;
 import org.springframework.data.domain.Pageable; // Import Pageable
 
-import java.util.List;
 
 public interface UserService {
 
-    List<UserResponse> findAll(String keyword, Pageable pageable);
+    // Danh sách user ACTIVE, lọc theo từ khóa (tiền tố của họ tên/username/email, một phần số điện thoại) nếu có
+    UserPageReponse findAll(String keyword, Pageable pageable);
 
     UserResponse findById(Long id);
     UserResponse findByUserName(String userName);
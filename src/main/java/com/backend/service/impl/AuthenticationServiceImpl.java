@@ -7,6 +7,7 @@ import com.backend.exception.InvalidDataException;
 import com.backend.model.UserEntity;
 import com.backend.repository.UserRepository;
 import com.backend.service.AuthenticationService;
+import com.backend.service.GuestCartService;
 import com.backend.service.JwtService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -31,6 +32,7 @@ public class AuthenticationServiceImpl implements AuthenticationService {
     private final JwtService jwtService;
     private final UserRepository userRepository;
     private final AuthenticationManager authenticationManager;
+    private final GuestCartService guestCartService;
 
     @Override
     public TokenResponse getAccessToken(SignInRequest request) {
@@ -59,6 +61,8 @@ public class AuthenticationServiceImpl implements AuthenticationService {
         var user = userRepository.findByUsername(request.getUsername())
                 .orElseThrow(() -> new UsernameNotFoundException("User not found after authentication: " + request.getUsername()));
 
+        Boolean guestCartMerged = mergeGuestCart(user.getId(), request.getGuestCartToken());
+
         // Tạo access token và refresh token
         log.info("Generating tokens for user {}", user.getUsername());
         String accessToken = jwtService.generateAccessToken(user.getId(), user.getUsername(), user.getAuthorities());
@@ -67,6 +71,7 @@ public class AuthenticationServiceImpl implements AuthenticationService {
         return TokenResponse.builder()
                 .accessToken(accessToken)
                 .refreshToken(refreshToken)
+                .guestCartMerged(guestCartMerged)
                 .build();
     }
 
@@ -115,4 +120,19 @@ public class AuthenticationServiceImpl implements AuthenticationService {
             throw new AccessDeniedException("Could not refresh token due to an unexpected error.");
         }
     }
-}
\ No newline at end of file
+
+    // Giỏ hàng khi chưa đăng nhập: lỗi gộp giỏ (token hỏng, lỗi DB...) không được làm hỏng việc đăng nhập.
+    // null nếu không có giỏ khách, false nếu gộp lỗi (client giữ giỏ khách để thử lại ở lần đăng nhập sau)
+    private Boolean mergeGuestCart(Long userId, String guestCartToken) {
+        if (!StringUtils.hasText(guestCartToken)) {
+            return null;
+        }
+        try {
+            guestCartService.mergeIntoUserCart(userId, guestCartToken);
+            return true;
+        } catch (Exception e) {
+            log.warn("Could not merge guest cart into cart of user {}: {}", userId, e.getMessage());
+            return false;
+        }
+    }
+}
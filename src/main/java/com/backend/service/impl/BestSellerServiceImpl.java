@@ -0,0 +1,319 @@
+package com.backend.service.impl;
+
+import com.backend.cache.BestSellerRanking;
+import com.backend.cache.CategoryHierarchyCache;
+import com.backend.common.OrderStatus;
+import com.backend.common.SalesWindow;
+import com.backend.controller.response.ProductSummaryResponse;
+import com.backend.event.OrderCancelledEvent;
+import com.backend.event.OrderLine;
+import com.backend.event.OrderPlacedEvent;
+import com.backend.exception.ResourceNotFoundException;
+import com.backend.model.ProductDailySalesEntity;
+import com.backend.repository.CategoryRepository;
+import com.backend.repository.OrderItemRepository;
+import com.backend.repository.OrderRepository;
+import com.backend.repository.ProductDailySalesRepository;
+import com.backend.service.BestSellerService;
+import com.backend.service.JobLeaseService;
+import com.backend.service.ProductCardService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Bán chạy theo danh mục trong 7/30 ngày: giữ trong bộ nhớ (BestSellerRanking), cập nhật từ event đặt/hủy đơn,
+ * định kỳ ghi xuống tbl_product_daily_sales để khởi động lại chỉ cần đọc snapshot + đơn của ngày cuối.
+ * <p>
+ * Mỗi instance chỉ ghi phần chênh lệch từ đơn của chính nó ({@code quantity = quantity + ?}), nên bảng là tổng của mọi instance.
+ * Sau mỗi chu kỳ ghi, ranking được dựng lại từ bảng + chênh lệch chưa ghi của instance này, để đơn đặt/hủy trên instance khác
+ * có mặt trong kết quả sau tối đa khoảng hai chu kỳ snapshot (instance kia ghi, rồi instance này đọc lại).
+ * Việc chung (tạo dữ liệu lần đầu, xóa ngày cũ, dời cửa sổ 7/30 ngày trên card) chạy ở một instance nhờ lease tbl_job_leases.
+ */
+@Service
+@Slf4j(topic = "BEST-SELLER-SERVICE")
+@RequiredArgsConstructor
+public class BestSellerServiceImpl implements BestSellerService {
+
+    private static final String INSERT_DAILY_SALES_SQL =
+            "INSERT INTO tbl_product_daily_sales (product_id, sales_day, category_id, quantity) VALUES (?, ?, ?, ?)";
+    private static final String ADD_DAILY_SALES_SQL =
+            "UPDATE tbl_product_daily_sales SET quantity = quantity + ?, category_id = ? WHERE product_id = ? AND sales_day = ?";
+
+    private static final String SEED_JOB = "best-seller-seed";
+    private static final String ROLLOVER_JOB = "best-seller-rollover";
+
+    // Số lượng bán chưa ghi xuống DB của một sản phẩm trong một ngày
+    private record SalesKey(long productId, long day) {
+    }
+
+    private record PendingSales(long categoryId, int quantity) {
+        PendingSales plus(PendingSales other) {
+            return new PendingSales(other.categoryId(), quantity + other.quantity());
+        }
+    }
+
+    private final BestSellerRanking bestSellerRanking;
+    private final CategoryHierarchyCache categoryHierarchyCache;
+    private final CategoryRepository categoryRepository;
+    private final ProductCardService productCardService;
+    private final ProductDailySalesRepository productDailySalesRepository;
+    private final OrderRepository orderRepository;
+    private final OrderItemRepository orderItemRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final JobLeaseService jobLeaseService;
+
+    @Value("${app.best-sellers.lease-ms:600000}")
+    private long leaseMs;
+
+    // Chênh lệch từ các đơn đặt/hủy trên instance này kể từ lần ghi trước
+    private final ConcurrentHashMap<SalesKey, PendingSales> pending = new ConcurrentHashMap<>();
+
+    // add() vào ranking + pending chạy song song (read lock); thay ranking bằng bản đọc lại từ DB giữ write lock
+    private final ReentrantReadWriteLock rankingLock = new ReentrantReadWriteLock();
+
+    private volatile boolean ready;
+    // ID đơn lớn nhất được nạp từ DB lúc khởi động; event của các đơn này trong lúc nạp bị bỏ qua để không đếm hai lần
+    private volatile long loadUpperBound = Long.MAX_VALUE;
+
+    @Override
+    public List<ProductSummaryResponse> getBestSellers(Long categoryId, SalesWindow window, int limit) {
+        if (!categoryRepository.existsById(categoryId)) {
+            throw new ResourceNotFoundException("Category not found with ID: " + categoryId);
+        }
+        List<Long> productIds = bestSellerRanking.top(categoryHierarchyCache.getSubtreeIds(categoryId), window, limit,
+                LocalDate.now().toEpochDay());
+        if (productIds.isEmpty()) {
+            return List.of();
+        }
+        return productCardService.getProductSummaries(productIds);
+    }
+
+    @Override
+    public boolean isReady() {
+        return ready;
+    }
+
+    @TransactionalEventListener
+    public void onOrderPlaced(OrderPlacedEvent event) {
+        apply(event.orderId(), event.orderDate(), event.lines(), 1);
+    }
+
+    @TransactionalEventListener
+    public void onOrderCancelled(OrderCancelledEvent event) {
+        apply(event.orderId(), event.orderDate(), event.lines(), -1);
+    }
+
+    private void apply(Long orderId, Date orderDate, List<OrderLine> lines, int sign) {
+        if (!ready && orderId <= loadUpperBound) {
+            return;
+        }
+        long day = orderDate != null ? toEpochDay(orderDate) : LocalDate.now().toEpochDay();
+        if (day < SalesWindow.LAST_30_DAYS.firstDay(LocalDate.now()).toEpochDay()) {
+            return; // Hủy một đơn cũ hơn cửa sổ dài nhất: không ảnh hưởng thống kê
+        }
+        rankingLock.readLock().lock();
+        try {
+            for (OrderLine line : lines) {
+                bestSellerRanking.add(line.productId(), line.categoryId(), day, sign * line.quantity());
+                addPending(line.productId(), line.categoryId(), day, sign * line.quantity());
+            }
+        } finally {
+            rankingLock.readLock().unlock();
+        }
+    }
+
+    private void addPending(long productId, long categoryId, long day, int quantity) {
+        pending.merge(new SalesKey(productId, day), new PendingSales(categoryId, quantity), PendingSales::plus);
+    }
+
+    /**
+     * Nạp lại thống kê: các ngày đã đủ lấy từ snapshot, ngày của snapshot cuối (có thể chưa đủ)
+     * và các ngày sau đó tính lại từ đơn hàng. Lần chạy đầu (chưa có snapshot) tính lại cả 30 ngày.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional(readOnly = true)
+    public void loadRanking() {
+        long startedAt = System.currentTimeMillis();
+        LocalDate firstDay = SalesWindow.LAST_30_DAYS.firstDay(LocalDate.now());
+        Long maxOrderId = (Long) orderRepository.findIdRange().get(0)[1];
+        loadUpperBound = maxOrderId != null ? maxOrderId : 0;
+
+        LocalDate latestSnapshotDay = productDailySalesRepository.findLatestSalesDay();
+        LocalDate rebuildFrom = latestSnapshotDay == null || latestSnapshotDay.isBefore(firstDay) ? firstDay : latestSnapshotDay;
+
+        bestSellerRanking.clear();
+        List<ProductDailySalesEntity> snapshot =
+                productDailySalesRepository.findBySalesDayGreaterThanEqualAndSalesDayLessThan(firstDay, rebuildFrom);
+        for (ProductDailySalesEntity row : snapshot) {
+            bestSellerRanking.add(row.getProductId(), row.getCategoryId(), row.getSalesDay().toEpochDay(), row.getQuantity());
+        }
+
+        List<Object[]> sales = maxOrderId == null ? List.of() : orderItemRepository.findSalesSince(
+                Date.from(rebuildFrom.atStartOfDay(ZoneId.systemDefault()).toInstant()), maxOrderId, OrderStatus.NOT_COUNTED_AS_SALE);
+        // Bảng còn trống (lần chạy đầu): một instance ghi lịch sử 30 ngày tính từ đơn hàng, các instance khác chỉ ghi chênh lệch.
+        // Không trả lease: instance khởi động sau thấy bảng đã có dữ liệu hoặc lease còn hạn nên không ghi lần nữa
+        boolean seed = latestSnapshotDay == null && jobLeaseService.tryAcquire(SEED_JOB, Duration.ofMillis(leaseMs));
+        for (Object[] row : sales) {
+            bestSellerRanking.add((Long) row[0], (Long) row[1], toEpochDay((Date) row[2]), (Integer) row[3]);
+            if (seed) {
+                addPending((Long) row[0], (Long) row[1], toEpochDay((Date) row[2]), (Integer) row[3]);
+            }
+        }
+
+        ready = true;
+        log.info("Best-seller ranking loaded: {} snapshot rows before {}, {} order lines since, in {} ms",
+                snapshot.size(), rebuildFrom, sales.size(), System.currentTimeMillis() - startedAt);
+    }
+
+    /**
+     * Ghi chênh lệch đang chờ xuống tbl_product_daily_sales rồi dựng lại ranking từ bảng (gồm số liệu instance khác đã ghi).
+     * Chạy cả khi instance này không có đơn mới, để không lệch so với các instance khác.
+     */
+    @Override
+    @Scheduled(fixedDelayString = "${app.best-sellers.snapshot-interval-ms:300000}",
+            initialDelayString = "${app.best-sellers.snapshot-interval-ms:300000}")
+    public void snapshot() {
+        if (!ready) {
+            return;
+        }
+        if (!pending.isEmpty()) {
+            writePending();
+        }
+        try {
+            reloadRanking();
+        } catch (DataAccessException e) {
+            log.warn("Best-seller ranking reload failed, keeping the current ranking: {}", e.getMostSpecificCause().getMessage());
+        }
+    }
+
+    /**
+     * Ghi chênh lệch đang chờ (cộng vào dòng đã có, thêm dòng mới) và cập nhật cột bán chạy trên card của đúng các sản phẩm đó.
+     * Ghi lỗi (ví dụ instance khác vừa thêm cùng dòng) thì trả chênh lệch lại hàng đợi.
+     */
+    private void writePending() {
+        Map<SalesKey, PendingSales> batch = new HashMap<>();
+        for (SalesKey key : pending.keySet()) {
+            PendingSales sales = pending.remove(key);
+            if (sales != null && sales.quantity() != 0) {
+                batch.put(key, sales);
+            }
+        }
+        if (batch.isEmpty()) {
+            return;
+        }
+        long fromDay = SalesWindow.LAST_30_DAYS.firstDay(LocalDate.now()).toEpochDay();
+        Set<Long> productIds = new HashSet<>();
+        batch.keySet().forEach(key -> productIds.add(key.productId()));
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                Set<SalesKey> existing = new HashSet<>();
+                for (Object[] row : productDailySalesRepository.findKeys(productIds, LocalDate.ofEpochDay(fromDay))) {
+                    existing.add(new SalesKey((Long) row[0], ((LocalDate) row[1]).toEpochDay()));
+                }
+                List<Map.Entry<SalesKey, PendingSales>> updates = new ArrayList<>();
+                List<Map.Entry<SalesKey, PendingSales>> inserts = new ArrayList<>();
+                for (Map.Entry<SalesKey, PendingSales> entry : batch.entrySet()) {
+                    if (existing.contains(entry.getKey())) {
+                        updates.add(entry);
+                    } else if (entry.getValue().quantity() > 0 && entry.getKey().day() >= fromDay) {
+                        inserts.add(entry); // Chênh lệch âm cho dòng không còn (đã quá cửa sổ): bỏ qua
+                    }
+                }
+                jdbcTemplate.batchUpdate(ADD_DAILY_SALES_SQL, updates, 500, (ps, entry) -> {
+                    ps.setInt(1, entry.getValue().quantity());
+                    ps.setLong(2, entry.getValue().categoryId());
+                    ps.setLong(3, entry.getKey().productId());
+                    ps.setDate(4, java.sql.Date.valueOf(LocalDate.ofEpochDay(entry.getKey().day())));
+                });
+                jdbcTemplate.batchUpdate(INSERT_DAILY_SALES_SQL, inserts, 500, (ps, entry) -> {
+                    ps.setLong(1, entry.getKey().productId());
+                    ps.setDate(2, java.sql.Date.valueOf(LocalDate.ofEpochDay(entry.getKey().day())));
+                    ps.setLong(3, entry.getValue().categoryId());
+                    ps.setInt(4, entry.getValue().quantity());
+                });
+                productCardService.refreshSalesWindows(productIds);
+            });
+            log.info("Best-seller sales written: {} product/day deltas for {} products", batch.size(), productIds.size());
+        } catch (DataAccessException e) {
+            batch.forEach((key, sales) -> pending.merge(key, sales, PendingSales::plus));
+            log.warn("Best-seller sales write failed, {} deltas kept for the next run: {}", batch.size(), e.getMostSpecificCause().getMessage());
+        }
+    }
+
+    /**
+     * Ranking mới = các ngày trong cửa sổ 30 ngày từ tbl_product_daily_sales + chênh lệch chưa ghi của instance này.
+     * Đọc bảng ngoài lock; chỉ lúc gộp pending và đổi ranking mới chặn add() (để không mất đơn đến giữa chừng).
+     * Chạy cùng thread với writePending() nên pending không bị lấy ra giữa lúc đọc bảng và lúc gộp.
+     */
+    private void reloadRanking() {
+        long startedAt = System.currentTimeMillis();
+        LocalDate today = LocalDate.now();
+        List<ProductDailySalesEntity> rows = productDailySalesRepository.findBySalesDayGreaterThanEqualAndSalesDayLessThan(
+                SalesWindow.LAST_30_DAYS.firstDay(today), today.plusDays(1));
+        List<BestSellerRanking.Entry> entries = new ArrayList<>(rows.size() + pending.size());
+        for (ProductDailySalesEntity row : rows) {
+            entries.add(new BestSellerRanking.Entry(row.getProductId(), row.getCategoryId(),
+                    row.getSalesDay().toEpochDay(), row.getQuantity()));
+        }
+        rankingLock.writeLock().lock();
+        try {
+            pending.forEach((key, sales) -> entries.add(
+                    new BestSellerRanking.Entry(key.productId(), sales.categoryId(), key.day(), sales.quantity())));
+            bestSellerRanking.replace(entries);
+        } finally {
+            rankingLock.writeLock().unlock();
+        }
+        log.debug("Best-seller ranking reloaded from {} daily rows and {} pending deltas in {} ms",
+                rows.size(), entries.size() - rows.size(), System.currentTimeMillis() - startedAt);
+    }
+
+    /**
+     * Sang ngày mới: xóa các ngày đã ra khỏi cửa sổ 30 ngày và tính lại cột bán chạy 7/30 ngày của mọi card.
+     * Chỉ một instance chạy nhờ lease.
+     */
+    @Scheduled(cron = "${app.best-sellers.rollover-cron:0 5 0 * * *}")
+    public void rollover() {
+        if (!jobLeaseService.tryAcquire(ROLLOVER_JOB, Duration.ofMillis(leaseMs))) {
+            return;
+        }
+        try {
+            LocalDate firstDay = SalesWindow.LAST_30_DAYS.firstDay(LocalDate.now());
+            Integer deleted = transactionTemplate.execute(status -> {
+                int removed = productDailySalesRepository.deleteBefore(firstDay);
+                productCardService.refreshSalesWindows();
+                return removed;
+            });
+            log.info("Best-seller rollover: {} daily rows before {} removed, card sales windows refreshed", deleted, firstDay);
+        } finally {
+            jobLeaseService.release(ROLLOVER_JOB);
+        }
+    }
+
+    private long toEpochDay(Date date) {
+        return LocalDate.ofInstant(date.toInstant(), ZoneId.systemDefault()).toEpochDay();
+    }
+}
@@ -1,241 +1,672 @@
 package com.backend.service.impl;
 
+import com.backend.cache.CartCache;
+import com.backend.cache.ProductSummaryCache;
 import com.backend.controller.request.AddItemToCartRequest;
+import com.backend.controller.request.CartBatchRequest;
 import com.backend.controller.request.UpdateCartItemRequest;
 import com.backend.controller.response.CartItemResponse;
 import com.backend.controller.response.CartResponse;
+import com.backend.controller.response.ProductSummaryResponse;
+import com.backend.event.CartClearedEvent;
+import com.backend.exception.InvalidDataException;
 import com.backend.exception.ResourceNotFoundException;
 import com.backend.model.*;
 import com.backend.repository.*;
 import com.backend.service.CartService;
+import com.backend.service.JobLeaseService;
+import com.backend.service.ProductCardService;
+import jakarta.annotation.PreDestroy;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
-import org.springframework.util.CollectionUtils;
-// Import EntityManager nếu dùng giải pháp flush/refresh (hiện tại không cần)
-// import jakarta.persistence.EntityManager;
-// import jakarta.persistence.PersistenceContext;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.math.BigDecimal;
+import java.time.Duration;
 import java.util.ArrayList;
-import java.util.Collections;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.Optional;
-import java.util.stream.Collectors;
-
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Giỏ hàng được giữ trong bộ nhớ (CartCache) sau lần đọc đầu tiên: xem giỏ không truy vấn DB
+ * (thông tin sản phẩm lấy từ ProductSummaryCache). Thêm dòng mới được INSERT ngay để có cartItemId;
+ * đổi số lượng và xóa dòng được ghi gộp định kỳ bởi {@link #flush()}.
+ * <p>
+ * Nhiều instance: mỗi lần ghi khóa dòng tbl_carts và so change_version với bản trong bộ nhớ; lệch (instance khác đã ghi giỏ)
+ * thì không ghi đè mà bỏ giỏ trong bộ nhớ để đọc lại (thay đổi chưa ghi của giỏ đó bị bỏ, thêm dòng trả 409 để client thử lại).
+ * Đọc giỏ không query DB: {@link #syncChangedCarts()} bỏ các giỏ vừa được ghi ở instance khác sau tối đa một chu kỳ poll.
+ */
 @Service
 @Slf4j(topic = "CART-SERVICE")
 @RequiredArgsConstructor
 public class CartServiceImpl implements CartService {
 
+    private static final String UPDATE_QUANTITY_SQL = "UPDATE tbl_cart_items SET quantity = ?, version = version + 1 WHERE id = ?";
+    private static final String SWEEP_JOB = "cart-sweeper";
+    private static final String STALE_CART_MESSAGE = "Cart was changed by another request, please reload it and retry";
+
     private final CartRepository cartRepository;
     private final CartItemRepository cartItemRepository;
     private final UserRepository userRepository;
     private final ProductRepository productRepository;
-    // Inject EntityManager nếu cần dùng flush/refresh
-    // @PersistenceContext
-    // private EntityManager entityManager;
-
-    private CartEntity findOrCreateCartByUserId(Long userId) {
-        return cartRepository.findByUserId(userId).orElseGet(() -> {
-            log.info("No cart found for user ID: {}. Creating a new cart.", userId);
-            UserEntity user = userRepository.findById(userId)
-                    .orElseThrow(() -> new ResourceNotFoundException("User not found with ID: " + userId + " when creating cart."));
-            CartEntity newCart = new CartEntity();
-            newCart.setUser(user);
-            return cartRepository.save(newCart);
-        });
-    }
+    private final CartCache cartCache;
+    private final ProductSummaryCache productSummaryCache;
+    private final ProductCardService productCardService;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final ApplicationEventPublisher eventPublisher;
+    private final JobLeaseService jobLeaseService;
+
+    @Value("${app.cart.sweep.abandoned-after-days:30}")
+    private int sweepAbandonedAfterDays;
+
+    @Value("${app.cart.sweep.batch-size:500}")
+    private int sweepBatchSize;
+
+    @Value("${app.cart.sweep.pause-ms:200}")
+    private long sweepPauseMs;
+
+    @Value("${app.cart.sweep.lease-ms:600000}")
+    private long sweepLeaseMs;
 
-    private CartResponse mapCartToResponse(CartEntity cart) {
-        if (cart == null) {
-            return null;
+    // Đọc lùi thêm một khoảng so với lần poll trước: bù lệch đồng hồ giữa các instance và transaction commit muộn
+    @Value("${app.cart.sync.overlap-ms:60000}")
+    private long syncOverlapMs;
+
+    private volatile long lastSyncAt;
+
+    // Giỏ trong bộ nhớ; lần đầu (hoặc sau khi bị đẩy khỏi LRU) đọc giỏ + dòng + thông tin sản phẩm bằng một query
+    private CartCache.Cart findOrLoadCart(Long userId) {
+        CartCache.Cart cart = cartCache.get(userId);
+        if (cart != null) {
+            return cart; // Giỏ đã đổi ở instance khác bị syncChangedCarts bỏ ra, hoặc bị phát hiện khi ghi (lockCurrentCarts)
+        }
+        long summariesLoadedAt = productSummaryCache.currentVersion();
+        List<Object[]> rows = cartRepository.findCartView(userId);
+        if (rows.isEmpty()) {
+            return cartCache.putIfAbsent(userId, new CartCache.Cart(createCart(userId), 0, List.of()));
         }
 
-        List<CartItemResponse> itemResponses = Collections.emptyList();
-        BigDecimal totalAmount = BigDecimal.ZERO;
-        int totalItemsCount = 0;
+        List<CartCache.Line> lines = new ArrayList<>(rows.size());
+        List<ProductSummaryResponse> summaries = new ArrayList<>(rows.size());
+        for (Object[] row : rows) {
+            if (row[1] == null) {
+                continue; // Giỏ trống
+            }
+            Long productId = ((Number) row[2]).longValue();
+            lines.add(new CartCache.Line(((Number) row[1]).longValue(), productId, ((Number) row[3]).intValue()));
+            if (row[4] != null) {
+                summaries.add(ProductSummaryResponse.builder()
+                        .id(productId)
+                        .name((String) row[4])
+                        .price((BigDecimal) row[5])
+                        .stockQuantity((Integer) row[6])
+                        .inStock(Boolean.TRUE.equals(row[7]))
+                        .primaryImageUrl((String) row[8])
+                        .build());
+            }
+        }
+        // Đưa luôn thông tin sản phẩm vào cache: dựng response ngay sau đó không cần query thêm
+        productSummaryCache.putAll(summaries, summariesLoadedAt);
+        Object[] first = rows.get(0);
+        return cartCache.putIfAbsent(userId, new CartCache.Cart(((Number) first[0]).longValue(), ((Number) first[9]).longValue(), lines));
+    }
 
-        // Đảm bảo collection được load (quan trọng nếu LAZY)
-        // Cần fetch cart items nếu là LAZY loading và session đã đóng
-        // Hoặc dùng @Transactional trên phương thức gọi để giữ session
-        List<CartItemEntity> items = cartItemRepository.findByCart(cart); // Query riêng để chắc chắn lấy dữ liệu mới nhất
+    private Long createCart(Long userId) {
+        log.info("No cart found for user ID: {}. Creating a new cart.", userId);
+        if (!userRepository.existsById(userId)) {
+            throw new ResourceNotFoundException("User not found with ID: " + userId + " when creating cart.");
+        }
+        CartEntity newCart = new CartEntity();
+        newCart.setUser(userRepository.getReferenceById(userId));
+        try {
+            return cartRepository.save(newCart).getId();
+        } catch (DataIntegrityViolationException e) {
+            // Request khác của cùng user vừa tạo giỏ (user_id unique): dùng giỏ đó
+            return cartRepository.findIdByUserId(userId).orElseThrow(() -> e);
+        }
+    }
+
+    // Thông tin sản phẩm (tên, giá, tồn kho, ảnh) từ cache; ID chưa có được đọc một lần từ tbl_product_cards
+    private Map<Long, ProductSummaryResponse> findProductSummaries(List<Long> productIds) {
+        Map<Long, ProductSummaryResponse> found = new HashMap<>(productIds.size() * 2);
+        List<Long> misses = new ArrayList<>();
+        productSummaryCache.getAll(productIds, found, misses);
+        if (!misses.isEmpty()) {
+            productCardService.getProductSummaries(misses).forEach(summary -> found.put(summary.getId(), summary));
+        }
+        return found;
+    }
 
-        if (!CollectionUtils.isEmpty(items)) {
-            itemResponses = items.stream()
-                    .map(this::mapCartItemToResponse)
-                    .collect(Collectors.toList());
+    private ProductSummaryResponse findProductSummary(Long productId) {
+        return findProductSummaries(List.of(productId)).get(productId);
+    }
 
-            totalAmount = itemResponses.stream()
-                    .map(CartItemResponse::getSubTotal)
-                    .filter(java.util.Objects::nonNull) // Thêm filter để tránh NullPointerException
-                    .reduce(BigDecimal.ZERO, BigDecimal::add);
+    private CartResponse mapCartToResponse(Long userId, CartCache.Cart cart) {
+        List<CartCache.Line> lines = cart.lines();
+        List<CartItemResponse> itemResponses = new ArrayList<>(lines.size());
+        BigDecimal totalAmount = BigDecimal.ZERO;
+        int totalItemsCount = 0;
 
-            totalItemsCount = itemResponses.stream()
-                    .mapToInt(CartItemResponse::getQuantity)
-                    .sum();
+        if (!lines.isEmpty()) {
+            Map<Long, ProductSummaryResponse> products = findProductSummaries(lines.stream().map(CartCache.Line::productId).distinct().toList());
+            for (CartCache.Line line : lines) {
+                ProductSummaryResponse product = products.get(line.productId());
+                if (product == null) {
+                    continue; // Sản phẩm đã bị xóa
+                }
+                CartItemResponse item = mapCartItemToResponse(line, product);
+                itemResponses.add(item);
+                totalAmount = totalAmount.add(item.getSubTotal());
+                totalItemsCount += item.getQuantity();
+            }
         }
 
         return CartResponse.builder()
-                .cartId(cart.getId())
-                .userId(cart.getUser().getId())
+                .cartId(cart.getCartId())
+                .userId(userId)
                 .items(itemResponses)
                 .totalAmount(totalAmount)
                 .totalItems(totalItemsCount)
                 .build();
     }
 
-    private CartItemResponse mapCartItemToResponse(CartItemEntity item) {
-        if (item == null || item.getProduct() == null) return null;
-        ProductEntity product = item.getProduct();
+    private CartItemResponse mapCartItemToResponse(CartCache.Line line, ProductSummaryResponse product) {
         BigDecimal price = product.getPrice();
         BigDecimal subTotal = BigDecimal.ZERO;
-        if (price != null && item.getQuantity() > 0) { // Kiểm tra null và quantity
-            subTotal = price.multiply(BigDecimal.valueOf(item.getQuantity()));
+        if (price != null && line.quantity() > 0) { // Kiểm tra null và quantity
+            subTotal = price.multiply(BigDecimal.valueOf(line.quantity()));
         }
 
-
-        String imageUrl = null;
-         if (product.getImages() != null && !product.getImages().isEmpty()) {
-             imageUrl = product.getImages().iterator().next().getUrl();
-         }
-
         return CartItemResponse.builder()
-                .cartItemId(item.getId())
+                .cartItemId(line.cartItemId())
                 .productId(product.getId())
                 .productName(product.getName())
                 .productPrice(price)
-                .productImageUrl(imageUrl)
-                .quantity(item.getQuantity())
+                .productImageUrl(product.getPrimaryImageUrl())
+                .quantity(line.quantity())
                 .subTotal(subTotal)
                 .build();
     }
 
+    private boolean hasStock(ProductSummaryResponse product, int quantity) {
+        return product.getStockQuantity() != null && product.getStockQuantity() >= quantity;
+    }
 
     @Override
-    @Transactional
     public CartResponse getCartByUserId(Long userId) {
         log.info("Fetching cart for user ID: {}", userId);
-        CartEntity cart = findOrCreateCartByUserId(userId);
-        return mapCartToResponse(cart);
+        return mapCartToResponse(userId, findOrLoadCart(userId));
     }
 
     @Override
-    @Transactional(rollbackFor = Exception.class)
     public CartResponse addItemToCart(Long userId, AddItemToCartRequest request) {
         log.info("Adding item to cart for user ID: {}, Product ID: {}, Quantity: {}", userId, request.getProductId(), request.getQuantity());
-        CartEntity cart = findOrCreateCartByUserId(userId);
-        ProductEntity product = productRepository.findById(request.getProductId())
-                .orElseThrow(() -> new ResourceNotFoundException("Product not found with ID: " + request.getProductId()));
+        CartCache.Cart cart = findOrLoadCart(userId);
+        ProductSummaryResponse product = findProductSummary(request.getProductId());
+        if (product == null) {
+            throw new ResourceNotFoundException("Product not found with ID: " + request.getProductId());
+        }
 
-        if (product.getStockQuantity() == null || product.getStockQuantity() < request.getQuantity()) {
+        if (!hasStock(product, request.getQuantity())) {
             log.warn("Cannot add item: Not enough stock for product ID {}. Requested: {}, Available: {}", request.getProductId(), request.getQuantity(), product.getStockQuantity());
             throw new IllegalArgumentException("Not enough stock available for product: " + product.getName());
         }
 
-        // Query trực tiếp thay vì dựa vào collection có thể chưa được load/cập nhật
-        Optional<CartItemEntity> existingItemOpt = cartItemRepository.findByCartAndProduct(cart, product);
-
-        if (existingItemOpt.isPresent()) {
-            CartItemEntity existingItem = existingItemOpt.get();
-            int newQuantity = existingItem.getQuantity() + request.getQuantity();
-            if (product.getStockQuantity() < newQuantity) {
-                log.warn("Cannot add item: Not enough stock for product ID {}. Requested total: {}, Available: {}", request.getProductId(), newQuantity, product.getStockQuantity());
-                throw new IllegalArgumentException("Not enough stock available to add desired quantity for product: " + product.getName());
+        synchronized (cart) {
+            CartCache.Line existingLine = cart.findLineByProduct(product.getId());
+            if (existingLine != null) {
+                int newQuantity = existingLine.quantity() + request.getQuantity();
+                if (!hasStock(product, newQuantity)) {
+                    log.warn("Cannot add item: Not enough stock for product ID {}. Requested total: {}, Available: {}", request.getProductId(), newQuantity, product.getStockQuantity());
+                    throw new IllegalArgumentException("Not enough stock available to add desired quantity for product: " + product.getName());
+                }
+                cart.setQuantity(existingLine.cartItemId(), newQuantity);
+                log.info("Updated quantity for existing item. CartItem ID: {}, New Quantity: {}", existingLine.cartItemId(), newQuantity);
+            } else {
+                insertLines(userId, cart, Map.of(product.getId(), request.getQuantity()));
+                log.info("Added new item to cart. CartItem ID: {}", cart.findLineByProduct(product.getId()).cartItemId());
             }
-            existingItem.setQuantity(newQuantity);
-            cartItemRepository.save(existingItem);
-            log.info("Updated quantity for existing item. CartItem ID: {}, New Quantity: {}", existingItem.getId(), newQuantity);
-        } else {
-            CartItemEntity newItem = new CartItemEntity();
-            newItem.setCart(cart);
-            newItem.setProduct(product);
-            newItem.setQuantity(request.getQuantity());
-            cartItemRepository.save(newItem);
-            log.info("Added new item to cart.");
         }
 
-        // Gọi lại findById để đảm bảo lấy được CartEntity với collection đã cập nhật (nếu cần)
-        // Hoặc dựa vào mapCartToResponse query lại items
-        CartEntity updatedCart = cartRepository.findById(cart.getId()).orElse(cart);
-        return mapCartToResponse(updatedCart);
+        return mapCartToResponse(userId, cart);
     }
 
     @Override
-    @Transactional(rollbackFor = Exception.class)
     public CartResponse updateCartItemQuantity(Long userId, Long cartItemId, UpdateCartItemRequest request) {
         log.info("Updating quantity for CartItem ID: {} for user ID: {}. New Quantity: {}", cartItemId, userId, request.getQuantity());
-        CartEntity cart = findOrCreateCartByUserId(userId);
+        CartCache.Cart cart = findOrLoadCart(userId);
 
-        CartItemEntity cartItem = cartItemRepository.findByIdAndCart(cartItemId, cart)
-                .orElseThrow(() -> new ResourceNotFoundException("Cart item not found with ID: " + cartItemId + " in user's cart " + cart.getId()));
+        synchronized (cart) {
+            CartCache.Line line = cart.findLine(cartItemId);
+            if (line == null) {
+                throw new ResourceNotFoundException("Cart item not found with ID: " + cartItemId + " in user's cart " + cart.getCartId());
+            }
 
-        ProductEntity product = cartItem.getProduct();
-        if (product == null) {
-            log.error("Product associated with CartItem ID {} is null.", cartItemId);
-            throw new IllegalStateException("Product not found for the cart item.");
-        }
-        if (product.getStockQuantity() == null || product.getStockQuantity() < request.getQuantity()) {
-            log.warn("Cannot update quantity: Not enough stock for product ID {}. Requested: {}, Available: {}", product.getId(), request.getQuantity(), product.getStockQuantity());
-            throw new IllegalArgumentException("Not enough stock available for product: " + product.getName());
-        }
+            ProductSummaryResponse product = findProductSummary(line.productId());
+            if (product == null) {
+                log.error("Product associated with CartItem ID {} is null.", cartItemId);
+                throw new IllegalStateException("Product not found for the cart item.");
+            }
+            if (!hasStock(product, request.getQuantity())) {
+                log.warn("Cannot update quantity: Not enough stock for product ID {}. Requested: {}, Available: {}", product.getId(), request.getQuantity(), product.getStockQuantity());
+                throw new IllegalArgumentException("Not enough stock available for product: " + product.getName());
+            }
 
-        cartItem.setQuantity(request.getQuantity());
-        cartItemRepository.save(cartItem);
+            cart.setQuantity(cartItemId, request.getQuantity());
+        }
         log.info("CartItem ID {} quantity updated to {}", cartItemId, request.getQuantity());
 
-        CartEntity updatedCart = cartRepository.findById(cart.getId()).orElse(cart);
-        return mapCartToResponse(updatedCart);
+        return mapCartToResponse(userId, cart);
     }
 
-    // --- PHƯƠNG THỨC XÓA ĐÃ SỬA ---
     @Override
-    @Transactional(rollbackFor = Exception.class)
     public CartResponse removeItemFromCart(Long userId, Long cartItemId) {
         log.info("Attempting to remove CartItem ID: {} for user ID: {}", cartItemId, userId);
-        CartEntity cart = findOrCreateCartByUserId(userId);
+        CartCache.Cart cart = findOrLoadCart(userId);
+
+        // Chỉ xóa được dòng thuộc giỏ của user này (dòng của giỏ khác không có trong bộ nhớ của user)
+        synchronized (cart) {
+            if (cart.findLine(cartItemId) == null) {
+                throw new ResourceNotFoundException("Cart item not found with ID: " + cartItemId + " in user's cart " + cart.getCartId());
+            }
+            cart.removeLine(cartItemId);
+        }
+        log.info("Successfully removed CartItem ID {}.", cartItemId);
+
+        return mapCartToResponse(userId, cart);
+    }
+
+    @Override
+    public CartResponse applyBatch(Long userId, CartBatchRequest request) {
+        List<CartBatchRequest.Operation> operations = request.getOperations();
+        log.info("Applying {} cart operations for user ID: {}", operations.size(), userId);
+        CartCache.Cart cart = findOrLoadCart(userId);
+
+        synchronized (cart) {
+            // Tính trạng thái cuối trên bản sao; giỏ chỉ bị thay đổi khi mọi thao tác hợp lệ
+            List<CartCache.Line> currentLines = cart.lines();
+            Map<Long, CartCache.Line> lines = new LinkedHashMap<>();
+            currentLines.forEach(line -> lines.put(line.cartItemId(), line));
+            Map<Long, Integer> newLineQuantities = new LinkedHashMap<>(); // productId -> số lượng dòng mới
+
+            for (CartBatchRequest.Operation operation : operations) {
+                switch (operation.getType()) {
+                    case ADD -> {
+                        Long productId = require(operation.getProductId(), "productId", operation);
+                        int quantity = require(operation.getQuantity(), "quantity", operation);
+                        CartCache.Line existingLine = lines.values().stream()
+                                .filter(line -> line.productId().equals(productId))
+                                .findFirst().orElse(null);
+                        if (existingLine != null) {
+                            lines.put(existingLine.cartItemId(), new CartCache.Line(existingLine.cartItemId(), productId, existingLine.quantity() + quantity));
+                        } else {
+                            newLineQuantities.merge(productId, quantity, Integer::sum);
+                        }
+                    }
+                    case UPDATE -> {
+                        CartCache.Line line = requireLine(lines, require(operation.getCartItemId(), "cartItemId", operation), cart);
+                        int quantity = require(operation.getQuantity(), "quantity", operation);
+                        lines.put(line.cartItemId(), new CartCache.Line(line.cartItemId(), line.productId(), quantity));
+                    }
+                    case REMOVE -> lines.remove(requireLine(lines, require(operation.getCartItemId(), "cartItemId", operation), cart).cartItemId());
+                }
+            }
+
+            // Kiểm tra tồn kho một lượt cho mọi dòng có số lượng thay đổi, sản phẩm đọc một lần
+            Map<Long, Integer> requestedByProduct = new LinkedHashMap<>(newLineQuantities);
+            Map<Long, Integer> currentQuantities = new HashMap<>();
+            currentLines.forEach(line -> currentQuantities.put(line.cartItemId(), line.quantity()));
+            for (CartCache.Line line : lines.values()) {
+                if (line.quantity() != currentQuantities.get(line.cartItemId())) {
+                    requestedByProduct.put(line.productId(), line.quantity());
+                }
+            }
+            Map<Long, ProductSummaryResponse> products = findProductSummaries(new ArrayList<>(requestedByProduct.keySet()));
+            requestedByProduct.forEach((productId, quantity) -> {
+                ProductSummaryResponse product = products.get(productId);
+                if (product == null) {
+                    throw new ResourceNotFoundException("Product not found with ID: " + productId);
+                }
+                if (!hasStock(product, quantity)) {
+                    log.warn("Cannot apply cart operations: Not enough stock for product ID {}. Requested: {}, Available: {}", productId, quantity, product.getStockQuantity());
+                    throw new IllegalArgumentException("Not enough stock available for product: " + product.getName());
+                }
+            });
+
+            // Đổi số lượng / xóa đi theo lần flush kế tiếp
+            insertLines(userId, cart, newLineQuantities);
+            for (CartCache.Line line : currentLines) {
+                CartCache.Line updated = lines.get(line.cartItemId());
+                if (updated == null) {
+                    cart.removeLine(line.cartItemId());
+                } else {
+                    cart.setQuantity(line.cartItemId(), updated.quantity());
+                }
+            }
+            log.info("Applied cart operations for user ID {}: {} new items, {} items now in cart", userId, newLineQuantities.size(), lines.size() + newLineQuantities.size());
+        }
 
-        // Tìm cart item cần xóa, đảm bảo nó thuộc về cart của user này
-        CartItemEntity cartItemToRemove = cartItemRepository.findById(cartItemId)
-                .orElseThrow(() -> new ResourceNotFoundException("Cart item not found with ID: " + cartItemId));
+        return mapCartToResponse(userId, cart);
+    }
 
-        // Kiểm tra xem cart item có thực sự thuộc về cart của user không
-        if (!cartItemToRemove.getCart().getId().equals(cart.getId())) {
-            log.error("CartItem ID {} does not belong to cart ID {}.", cartItemId, cart.getId());
-            throw new SecurityException("Cannot remove item that does not belong to the user's cart.");
+    @Override
+    public void mergeGuestItems(Long userId, Map<Long, Integer> guestItems) {
+        if (guestItems.isEmpty()) {
+            return;
+        }
+        log.info("Merging {} guest cart products into cart of user ID: {}", guestItems.size(), userId);
+        CartCache.Cart cart = findOrLoadCart(userId);
+        Map<Long, ProductSummaryResponse> products = findProductSummaries(new ArrayList<>(guestItems.keySet()));
+
+        synchronized (cart) {
+            Map<Long, Integer> newLineQuantities = new LinkedHashMap<>();
+            guestItems.forEach((productId, quantity) -> {
+                ProductSummaryResponse product = products.get(productId);
+                if (product == null || !hasStock(product, 1)) {
+                    return; // Sản phẩm đã bị xóa / hết hàng từ lúc khách thêm vào giỏ: bỏ qua
+                }
+                // Cộng dồn với giỏ sẵn có, giới hạn theo tồn kho thay vì làm hỏng cả lần đăng nhập
+                CartCache.Line existingLine = cart.findLineByProduct(productId);
+                int merged = Math.min((existingLine != null ? existingLine.quantity() : 0) + quantity, product.getStockQuantity());
+                if (existingLine != null) {
+                    cart.setQuantity(existingLine.cartItemId(), merged);
+                } else {
+                    newLineQuantities.put(productId, merged);
+                }
+            });
+            insertLines(userId, cart, newLineQuantities);
+        }
+        // Ghi ngay thay vì chờ flush: cookie giỏ khách chỉ bị xóa sau khi hàm này trả về, nên số lượng đã gộp phải có trong DB
+        CartCache.DirtyCart dirty = cartCache.peekDirty(userId);
+        if (dirty != null) {
+            int[] counts = transactionTemplate.execute(status -> writeDirty(List.of(dirty)));
+            if (counts[2] > 0) {
+                throw new OptimisticLockingFailureException(STALE_CART_MESSAGE); // Giỏ đã bị bỏ khỏi bộ nhớ trong writeDirty
+            }
         }
+    }
 
-        // Thực hiện xóa
-        cartItemRepository.delete(cartItemToRemove);
-        log.info("Successfully deleted CartItem ID {}.", cartItemId);
+    // Dòng mới ghi ngay, cùng một transaction (client cần cartItemId do DB sinh), rồi đưa vào giỏ trong bộ nhớ
+    private void insertLines(Long userId, CartCache.Cart cart, Map<Long, Integer> quantityByProduct) {
+        if (quantityByProduct.isEmpty()) {
+            return;
+        }
+        List<CartItemEntity> newItems = new ArrayList<>(quantityByProduct.size());
+        quantityByProduct.forEach((productId, quantity) -> {
+            CartItemEntity newItem = new CartItemEntity();
+            newItem.setCart(cartRepository.getReferenceById(cart.getCartId()));
+            newItem.setProduct(productRepository.getReferenceById(productId));
+            newItem.setQuantity(quantity);
+            newItems.add(newItem);
+        });
+        transactionTemplate.executeWithoutResult(status -> {
+            if (lockCurrentCarts(List.of(cart)).isEmpty()) {
+                dropStaleCart(userId);
+                throw new OptimisticLockingFailureException(STALE_CART_MESSAGE);
+            }
+            cartItemRepository.saveAll(newItems);
+            advanceVersions(List.of(cart));
+        });
+        newItems.forEach(item -> cart.addLine(new CartCache.Line(item.getId(), item.getProduct().getId(), item.getQuantity())));
+    }
 
-        // Flush để đảm bảo thay đổi được ghi xuống DB trước khi đọc lại (tuỳ chọn, nhưng an toàn hơn)
-        // entityManager.flush(); // Bỏ comment nếu đã inject EntityManager
+    // Giỏ trong bộ nhớ đã cũ (instance khác vừa ghi, hoặc giỏ đã bị job dọn giỏ xóa): bỏ đi, lần đọc sau lấy bản mới từ DB
+    private void dropStaleCart(Long userId) {
+        cartCache.invalidate(userId);
+        log.warn("Cart of user ID {} was changed on another instance, dropped from memory", userId);
+    }
 
-        // Nạp lại cart từ DB để đảm bảo lấy trạng thái mới nhất sau khi xóa
-        // (Hoặc dựa vào mapCartToResponse query lại items như đã sửa ở trên)
-        CartEntity updatedCart = cartRepository.findById(cart.getId())
-                .orElseThrow(() -> new ResourceNotFoundException("Cart not found after item removal for ID: " + cart.getId())); // Nên throw lỗi nếu cart biến mất
+    /**
+     * Khóa dòng tbl_carts của các giỏ (theo thứ tự id) và trả về ID các giỏ mà bản trong bộ nhớ còn khớp change_version.
+     * Phải gọi trong transaction; khóa được giữ tới khi transaction kết thúc.
+     */
+    private Set<Long> lockCurrentCarts(Collection<CartCache.Cart> carts) {
+        Map<Long, Long> storedVersions = new HashMap<>();
+        for (CartEntity stored : cartRepository.findAllForUpdate(carts.stream().map(CartCache.Cart::getCartId).toList())) {
+            storedVersions.put(stored.getId(), stored.getChangeVersion());
+        }
+        Set<Long> current = new HashSet<>();
+        for (CartCache.Cart cart : carts) {
+            Long storedVersion = storedVersions.get(cart.getCartId());
+            if (storedVersion != null && storedVersion == cart.getVersion()) {
+                current.add(cart.getCartId());
+            }
+        }
+        return current;
+    }
+
+    /**
+     * Tăng change_version (và updated_at) của các giỏ vừa được ghi, đã khóa bằng {@link #lockCurrentCarts}.
+     * Bản trong bộ nhớ tăng theo ngay khi còn giữ khóa dòng, để lần ghi kế tiếp trên instance này không tưởng là giỏ đã cũ;
+     * transaction rollback thì trả lại version cũ.
+     */
+    private void advanceVersions(Collection<CartCache.Cart> carts) {
+        if (carts.isEmpty()) {
+            return;
+        }
+        cartRepository.advanceVersion(carts.stream().map(CartCache.Cart::getCartId).toList(), new Date());
+        Map<CartCache.Cart, Long> previousVersions = new HashMap<>();
+        for (CartCache.Cart cart : carts) {
+            long previous = cart.getVersion();
+            cart.compareAndSetVersion(previous, previous + 1);
+            previousVersions.put(cart, previous);
+        }
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    if (status != STATUS_COMMITTED) {
+                        previousVersions.forEach((cart, previous) -> cart.compareAndSetVersion(previous + 1, previous));
+                    }
+                }
+            });
+        }
+    }
 
-        return mapCartToResponse(updatedCart);
+    private <T> T require(T value, String field, CartBatchRequest.Operation operation) {
+        if (value == null) {
+            throw new InvalidDataException(field + " is required for " + operation.getType() + " operation.");
+        }
+        return value;
     }
 
+    private CartCache.Line requireLine(Map<Long, CartCache.Line> lines, Long cartItemId, CartCache.Cart cart) {
+        CartCache.Line line = lines.get(cartItemId);
+        if (line == null) {
+            throw new ResourceNotFoundException("Cart item not found with ID: " + cartItemId + " in user's cart " + cart.getCartId());
+        }
+        return line;
+    }
 
+    /**
+     * Dòng giỏ để đặt hàng, đọc từ tbl_cart_items chứ không từ bộ nhớ: giỏ bị khóa tới hết transaction đặt hàng,
+     * thay đổi chưa flush của user trên instance này được ghi trước khi đọc (nếu giỏ trong bộ nhớ chưa cũ).
+     * Thay đổi đang chờ flush trên instance khác không thấy được ở đây: lần flush đó thấy change_version đã tăng và bỏ qua.
+     */
+    @Override
+    @Transactional(rollbackFor = Exception.class)
+    public Map<Long, Integer> getCheckoutItems(Long userId) {
+        // Lấy thay đổi trước khi khóa dòng tbl_carts: request đang giữ khóa giỏ trong bộ nhớ có thể đang chờ chính dòng đó
+        CartCache.DirtyCart dirty = cartCache.peekDirty(userId);
+        Long cartId = cartRepository.findForUpdateByUserId(userId).map(CartEntity::getId).orElse(null);
+        if (cartId == null) {
+            return Map.of();
+        }
+        if (dirty != null && dirty.cart().getCartId().equals(cartId)) {
+            writeDirty(List.of(dirty)); // Không đánh dấu sạch: transaction rollback thì lần flush sau ghi lại
+        }
+        Map<Long, Integer> items = new LinkedHashMap<>();
+        for (Object[] row : cartItemRepository.findQuantitiesByCartId(cartId)) {
+            items.merge(((Number) row[0]).longValue(), ((Number) row[1]).intValue(), Integer::sum);
+        }
+        return items;
+    }
+
+    // Xóa trực tiếp trong DB (trong transaction đặt hàng); giỏ trong bộ nhớ được bỏ đi sau khi commit,
+    // instance khác nhận ra qua change_version tăng lên
     @Override
     @Transactional(rollbackFor = Exception.class)
     public void clearCart(Long userId) {
         log.info("Clearing cart for user ID: {}", userId);
-        CartEntity cart = findOrCreateCartByUserId(userId);
+        Long cartId = cartRepository.findIdByUserId(userId).orElse(null);
+        if (cartId == null) {
+            return; // Chưa từng có giỏ (giỏ trong bộ nhớ luôn có dòng tương ứng trong tbl_carts)
+        }
+
+        // Một câu DELETE cho cả giỏ thay vì nạp từng dòng rồi xóa từng dòng
+        int deleted = cartItemRepository.deleteAllByCartId(cartId);
+        cartRepository.advanceVersion(List.of(cartId), new Date());
+        log.info("Cart ID {} for user ID {} cleared ({} items deleted).", cartId, userId, deleted);
+        eventPublisher.publishEvent(new CartClearedEvent(userId));
+    }
+
+    @Override
+    @Scheduled(fixedDelayString = "${app.cart.flush-interval-ms:5000}",
+            initialDelayString = "${app.cart.flush-interval-ms:5000}")
+    public void flush() {
+        List<CartCache.DirtyCart> dirty = cartCache.drainDirty();
+        if (dirty.isEmpty()) {
+            return;
+        }
+        try {
+            int[] counts = transactionTemplate.execute(status -> writeDirty(dirty));
+            dirty.forEach(cartCache::markWritten);
+            log.info("Flushed {} carts: {} quantity updates, {} removed items, {} stale carts skipped",
+                    dirty.size(), counts[0], counts[1], counts[2]);
+        } catch (Exception e) {
+            dirty.forEach(cartCache::markFailed);
+            log.error("Failed to flush {} carts, will retry: {}", dirty.size(), e.getMessage(), e);
+        }
+    }
+
+    // Ghi thay đổi trong transaction hiện tại, trả về (số dòng đổi số lượng, số dòng xóa, số giỏ cũ bị bỏ qua).
+    // Giỏ cũ (instance khác đã ghi sau lần đọc) không được ghi đè: bỏ khỏi bộ nhớ cùng thay đổi chưa ghi của nó
+    private int[] writeDirty(List<CartCache.DirtyCart> dirty) {
+        Set<Long> currentCartIds = lockCurrentCarts(dirty.stream().map(CartCache.DirtyCart::cart).toList());
+        List<Object[]> quantityUpdates = new ArrayList<>();
+        List<Long> deletedIds = new ArrayList<>();
+        List<CartCache.Cart> writtenCarts = new ArrayList<>(dirty.size());
+        int staleCarts = 0;
+        for (CartCache.DirtyCart item : dirty) {
+            if (!currentCartIds.contains(item.cart().getCartId())) {
+                dropStaleCart(item.userId());
+                staleCarts++;
+                continue;
+            }
+            writtenCarts.add(item.cart());
+            item.quantities().forEach((cartItemId, quantity) -> quantityUpdates.add(new Object[]{quantity, cartItemId}));
+            deletedIds.addAll(item.deletedIds());
+        }
+        if (!quantityUpdates.isEmpty()) {
+            jdbcTemplate.batchUpdate(UPDATE_QUANTITY_SQL, quantityUpdates);
+        }
+        if (!deletedIds.isEmpty()) {
+            cartItemRepository.deleteAllByIdInBatch(deletedIds);
+        }
+        advanceVersions(writtenCarts);
+        return new int[]{quantityUpdates.size(), deletedIds.size(), staleCarts};
+    }
+
+    /**
+     * Bỏ khỏi bộ nhớ các giỏ đã được ghi ở instance khác (change_version trong DB lớn hơn, hoặc giỏ đã được tạo lại),
+     * đọc các giỏ có updated_at từ lần poll trước (lùi thêm overlap-ms). Giỏ bị job dọn giỏ xóa không có trong kết quả:
+     * bản trong bộ nhớ bị phát hiện ở lần ghi kế tiếp.
+     */
+    @Override
+    @Scheduled(fixedDelayString = "${app.cart.sync.poll-interval-ms:5000}",
+            initialDelayString = "${app.cart.sync.poll-interval-ms:5000}")
+    public void syncChangedCarts() {
+        long startedAt = System.currentTimeMillis();
+        Date since = new Date((lastSyncAt > 0 ? lastSyncAt : startedAt) - syncOverlapMs);
+        lastSyncAt = startedAt;
+        if (cartCache.size() == 0) {
+            return;
+        }
+        int invalidated = 0;
+        for (Object[] row : cartRepository.findChangedSince(since)) {
+            if (cartCache.invalidateIfStale(((Number) row[0]).longValue(), ((Number) row[1]).longValue(), ((Number) row[2]).longValue())) {
+                invalidated++;
+            }
+        }
+        if (invalidated > 0) {
+            log.info("Dropped {} carts changed on other instances since {}", invalidated, since);
+        }
+    }
 
-        List<CartItemEntity> items = cartItemRepository.findByCart(cart); // Lấy danh sách items để log số lượng
+    @PreDestroy
+    public void flushOnShutdown() {
+        flush();
+    }
 
-        if (!CollectionUtils.isEmpty(items)) {
-            log.info("Deleting {} items from cart ID {}", items.size(), cart.getId());
-            cartItemRepository.deleteAll(items); // Xóa tất cả items đã tìm thấy
-            log.info("Cart ID {} for user ID {} cleared.", cart.getId(), userId);
-        } else {
-            log.info("Cart ID {} for user ID {} is already empty.", cart.getId(), userId);
+    /**
+     * Xóa các giỏ không được dùng từ abandoned-after-days ngày trước, mỗi lượt tối đa batch-size giỏ (một transaction ngắn),
+     * nghỉ pause-ms giữa các lượt để không giữ khóa / chiếm IO lâu. Chỉ một instance chạy nhờ lease trong tbl_job_leases.
+     */
+    @Override
+    @Scheduled(fixedDelayString = "${app.cart.sweep.interval-ms:3600000}",
+            initialDelayString = "${app.cart.sweep.interval-ms:3600000}")
+    public void sweepAbandonedCarts() {
+        Duration leaseTtl = Duration.ofMillis(sweepLeaseMs);
+        if (!jobLeaseService.tryAcquire(SWEEP_JOB, leaseTtl)) {
+            return;
+        }
+        try {
+            Date cutoff = new Date(System.currentTimeMillis() - Duration.ofDays(sweepAbandonedAfterDays).toMillis());
+            long afterId = 0;
+            int sweptCarts = 0;
+            while (true) {
+                List<Object[]> candidates = cartRepository.findAbandoned(afterId, cutoff, PageRequest.of(0, sweepBatchSize));
+                if (candidates.isEmpty()) {
+                    break;
+                }
+                afterId = ((Number) candidates.get(candidates.size() - 1)[0]).longValue();
+                // Giỏ đang nằm trong bộ nhớ instance này có thể có thay đổi chưa flush: để lại cho lần quét sau.
+                // Instance khác giữ giỏ bị xóa sẽ đọc lại ở lần ghi kế tiếp, khi không còn thấy dòng tbl_carts (xem lockCurrentCarts)
+                Map<Long, Long> userIdByCartId = new HashMap<>();
+                for (Object[] row : candidates) {
+                    Long userId = ((Number) row[1]).longValue();
+                    if (!cartCache.contains(userId)) {
+                        userIdByCartId.put(((Number) row[0]).longValue(), userId);
+                    }
+                }
+                if (!userIdByCartId.isEmpty()) {
+                    Integer deleted = transactionTemplate.execute(status -> {
+                        cartItemRepository.deleteByAbandonedCarts(userIdByCartId.keySet(), cutoff);
+                        int count = cartRepository.deleteAbandoned(userIdByCartId.keySet(), cutoff);
+                        // Bỏ giỏ trong bộ nhớ sau khi commit (giỏ vừa được dùng lại nên không bị xóa thì chỉ bị đọc lại)
+                        userIdByCartId.values().forEach(userId -> eventPublisher.publishEvent(new CartClearedEvent(userId)));
+                        return count;
+                    });
+                    sweptCarts += deleted != null ? deleted : 0;
+                }
+                if (candidates.size() < sweepBatchSize || !jobLeaseService.tryAcquire(SWEEP_JOB, leaseTtl)) {
+                    break; // Hết giỏ cần xóa, hoặc mất lease (chạy quá lâu): instance giữ lease mới sẽ làm tiếp
+                }
+                Thread.sleep(sweepPauseMs);
+            }
+            log.info("Swept {} abandoned carts untouched since {}", sweptCarts, cutoff);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            jobLeaseService.release(SWEEP_JOB);
         }
     }
-}
\ No newline at end of file
+}
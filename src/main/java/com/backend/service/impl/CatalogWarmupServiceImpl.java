@@ -0,0 +1,135 @@
+package com.backend.service.impl;
+
+import com.backend.cache.CategoryHierarchyCache;
+import com.backend.cache.CategoryTreeCache;
+import com.backend.common.ProductSort;
+import com.backend.model.ProductCardEntity;
+import com.backend.repository.ProductCardRepository;
+import com.backend.service.BestSellerService;
+import com.backend.service.CatalogWarmupService;
+import com.backend.service.ProductCardService;
+import com.backend.service.ProductRecommendationService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Warm-up sau khi khởi động: nạp song song cây danh mục, các sản phẩm bán chạy nhất (cache tra cứu + buffer pool MySQL)
+ * và trang đầu của từng kiểu sắp xếp card (index listing). Readiness probe (CatalogWarmupHealthIndicator)
+ * báo chưa sẵn sàng cho đến khi các bước này và các chỉ mục trong bộ nhớ (mua cùng, bán chạy) nạp xong,
+ * hoặc quá app.warmup.timeout-ms.
+ */
+@Service
+@Slf4j(topic = "CATALOG-WARMUP-SERVICE")
+@RequiredArgsConstructor
+public class CatalogWarmupServiceImpl implements CatalogWarmupService {
+
+    private static final int LISTING_PAGE_SIZE = 20;
+
+    private final CategoryHierarchyCache categoryHierarchyCache;
+    private final CategoryTreeCache categoryTreeCache;
+    private final ProductCardRepository productCardRepository;
+    private final ProductCardService productCardService;
+    private final ProductRecommendationService productRecommendationService;
+    private final BestSellerService bestSellerService;
+
+    @Value("${app.warmup.threads:4}")
+    private int threads;
+
+    @Value("${app.warmup.top-products:200}")
+    private int topProducts;
+
+    @Value("${app.warmup.timeout-ms:60000}")
+    private long timeoutMs;
+
+    private volatile long startedAt;
+    private volatile boolean tasksDone;
+    // Thời gian (ms) của từng bước đã xong, -1 nếu bước đó lỗi
+    private final Map<String, Long> taskDurations = new ConcurrentHashMap<>();
+
+    @Override
+    public boolean isWarm() {
+        if (startedAt == 0) {
+            return false;
+        }
+        if (System.currentTimeMillis() - startedAt >= timeoutMs) {
+            return true; // Không giữ instance ngoài load balancer mãi nếu một bước bị treo
+        }
+        return tasksDone && productRecommendationService.isReady() && bestSellerService.isReady();
+    }
+
+    @Override
+    public Map<String, Object> getDetails() {
+        Map<String, Object> details = new LinkedHashMap<>();
+        details.put("tasksDone", tasksDone);
+        details.put("tasks", Map.copyOf(taskDurations));
+        details.put("frequentlyBoughtTogetherReady", productRecommendationService.isReady());
+        details.put("bestSellersReady", bestSellerService.isReady());
+        details.put("timedOut", startedAt != 0 && !tasksDone && System.currentTimeMillis() - startedAt >= timeoutMs);
+        return details;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void startWarmup() {
+        startedAt = System.currentTimeMillis();
+        AtomicInteger threadNumber = new AtomicInteger();
+        ExecutorService pool = Executors.newFixedThreadPool(Math.max(1, threads), runnable -> {
+            Thread thread = new Thread(runnable, "catalog-warmup-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        CompletableFuture.allOf(
+                CompletableFuture.runAsync(() -> runTask("categoryHierarchy", categoryHierarchyCache::warmUp), pool),
+                CompletableFuture.runAsync(() -> runTask("categoryTree", categoryTreeCache::warmUp), pool),
+                CompletableFuture.runAsync(() -> runTask("topProducts", this::warmTopProducts), pool),
+                CompletableFuture.runAsync(() -> runTask("listingPages", this::warmListingPages), pool)
+        ).whenComplete((ignored, e) -> {
+            pool.shutdown();
+            tasksDone = true;
+            log.info("Catalog warm-up tasks finished in {} ms: {}", System.currentTimeMillis() - startedAt, taskDurations);
+        });
+    }
+
+    // Một bước lỗi không chặn readiness: chỉ ghi log, instance vẫn phục vụ được (cache nạp dần theo request)
+    private void runTask(String name, Runnable task) {
+        long taskStartedAt = System.currentTimeMillis();
+        try {
+            task.run();
+            taskDurations.put(name, System.currentTimeMillis() - taskStartedAt);
+        } catch (Exception e) {
+            taskDurations.put(name, -1L);
+            log.warn("Catalog warm-up step '{}' failed: {}", name, e.getMessage(), e);
+        }
+    }
+
+    // Top-N sản phẩm bán chạy: nạp cache tra cứu hàng loạt (giỏ hàng, wishlist) và các trang dữ liệu tương ứng
+    private void warmTopProducts() {
+        List<Long> ids = productCardRepository.findAll(PageRequest.of(0, topProducts, ProductSort.BEST_SELLING.toSort()))
+                .map(ProductCardEntity::getId)
+                .getContent();
+        if (!ids.isEmpty()) {
+            productCardService.getProductSummaries(ids);
+        }
+    }
+
+    // Trang đầu của mỗi kiểu sắp xếp: đọc qua các index listing để chúng nằm sẵn trong buffer pool
+    private void warmListingPages() {
+        for (ProductSort sort : ProductSort.values()) {
+            productCardService.scrollCards(null, null, null, null, false, sort, null, LISTING_PAGE_SIZE);
+        }
+    }
+}
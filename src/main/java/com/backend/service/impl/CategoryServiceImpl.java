@@ -1,7 +1,13 @@
 package com.backend.service.impl;
 
+import com.backend.cache.CategoryTreeCache;
+import com.backend.common.ResourceVersion;
 import com.backend.controller.request.CategoryRequest;
+import com.backend.controller.response.CategoryBreadcrumbResponse;
 import com.backend.controller.response.CategoryResponse;
+import com.backend.controller.response.CategoryTreeResponse;
+import com.backend.event.CategoryChangedEvent;
+import com.backend.event.CategoryProductCountChangedEvent;
 import com.backend.exception.InvalidDataException;
 import com.backend.exception.ResourceNotFoundException;
 import com.backend.model.CategoryEntity;
@@ -10,14 +16,22 @@ import com.backend.repository.ProductRepository; // Inject để kiểm tra sả
 import com.backend.service.CategoryService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
 import org.springframework.dao.DataIntegrityViolationException; // Bắt lỗi ràng buộc FK
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
 import java.util.stream.Collectors;
 
 @Service
@@ -27,6 +41,8 @@ public class CategoryServiceImpl implements CategoryService {
 
     private final CategoryRepository categoryRepository;
     private final ProductRepository productRepository; // Inject ProductRepository
+    private final ApplicationEventPublisher eventPublisher;
+    private final CategoryTreeCache categoryTreeCache;
 
     // Helper method để map Entity sang Response DTO
     private CategoryResponse mapToCategoryResponse(CategoryEntity entity) {
@@ -72,6 +88,9 @@ public class CategoryServiceImpl implements CategoryService {
 
         // 3. Lưu vào DB
         CategoryEntity savedCategory = categoryRepository.save(category);
+        // Path cần ID do DB sinh nên gán sau khi save (dirty checking sẽ ghi khi commit)
+        savedCategory.setPath(pathOf(savedCategory.getParentCategory()) + savedCategory.getId() + "/");
+        eventPublisher.publishEvent(new CategoryChangedEvent(savedCategory.getId()));
         log.info("Category saved successfully with ID: {}", savedCategory.getId());
 
         // 4. Map và trả về
@@ -139,23 +158,38 @@ public class CategoryServiceImpl implements CategoryService {
                 log.warn("Update failed: Cannot set category's parent to itself (ID: {})", categoryId);
                 throw new IllegalArgumentException("Cannot set category's parent to itself.");
             }
-            // (Thêm logic kiểm tra phức tạp hơn nếu cần để tránh đặt cha là con của nó)
 
             CategoryEntity parentCategory = categoryRepository.findById(request.getParentCategoryId())
                     .orElseThrow(() -> {
                         log.warn("Update failed: Parent category not found with ID: {}", request.getParentCategoryId());
                         return new ResourceNotFoundException("Parent category not found with ID: " + request.getParentCategoryId());
                     });
+            // Cha mới nằm trong cây con của chính nó -> sẽ tạo vòng lặp
+            if (pathOf(parentCategory).contains("/" + categoryId + "/")) {
+                log.warn("Update failed: Cannot move category ID {} under its own sub-category ID {}", categoryId, parentCategory.getId());
+                throw new IllegalArgumentException("Cannot set category's parent to one of its sub-categories.");
+            }
             existingCategory.setParentCategory(parentCategory);
         } else {
             existingCategory.setParentCategory(null); // Gỡ bỏ cha, trở thành danh mục gốc
         }
 
-        // 5. Lưu thay đổi
+        // 5. Cập nhật path của nó và toàn bộ cây con nếu đổi cha
+        String oldPath = existingCategory.getPath();
+        String newPath = pathOf(existingCategory.getParentCategory()) + categoryId + "/";
+        existingCategory.setPath(newPath);
+
+        // 6. Lưu thay đổi
         CategoryEntity updatedCategory = categoryRepository.save(existingCategory);
+        if (oldPath != null && !oldPath.equals(newPath)) {
+            int moved = categoryRepository.replacePathPrefix(oldPath, newPath);
+            log.info("Category ID {} moved from {} to {}, {} descendant paths rewritten", categoryId, oldPath, newPath, moved);
+            moveSubtreeProductCount(categoryId, oldPath, newPath);
+        }
+        eventPublisher.publishEvent(new CategoryChangedEvent(categoryId));
         log.info("Category updated successfully for ID: {}", updatedCategory.getId());
 
-        // 6. Map và trả về
+        // 7. Map và trả về
         return mapToCategoryResponse(updatedCategory);
     }
 
@@ -182,8 +216,9 @@ public class CategoryServiceImpl implements CategoryService {
         // 3. Kiểm tra xem có sản phẩm nào thuộc danh mục này không
         // Sử dụng ProductRepository (cần đảm bảo ProductEntity có reference đúng tới CategoryEntity)
         // Giả sử ProductEntity có trường 'category'
-        long productCount = productRepository.countByCategory(categoryToDelete); // Cần thêm phương thức này vào ProductRepository
-        if (productCount > 0) {
+        // Không dựa vào cột đếm: category -> products là CascadeType.ALL, nếu cột lệch sẽ xóa nhầm sản phẩm.
+        // existsBy dừng ở dòng đầu tiên trên index category_id nên vẫn rẻ
+        if (productRepository.existsByCategoryId(categoryId)) {
             log.warn("Delete failed: Category ID {} has associated products.", categoryId);
             throw new InvalidDataException("Cannot delete category with ID " + categoryId + " because it has associated products. Please move products to another category first.");
         }
@@ -191,6 +226,7 @@ public class CategoryServiceImpl implements CategoryService {
         // 4. Nếu không có ràng buộc, thực hiện xóa
         try {
             categoryRepository.delete(categoryToDelete);
+            eventPublisher.publishEvent(new CategoryChangedEvent(categoryId));
             log.info("Category deleted successfully with ID: {}", categoryId);
         } catch (DataIntegrityViolationException e) {
             // Trường hợp hy hữu nếu có ràng buộc khác chưa kiểm tra
@@ -201,4 +237,233 @@ public class CategoryServiceImpl implements CategoryService {
             throw new RuntimeException("An unexpected error occurred while deleting category: " + categoryId, e);
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * Tính lại path cho các danh mục có path rỗng hoặc sai (dữ liệu tạo trước khi có cột path).
+     * Chạy một lần khi ứng dụng khởi động; thường không có dòng nào cần sửa.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional(rollbackFor = Exception.class)
+    public void backfillCategoryPaths() {
+        Map<Long, Long> parentById = new HashMap<>();
+        Map<Long, String> storedPathById = new HashMap<>();
+        for (Object[] row : categoryRepository.findAllParentLinks()) {
+            parentById.put((Long) row[0], (Long) row[1]);
+        }
+        for (Object[] row : categoryRepository.findAllPaths()) {
+            storedPathById.put((Long) row[0], (String) row[1]);
+        }
+
+        Map<Long, String> computed = new HashMap<>();
+        int fixed = 0;
+        for (Long id : parentById.keySet()) {
+            String path = computePath(id, parentById, computed, 0);
+            if (!path.equals(storedPathById.get(id))) {
+                categoryRepository.updatePath(id, path);
+                fixed++;
+            }
+        }
+        if (fixed > 0) {
+            eventPublisher.publishEvent(new CategoryChangedEvent(null));
+            log.info("Backfilled materialized path for {} categories", fixed);
+        }
+    }
+
+    @Override
+    @Transactional(rollbackFor = Exception.class)
+    public void adjustProductCounts(Map<Long, Long> deltaByCategoryId) {
+        // Duyệt theo ID tăng dần để các transaction song song khóa dòng theo cùng thứ tự
+        Map<Long, Long> deltas = new TreeMap<>();
+        deltaByCategoryId.forEach((categoryId, delta) -> {
+            if (categoryId != null && delta != null && delta != 0) {
+                deltas.merge(categoryId, delta, Long::sum);
+            }
+        });
+        deltas.values().removeIf(delta -> delta == 0);
+        if (deltas.isEmpty()) {
+            return;
+        }
+
+        Map<Long, String> pathById = new HashMap<>();
+        for (Object[] row : categoryRepository.findPathsByIds(deltas.keySet())) {
+            pathById.put((Long) row[0], (String) row[1]);
+        }
+        Map<Long, Long> subtreeDeltas = new TreeMap<>();
+        deltas.forEach((categoryId, delta) -> {
+            categoryRepository.adjustDirectProductCount(categoryId, delta);
+            for (Long ancestorId : ancestorIds(categoryId, pathById.get(categoryId))) {
+                subtreeDeltas.merge(ancestorId, delta, Long::sum);
+            }
+        });
+        // Gộp các tổ tiên có cùng delta vào một UPDATE (thường chỉ có một nhóm +1 hoặc -1)
+        Map<Long, List<Long>> idsByDelta = new TreeMap<>();
+        subtreeDeltas.forEach((ancestorId, delta) -> {
+            if (delta != 0) {
+                idsByDelta.computeIfAbsent(delta, k -> new ArrayList<>()).add(ancestorId);
+            }
+        });
+        idsByDelta.forEach((delta, ids) -> categoryRepository.adjustSubtreeProductCount(ids, delta));
+
+        eventPublisher.publishEvent(new CategoryProductCountChangedEvent(deltas.size() == 1 ? deltas.keySet().iterator().next() : null));
+    }
+
+    // Chuyển danh mục sang cha khác: số sản phẩm cả cây con rời khỏi tổ tiên cũ và cộng vào tổ tiên mới
+    private void moveSubtreeProductCount(Long categoryId, String oldPath, String newPath) {
+        Long subtreeCount = categoryRepository.findSubtreeProductCount(categoryId);
+        if (subtreeCount == null || subtreeCount == 0) {
+            return;
+        }
+        List<Long> oldAncestors = ancestorIds(categoryId, oldPath);
+        List<Long> newAncestors = ancestorIds(categoryId, newPath);
+        oldAncestors.remove(categoryId);
+        newAncestors.remove(categoryId);
+        List<Long> leaving = new ArrayList<>(oldAncestors);
+        leaving.removeAll(newAncestors);
+        List<Long> joining = new ArrayList<>(newAncestors);
+        joining.removeAll(oldAncestors);
+        if (!leaving.isEmpty()) {
+            categoryRepository.adjustSubtreeProductCount(leaving, -subtreeCount);
+        }
+        if (!joining.isEmpty()) {
+            categoryRepository.adjustSubtreeProductCount(joining, subtreeCount);
+        }
+    }
+
+    /**
+     * Job sửa sai lệch cột đếm: một query GROUP BY trên tbl_products, tính cây con trong bộ nhớ rồi chỉ ghi
+     * các danh mục bị lệch. Chạy khi khởi động (backfill dữ liệu có trước khi thêm cột) và định kỳ.
+     * Các lần đọc cùng nằm trong một transaction nên nhìn thấy cùng một snapshot dữ liệu.
+     */
+    @Override
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(fixedDelayString = "${app.category-counts.recount-interval-ms:3600000}",
+            initialDelayString = "${app.category-counts.recount-interval-ms:3600000}")
+    @Transactional(rollbackFor = Exception.class)
+    public void recountProductCounts() {
+        long startedAt = System.currentTimeMillis();
+        Map<Long, Long> parentById = new HashMap<>();
+        for (Object[] row : categoryRepository.findAllParentLinks()) {
+            parentById.put((Long) row[0], (Long) row[1]);
+        }
+        Map<Long, Long> directCounts = new HashMap<>();
+        Map<Long, Long> subtreeCounts = new HashMap<>();
+        for (Object[] row : productRepository.countGroupByCategory()) {
+            Long categoryId = (Long) row[0];
+            long count = ((Number) row[1]).longValue();
+            directCounts.put(categoryId, count);
+            // Cộng vào chính nó và mọi tổ tiên (giới hạn độ sâu phòng dữ liệu có vòng lặp)
+            Long current = categoryId;
+            for (int depth = 0; current != null && depth <= parentById.size(); depth++) {
+                subtreeCounts.merge(current, count, Long::sum);
+                current = parentById.get(current);
+            }
+        }
+
+        int fixed = 0;
+        int skipped = 0;
+        for (Object[] row : categoryRepository.findProductCounts()) {
+            Long categoryId = (Long) row[0];
+            long storedDirect = ((Number) row[1]).longValue();
+            long storedSubtree = ((Number) row[2]).longValue();
+            long direct = directCounts.getOrDefault(categoryId, 0L);
+            long subtree = subtreeCounts.getOrDefault(categoryId, 0L);
+            if (direct == storedDirect && subtree == storedSubtree) {
+                continue;
+            }
+            if (categoryRepository.setProductCounts(categoryId, direct, subtree, storedDirect, storedSubtree) == 1) {
+                fixed++;
+            } else {
+                skipped++; // Có adjust song song: để lần chạy sau xử lý
+            }
+        }
+        if (fixed > 0) {
+            eventPublisher.publishEvent(new CategoryProductCountChangedEvent(null));
+            log.warn("Recounted products: fixed {} categories, skipped {} (concurrent updates) in {} ms",
+                    fixed, skipped, System.currentTimeMillis() - startedAt);
+        } else {
+            log.info("Recounted products: all counts up to date ({} skipped) in {} ms", skipped, System.currentTimeMillis() - startedAt);
+        }
+    }
+
+    // ID tổ tiên kể cả chính nó, đọc từ path "/1/5/12/"; path chưa có (chưa backfill) thì chỉ có chính nó
+    private static List<Long> ancestorIds(Long categoryId, String path) {
+        List<Long> ids = new ArrayList<>();
+        if (path == null) {
+            ids.add(categoryId);
+            return ids;
+        }
+        for (String part : path.split("/")) {
+            if (!part.isEmpty()) {
+                ids.add(Long.valueOf(part));
+            }
+        }
+        return ids;
+    }
+
+    private String computePath(Long id, Map<Long, Long> parentById, Map<Long, String> computed, int depth) {
+        String cached = computed.get(id);
+        if (cached != null) {
+            return cached;
+        }
+        Long parentId = parentById.get(id);
+        if (depth > parentById.size()) {
+            throw new IllegalStateException("Category hierarchy contains a cycle at ID: " + id);
+        }
+        String path = (parentId == null ? "/" : computePath(parentId, parentById, computed, depth + 1)) + id + "/";
+        computed.put(id, path);
+        return path;
+    }
+
+    // Path của một danh mục (dùng làm prefix cho con); "/" cho gốc
+    private String pathOf(CategoryEntity category) {
+        if (category == null) {
+            return "/";
+        }
+        if (category.getPath() != null) {
+            return category.getPath();
+        }
+        // Dữ liệu chưa backfill: đi ngược lên cha
+        return pathOf(category.getParentCategory()) + category.getId() + "/";
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public ResourceVersion getCategoryVersion(Long categoryId) {
+        List<Object[]> rows = categoryRepository.findVersionById(categoryId);
+        if (rows.isEmpty()) {
+            return null;
+        }
+        return ResourceVersion.of("category-" + categoryId, rows.get(0)[0], rows.get(0)[1]);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public ResourceVersion getCategoriesVersion() {
+        Object[] row = categoryRepository.findCatalogVersion().get(0);
+        if (((Number) row[1]).longValue() == 0) {
+            return null;
+        }
+        return ResourceVersion.of("categories", row[0], row[1]);
+    }
+
+    // Các hàm đọc cây không mở transaction: snapshot đã dựng sẵn, không cần kết nối DB
+    @Override
+    public List<CategoryTreeResponse> getCategoryTree() {
+        return categoryTreeCache.getTree();
+    }
+
+    @Override
+    public ResourceVersion getCategoryTreeVersion() {
+        return categoryTreeCache.getVersion();
+    }
+
+    @Override
+    public List<CategoryBreadcrumbResponse> getBreadcrumb(Long categoryId) {
+        List<CategoryBreadcrumbResponse> breadcrumb = categoryTreeCache.getBreadcrumb(categoryId);
+        if (breadcrumb.isEmpty()) {
+            log.warn("Category not found with ID: {}", categoryId);
+            throw new ResourceNotFoundException("Category not found with ID: " + categoryId);
+        }
+        return breadcrumb;
+    }
+}
@@ -0,0 +1,79 @@
+package com.backend.service.impl;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Đọc CSV theo RFC 4180 từng bản ghi: hỗ trợ giá trị trong dấu nháy kép, "" là một dấu nháy,
+ * và xuống dòng bên trong giá trị có nháy. Đếm số dòng vật lý để báo lỗi đúng dòng.
+ */
+class CsvRecordReader {
+
+    private final BufferedReader reader;
+    private long lineNumber;
+    private boolean unterminated;
+
+    CsvRecordReader(BufferedReader reader) {
+        this.reader = reader;
+    }
+
+    // Số dòng vật lý đã đọc (dòng cuối của bản ghi vừa đọc)
+    long getLineNumber() {
+        return lineNumber;
+    }
+
+    // Bản ghi vừa đọc kết thúc file khi vẫn còn trong dấu nháy (thiếu dấu nháy đóng)
+    boolean isUnterminated() {
+        return unterminated;
+    }
+
+    /**
+     * @return các giá trị của bản ghi tiếp theo (dòng trống cho ra một giá trị rỗng), null khi hết dữ liệu
+     */
+    List<String> read() throws IOException {
+        String line = reader.readLine();
+        if (line == null) {
+            return null;
+        }
+        lineNumber++;
+        List<String> fields = new ArrayList<>();
+        StringBuilder current = new StringBuilder();
+        boolean inQuotes = false;
+        while (true) {
+            for (int i = 0; i < line.length(); i++) {
+                char c = line.charAt(i);
+                if (inQuotes) {
+                    if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                        current.append('"');
+                        i++;
+                    } else if (c == '"') {
+                        inQuotes = false;
+                    } else {
+                        current.append(c);
+                    }
+                } else if (c == '"') {
+                    inQuotes = true;
+                } else if (c == ',') {
+                    fields.add(current.toString());
+                    current.setLength(0);
+                } else {
+                    current.append(c);
+                }
+            }
+            if (!inQuotes) {
+                break;
+            }
+            line = reader.readLine(); // Giá trị có nháy kéo dài sang dòng sau
+            if (line == null) {
+                break;
+            }
+            lineNumber++;
+            current.append('\n');
+        }
+        unterminated = inQuotes;
+        fields.add(current.toString());
+        return fields;
+    }
+}
@@ -0,0 +1,130 @@
+package com.backend.service.impl;
+
+import com.backend.controller.request.AddItemToCartRequest;
+import com.backend.controller.request.UpdateCartItemRequest;
+import com.backend.controller.response.CartItemResponse;
+import com.backend.controller.response.GuestCartResponse;
+import com.backend.controller.response.ProductSummaryResponse;
+import com.backend.exception.ResourceNotFoundException;
+import com.backend.security.GuestCartTokenCodec;
+import com.backend.service.CartService;
+import com.backend.service.GuestCartService;
+import com.backend.service.ProductCardService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+@Service
+@Slf4j(topic = "GUEST-CART-SERVICE")
+@RequiredArgsConstructor
+public class GuestCartServiceImpl implements GuestCartService {
+
+    private final GuestCartTokenCodec tokenCodec;
+    private final ProductCardService productCardService;
+    private final CartService cartService;
+
+    @Override
+    public GuestCartResponse getCart(String token) {
+        Map<Long, Integer> items = tokenCodec.decode(token);
+        return mapToResponse(items, loadProducts(items), tokenCodec.encode(items)); // Ký lại để gia hạn
+    }
+
+    @Override
+    public GuestCartResponse addItem(String token, AddItemToCartRequest request) {
+        Map<Long, Integer> items = new LinkedHashMap<>(tokenCodec.decode(token));
+        int newQuantity = items.getOrDefault(request.getProductId(), 0) + request.getQuantity();
+        items.put(request.getProductId(), newQuantity);
+
+        Map<Long, ProductSummaryResponse> products = loadProducts(items);
+        checkStock(products.get(request.getProductId()), request.getProductId(), newQuantity);
+        return mapToResponse(items, products, tokenCodec.encode(items));
+    }
+
+    @Override
+    public GuestCartResponse updateItemQuantity(String token, Long productId, UpdateCartItemRequest request) {
+        Map<Long, Integer> items = new LinkedHashMap<>(tokenCodec.decode(token));
+        if (!items.containsKey(productId)) {
+            throw new ResourceNotFoundException("Product " + productId + " is not in the guest cart");
+        }
+        items.put(productId, request.getQuantity());
+
+        Map<Long, ProductSummaryResponse> products = loadProducts(items);
+        checkStock(products.get(productId), productId, request.getQuantity());
+        return mapToResponse(items, products, tokenCodec.encode(items));
+    }
+
+    @Override
+    public GuestCartResponse removeItem(String token, Long productId) {
+        Map<Long, Integer> items = new LinkedHashMap<>(tokenCodec.decode(token));
+        if (items.remove(productId) == null) {
+            throw new ResourceNotFoundException("Product " + productId + " is not in the guest cart");
+        }
+        return mapToResponse(items, loadProducts(items), tokenCodec.encode(items));
+    }
+
+    @Override
+    public void mergeIntoUserCart(Long userId, String token) {
+        Map<Long, Integer> items = tokenCodec.decode(token);
+        if (!items.isEmpty()) {
+            cartService.mergeGuestItems(userId, items);
+        }
+    }
+
+    // Giá/tồn kho/ảnh đọc từ ProductSummaryCache (một query tbl_product_cards cho các ID chưa có trong cache)
+    private Map<Long, ProductSummaryResponse> loadProducts(Map<Long, Integer> items) {
+        if (items.isEmpty()) {
+            return Map.of();
+        }
+        return productCardService.getProductSummaries(new ArrayList<>(items.keySet())).stream()
+                .collect(Collectors.toMap(ProductSummaryResponse::getId, Function.identity()));
+    }
+
+    private void checkStock(ProductSummaryResponse product, Long productId, int quantity) {
+        if (product == null) {
+            throw new ResourceNotFoundException("Product not found with ID: " + productId);
+        }
+        if (product.getStockQuantity() == null || product.getStockQuantity() < quantity) {
+            log.warn("Cannot update guest cart: Not enough stock for product ID {}. Requested: {}, Available: {}", productId, quantity, product.getStockQuantity());
+            throw new IllegalArgumentException("Not enough stock available for product: " + product.getName());
+        }
+    }
+
+    private GuestCartResponse mapToResponse(Map<Long, Integer> items, Map<Long, ProductSummaryResponse> products, String token) {
+        List<CartItemResponse> itemResponses = new ArrayList<>(items.size());
+        BigDecimal totalAmount = BigDecimal.ZERO;
+        int totalItems = 0;
+        for (Map.Entry<Long, Integer> item : items.entrySet()) {
+            ProductSummaryResponse product = products.get(item.getKey());
+            if (product == null) {
+                continue; // Sản phẩm đã bị xóa
+            }
+            BigDecimal subTotal = product.getPrice() != null
+                    ? product.getPrice().multiply(BigDecimal.valueOf(item.getValue()))
+                    : BigDecimal.ZERO;
+            itemResponses.add(CartItemResponse.builder()
+                    .productId(product.getId())
+                    .productName(product.getName())
+                    .productPrice(product.getPrice())
+                    .productImageUrl(product.getPrimaryImageUrl())
+                    .quantity(item.getValue())
+                    .subTotal(subTotal)
+                    .build());
+            totalAmount = totalAmount.add(subTotal);
+            totalItems += item.getValue();
+        }
+        return GuestCartResponse.builder()
+                .token(token)
+                .items(itemResponses)
+                .totalAmount(totalAmount)
+                .totalItems(totalItems)
+                .build();
+    }
+}
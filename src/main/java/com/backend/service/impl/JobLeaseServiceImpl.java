@@ -0,0 +1,54 @@
+package com.backend.service.impl;
+
+import com.backend.model.JobLeaseEntity;
+import com.backend.repository.JobLeaseRepository;
+import com.backend.service.JobLeaseService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.Date;
+import java.util.UUID;
+
+@Service
+@Slf4j(topic = "JOB-LEASE-SERVICE")
+@RequiredArgsConstructor
+public class JobLeaseServiceImpl implements JobLeaseService {
+
+    // Định danh instance này (mỗi lần khởi động một giá trị)
+    private final String owner = UUID.randomUUID().toString();
+
+    private final JobLeaseRepository jobLeaseRepository;
+
+    @Override
+    public boolean tryAcquire(String jobName, Duration ttl) {
+        Date now = new Date();
+        Date until = new Date(now.getTime() + ttl.toMillis());
+        if (jobLeaseRepository.tryAcquire(jobName, owner, now, until) > 0) {
+            return true;
+        }
+        if (jobLeaseRepository.existsById(jobName)) {
+            log.debug("Job '{}' is leased by another instance", jobName);
+            return false;
+        }
+        // Lần đầu chạy job: tạo dòng lease (instance khác tạo cùng lúc thì bên đó thắng)
+        JobLeaseEntity lease = new JobLeaseEntity();
+        lease.setName(jobName);
+        lease.setOwner(owner);
+        lease.setLockedUntil(until);
+        try {
+            jobLeaseRepository.saveAndFlush(lease);
+            return true;
+        } catch (DataIntegrityViolationException e) {
+            log.debug("Lease row for job '{}' created concurrently by another instance", jobName);
+            return false;
+        }
+    }
+
+    @Override
+    public void release(String jobName) {
+        jobLeaseRepository.release(jobName, owner, new Date());
+    }
+}
@@ -2,8 +2,14 @@ package com.backend.service.impl;
 
 import com.backend.common.OrderStatus;
 import com.backend.common.PaymentStatus;
+import com.backend.common.RetryOnConflict;
 import com.backend.controller.request.OrderCreationRequest;
 import com.backend.controller.response.*;
+import com.backend.event.CatalogChangedEvent;
+import com.backend.event.OrderCancelledEvent;
+import com.backend.event.OrderLine;
+import com.backend.event.OrderPlacedEvent;
+import com.backend.event.ProductChangedEvent;
 import com.backend.exception.InvalidDataException;
 import com.backend.exception.ResourceNotFoundException;
 import com.backend.model.*;
@@ -11,23 +17,22 @@ import com.backend.repository.*;
 import com.backend.service.BrevoEmailService;
 import com.backend.service.CartService;
 import com.backend.service.OrderService;
+import com.backend.service.PurchaseService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.Pageable;
 import org.springframework.scheduling.annotation.Async;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
-import org.springframework.util.CollectionUtils;
 
 import java.math.BigDecimal;
 import java.text.NumberFormat; // Cho format tiền tệ
 import java.text.SimpleDateFormat; // Cho format ngày tháng
 import java.util.*;
-import java.util.concurrent.locks.Lock;
-import java.util.concurrent.locks.ReentrantLock;
 import java.util.stream.Collectors;
 
 @Service
@@ -43,9 +48,8 @@ public class OrderServiceImpl implements OrderService {
     private final CartService cartService;
     private final CartItemRepository cartItemRepository;
     private final BrevoEmailService brevoEmailService;
-
-    // Using Locks to prevent race conditions when updating stock
-    private final Map<Long, Lock> productLocks = new HashMap<>();
+    private final ApplicationEventPublisher eventPublisher;
+    private final PurchaseService purchaseService;
 
     // Inject default values from configuration for email templates
     @Value("${app.email.defaults.service-name:PETSHOP}")
@@ -63,10 +67,6 @@ public class OrderServiceImpl implements OrderService {
     @Value("${app.email.defaults.support-phone:1900 XXXX}")
     private String defaultSupportPhone;
 
-    private Lock getProductLock(Long productId) {
-        return productLocks.computeIfAbsent(productId, k -> new ReentrantLock());
-    }
-
     // --- Helper Methods ---
 
     // mapOrderToResponse, mapOrderItemToResponse, mapAddressToResponse giữ nguyên như trước
@@ -145,7 +145,10 @@ public class OrderServiceImpl implements OrderService {
     }
     // --- Service Implementations ---
 
+    // Sản phẩm của đơn được đọc với khóa ghi (theo thứ tự id): các checkout cùng sản phẩm chờ nhau thay vì xung đột.
+    // @Version của ProductEntity vẫn bảo vệ trước thao tác không khóa (admin sửa sản phẩm); xung đột đó thì chạy lại
     @Override
+    @RetryOnConflict
     @Transactional(rollbackFor = Exception.class)
     public OrderResponse createOrderFromCart(Long userId, OrderCreationRequest request) {
         log.info("Attempting to create order from cart for user ID: {}", userId);
@@ -153,8 +156,9 @@ public class OrderServiceImpl implements OrderService {
         UserEntity user = userRepository.findById(userId)
                 .orElseThrow(() -> new ResourceNotFoundException("User not found with ID: " + userId));
 
-        CartResponse cart = cartService.getCartByUserId(userId);
-        if (CollectionUtils.isEmpty(cart.getItems())) {
+        // Đọc dòng giỏ từ DB (khóa giỏ) chứ không từ giỏ trong bộ nhớ: giỏ đã đặt hàng trên instance khác không bị đặt lại
+        Map<Long, Integer> cartItems = cartService.getCheckoutItems(userId);
+        if (cartItems.isEmpty()) {
             log.warn("Cannot create order: Cart is empty for user ID: {}", userId);
             throw new InvalidDataException("Cannot create order from an empty cart.");
         }
@@ -192,58 +196,62 @@ public class OrderServiceImpl implements OrderService {
         List<ProductEntity> productsToUpdateStock = new ArrayList<>();
         List<Map<String, Object>> orderItemsForEmail = new ArrayList<>(); // Prepare list of items for email content
 
-        for (CartItemResponse cartItem : cart.getItems()) {
-            Long productId = cartItem.getProductId();
-            Integer quantityToOrder = cartItem.getQuantity();
-            Lock productLock = getProductLock(productId);
-            productLock.lock();
-            try {
-                ProductEntity product = productRepository.findById(productId)
-                        .orElseThrow(() -> new ResourceNotFoundException("Product not found with ID: " + productId + " during order creation."));
+        Map<Long, ProductEntity> lockedProducts = new HashMap<>();
+        productRepository.findAllForUpdate(cartItems.keySet()).forEach(product -> lockedProducts.put(product.getId(), product));
 
-                if (product.getStockQuantity() < quantityToOrder) {
-                    log.warn("Order creation failed: Not enough stock for product ID {}. Requested: {}, Available: {}", productId, quantityToOrder, product.getStockQuantity());
-                    throw new InvalidDataException("Not enough stock available for product: " + product.getName());
-                }
+        for (Map.Entry<Long, Integer> cartItem : cartItems.entrySet()) {
+            Long productId = cartItem.getKey();
+            Integer quantityToOrder = cartItem.getValue();
+            ProductEntity product = lockedProducts.get(productId);
+            if (product == null) {
+                throw new ResourceNotFoundException("Product not found with ID: " + productId + " during order creation.");
+            }
 
-                int newStock = product.getStockQuantity() - quantityToOrder;
-                product.setStockQuantity(newStock);
-                productsToUpdateStock.add(product);
-
-                OrderItemEntity orderItem = new OrderItemEntity();
-                orderItem.setOrder(order);
-                orderItem.setProduct(product);
-                orderItem.setQuantity(quantityToOrder);
-                orderItem.setPriceAtOrder(product.getPrice());
-                BigDecimal subtotal = product.getPrice().multiply(BigDecimal.valueOf(quantityToOrder));
-                orderItem.setSubtotal(subtotal); // Store subtotal in the item
-
-                order.getOrderItems().add(orderItem);
-                totalOrderAmount = totalOrderAmount.add(subtotal); // Accumulate subtotal
-
-                // Add item details to the list for the confirmation email
-                Map<String, Object> itemMapForEmail = new HashMap<>();
-                itemMapForEmail.put("productName", product.getName()); // Key must match template: {{ item.productName }}
-                itemMapForEmail.put("productSku", product.getSku());   // Key must match template: {{ item.productSku }}
-                itemMapForEmail.put("quantity", quantityToOrder);      // Key must match template: {{ item.quantity }}
-                itemMapForEmail.put("subTotal", formatCurrency(subtotal)); // Key must match template: {{ item.subTotal }} - Formatted currency
-                // Get product image URL (if available)
-                String imageUrl = null;
-                List<String> imageUrls = product.getImageURLs();
-                if (imageUrls != null && !imageUrls.isEmpty()) {
-                    imageUrl = imageUrls.get(0);
-                }
-                itemMapForEmail.put("productImageUrl", imageUrl != null ? imageUrl : "https://via.placeholder.com/70x70.png?text=N/A"); // {{ item.productImageUrl }}
-                orderItemsForEmail.add(itemMapForEmail);
+            if (product.getStockQuantity() < quantityToOrder) {
+                log.warn("Order creation failed: Not enough stock for product ID {}. Requested: {}, Available: {}", productId, quantityToOrder, product.getStockQuantity());
+                throw new InvalidDataException("Not enough stock available for product: " + product.getName());
+            }
+
+            int newStock = product.getStockQuantity() - quantityToOrder;
+            product.setStockQuantity(newStock);
+            productsToUpdateStock.add(product);
+            productRepository.incrementSoldCount(productId, quantityToOrder);
+            eventPublisher.publishEvent(new ProductChangedEvent(productId)); // Tồn kho + số lượng bán trên card
+            if (newStock == 0) {
+                eventPublisher.publishEvent(new CatalogChangedEvent(productId)); // Hết hàng: đổi kết quả lọc còn hàng
+            }
 
-            } finally {
-                productLock.unlock();
+            OrderItemEntity orderItem = new OrderItemEntity();
+            orderItem.setOrder(order);
+            orderItem.setProduct(product);
+            orderItem.setQuantity(quantityToOrder);
+            orderItem.setPriceAtOrder(product.getPrice());
+            BigDecimal subtotal = product.getPrice().multiply(BigDecimal.valueOf(quantityToOrder));
+            orderItem.setSubtotal(subtotal); // Store subtotal in the item
+
+            order.getOrderItems().add(orderItem);
+            totalOrderAmount = totalOrderAmount.add(subtotal); // Accumulate subtotal
+
+            // Add item details to the list for the confirmation email
+            Map<String, Object> itemMapForEmail = new HashMap<>();
+            itemMapForEmail.put("productName", product.getName()); // Key must match template: {{ item.productName }}
+            itemMapForEmail.put("productSku", product.getSku());   // Key must match template: {{ item.productSku }}
+            itemMapForEmail.put("quantity", quantityToOrder);      // Key must match template: {{ item.quantity }}
+            itemMapForEmail.put("subTotal", formatCurrency(subtotal)); // Key must match template: {{ item.subTotal }} - Formatted currency
+            // Get product image URL (if available)
+            String imageUrl = null;
+            List<String> imageUrls = product.getImageURLs();
+            if (imageUrls != null && !imageUrls.isEmpty()) {
+                imageUrl = imageUrls.get(0);
             }
+            itemMapForEmail.put("productImageUrl", imageUrl != null ? imageUrl : "https://via.placeholder.com/70x70.png?text=N/A"); // {{ item.productImageUrl }}
+            orderItemsForEmail.add(itemMapForEmail);
         }
 
         order.setTotalAmount(totalOrderAmount);
 
         OrderEntity savedOrder = orderRepository.save(order);
+        eventPublisher.publishEvent(new OrderPlacedEvent(savedOrder.getId(), savedOrder.getOrderDate(), toOrderLines(savedOrder)));
         log.info("Order entity and items saved successfully. Order ID: {}", savedOrder.getId());
 
         if (!productsToUpdateStock.isEmpty()) {
@@ -382,6 +390,7 @@ public class OrderServiceImpl implements OrderService {
     }
 
     @Override
+    @RetryOnConflict
     @Transactional(rollbackFor = Exception.class)
     public OrderResponse updateOrderStatus(Long orderId, OrderStatus newStatus) {
         log.info("ADMIN: Updating status for Order ID: {} to {}", orderId, newStatus);
@@ -397,7 +406,13 @@ public class OrderServiceImpl implements OrderService {
 
         log.info("Updating order {} status from {} to {}", order.getOrderCode(), oldStatus, newStatus);
         order.setStatus(newStatus);
-        OrderEntity updatedOrder = orderRepository.save(order); // Save the new status
+        OrderEntity updatedOrder = orderRepository.saveAndFlush(order); // Flush ngay: xung đột version lộ ra trước khi gửi email
+        if (oldStatus.countsAsSale() && !newStatus.countsAsSale()) {
+            releaseSalesCounters(updatedOrder); // Admin hủy đơn/đánh dấu thất bại: trừ thống kê giống như khách tự hủy
+        } else if (!oldStatus.countsAsSale() && newStatus.countsAsSale()) {
+            applySalesCounters(updatedOrder); // Mở lại đơn đã hủy/thất bại: cộng lại thống kê đã trừ
+        }
+        purchaseService.onOrderStatusChanged(orderId, oldStatus, newStatus); // Chỉ mục "đã mua" cho review
 
         // Send status update notification email
         sendOrderStatusUpdateEmail(updatedOrder); // Send email after successful save
@@ -449,6 +464,7 @@ public class OrderServiceImpl implements OrderService {
         }
     }
     @Override
+    @RetryOnConflict
     @Transactional(rollbackFor = Exception.class)
     public OrderResponse cancelOrder(Long orderId, Long userId) {
         log.info("User ID {} attempting to cancel Order ID: {}", userId, orderId);
@@ -460,12 +476,38 @@ public class OrderServiceImpl implements OrderService {
         }
         order.setStatus(OrderStatus.CANCELLED);
         OrderEntity cancelledOrder = orderRepository.save(order);
+        releaseSalesCounters(cancelledOrder);
         // Optional: Send order cancellation email here
         // sendOrderCancellationEmail(cancelledOrder);
         log.info("Order ID {} cancelled successfully by user ID {}", orderId, userId);
         return mapOrderToResponse(cancelledOrder);
     }
 
+    // Đơn rời trạng thái CANCELLED/FAILED (OrderStatus.NOT_COUNTED_AS_SALE): tính lại như một đơn vừa đặt
+    private void applySalesCounters(OrderEntity order) {
+        for (OrderItemEntity item : order.getOrderItems()) {
+            productRepository.incrementSoldCount(item.getProduct().getId(), item.getQuantity());
+            eventPublisher.publishEvent(new ProductChangedEvent(item.getProduct().getId()));
+        }
+        eventPublisher.publishEvent(new OrderPlacedEvent(order.getId(), order.getOrderDate(), toOrderLines(order)));
+    }
+
+    // Đơn đã hủy/thất bại không còn tính vào số lượng bán (BEST_SELLING) và các thống kê bán hàng khác.
+    // Chỉ gọi khi đơn rời một trạng thái được tính, để không trừ hai lần
+    private void releaseSalesCounters(OrderEntity order) {
+        for (OrderItemEntity item : order.getOrderItems()) {
+            productRepository.incrementSoldCount(item.getProduct().getId(), -item.getQuantity());
+            eventPublisher.publishEvent(new ProductChangedEvent(item.getProduct().getId()));
+        }
+        eventPublisher.publishEvent(new OrderCancelledEvent(order.getId(), order.getOrderDate(), toOrderLines(order)));
+    }
+
+    private List<OrderLine> toOrderLines(OrderEntity order) {
+        return order.getOrderItems().stream()
+                .map(item -> new OrderLine(item.getProduct().getId(), item.getProduct().getCategory().getId(), item.getQuantity()))
+                .toList();
+    }
+
     private String generateOrderCode() {
         return "ORD-" + System.currentTimeMillis();
     }
@@ -477,18 +519,16 @@ public class OrderServiceImpl implements OrderService {
             for (OrderItemEntity item : order.getOrderItems()) {
                 Long productId = item.getProduct().getId();
                 Integer quantityToRestore = item.getQuantity();
-                Lock productLock = getProductLock(productId);
-                productLock.lock();
-                try {
-                    ProductEntity product = productRepository.findById(productId)
-                            .orElseThrow(() -> new ResourceNotFoundException("Product not found with ID: " + productId + " during stock restore."));
-                    int newStock = product.getStockQuantity() + quantityToRestore;
-                    product.setStockQuantity(newStock);
-                    productRepository.save(product);
-                    log.info("Restored stock for Product ID {}: +{} units. New stock: {}", productId, quantityToRestore, newStock);
-                } finally {
-                    productLock.unlock();
+                ProductEntity product = productRepository.findById(productId)
+                        .orElseThrow(() -> new ResourceNotFoundException("Product not found with ID: " + productId + " during stock restore."));
+                int newStock = product.getStockQuantity() + quantityToRestore;
+                product.setStockQuantity(newStock);
+                productRepository.save(product);
+                eventPublisher.publishEvent(new ProductChangedEvent(productId));
+                if (newStock - quantityToRestore <= 0 && newStock > 0) {
+                    eventPublisher.publishEvent(new CatalogChangedEvent(productId)); // Có hàng trở lại
                 }
+                log.info("Restored stock for Product ID {}: +{} units. New stock: {}", productId, quantityToRestore, newStock);
             }
             return true;
         } catch (Exception e) {
@@ -0,0 +1,208 @@
+package com.backend.service.impl;
+
+import com.backend.cache.CategoryHierarchyCache;
+import com.backend.cache.ProductSummaryCache;
+import com.backend.common.ProductSort;
+import com.backend.common.SalesWindow;
+import com.backend.controller.response.CursorPageResponse;
+import com.backend.controller.response.ProductCardResponse;
+import com.backend.controller.response.ProductSummaryResponse;
+import com.backend.event.CategoryChangedEvent;
+import com.backend.event.ProductChangedEvent;
+import com.backend.model.ProductCardEntity;
+import com.backend.repository.ProductCardRepository;
+import com.backend.repository.ProductRepository;
+import com.backend.service.ProductCardService;
+import com.backend.specification.ProductCardSpecification;
+import com.backend.specification.ProductCursor;
+import com.backend.specification.ProductSpecification;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.stream.Collectors;
+
+@Service
+@Slf4j(topic = "PRODUCT-CARD-SERVICE")
+@RequiredArgsConstructor
+public class ProductCardServiceImpl implements ProductCardService {
+
+    private final ProductCardRepository productCardRepository;
+    private final ProductRepository productRepository;
+    private final CategoryHierarchyCache categoryHierarchyCache;
+    private final ProductSummaryCache productSummaryCache;
+
+    @Override
+    @Transactional(readOnly = true)
+    public CursorPageResponse<ProductCardResponse> scrollCards(String keyword, Long categoryId, BigDecimal minPrice, BigDecimal maxPrice,
+                                                               boolean inStockOnly, ProductSort sort, String cursor, int size) {
+        log.info("Scrolling product cards - keyword: [{}], categoryId: [{}], minPrice: [{}], maxPrice: [{}], inStockOnly: {}, sort: {}, size: {}, hasCursor: {}",
+                keyword, categoryId, minPrice, maxPrice, inStockOnly, sort, size, cursor != null);
+
+        Specification<ProductCardEntity> spec = Specification.where(null);
+        if (keyword != null && !keyword.trim().isEmpty()) {
+            spec = spec.and(ProductCardSpecification.hasKeyword(keyword.trim()));
+        }
+        if (categoryId != null) {
+            spec = spec.and(ProductCardSpecification.hasCategory(categoryHierarchyCache.getSubtreeIds(categoryId)));
+        }
+        if (minPrice != null) {
+            spec = spec.and(ProductCardSpecification.hasMinPrice(minPrice));
+        }
+        if (maxPrice != null) {
+            spec = spec.and(ProductCardSpecification.hasMaxPrice(maxPrice));
+        }
+        if (inStockOnly) {
+            spec = spec.and(ProductCardSpecification.isInStock());
+        }
+        if (cursor != null && !cursor.isBlank()) {
+            spec = spec.and(ProductSpecification.after(ProductCursor.decode(sort, cursor)));
+        }
+
+        // Một query trên một bảng theo index (category_id, cột sắp xếp, product_id); không join, không COUNT
+        List<ProductCardEntity> rows = productCardRepository.findBy(spec, query -> query
+                .sortBy(sort.toSort())
+                .limit(size + 1)
+                .all());
+
+        boolean hasNext = rows.size() > size;
+        List<ProductCardEntity> pageRows = hasNext ? rows.subList(0, size) : rows;
+        String nextCursor = hasNext ? ProductCursor.of(sort, pageRows.get(pageRows.size() - 1)).encode() : null;
+
+        List<ProductCardResponse> items = pageRows.stream()
+                .map(this::mapToCardResponse)
+                .collect(Collectors.toList());
+
+        return CursorPageResponse.<ProductCardResponse>builder()
+                .items(items)
+                .size(items.size())
+                .hasNext(hasNext)
+                .nextCursor(nextCursor)
+                .build();
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public List<ProductSummaryResponse> getProductSummaries(List<Long> productIds) {
+        LinkedHashSet<Long> ids = new LinkedHashSet<>(productIds); // Bỏ ID trùng, giữ thứ tự
+        Map<Long, ProductSummaryResponse> found = new HashMap<>(ids.size() * 2);
+        List<Long> misses = new ArrayList<>();
+        long loadedAt = productSummaryCache.getAll(ids, found, misses);
+
+        if (!misses.isEmpty()) {
+            // Một query theo khóa chính trên tbl_product_cards cho tất cả ID chưa có trong cache
+            List<ProductSummaryResponse> loaded = productCardRepository.findAllById(misses).stream()
+                    .map(this::mapToSummaryResponse)
+                    .toList();
+            productSummaryCache.putAll(loaded, loadedAt);
+            loaded.forEach(summary -> found.put(summary.getId(), summary));
+        }
+        log.info("Batch lookup for {} products: {} from cache, {} loaded, {} not found",
+                ids.size(), ids.size() - misses.size(), found.size() - (ids.size() - misses.size()), ids.size() - found.size());
+
+        return ids.stream()
+                .map(found::get)
+                .filter(Objects::nonNull)
+                .toList();
+    }
+
+    @Override
+    @Transactional(rollbackFor = Exception.class)
+    public void rebuildAllCards() {
+        productCardRepository.deleteAllCards();
+        int inserted = productCardRepository.insertAllCards();
+        refreshSalesWindows();
+        log.info("Rebuilt {} product cards", inserted);
+    }
+
+    @Override
+    @Transactional(rollbackFor = Exception.class)
+    public void refreshSalesWindows() {
+        LocalDate today = LocalDate.now();
+        productCardRepository.refreshAllSalesWindows(SalesWindow.LAST_7_DAYS.firstDay(today), SalesWindow.LAST_30_DAYS.firstDay(today));
+    }
+
+    @Override
+    @Transactional(rollbackFor = Exception.class)
+    public void refreshSalesWindows(Collection<Long> productIds) {
+        if (productIds.isEmpty()) {
+            return;
+        }
+        LocalDate today = LocalDate.now();
+        productCardRepository.refreshSalesWindows(productIds, SalesWindow.LAST_7_DAYS.firstDay(today), SalesWindow.LAST_30_DAYS.firstDay(today));
+    }
+
+    // Chạy trong transaction của thao tác ghi (trước commit): card luôn nhất quán với bảng gốc
+    @TransactionalEventListener(phase = TransactionPhase.BEFORE_COMMIT)
+    public void onProductChanged(ProductChangedEvent event) {
+        List<Long> ids = List.of(event.productId());
+        productCardRepository.deleteCards(ids);
+        if (productCardRepository.insertCards(ids) > 0) {
+            LocalDate today = LocalDate.now();
+            productCardRepository.refreshSalesWindows(ids, SalesWindow.LAST_7_DAYS.firstDay(today), SalesWindow.LAST_30_DAYS.firstDay(today));
+        }
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.BEFORE_COMMIT)
+    public void onCategoryChanged(CategoryChangedEvent event) {
+        if (event.categoryId() != null) {
+            productCardRepository.refreshCategoryName(event.categoryId());
+        }
+    }
+
+    // Dữ liệu có từ trước khi có bảng card (hoặc lệch số lượng): dựng lại một lần khi khởi động
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional(rollbackFor = Exception.class)
+    public void initializeCards() {
+        long products = productRepository.count();
+        long cards = productCardRepository.count();
+        if (products != cards) {
+            log.info("Product card table out of sync ({} products, {} cards), rebuilding", products, cards);
+            rebuildAllCards();
+        }
+    }
+
+    private ProductSummaryResponse mapToSummaryResponse(ProductCardEntity card) {
+        return ProductSummaryResponse.builder()
+                .id(card.getId())
+                .name(card.getName())
+                .price(card.getPrice())
+                .stockQuantity(card.getStockQuantity())
+                .inStock(Boolean.TRUE.equals(card.getInStock()))
+                .primaryImageUrl(card.getPrimaryImageUrl())
+                .build();
+    }
+
+    private ProductCardResponse mapToCardResponse(ProductCardEntity card) {
+        return ProductCardResponse.builder()
+                .id(card.getId())
+                .name(card.getName())
+                .price(card.getPrice())
+                .primaryImageUrl(card.getPrimaryImageUrl())
+                .categoryId(card.getCategoryId())
+                .categoryName(card.getCategoryName())
+                .inStock(Boolean.TRUE.equals(card.getInStock()))
+                .averageRating(card.getAverageRating())
+                .reviewCount(card.getRatingCount())
+                .soldCount(card.getSoldCount())
+                .soldLast7Days(card.getSoldLast7Days())
+                .soldLast30Days(card.getSoldLast30Days())
+                .viewCount(card.getViewCount())
+                .build();
+    }
+}
@@ -0,0 +1,339 @@
+package com.backend.service.impl;
+
+import com.backend.common.ProductImportFormat;
+import com.backend.controller.request.ProductCreationRequest;
+import com.backend.controller.response.ProductImportError;
+import com.backend.controller.response.ProductImportResponse;
+import com.backend.event.CatalogChangedEvent;
+import com.backend.exception.InvalidDataException;
+import com.backend.repository.CategoryRepository;
+import com.backend.repository.ProductCardRepository;
+import com.backend.repository.ProductRepository;
+import com.backend.service.CategoryService;
+import com.backend.service.ProductImportService;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.sql.Timestamp;
+import java.util.*;
+import java.util.stream.Collectors;
+
+@Service
+@Slf4j(topic = "PRODUCT-IMPORT-SERVICE")
+@RequiredArgsConstructor
+public class ProductImportServiceImpl implements ProductImportService {
+
+    private static final String INSERT_PRODUCT_SQL =
+            "INSERT INTO tbl_products (name, description, price, sku, stock_quantity, category_id, sold_count, average_rating, " +
+            "rating_sum, rating_count, rating_1, rating_2, rating_3, rating_4, rating_5, version, created_at, updated_at) " +
+            "VALUES (?, ?, ?, ?, ?, ?, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, ?, ?)";
+    private static final String INSERT_IMAGE_SQL =
+            "INSERT INTO tbl_product_images (url, is_primary, sort_order, product_id) VALUES (?, ?, ?, ?)";
+    private static final String SELECT_IDS_BY_SKU_SQL =
+            "SELECT id, sku FROM tbl_products WHERE sku IN (:skus)";
+
+    private static final List<String> REQUIRED_CSV_COLUMNS = List.of("sku", "name", "price", "stockquantity", "categoryid");
+
+    private final ProductRepository productRepository;
+    private final CategoryRepository categoryRepository;
+    private final ProductCardRepository productCardRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final NamedParameterJdbcTemplate namedParameterJdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final ObjectMapper objectMapper;
+    private final Validator validator;
+    private final CategoryService categoryService;
+    private final ApplicationEventPublisher eventPublisher;
+
+    @Value("${app.product-import.chunk-size:1000}")
+    private int chunkSize;
+
+    @Value("${app.product-import.max-reported-errors:1000}")
+    private int maxReportedErrors;
+
+    // Một dòng đã parse được từ file, kèm số dòng để báo lỗi
+    private record ImportRow(long lineNumber, ProductCreationRequest request) {
+    }
+
+    // Trạng thái của một lần import (chỉ dùng trong một request, không cần thread-safe)
+    private class ImportProgress {
+        long totalRows;
+        long importedCount;
+        long failedCount;
+        final List<ProductImportError> errors = new ArrayList<>();
+        final Set<String> seenSkus = new HashSet<>();          // Phát hiện SKU trùng trong cùng file
+        final Set<Long> knownCategoryIds = new HashSet<>();    // Category đã xác nhận tồn tại
+        final Set<Long> missingCategoryIds = new HashSet<>();  // Category đã xác nhận không tồn tại
+        final List<ImportRow> chunk = new ArrayList<>(chunkSize);
+
+        void fail(long lineNumber, String sku, String message) {
+            failedCount++;
+            if (errors.size() < maxReportedErrors) {
+                errors.add(ProductImportError.builder().lineNumber(lineNumber).sku(sku).message(message).build());
+            }
+        }
+    }
+
+    @Override
+    public ProductImportResponse importProducts(InputStream content, ProductImportFormat format) {
+        log.info("Starting bulk product import, format: {}, chunk size: {}", format, chunkSize);
+        long startedAt = System.currentTimeMillis();
+        ImportProgress progress = new ImportProgress();
+
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(content, StandardCharsets.UTF_8))) {
+            if (format == ProductImportFormat.CSV) {
+                readCsv(reader, progress);
+            } else {
+                readNdjson(reader, progress);
+            }
+            flushChunk(progress);
+        } catch (IOException e) {
+            log.error("Bulk import aborted while reading upload after {} rows: {}", progress.totalRows, e.getMessage());
+            throw new UncheckedIOException("Could not read import content", e);
+        }
+
+        long duration = System.currentTimeMillis() - startedAt;
+        progress.errors.sort(Comparator.comparingLong(ProductImportError::getLineNumber)); // Lỗi theo chunk được ghi sau lỗi parse
+        log.info("Bulk product import finished: {} rows, {} imported, {} failed in {} ms",
+                progress.totalRows, progress.importedCount, progress.failedCount, duration);
+
+        return ProductImportResponse.builder()
+                .totalRows(progress.totalRows)
+                .importedCount(progress.importedCount)
+                .failedCount(progress.failedCount)
+                .durationMillis(duration)
+                .errors(progress.errors)
+                .errorsTruncated(progress.failedCount > progress.errors.size())
+                .build();
+    }
+
+    // --- Đọc dữ liệu ---
+
+    private void readNdjson(BufferedReader reader, ImportProgress progress) throws IOException {
+        String line;
+        long lineNumber = 0;
+        while ((line = reader.readLine()) != null) {
+            lineNumber++;
+            if (line.isBlank()) {
+                continue;
+            }
+            progress.totalRows++;
+            try {
+                accept(new ImportRow(lineNumber, objectMapper.readValue(line, ProductCreationRequest.class)), progress);
+            } catch (JsonProcessingException e) {
+                progress.fail(lineNumber, null, "Invalid JSON: " + e.getOriginalMessage());
+            }
+        }
+    }
+
+    private void readCsv(BufferedReader reader, ImportProgress progress) throws IOException {
+        CsvRecordReader csv = new CsvRecordReader(reader);
+        List<String> header = csv.read();
+        if (header == null) {
+            return; // File rỗng
+        }
+        Map<String, Integer> columns = new HashMap<>();
+        for (int i = 0; i < header.size(); i++) {
+            columns.put(header.get(i).trim().toLowerCase(Locale.ROOT), i);
+        }
+        List<String> missing = REQUIRED_CSV_COLUMNS.stream().filter(c -> !columns.containsKey(c)).toList();
+        if (!missing.isEmpty()) {
+            throw new InvalidDataException("CSV header is missing required columns: " + missing);
+        }
+
+        List<String> record;
+        while (true) {
+            long lineNumber = csv.getLineNumber() + 1;
+            record = csv.read();
+            if (record == null) {
+                break;
+            }
+            if (record.size() == 1 && record.get(0).isBlank()) {
+                continue;
+            }
+            progress.totalRows++;
+            String sku = column(record, columns, "sku");
+            if (csv.isUnterminated()) {
+                progress.fail(lineNumber, sku, "Unterminated quoted value.");
+                continue;
+            }
+            try {
+                accept(new ImportRow(lineNumber, toRequest(record, columns)), progress);
+            } catch (NumberFormatException e) {
+                progress.fail(lineNumber, sku, "Invalid number: " + e.getMessage());
+            }
+        }
+    }
+
+    private ProductCreationRequest toRequest(List<String> record, Map<String, Integer> columns) {
+        ProductCreationRequest request = new ProductCreationRequest();
+        request.setSku(column(record, columns, "sku"));
+        request.setName(column(record, columns, "name"));
+        request.setDescription(column(record, columns, "description"));
+        String price = column(record, columns, "price");
+        request.setPrice(price != null ? new BigDecimal(price) : null);
+        String stock = column(record, columns, "stockquantity");
+        request.setStockQuantity(stock != null ? Integer.valueOf(stock) : null);
+        String categoryId = column(record, columns, "categoryid");
+        request.setCategoryId(categoryId != null ? Long.valueOf(categoryId) : null);
+        String images = column(record, columns, "imageurls");
+        if (images != null) {
+            request.setImageURLs(Arrays.stream(images.split("\\|"))
+                    .map(String::trim)
+                    .filter(url -> !url.isEmpty())
+                    .collect(Collectors.toList()));
+        }
+        return request;
+    }
+
+    private String column(List<String> record, Map<String, Integer> columns, String name) {
+        Integer index = columns.get(name);
+        if (index == null || index >= record.size()) {
+            return null;
+        }
+        String value = record.get(index).trim();
+        return value.isEmpty() ? null : value;
+    }
+
+    // --- Ghi dữ liệu ---
+
+    private void accept(ImportRow row, ImportProgress progress) {
+        Set<ConstraintViolation<ProductCreationRequest>> violations = validator.validate(row.request());
+        if (!violations.isEmpty()) {
+            String message = violations.stream()
+                    .map(ConstraintViolation::getMessage)
+                    .sorted()
+                    .collect(Collectors.joining("; "));
+            progress.fail(row.lineNumber(), row.request().getSku(), message);
+            return;
+        }
+        progress.chunk.add(row);
+        if (progress.chunk.size() >= chunkSize) {
+            flushChunk(progress);
+        }
+    }
+
+    private void flushChunk(ImportProgress progress) {
+        if (progress.chunk.isEmpty()) {
+            return;
+        }
+        List<ImportRow> rows = new ArrayList<>(progress.chunk);
+        progress.chunk.clear();
+
+        // 1. SKU trùng trong cùng file
+        List<ImportRow> candidates = new ArrayList<>(rows.size());
+        for (ImportRow row : rows) {
+            if (progress.seenSkus.add(row.request().getSku())) {
+                candidates.add(row);
+            } else {
+                progress.fail(row.lineNumber(), row.request().getSku(), "Duplicate SKU in upload.");
+            }
+        }
+
+        // 2. SKU đã tồn tại trong DB: một query cho cả chunk thay vì existsBySku từng dòng
+        Set<String> existingSkus = candidates.isEmpty() ? Set.of()
+                : new HashSet<>(productRepository.findExistingSkus(candidates.stream().map(r -> r.request().getSku()).toList()));
+
+        // 3. Category: chỉ hỏi DB cho các ID chưa gặp trong các chunk trước
+        Set<Long> unresolved = candidates.stream()
+                .map(r -> r.request().getCategoryId())
+                .filter(id -> !progress.knownCategoryIds.contains(id) && !progress.missingCategoryIds.contains(id))
+                .collect(Collectors.toSet());
+        if (!unresolved.isEmpty()) {
+            List<Long> found = categoryRepository.findExistingIds(unresolved);
+            progress.knownCategoryIds.addAll(found);
+            unresolved.removeAll(found);
+            progress.missingCategoryIds.addAll(unresolved);
+        }
+
+        List<ImportRow> valid = new ArrayList<>(candidates.size());
+        for (ImportRow row : candidates) {
+            ProductCreationRequest request = row.request();
+            if (existingSkus.contains(request.getSku())) {
+                progress.fail(row.lineNumber(), request.getSku(), "Product SKU '" + request.getSku() + "' already exists.");
+            } else if (progress.missingCategoryIds.contains(request.getCategoryId())) {
+                progress.fail(row.lineNumber(), request.getSku(), "Category not found with ID: " + request.getCategoryId());
+            } else {
+                valid.add(row);
+            }
+        }
+        if (valid.isEmpty()) {
+            return;
+        }
+
+        // 4. Ghi cả chunk trong một transaction bằng JDBC batch
+        try {
+            transactionTemplate.executeWithoutResult(status -> insertChunk(valid));
+            progress.importedCount += valid.size();
+            log.info("Imported chunk of {} products ({} imported so far)", valid.size(), progress.importedCount);
+        } catch (DataAccessException e) {
+            log.error("Import chunk of {} rows rolled back: {}", valid.size(), e.getMostSpecificCause().getMessage());
+            String message = "Chunk rolled back: " + e.getMostSpecificCause().getMessage();
+            valid.forEach(row -> progress.fail(row.lineNumber(), row.request().getSku(), message));
+        }
+    }
+
+    private void insertChunk(List<ImportRow> rows) {
+        Timestamp now = new Timestamp(System.currentTimeMillis());
+        jdbcTemplate.batchUpdate(INSERT_PRODUCT_SQL, rows, rows.size(), (ps, row) -> {
+            ProductCreationRequest request = row.request();
+            ps.setString(1, request.getName());
+            ps.setString(2, request.getDescription());
+            ps.setBigDecimal(3, request.getPrice());
+            ps.setString(4, request.getSku());
+            ps.setInt(5, request.getStockQuantity());
+            ps.setLong(6, request.getCategoryId());
+            ps.setTimestamp(7, now);
+            ps.setTimestamp(8, now);
+        });
+
+        // ID do DB sinh (IDENTITY): đọc lại theo SKU trong một query để gắn ảnh và dựng card
+        Map<String, Long> idsBySku = new HashMap<>();
+        namedParameterJdbcTemplate.query(SELECT_IDS_BY_SKU_SQL,
+                Map.of("skus", rows.stream().map(r -> r.request().getSku()).toList()),
+                rs -> {
+                    idsBySku.put(rs.getString("sku"), rs.getLong("id"));
+                });
+
+        List<ImportRow> rowsWithImages = rows.stream()
+                .filter(row -> row.request().getImageURLs() != null && !row.request().getImageURLs().isEmpty())
+                .toList();
+        List<Object[]> imageArgs = new ArrayList<>();
+        for (ImportRow row : rowsWithImages) {
+            Long productId = idsBySku.get(row.request().getSku());
+            List<String> urls = row.request().getImageURLs();
+            for (int i = 0; i < urls.size(); i++) {
+                imageArgs.add(new Object[]{urls.get(i), i == 0, i, productId}); // Ảnh đầu tiên là ảnh chính
+            }
+        }
+        if (!imageArgs.isEmpty()) {
+            jdbcTemplate.batchUpdate(INSERT_IMAGE_SQL, imageArgs);
+        }
+
+        // Card cho trang danh sách: một INSERT ... SELECT cho cả chunk
+        productCardRepository.insertCards(idsBySku.values());
+        // Cột đếm sản phẩm theo danh mục: gộp delta cả chunk (cây danh mục dựng lại một lần sau commit)
+        Map<Long, Long> deltas = new HashMap<>();
+        rows.forEach(row -> deltas.merge(row.request().getCategoryId(), 1L, Long::sum));
+        categoryService.adjustProductCounts(deltas);
+        eventPublisher.publishEvent(new CatalogChangedEvent(null));
+    }
+}
@@ -0,0 +1,156 @@
+package com.backend.service.impl;
+
+import com.backend.cache.CoOccurrenceIndex;
+import com.backend.common.OrderStatus;
+import com.backend.controller.response.ProductSummaryResponse;
+import com.backend.event.OrderCancelledEvent;
+import com.backend.event.OrderLine;
+import com.backend.event.OrderPlacedEvent;
+import com.backend.repository.OrderItemRepository;
+import com.backend.repository.OrderRepository;
+import com.backend.service.ProductCardService;
+import com.backend.service.ProductRecommendationService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+@Service
+@Slf4j(topic = "PRODUCT-RECOMMENDATION-SERVICE")
+@RequiredArgsConstructor
+public class ProductRecommendationServiceImpl implements ProductRecommendationService {
+
+    private final CoOccurrenceIndex coOccurrenceIndex;
+    private final ProductCardService productCardService;
+    private final OrderRepository orderRepository;
+    private final OrderItemRepository orderItemRepository;
+
+    @Value("${app.recommendations.backfill-threads:4}")
+    private int backfillThreads;
+
+    @Value("${app.recommendations.backfill-slice-size:20000}")
+    private int backfillSliceSize;
+
+    // Đơn có quá nhiều sản phẩm (đơn sỉ) làm nhiễu và tốn O(n^2) cặp: bỏ qua
+    @Value("${app.recommendations.max-items-per-order:50}")
+    private int maxItemsPerOrder;
+
+    private volatile boolean ready;
+    // ID đơn lớn nhất mà backfill sẽ đọc; event của đơn <= mốc này trong lúc backfill bị bỏ qua để không đếm hai lần
+    private volatile long backfillUpperBound = Long.MAX_VALUE;
+
+    @Override
+    public List<ProductSummaryResponse> getFrequentlyBoughtTogether(Long productId, int limit) {
+        List<Long> neighbourIds = coOccurrenceIndex.topNeighbours(productId, limit);
+        if (neighbourIds.isEmpty()) {
+            return List.of();
+        }
+        return productCardService.getProductSummaries(neighbourIds);
+    }
+
+    @Override
+    public boolean isReady() {
+        return ready;
+    }
+
+    @TransactionalEventListener
+    public void onOrderPlaced(OrderPlacedEvent event) {
+        apply(event.orderId(), event.lines(), 1);
+    }
+
+    @TransactionalEventListener
+    public void onOrderCancelled(OrderCancelledEvent event) {
+        apply(event.orderId(), event.lines(), -1);
+    }
+
+    private void apply(Long orderId, List<OrderLine> lines, int delta) {
+        if (!ready && orderId <= backfillUpperBound) {
+            return; // Backfill sẽ đọc trạng thái đã commit của đơn này
+        }
+        if (lines.size() > maxItemsPerOrder) {
+            return;
+        }
+        coOccurrenceIndex.addOrder(lines.stream().mapToLong(OrderLine::productId).toArray(), delta);
+    }
+
+    // Nạp lịch sử đơn hàng ở thread nền để không chặn khởi động; chia khoảng ID đơn cho nhiều thread
+    @EventListener(ApplicationReadyEvent.class)
+    public void startBackfill() {
+        Thread thread = new Thread(this::backfill, "co-occurrence-backfill");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private void backfill() {
+        long startedAt = System.currentTimeMillis();
+        try {
+            Object[] range = orderRepository.findIdRange().get(0);
+            if (range[0] == null) {
+                backfillUpperBound = 0;
+                ready = true;
+                log.info("No orders yet, co-occurrence index is empty");
+                return;
+            }
+            long minId = (Long) range[0];
+            long maxId = (Long) range[1];
+            backfillUpperBound = maxId;
+
+            AtomicInteger orders = new AtomicInteger();
+            ExecutorService pool = Executors.newFixedThreadPool(Math.max(1, backfillThreads));
+            try {
+                List<Future<?>> slices = new ArrayList<>();
+                for (long from = minId; from <= maxId; from += backfillSliceSize) {
+                    long sliceFrom = from;
+                    long sliceTo = Math.min(maxId, from + backfillSliceSize - 1);
+                    slices.add(pool.submit(() -> orders.addAndGet(loadSlice(sliceFrom, sliceTo))));
+                }
+                for (Future<?> slice : slices) {
+                    slice.get();
+                }
+            } finally {
+                pool.shutdownNow();
+            }
+
+            ready = true;
+            log.info("Co-occurrence index built from {} orders ({} products) in {} ms",
+                    orders.get(), coOccurrenceIndex.productCount(), System.currentTimeMillis() - startedAt);
+        } catch (Exception e) {
+            // Để ready = false: endpoint trả danh sách rỗng, health/readiness biết là chưa sẵn sàng
+            log.error("Co-occurrence backfill failed: {}", e.getMessage(), e);
+        }
+    }
+
+    // Nạp các đơn có ID trong [fromId, toId]; trả về số đơn đã tính
+    private int loadSlice(long fromId, long toId) {
+        // Đơn hủy/thất bại không tính là "mua cùng"
+        List<Object[]> pairs = orderItemRepository.findOrderProductPairs(fromId, toId, OrderStatus.NOT_COUNTED_AS_SALE);
+        int orders = 0;
+        int start = 0;
+        // Các cặp đã sắp theo orderId: gom từng đoạn liên tiếp cùng đơn
+        for (int i = 1; i <= pairs.size(); i++) {
+            if (i == pairs.size() || !pairs.get(i)[0].equals(pairs.get(start)[0])) {
+                int count = i - start;
+                if (count <= maxItemsPerOrder) {
+                    long[] productIds = new long[count];
+                    for (int j = 0; j < count; j++) {
+                        productIds[j] = (Long) pairs.get(start + j)[1];
+                    }
+                    coOccurrenceIndex.addOrder(productIds, 1);
+                }
+                orders++;
+                start = i;
+            }
+        }
+        return orders;
+    }
+}
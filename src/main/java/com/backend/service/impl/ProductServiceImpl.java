@@ -1,9 +1,18 @@
 package com.backend.service.impl;
 
+import com.backend.cache.CatalogVersionCache;
+import com.backend.cache.CategoryHierarchyCache;
+import com.backend.common.ProductSort;
+import com.backend.common.ResourceVersion;
+import com.backend.common.RetryOnConflict;
 import com.backend.controller.request.ProductCreationRequest;
+import com.backend.controller.request.ProductPatchRequest;
 import com.backend.controller.request.ProductUpdateRequest;
 import com.backend.controller.response.CategoryBasicResponse;
+import com.backend.controller.response.CursorPageResponse;
 import com.backend.controller.response.ProductResponse;
+import com.backend.event.CatalogChangedEvent;
+import com.backend.event.ProductChangedEvent;
 import com.backend.exception.InvalidDataException;
 import com.backend.exception.ResourceNotFoundException;
 import com.backend.model.CategoryEntity;
@@ -12,10 +21,14 @@ import com.backend.model.ProductImageEntity; // Import ProductImageEntity
 import com.backend.repository.CategoryRepository;
 import com.backend.repository.ProductImageRepository; // Import ProductImageRepository
 import com.backend.repository.ProductRepository;
+import com.backend.service.CategoryService;
 import com.backend.service.ProductService;
+import com.backend.service.ProductViewService;
+import com.backend.specification.ProductCursor;
 import com.backend.specification.ProductSpecification;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.domain.Specification;
@@ -26,7 +39,14 @@ import org.springframework.util.CollectionUtils; // Import CollectionUtils
 import java.math.BigDecimal;
 import java.util.ArrayList; // Import ArrayList
 import java.util.Collections; // Import Collections
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
 import java.util.stream.Collectors;
 
 @Service
@@ -37,6 +57,26 @@ public class ProductServiceImpl implements ProductService {
     private final ProductRepository productRepository;
     private final CategoryRepository categoryRepository;
     private final ProductImageRepository productImageRepository; // Inject ProductImageRepository
+    private final CategoryHierarchyCache categoryHierarchyCache;
+    private final CatalogVersionCache catalogVersionCache;
+    private final ProductViewService productViewService;
+    private final ApplicationEventPublisher eventPublisher;
+    private final CategoryService categoryService;
+
+    // Gắn lượt xem cho một sản phẩm (GET chi tiết)
+    private ProductResponse withViewCount(ProductResponse response) {
+        fillViewCounts(List.of(response));
+        return response;
+    }
+
+    // Lượt xem của cả trang lấy bằng một query theo khóa chính trên tbl_product_view_stats
+    private void fillViewCounts(List<ProductResponse> responses) {
+        if (responses.isEmpty()) {
+            return;
+        }
+        Map<Long, Long> viewCounts = productViewService.getViewCounts(responses.stream().map(ProductResponse::getId).toList());
+        responses.forEach(response -> response.setViewCount(viewCounts.getOrDefault(response.getId(), 0L)));
+    }
 
     // Helper method để map từ Entity sang Response DTO
     private ProductResponse mapToProductResponse(ProductEntity entity) {
@@ -52,6 +92,7 @@ public class ProductServiceImpl implements ProductService {
         List<String> imageURLs = Collections.emptyList(); // Mặc định là list rỗng
         if (!CollectionUtils.isEmpty(entity.getImages())) { // Kiểm tra collection có rỗng không
             imageURLs = entity.getImages().stream()
+                    .sorted(Comparator.comparing(ProductImageEntity::getSortOrder, Comparator.nullsLast(Comparator.naturalOrder())))
                     .map(ProductImageEntity::getUrl) // Lấy URL từ mỗi ProductImageEntity
                     .collect(Collectors.toList());
         }
@@ -63,6 +104,11 @@ public class ProductServiceImpl implements ProductService {
                 .price(entity.getPrice())
                 .sku(entity.getSku())
                 .stockQuantity(entity.getStockQuantity())
+                .soldCount(entity.getSoldCount())
+                .averageRating(entity.getAverageRating())
+                .reviewCount(entity.getRatingCount())
+                .ratingHistogram(List.of(entity.getRating1(), entity.getRating2(), entity.getRating3(),
+                        entity.getRating4(), entity.getRating5()))
                 //.imageUrl(entity.getImageUrl()) // <-- XÓA DÒNG NÀY
                 .imageURLs(imageURLs) // <-- THÊM DÒNG NÀY
                 .category(categoryResponse)
@@ -99,6 +145,9 @@ public class ProductServiceImpl implements ProductService {
 
         // 4. Lưu ProductEntity lần đầu để lấy ID
         ProductEntity savedProduct = productRepository.save(product);
+        eventPublisher.publishEvent(new ProductChangedEvent(savedProduct.getId()));
+        eventPublisher.publishEvent(new CatalogChangedEvent(savedProduct.getId()));
+        categoryService.adjustProductCounts(Map.of(category.getId(), 1L));
         log.info("Product entity saved with ID: {}", savedProduct.getId());
 
         // 5. Xử lý lưu các ảnh (ProductImageEntity)
@@ -109,7 +158,8 @@ public class ProductServiceImpl implements ProductService {
                 ProductImageEntity productImage = new ProductImageEntity();
                 productImage.setUrl(imageUrl);
                 productImage.setProduct(savedProduct); // Liên kết với product đã lưu
-                // productImage.setIsPrimary(imagesToSave.isEmpty()); // Ví dụ: đặt ảnh đầu tiên là primary
+                productImage.setSortOrder(imagesToSave.size());
+                productImage.setIsPrimary(imagesToSave.isEmpty()); // Ảnh đầu tiên là ảnh chính
                 imagesToSave.add(productImage);
             }
             // Lưu tất cả ảnh vào DB
@@ -127,7 +177,7 @@ public class ProductServiceImpl implements ProductService {
 
 
         // 7. Map sang Response DTO và trả về
-        return mapToProductResponse(productWithImages);
+        return withViewCount(mapToProductResponse(productWithImages));
     }
 
     @Override
@@ -140,7 +190,7 @@ public class ProductServiceImpl implements ProductService {
                     return new ResourceNotFoundException("Product not found with ID: " + productId);
                 });
         // mapToProductResponse đã xử lý việc lấy list ảnh
-        return mapToProductResponse(product);
+        return withViewCount(mapToProductResponse(product));
     }
 
     @Override
@@ -151,19 +201,7 @@ public class ProductServiceImpl implements ProductService {
                 keyword, categoryId, minPrice, maxPrice, pageable.getPageNumber(), pageable.getPageSize());
 
         // Xây dựng Specification dựa trên các tham số lọc
-        Specification<ProductEntity> spec = Specification.where(null);
-        if (keyword != null && !keyword.trim().isEmpty()) {
-            spec = spec.and(ProductSpecification.hasKeyword(keyword.trim()));
-        }
-        if (categoryId != null) {
-            spec = spec.and(ProductSpecification.hasCategory(categoryId));
-        }
-        if (minPrice != null) {
-            spec = spec.and(ProductSpecification.hasMinPrice(minPrice));
-        }
-        if (maxPrice != null) {
-            spec = spec.and(ProductSpecification.hasMaxPrice(maxPrice));
-        }
+        Specification<ProductEntity> spec = buildFilterSpecification(keyword, categoryId, minPrice, maxPrice);
 
         // Gọi Repository với Specification và Pageable
         // LƯU Ý: ProductRepository cần phải extends JpaSpecificationExecutor<ProductEntity, Long>
@@ -171,6 +209,7 @@ public class ProductServiceImpl implements ProductService {
 
         // Chuyển đổi Page<ProductEntity> sang Page<ProductResponse> dùng hàm map của Page
         Page<ProductResponse> productResponsePage = productPage.map(this::mapToProductResponse);
+        fillViewCounts(productResponsePage.getContent());
 
         log.info("Found {} products matching criteria. Total pages: {}, Total elements: {}",
                 productResponsePage.getNumberOfElements(), productResponsePage.getTotalPages(), productResponsePage.getTotalElements());
@@ -178,8 +217,117 @@ public class ProductServiceImpl implements ProductService {
         return productResponsePage;
     }
 
+    @Override
+    @Transactional(readOnly = true)
+    public CursorPageResponse<ProductResponse> scrollProducts(String keyword, Long categoryId, BigDecimal minPrice, BigDecimal maxPrice,
+                                                              ProductSort sort, String cursor, int size) {
+        log.info("Scrolling products with filters - keyword: [{}], categoryId: [{}], minPrice: [{}], maxPrice: [{}], sort: {}, size: {}, hasCursor: {}",
+                keyword, categoryId, minPrice, maxPrice, sort, size, cursor != null);
+        if (sort.isCardOnly()) {
+            throw new InvalidDataException("Sort " + sort + " is only available on /api/v1/products/cards");
+        }
+
+        Specification<ProductEntity> spec = buildFilterSpecification(keyword, categoryId, minPrice, maxPrice);
+        if (cursor != null && !cursor.isBlank()) {
+            spec = spec.and(ProductSpecification.after(ProductCursor.decode(sort, cursor)));
+        }
+
+        // Lấy dư 1 bản ghi để biết còn trang sau hay không, không cần query COUNT như Page
+        List<ProductEntity> rows = productRepository.findBy(spec, query -> query
+                .sortBy(sort.toSort())
+                .limit(size + 1)
+                .all());
+
+        boolean hasNext = rows.size() > size;
+        List<ProductEntity> pageRows = hasNext ? rows.subList(0, size) : rows;
+        String nextCursor = hasNext ? ProductCursor.of(sort, pageRows.get(pageRows.size() - 1)).encode() : null;
+
+        List<ProductResponse> items = pageRows.stream()
+                .map(this::mapToProductResponse)
+                .collect(Collectors.toList());
+        fillViewCounts(items);
+        log.info("Scrolled {} products, hasNext: {}", items.size(), hasNext);
+
+        return CursorPageResponse.<ProductResponse>builder()
+                .items(items)
+                .size(items.size())
+                .hasNext(hasNext)
+                .nextCursor(nextCursor)
+                .build();
+    }
+
+    /**
+     * Đồng bộ ảnh của sản phẩm với danh sách URL mong muốn (theo thứ tự) bằng cách so sánh theo URL:
+     * ảnh trùng URL được giữ nguyên dòng, ảnh mới được thêm, ảnh không còn bị xóa (orphanRemoval),
+     * sortOrder/isPrimary chỉ được sửa ở ảnh đổi vị trí. Ảnh đầu tiên là ảnh chính.
+     *
+     * @return true nếu có thay đổi
+     */
+    private boolean applyImageDiff(ProductEntity product, List<String> imageURLs) {
+        Set<String> desired = new LinkedHashSet<>();
+        for (String url : imageURLs) {
+            if (url != null && !url.isBlank()) {
+                desired.add(url.trim());
+            }
+        }
+
+        // Ảnh hiện có theo URL; bản trùng URL thứ hai trở đi bị xóa
+        Map<String, ProductImageEntity> kept = new HashMap<>();
+        List<ProductImageEntity> toRemove = new ArrayList<>();
+        for (ProductImageEntity image : product.getImages()) {
+            if (desired.contains(image.getUrl()) && kept.putIfAbsent(image.getUrl(), image) == null) {
+                continue;
+            }
+            toRemove.add(image);
+        }
+        product.getImages().removeAll(toRemove);
+
+        int added = 0;
+        int moved = 0;
+        int position = 0;
+        for (String url : desired) {
+            boolean primary = position == 0;
+            ProductImageEntity image = kept.get(url);
+            if (image == null) {
+                image = new ProductImageEntity();
+                image.setUrl(url);
+                image.setSortOrder(position);
+                image.setIsPrimary(primary);
+                product.addImage(image);
+                added++;
+            } else if (!Objects.equals(image.getSortOrder(), position) || !Objects.equals(image.getIsPrimary(), primary)) {
+                image.setSortOrder(position);
+                image.setIsPrimary(primary);
+                moved++;
+            }
+            position++;
+        }
+
+        log.info("Image diff for product ID {}: {} added, {} removed, {} reordered, {} unchanged",
+                product.getId(), added, toRemove.size(), moved, desired.size() - added - moved);
+        return added + moved + toRemove.size() > 0;
+    }
+
+    private Specification<ProductEntity> buildFilterSpecification(String keyword, Long categoryId, BigDecimal minPrice, BigDecimal maxPrice) {
+        Specification<ProductEntity> spec = Specification.where(null);
+        if (keyword != null && !keyword.trim().isEmpty()) {
+            spec = spec.and(ProductSpecification.hasKeyword(keyword.trim()));
+        }
+        if (categoryId != null) {
+            spec = spec.and(ProductSpecification.hasCategory(categoryHierarchyCache.getSubtreeIds(categoryId)));
+        }
+        if (minPrice != null) {
+            spec = spec.and(ProductSpecification.hasMinPrice(minPrice));
+        }
+        if (maxPrice != null) {
+            spec = spec.and(ProductSpecification.hasMaxPrice(maxPrice));
+        }
+        return spec;
+    }
+
 
     @Override
+    @RetryOnConflict
     @Transactional(rollbackFor = Exception.class)
     public ProductResponse updateProduct(Long productId, ProductUpdateRequest request) {
         log.info("Updating product with ID: {}", productId);
@@ -208,38 +356,57 @@ public class ProductServiceImpl implements ProductService {
         existingProduct.setSku(request.getSku());
         existingProduct.setStockQuantity(request.getStockQuantity());
         // existingProduct.setImageUrl(request.getImageUrl()); // <-- XÓA DÒNG NÀY
+        Long previousCategoryId = existingProduct.getCategory() != null ? existingProduct.getCategory().getId() : null;
         existingProduct.setCategory(category);
 
-        // 5. Xử lý cập nhật ảnh: Xóa cũ, thêm mới (Cách đơn giản)
-        // Giả định có orphanRemoval=true trên ProductEntity.images
-        log.info("Clearing existing images for product ID: {}", productId);
-        existingProduct.getImages().clear(); // Xóa các ProductImageEntity cũ khỏi collection
-
-        // Lưu product để kích hoạt orphanRemoval (hoặc xóa trực tiếp bằng repo nếu không dùng orphanRemoval)
-        // productRepository.saveAndFlush(existingProduct); // Flush để xóa ngay lập tức nếu cần
-
-        // Thêm ảnh mới từ request
-        List<ProductImageEntity> newImages = new ArrayList<>();
-        if (request.getImageURLs() != null && !request.getImageURLs().isEmpty()) {
-            log.info("Adding {} new images for product ID: {}", request.getImageURLs().size(), productId);
-            for(String imageUrl : request.getImageURLs()){
-                ProductImageEntity newImage = new ProductImageEntity();
-                newImage.setUrl(imageUrl);
-                newImage.setProduct(existingProduct); // Liên kết với product đang cập nhật
-                // newImage.setIsPrimary(newImages.isEmpty()); // Ví dụ: đặt ảnh đầu tiên là primary
-                newImages.add(newImage);
-            }
-            existingProduct.getImages().addAll(newImages); // Thêm ảnh mới vào collection
-        } else {
-            log.info("No new images provided for update of product ID: {}", productId);
+        // 5. Cập nhật ảnh theo diff (null = giữ nguyên ảnh, [] = xóa hết)
+        // Chỉ INSERT ảnh mới, DELETE ảnh bị bỏ, UPDATE ảnh đổi vị trí; sửa giá không còn xóa/thêm lại toàn bộ ảnh
+        if (request.getImageURLs() != null && applyImageDiff(existingProduct, request.getImageURLs())) {
+            // Dòng product có thể không đổi khi chỉ ảnh đổi: vẫn đánh dấu updatedAt cho ETag/Last-Modified
+            existingProduct.setUpdatedAt(new Date());
         }
 
         // 6. Lưu thay đổi (bao gồm cả ảnh mới nếu dùng CascadeType.ALL)
         ProductEntity updatedProduct = productRepository.save(existingProduct);
+        eventPublisher.publishEvent(new ProductChangedEvent(productId));
+        eventPublisher.publishEvent(new CatalogChangedEvent(productId));
+        if (!category.getId().equals(previousCategoryId)) {
+            // Chuyển danh mục: số sản phẩm của cả danh mục cũ và mới thay đổi
+            Map<Long, Long> deltas = new HashMap<>();
+            deltas.put(previousCategoryId, -1L);
+            deltas.put(category.getId(), 1L);
+            categoryService.adjustProductCounts(deltas);
+        }
         log.info("Product updated successfully for ID: {}", updatedProduct.getId());
 
         // 7. Map sang Response DTO và trả về
-        return mapToProductResponse(updatedProduct); // mapToProductResponse đã xử lý list ảnh
+        return withViewCount(mapToProductResponse(updatedProduct)); // mapToProductResponse đã xử lý list ảnh
+    }
+
+    @Override
+    @RetryOnConflict
+    @Transactional(rollbackFor = Exception.class)
+    public ProductResponse patchProduct(Long productId, ProductPatchRequest request) {
+        log.info("Patching price/stock for product ID: {}", productId);
+
+        ProductEntity product = productRepository.findById(productId)
+                .orElseThrow(() -> {
+                    log.warn("Patch failed: Product not found with ID: {}", productId);
+                    return new ResourceNotFoundException("Product not found with ID: " + productId);
+                });
+
+        if (request.getPrice() != null) {
+            product.setPrice(request.getPrice());
+        }
+        if (request.getStockQuantity() != null) {
+            product.setStockQuantity(request.getStockQuantity());
+        }
+        // @DynamicUpdate: UPDATE chỉ gồm price/stock_quantity/updated_at, collection ảnh không bị động tới
+        eventPublisher.publishEvent(new ProductChangedEvent(productId));
+        eventPublisher.publishEvent(new CatalogChangedEvent(productId));
+        log.info("Product ID {} patched - price: {}, stock: {}", productId, product.getPrice(), product.getStockQuantity());
+
+        return withViewCount(mapToProductResponse(product));
     }
 
     @Override
@@ -259,10 +426,33 @@ public class ProductServiceImpl implements ProductService {
         // CascadeType.ALL và orphanRemoval=true trên ProductEntity.images sẽ tự động xóa ProductImageEntity liên quan
         try {
             productRepository.delete(productToDelete); // Hoặc deleteById(productId)
+            eventPublisher.publishEvent(new ProductChangedEvent(productId));
+            eventPublisher.publishEvent(new CatalogChangedEvent(productId));
+            if (productToDelete.getCategory() != null) {
+                categoryService.adjustProductCounts(Map.of(productToDelete.getCategory().getId(), -1L));
+            }
             log.info("Product deleted successfully with ID: {}", productId);
         } catch (Exception e) {
             log.error("Error deleting product ID {}: {}", productId, e.getMessage());
             throw new RuntimeException("Could not delete product with ID: " + productId + ". It might be referenced elsewhere.", e);
         }
     }
-}
\ No newline at end of file
+
+    @Override
+    @Transactional(readOnly = true)
+    public ResourceVersion getProductVersion(Long productId) {
+        List<Object[]> rows = productRepository.findVersionById(productId);
+        if (rows.isEmpty()) {
+            return null;
+        }
+        Object[] row = rows.get(0);
+        // product.updatedAt (gồm cả thay đổi ảnh), category.updatedAt (tên category)
+        return ResourceVersion.of("product-" + productId, row[0], row[1]);
+    }
+
+    @Override
+    public ResourceVersion getCatalogVersion() {
+        // Version giữ trong bộ nhớ, chỉ đổi khi catalog thay đổi (không đổi theo từng lần bán hàng)
+        return catalogVersionCache.getVersion();
+    }
+}
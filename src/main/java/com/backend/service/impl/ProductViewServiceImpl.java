@@ -0,0 +1,93 @@
+package com.backend.service.impl;
+
+import com.backend.cache.ProductViewCounter;
+import com.backend.model.ProductViewStatsEntity;
+import com.backend.repository.ProductViewStatsRepository;
+import com.backend.service.ProductViewService;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+@Service
+@Slf4j(topic = "PRODUCT-VIEW-SERVICE")
+@RequiredArgsConstructor
+public class ProductViewServiceImpl implements ProductViewService {
+
+    // Tạo dòng thống kê còn thiếu (chỉ cho sản phẩm còn tồn tại), sau đó mọi dòng đều cộng dồn bằng UPDATE
+    private static final String INSERT_MISSING_STATS_SQL =
+            "INSERT INTO tbl_product_view_stats (product_id, view_count, updated_at) " +
+            "SELECT p.id, 0, CURRENT_TIMESTAMP FROM tbl_products p WHERE p.id = ? " +
+            "AND NOT EXISTS (SELECT 1 FROM tbl_product_view_stats s WHERE s.product_id = p.id)";
+    private static final String INCREMENT_STATS_SQL =
+            "UPDATE tbl_product_view_stats SET view_count = view_count + ?, updated_at = CURRENT_TIMESTAMP WHERE product_id = ?";
+    private static final String INCREMENT_CARD_SQL =
+            "UPDATE tbl_product_cards SET view_count = view_count + ? WHERE product_id = ?";
+    private static final int BATCH_SIZE = 500;
+
+    private final ProductViewCounter productViewCounter;
+    private final ProductViewStatsRepository productViewStatsRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+
+    @Override
+    public void recordView(Long productId) {
+        productViewCounter.increment(productId);
+    }
+
+    @Override
+    public Map<Long, Long> getViewCounts(Collection<Long> productIds) {
+        Map<Long, Long> counts = new HashMap<>(productIds.size() * 2);
+        for (ProductViewStatsEntity stats : productViewStatsRepository.findAllById(productIds)) {
+            counts.put(stats.getId(), stats.getViewCount());
+        }
+        for (Long productId : productIds) {
+            counts.merge(productId, productViewCounter.pending(productId), Long::sum);
+        }
+        return counts;
+    }
+
+    @Override
+    @Scheduled(fixedDelayString = "${app.product-views.flush-interval-ms:10000}",
+            initialDelayString = "${app.product-views.flush-interval-ms:10000}")
+    public void flush() {
+        Map<Long, Long> drained = productViewCounter.drain();
+        if (drained.isEmpty()) {
+            return;
+        }
+        List<Map.Entry<Long, Long>> rows = new ArrayList<>(drained.entrySet());
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                jdbcTemplate.batchUpdate(INSERT_MISSING_STATS_SQL, rows, BATCH_SIZE,
+                        (ps, row) -> ps.setLong(1, row.getKey()));
+                jdbcTemplate.batchUpdate(INCREMENT_STATS_SQL, rows, BATCH_SIZE, (ps, row) -> {
+                    ps.setLong(1, row.getValue());
+                    ps.setLong(2, row.getKey());
+                });
+                jdbcTemplate.batchUpdate(INCREMENT_CARD_SQL, rows, BATCH_SIZE, (ps, row) -> {
+                    ps.setLong(1, row.getValue());
+                    ps.setLong(2, row.getKey());
+                });
+            });
+            log.info("Flushed view counts for {} products", rows.size());
+        } catch (Exception e) {
+            productViewCounter.restore(drained);
+            log.error("Failed to flush view counts for {} products, will retry: {}", rows.size(), e.getMessage(), e);
+        }
+    }
+
+    // Ghi nốt các lượt xem còn trong bộ nhớ khi tắt ứng dụng
+    @PreDestroy
+    public void flushOnShutdown() {
+        flush();
+    }
+}
@@ -0,0 +1,70 @@
+package com.backend.service.impl;
+
+import com.backend.common.OrderStatus;
+import com.backend.repository.PurchaseRepository;
+import com.backend.service.PurchaseService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.Set;
+
+@Service
+@Slf4j(topic = "PURCHASE-SERVICE")
+@RequiredArgsConstructor
+public class PurchaseServiceImpl implements PurchaseService {
+
+    private final PurchaseRepository purchaseRepository;
+
+    @Override
+    @Transactional(readOnly = true)
+    public boolean hasPurchased(Long userId, Long productId) {
+        return purchaseRepository.existsByUserIdAndProductId(userId, productId);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public Set<Long> findBuyers(Long productId, Collection<Long> userIds) {
+        if (userIds.isEmpty()) {
+            return Set.of();
+        }
+        return new HashSet<>(purchaseRepository.findBuyerIds(productId, userIds));
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public Object[] getReviewerPurchaseVersion(Long productId) {
+        return purchaseRepository.findReviewerPurchaseVersion(productId).get(0);
+    }
+
+    @Override
+    @Transactional(rollbackFor = Exception.class)
+    public void onOrderStatusChanged(Long orderId, OrderStatus oldStatus, OrderStatus newStatus) {
+        if (newStatus == OrderStatus.DELIVERED && oldStatus != OrderStatus.DELIVERED) {
+            int added = purchaseRepository.recordDeliveredOrder(orderId, new Date());
+            log.info("Order ID {} delivered, {} purchases recorded", orderId, added);
+        } else if (oldStatus == OrderStatus.DELIVERED && newStatus != OrderStatus.DELIVERED) {
+            int removed = purchaseRepository.removeUndeliveredOrder(orderId);
+            log.info("Order ID {} moved from DELIVERED to {}, {} purchases removed", orderId, newStatus, removed);
+        }
+    }
+
+    // Bảng còn trống (lần đầu triển khai): dựng từ các đơn DELIVERED hiện có bằng một INSERT ... SELECT
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional(rollbackFor = Exception.class)
+    public void backfillPurchases() {
+        if (purchaseRepository.count() > 0) {
+            return;
+        }
+        int inserted = purchaseRepository.backfillFromDeliveredOrders();
+        if (inserted > 0) {
+            log.info("Backfilled {} purchases from delivered orders", inserted);
+        }
+    }
+}
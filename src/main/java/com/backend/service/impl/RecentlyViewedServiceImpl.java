@@ -0,0 +1,121 @@
+package com.backend.service.impl;
+
+import com.backend.cache.RecentlyViewedCache;
+import com.backend.controller.response.ProductSummaryResponse;
+import com.backend.model.RecentlyViewedEntity;
+import com.backend.repository.RecentlyViewedRepository;
+import com.backend.service.ProductCardService;
+import com.backend.service.RecentlyViewedService;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+@Service
+@Slf4j(topic = "RECENTLY-VIEWED-SERVICE")
+@RequiredArgsConstructor
+public class RecentlyViewedServiceImpl implements RecentlyViewedService {
+
+    private final RecentlyViewedCache recentlyViewedCache;
+    private final RecentlyViewedRepository recentlyViewedRepository;
+    private final ProductCardService productCardService;
+    private final TransactionTemplate transactionTemplate;
+
+    @Value("${app.recently-viewed.max-items:20}")
+    private int maxItems;
+
+    @Override
+    public void recordView(Long userId, Long productId) {
+        recentlyViewedCache.record(userId, productId);
+    }
+
+    @Override
+    public List<ProductSummaryResponse> getRecentlyViewed(Long userId, int limit) {
+        RecentlyViewedCache.History history = recentlyViewedCache.getLoaded(userId);
+        if (history == null) {
+            // User chưa có trong bộ nhớ (hoặc mới chỉ có lượt xem sau khi khởi động): đọc bản lưu một lần
+            List<Long> stored = recentlyViewedRepository.findById(userId)
+                    .map(entity -> parse(entity.getProductIds()))
+                    .orElse(List.of());
+            history = recentlyViewedCache.mergeLoaded(userId, stored);
+        }
+        List<Long> productIds = history.productIds();
+        if (productIds.isEmpty()) {
+            return List.of();
+        }
+        return productCardService.getProductSummaries(productIds.subList(0, Math.min(limit, productIds.size())));
+    }
+
+    @Override
+    @Scheduled(fixedDelayString = "${app.recently-viewed.flush-interval-ms:60000}",
+            initialDelayString = "${app.recently-viewed.flush-interval-ms:60000}")
+    public void flush() {
+        List<RecentlyViewedCache.DirtyHistory> dirty = recentlyViewedCache.drainDirty();
+        if (dirty.isEmpty()) {
+            return;
+        }
+        try {
+            Map<Long, List<Long>> previouslyStored = transactionTemplate.execute(status -> {
+                Map<Long, RecentlyViewedEntity> existing = recentlyViewedRepository
+                        .findAllById(dirty.stream().map(RecentlyViewedCache.DirtyHistory::userId).toList()).stream()
+                        .collect(Collectors.toMap(RecentlyViewedEntity::getId, Function.identity()));
+                Map<Long, List<Long>> stored = existing.values().stream()
+                        .collect(Collectors.toMap(RecentlyViewedEntity::getId, entity -> parse(entity.getProductIds())));
+                List<RecentlyViewedEntity> toSave = new ArrayList<>(dirty.size());
+                Date now = new Date();
+                for (RecentlyViewedCache.DirtyHistory item : dirty) {
+                    List<Long> productIds = item.productIds();
+                    if (!item.loaded()) {
+                        // Lịch sử chưa gộp với bản lưu: nối bản lưu (cũ hơn) vào sau
+                        productIds = merge(productIds, stored.getOrDefault(item.userId(), List.of()));
+                    }
+                    RecentlyViewedEntity entity = existing.get(item.userId());
+                    if (entity == null) {
+                        entity = new RecentlyViewedEntity();
+                        entity.setId(item.userId());
+                    }
+                    entity.setProductIds(productIds.stream().map(String::valueOf).collect(Collectors.joining(",")));
+                    entity.setUpdatedAt(now);
+                    toSave.add(entity);
+                }
+                recentlyViewedRepository.saveAll(toSave);
+                return stored;
+            });
+            dirty.forEach(item -> recentlyViewedCache.markWritten(item, previouslyStored.getOrDefault(item.userId(), List.of())));
+            log.info("Flushed recently viewed products for {} users", dirty.size());
+        } catch (Exception e) {
+            dirty.forEach(recentlyViewedCache::markFailed);
+            log.error("Failed to flush recently viewed products for {} users, will retry: {}", dirty.size(), e.getMessage(), e);
+        }
+    }
+
+    @PreDestroy
+    public void flushOnShutdown() {
+        flush();
+    }
+
+    private List<Long> merge(List<Long> recent, List<Long> older) {
+        LinkedHashSet<Long> merged = new LinkedHashSet<>(recent);
+        merged.addAll(older);
+        return merged.stream().limit(maxItems).toList();
+    }
+
+    private List<Long> parse(String productIds) {
+        if (productIds == null || productIds.isBlank()) {
+            return List.of();
+        }
+        return Arrays.stream(productIds.split(",")).map(Long::valueOf).toList();
+    }
+}
@@ -1,8 +1,12 @@
 package com.backend.service.impl;
 
+import com.backend.common.ResourceVersion;
+import com.backend.common.ReviewSort;
 import com.backend.controller.request.ReviewRequest;
+import com.backend.controller.response.CursorPageResponse;
 import com.backend.controller.response.ReviewResponse;
 import com.backend.controller.response.UserBasicResponse;
+import com.backend.event.ProductChangedEvent;
 import com.backend.exception.InvalidDataException;
 import com.backend.exception.ResourceNotFoundException;
 //import com.backend.exception.UnauthorizedException; // Tạo exception này nếu cần
@@ -12,17 +16,32 @@ import com.backend.model.UserEntity;
 import com.backend.repository.ProductRepository;
 import com.backend.repository.ReviewRepository;
 import com.backend.repository.UserRepository;
+import com.backend.service.ProductCardService;
+import com.backend.service.PurchaseService;
 import com.backend.service.ReviewService;
+import com.backend.specification.ReviewCursor;
+import com.backend.specification.ReviewSpecification;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
 import org.springframework.dao.DataIntegrityViolationException; // Để bắt lỗi unique constraint
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.domain.Specification;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.stream.Collectors;
 
 @Service
@@ -33,9 +52,16 @@ public class ReviewServiceImpl implements ReviewService {
     private final ReviewRepository reviewRepository;
     private final UserRepository userRepository;
     private final ProductRepository productRepository;
+    private final ApplicationEventPublisher eventPublisher;
+    private final ProductCardService productCardService;
+    private final PurchaseService purchaseService;
+
+    // Chỉ cho phép review khi user đã nhận đơn hàng có sản phẩm (tra chỉ mục tbl_purchases)
+    @Value("${app.reviews.require-purchase:false}")
+    private boolean requirePurchase;
 
     // Helper method để map Entity sang Response DTO
-    private ReviewResponse mapReviewToResponse(ReviewEntity entity) {
+    private ReviewResponse mapReviewToResponse(ReviewEntity entity, boolean verifiedPurchase) {
         if (entity == null) return null;
 
         UserBasicResponse userResponse = null;
@@ -50,6 +76,7 @@ public class ReviewServiceImpl implements ReviewService {
                 .reviewId(entity.getId())
                 .productId(entity.getProduct() != null ? entity.getProduct().getId() : null)
                 .user(userResponse)
+                .verifiedPurchase(verifiedPurchase)
                 .rating(entity.getRating())
                 .comment(entity.getComment())
                 .createdAt(entity.getCreatedAt())
@@ -57,25 +84,78 @@ public class ReviewServiceImpl implements ReviewService {
                 .build();
     }
 
+    // Map một trang review của cùng sản phẩm: nhãn "đã mua hàng" tra một query cho cả trang
+    private List<ReviewResponse> mapReviewsToResponses(Long productId, List<ReviewEntity> reviews) {
+        Set<Long> buyers = purchaseService.findBuyers(productId, reviews.stream()
+                .map(review -> review.getUser().getId())
+                .collect(Collectors.toSet()));
+        return reviews.stream()
+                .map(review -> mapReviewToResponse(review, buyers.contains(review.getUser().getId())))
+                .collect(Collectors.toList());
+    }
+
+    private ReviewResponse mapReviewToResponse(ReviewEntity entity) {
+        return mapReviewToResponse(entity, purchaseService.hasPurchased(entity.getUser().getId(), entity.getProduct().getId()));
+    }
+
     @Override
     @Transactional(readOnly = true)
     public Page<ReviewResponse> getReviewsByProductId(Long productId, Pageable pageable) {
         log.info("Fetching reviews for product ID: {}, page: {}, size: {}", productId, pageable.getPageNumber(), pageable.getPageSize());
-        // Kiểm tra sản phẩm tồn tại nếu cần
-        if (!productRepository.existsById(productId)) {
-            throw new ResourceNotFoundException("Product not found with ID: " + productId);
-        }
-
         Page<ReviewEntity> reviewPage = reviewRepository.findByProductId(productId, pageable);
+        if (reviewPage.isEmpty()) {
+            requireProductExists(productId);
+        }
         log.info("Found {} reviews for product ID {} on page {}", reviewPage.getNumberOfElements(), productId, pageable.getPageNumber());
 
-        List<ReviewResponse> reviewResponses = reviewPage.getContent().stream()
-                .map(this::mapReviewToResponse)
-                .collect(Collectors.toList());
+        List<ReviewResponse> reviewResponses = mapReviewsToResponses(productId, reviewPage.getContent());
 
         return new PageImpl<>(reviewResponses, pageable, reviewPage.getTotalElements());
     }
 
+    @Override
+    @Transactional(readOnly = true)
+    public CursorPageResponse<ReviewResponse> scrollReviewsByProductId(Long productId, ReviewSort sort, String cursor, int size) {
+        log.info("Scrolling reviews for product ID: {}, sort: {}, size: {}, hasCursor: {}", productId, sort, size, cursor != null);
+
+        Specification<ReviewEntity> spec = ReviewSpecification.forProduct(productId).and(ReviewSpecification.fetchUser());
+        boolean firstPage = cursor == null || cursor.isBlank();
+        if (!firstPage) {
+            spec = spec.and(ReviewSpecification.after(ReviewCursor.decode(sort, cursor)));
+        }
+
+        // Lấy dư 1 bản ghi để biết còn trang sau hay không, không cần query COUNT
+        List<ReviewEntity> rows = reviewRepository.findBy(spec, query -> query
+                .sortBy(sort.toSort())
+                .limit(size + 1)
+                .all());
+        if (rows.isEmpty() && firstPage) {
+            requireProductExists(productId);
+        }
+
+        boolean hasNext = rows.size() > size;
+        List<ReviewEntity> pageRows = hasNext ? rows.subList(0, size) : rows;
+        String nextCursor = hasNext ? ReviewCursor.of(sort, pageRows.get(pageRows.size() - 1)).encode() : null;
+
+        List<ReviewResponse> items = mapReviewsToResponses(productId, pageRows);
+        log.info("Scrolled {} reviews for product ID {}, hasNext: {}", items.size(), productId, hasNext);
+
+        return CursorPageResponse.<ReviewResponse>builder()
+                .items(items)
+                .size(items.size())
+                .hasNext(hasNext)
+                .nextCursor(nextCursor)
+                .build();
+    }
+
+    // Có review thì sản phẩm chắc chắn tồn tại (FK): chỉ kiểm tra khi trang rỗng, trang có dữ liệu chỉ tốn một query
+    private void requireProductExists(Long productId) {
+        if (!productRepository.existsById(productId)) {
+            log.warn("Product not found with ID: {}", productId);
+            throw new ResourceNotFoundException("Product not found with ID: " + productId);
+        }
+    }
+
     @Override
     @Transactional(rollbackFor = Exception.class)
     public ReviewResponse createReview(Long userId, Long productId, ReviewRequest request) {
@@ -93,7 +173,12 @@ public class ReviewServiceImpl implements ReviewService {
         ProductEntity product = productRepository.findById(productId)
                 .orElseThrow(() -> new ResourceNotFoundException("Product not found with ID: " + productId));
 
-        // TODO: Có thể thêm logic kiểm tra xem user đã mua sản phẩm này chưa nếu cần
+        // Tra chỉ mục tbl_purchases (khóa chính user_id, product_id), không quét lịch sử đơn hàng
+        boolean verifiedPurchase = purchaseService.hasPurchased(userId, productId);
+        if (requirePurchase && !verifiedPurchase) {
+            log.warn("User ID {} attempted to review product ID {} without a delivered order", userId, productId);
+            throw new InvalidDataException("You can only review products you have purchased.");
+        }
 
         // 3. Tạo ReviewEntity
         ReviewEntity review = new ReviewEntity();
@@ -104,9 +189,11 @@ public class ReviewServiceImpl implements ReviewService {
 
         // 4. Lưu vào DB
         try {
-            ReviewEntity savedReview = reviewRepository.save(review);
+            ReviewEntity savedReview = reviewRepository.saveAndFlush(review);
+            productRepository.applyRatingChange(productId, 0, savedReview.getRating(), 1);
+            eventPublisher.publishEvent(new ProductChangedEvent(productId));
             log.info("Review created successfully with ID: {}", savedReview.getId());
-            return mapReviewToResponse(savedReview);
+            return mapReviewToResponse(savedReview, verifiedPurchase);
         } catch (DataIntegrityViolationException e) {
             // Xử lý trường hợp hy hữu bị race condition khi kiểm tra trùng lặp ở bước 1
             log.error("Data integrity violation while creating review for user {} product {}: {}", userId, productId, e.getMessage());
@@ -139,11 +226,17 @@ public class ReviewServiceImpl implements ReviewService {
         }
 
         // 2. Cập nhật thông tin
+        Integer previousRating = existingReview.getRating();
         existingReview.setRating(request.getRating());
         existingReview.setComment(request.getComment());
 
-        // 3. Lưu thay đổi
-        ReviewEntity updatedReview = reviewRepository.save(existingReview);
+        // 3. Lưu thay đổi; tổng hợp đánh giá của sản phẩm chỉ đổi khi số sao đổi
+        ReviewEntity updatedReview = reviewRepository.saveAndFlush(existingReview);
+        if (!previousRating.equals(updatedReview.getRating())) {
+            Long productId = existingReview.getProduct().getId();
+            productRepository.applyRatingChange(productId, previousRating, updatedReview.getRating(), 0);
+            eventPublisher.publishEvent(new ProductChangedEvent(productId));
+        }
         log.info("Review ID {} updated successfully by user ID {}", reviewId, userId);
 
         return mapReviewToResponse(updatedReview);
@@ -167,14 +260,87 @@ public class ReviewServiceImpl implements ReviewService {
         }
 
         // 3. Thực hiện xóa
+        Long productId = reviewToDelete.getProduct().getId();
         reviewRepository.delete(reviewToDelete);
+        productRepository.applyRatingChange(productId, reviewToDelete.getRating(), 0, -1);
+        eventPublisher.publishEvent(new ProductChangedEvent(productId));
         log.info("Review ID {} deleted successfully by user ID {} (or Admin)", reviewId, userId);
     }
 
+    /**
+     * Đối chiếu cột tổng hợp đánh giá trên tbl_products với tbl_reviews (một query GROUP BY) và sửa các sản phẩm lệch.
+     * Chạy một lần khi khởi động: backfill dữ liệu có từ trước khi thêm cột, bình thường không có dòng nào cần sửa.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional(rollbackFor = Exception.class)
+    public void backfillRatingAggregates() {
+        Map<Long, List<Long>> expected = new HashMap<>();
+        for (Object[] row : reviewRepository.aggregateRatingsByProduct()) {
+            expected.put((Long) row[0], toLongs(row));
+        }
+        Map<Long, List<Long>> stored = new HashMap<>();
+        for (Object[] row : productRepository.findRatingAggregates()) {
+            stored.put((Long) row[0], toLongs(row));
+        }
+
+        Set<Long> productIds = new HashSet<>(expected.keySet());
+        productIds.addAll(stored.keySet());
+        List<Long> empty = Collections.nCopies(7, 0L);
+        int fixed = 0;
+        for (Long productId : productIds) {
+            List<Long> values = expected.getOrDefault(productId, empty);
+            if (values.equals(stored.getOrDefault(productId, empty))) {
+                continue;
+            }
+            productRepository.setRatingAggregates(productId, values.get(0), values.get(1),
+                    values.get(2), values.get(3), values.get(4), values.get(5), values.get(6));
+            fixed++;
+        }
+        if (fixed > 0) {
+            // review_count trên card lấy từ cột tổng hợp: dựng lại toàn bộ card một lần thay vì từng sản phẩm
+            productCardService.rebuildAllCards();
+            log.info("Backfilled rating aggregates for {} products", fixed);
+        }
+    }
+
+    // Các cột sau productId của một dòng tổng hợp: sum, count, 1..5 sao
+    private static List<Long> toLongs(Object[] row) {
+        List<Long> values = new ArrayList<>(row.length - 1);
+        for (int i = 1; i < row.length; i++) {
+            values.add(row[i] != null ? ((Number) row[i]).longValue() : 0L);
+        }
+        return values;
+    }
+
     // Tạo lớp Exception tùy chỉnh nếu cần
     public static class UnauthorizedException extends RuntimeException {
         public UnauthorizedException(String message) {
             super(message);
         }
     }
-}
\ No newline at end of file
+
+    @Override
+    @Transactional(readOnly = true)
+    public ResourceVersion getReviewVersion(Long reviewId) {
+        List<Object[]> rows = reviewRepository.findVersionById(reviewId);
+        if (rows.isEmpty()) {
+            return null;
+        }
+        Object[] row = rows.get(0);
+        // verifiedPurchase của review: tra chỉ mục tbl_purchases theo khóa chính
+        boolean purchased = purchaseService.hasPurchased((Long) row[2], (Long) row[3]);
+        return ResourceVersion.of("review-" + reviewId, row[0], row[1], purchased);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public ResourceVersion getProductReviewsVersion(Long productId) {
+        Object[] row = reviewRepository.findVersionByProductId(productId).get(0);
+        if (((Number) row[2]).longValue() == 0) {
+            return null; // Chưa có review (hoặc sản phẩm không tồn tại): trả về bình thường
+        }
+        // verifiedPurchase đổi khi đơn của người viết review được giao/trả lại
+        Object[] purchases = purchaseService.getReviewerPurchaseVersion(productId);
+        return ResourceVersion.of("product-reviews-" + productId, row[0], row[1], row[2], purchases[0], purchases[1]);
+    }
+}
@@ -0,0 +1,162 @@
+package com.backend.service.impl;
+
+import com.backend.event.UserChangedEvent;
+import com.backend.model.CacheVersionEntity;
+import com.backend.repository.CacheVersionRepository;
+import com.backend.repository.UserRepository;
+import com.backend.repository.UserSearchTokenRepository;
+import com.backend.service.JobLeaseService;
+import com.backend.service.UserSearchIndexService;
+import com.backend.specification.UserSearchTokens;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+
+@Service
+@Slf4j(topic = "USER-SEARCH-INDEX")
+@RequiredArgsConstructor
+public class UserSearchIndexServiceImpl implements UserSearchIndexService {
+
+    private static final String INSERT_TOKEN_SQL = "INSERT INTO tbl_user_search_tokens (token, user_id) VALUES (?, ?)";
+    private static final String SELECT_BATCH_FOR_UPDATE_SQL = "SELECT id, first_name, last_name, username, email, phone " +
+            "FROM tbl_users WHERE id > ? ORDER BY id LIMIT ? FOR UPDATE";
+    private static final String REBUILD_JOB = "user-search-rebuild";
+    private static final String INDEX_MARKER = "user-search-index"; // Có dòng này trong tbl_cache_versions: chỉ mục đã được dựng
+
+    private final UserRepository userRepository;
+    private final UserSearchTokenRepository userSearchTokenRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final JobLeaseService jobLeaseService;
+    private final CacheVersionRepository cacheVersionRepository;
+
+    @Value("${app.user-search.rebuild-batch-size:1000}")
+    private int rebuildBatchSize;
+
+    @Value("${app.user-search.rebuild-lease-ms:600000}")
+    private long rebuildLeaseMs;
+
+    @Override
+    @Transactional(rollbackFor = Exception.class)
+    public void reindexUser(Long userId) {
+        userSearchTokenRepository.deleteByUserId(userId);
+        userRepository.findById(userId).ifPresent(user -> insertTokens(Collections.singletonList(new Object[]{
+                user.getId(), user.getFirstName(), user.getLastName(), user.getUsername(), user.getEmail(), user.getPhone()})));
+    }
+
+    /**
+     * Dựng theo lô (keyset theo id), mỗi lô một transaction: không giữ transaction dài trên bảng hàng triệu user.
+     * Chỉ một instance chạy nhờ lease trong tbl_job_leases (gia hạn sau mỗi lô). Dựng xong thì ghi dấu
+     * {@value #INDEX_MARKER} vào tbl_cache_versions để các lần khởi động sau không dựng lại.
+     */
+    @Override
+    public void rebuildAll() {
+        Duration leaseTtl = Duration.ofMillis(rebuildLeaseMs);
+        if (!jobLeaseService.tryAcquire(REBUILD_JOB, leaseTtl)) {
+            log.info("User search index is being rebuilt by another instance");
+            return;
+        }
+        try {
+            long afterId = 0;
+            long indexed = 0;
+            while (true) {
+                long from = afterId;
+                // Đọc user của lô (khóa ghi) trong chính transaction ghi token: UserChangedEvent của user trong lô
+                // chờ lô này commit rồi mới ghi lại token, hoặc đã commit trước và lô đọc được dữ liệu mới
+                List<Object[]> rows = transactionTemplate.execute(status -> {
+                    List<Object[]> batch = jdbcTemplate.query(SELECT_BATCH_FOR_UPDATE_SQL, (rs, rowNum) -> new Object[]{
+                            rs.getLong(1), rs.getString(2), rs.getString(3), rs.getString(4), rs.getString(5), rs.getString(6)
+                    }, from, rebuildBatchSize);
+                    if (!batch.isEmpty()) {
+                        userSearchTokenRepository.deleteByUserIds(batch.stream().map(row -> (Long) row[0]).toList());
+                        insertTokens(batch);
+                    }
+                    return batch;
+                });
+                if (rows == null || rows.isEmpty()) {
+                    break;
+                }
+                indexed += rows.size();
+                afterId = (Long) rows.get(rows.size() - 1)[0];
+                if (rows.size() < rebuildBatchSize) {
+                    break;
+                }
+                if (!jobLeaseService.tryAcquire(REBUILD_JOB, leaseTtl)) {
+                    log.warn("Lost lease while rebuilding user search index after user ID {}, will retry on next startup", afterId);
+                    return;
+                }
+            }
+            markBuilt();
+            log.info("Rebuilt search tokens for {} users", indexed);
+        } finally {
+            jobLeaseService.release(REBUILD_JOB);
+        }
+    }
+
+    // Chạy trong transaction ghi user (trước commit): kết quả tìm kiếm luôn nhất quán với tbl_users
+    @TransactionalEventListener(phase = TransactionPhase.BEFORE_COMMIT)
+    public void onUserChanged(UserChangedEvent event) {
+        reindexUser(event.userId());
+    }
+
+    // Dữ liệu có từ trước khi có bảng token: dựng một lần, ở thread nền để không chặn khởi động.
+    // Lỗi (deadlock, mất kết nối...) chỉ được ghi log: chưa có dấu đã dựng nên lần khởi động sau dựng lại
+    @EventListener(ApplicationReadyEvent.class)
+    public void initializeIndex() {
+        Thread thread = new Thread(() -> {
+            try {
+                if (!cacheVersionRepository.existsById(INDEX_MARKER)) {
+                    log.info("User search index has not been built yet, rebuilding");
+                    rebuildAll();
+                }
+            } catch (Exception e) {
+                log.error("User search index rebuild failed: {}", e.getMessage(), e);
+            }
+        }, "user-search-rebuild");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private void markBuilt() {
+        if (cacheVersionRepository.existsById(INDEX_MARKER)) {
+            return;
+        }
+        CacheVersionEntity marker = new CacheVersionEntity();
+        marker.setName(INDEX_MARKER);
+        marker.setVersion(1L);
+        marker.setUpdatedAt(new Date());
+        try {
+            cacheVersionRepository.save(marker);
+        } catch (DataIntegrityViolationException e) {
+            log.debug("User search index marker created concurrently by another instance");
+        }
+    }
+
+    // rows: (id, firstName, lastName, username, email, phone) - cùng thứ tự với SELECT_BATCH_FOR_UPDATE_SQL
+    private void insertTokens(List<Object[]> rows) {
+        List<Object[]> batch = new ArrayList<>();
+        for (Object[] row : rows) {
+            Long userId = (Long) row[0];
+            UserSearchTokens.forUser((String) row[1], (String) row[2], (String) row[3], (String) row[4], (String) row[5])
+                    .forEach(token -> batch.add(new Object[]{token, userId}));
+        }
+        if (!batch.isEmpty()) {
+            jdbcTemplate.batchUpdate(INSERT_TOKEN_SQL, batch);
+        }
+    }
+}
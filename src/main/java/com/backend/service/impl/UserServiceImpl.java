@@ -1,11 +1,14 @@
 // src/main/java/com/backend/service/impl/UserServiceImpl.java
 package com.backend.service.impl;
 
+import com.backend.common.RetryOnConflict;
 import com.backend.common.UserStatus;
 import com.backend.common.UserType;
 import com.backend.controller.request.*;
 import com.backend.controller.response.AddressResponse;
+import com.backend.controller.response.UserPageReponse;
 import com.backend.controller.response.UserResponse;
+import com.backend.event.UserChangedEvent;
 import com.backend.exception.ResourceNotFoundException;
 import com.backend.model.AddressEntity;
 import com.backend.model.UserEntity;
@@ -14,12 +17,16 @@ import com.backend.repository.OrderRepository; // Đảm bảo import này đún
 import com.backend.repository.UserRepository;
 import com.backend.service.BrevoEmailService;
 import com.backend.service.UserService;
+import com.backend.specification.UserSearchTokens;
+import com.backend.specification.UserSpecification;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.hibernate.Hibernate;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.domain.Specification;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
@@ -41,6 +48,7 @@ public class UserServiceImpl implements UserService {
     private final PasswordEncoder passwordEncoder;
     private final BrevoEmailService emailService;
     private final OrderRepository orderRepository; // Đảm bảo đã inject
+    private final ApplicationEventPublisher eventPublisher;
 
     // --- Các @Value giữ nguyên ---
     @Value("${app.base-url:http://localhost:8080}")
@@ -99,11 +107,17 @@ public class UserServiceImpl implements UserService {
     // --- findAll, findByUserName, findById, findByEmail giữ nguyên ---
     @Override
     @Transactional(readOnly = true)
-    public List<UserResponse> findAll(String keyword, Pageable pageable) {
+    public UserPageReponse findAll(String keyword, Pageable pageable) {
         Page<UserEntity> userPage;
-        if (StringUtils.hasText(keyword)) {
+        List<String> terms = StringUtils.hasText(keyword) ? UserSearchTokens.terms(keyword) : List.of();
+        if (!terms.isEmpty()) {
             log.info("Finding users with keyword '{}', page {}, size {}", keyword, pageable.getPageNumber(), pageable.getPageSize());
-            userPage = userRepository.searchUsersByKeywordAndStatus(keyword, UserStatus.ACTIVE, pageable);
+            // Mỗi từ khóa khớp tiền tố một token trong tbl_user_search_tokens (range scan theo index), thay cho LIKE '%kw%' trên 5 cột
+            Specification<UserEntity> spec = UserSpecification.hasStatus(UserStatus.ACTIVE);
+            for (String term : terms) {
+                spec = spec.and(UserSpecification.hasTokenPrefix(term));
+            }
+            userPage = userRepository.findAll(spec, pageable);
         } else {
             log.info("Finding all active users, page {}, size {}", pageable.getPageNumber(), pageable.getPageSize());
             userPage = userRepository.findByStatus(UserStatus.ACTIVE, pageable);
@@ -116,9 +130,16 @@ public class UserServiceImpl implements UserService {
                 log.error("Error initializing addresses for user {}: {}", user.getId(), e.getMessage());
             }
         });
-        return userEntities.stream()
-                .map(this::mapToUserResponse)
-                .collect(Collectors.toList());
+        UserPageReponse response = UserPageReponse.builder()
+                .users(userEntities.stream()
+                        .map(this::mapToUserResponse)
+                        .collect(Collectors.toList()))
+                .build();
+        response.setPageNumber(userPage.getNumber());
+        response.setPageSize(userPage.getSize());
+        response.setTotalPages(userPage.getTotalPages());
+        response.setTotalElements((int) userPage.getTotalElements());
+        return response;
     }
 
     @Override
@@ -219,6 +240,7 @@ public class UserServiceImpl implements UserService {
         user.setAddresses(addresses);
 
         UserEntity savedUser = userRepository.save(user);
+        eventPublisher.publishEvent(new UserChangedEvent(savedUser.getId())); // Token tìm kiếm cho admin
         log.info("Saved user pending verification with ID: {}", savedUser.getId());
 
         try {
@@ -249,6 +271,7 @@ public class UserServiceImpl implements UserService {
     // --- SỬA LẠI PHƯƠNG THỨC UPDATE ---
     // --- THAY THẾ TOÀN BỘ PHƯƠNG THỨC UPDATE HIỆN TẠI BẰNG CODE NÀY ---
     @Override
+    @RetryOnConflict
     @Transactional(rollbackFor = Exception.class)
     public void update(UserUpdateRequest req) {
         if (req.getId() == null) {
@@ -360,6 +383,7 @@ public class UserServiceImpl implements UserService {
 
         // Lưu lại User (Cascade và orphanRemoval sẽ xử lý DB)
         userRepository.save(user);
+        eventPublisher.publishEvent(new UserChangedEvent(user.getId()));
         log.info("Successfully updated user profile and addresses for ID: {}", user.getId());
     }
     // --- Kết thúc phương thức update đã sửa ---
@@ -367,6 +391,7 @@ public class UserServiceImpl implements UserService {
 
     // --- Các phương thức còn lại (changePassword, delete, ...) giữ nguyên ---
     @Override
+    @RetryOnConflict
     @Transactional
     public void changePassword(UserPasswordRequest req) {
         log.info("Attempting to change password for user ID: {}", req.getId());
@@ -381,6 +406,7 @@ public class UserServiceImpl implements UserService {
     }
 
     @Override
+    @RetryOnConflict
     @Transactional(rollbackFor = Exception.class)
     public void delete(Long id) {
         log.info("Attempting soft delete for user ID: {}", id);
@@ -490,6 +516,7 @@ public class UserServiceImpl implements UserService {
             newUser.setStatus(UserStatus.ACTIVE);
             newUser.setType(UserType.USER);
             userEntity = userRepository.save(newUser);
+            eventPublisher.publishEvent(new UserChangedEvent(userEntity.getId()));
             log.info("New user created via Google OAuth2 with ID: {}", userEntity.getId());
         }
         return userEntity;
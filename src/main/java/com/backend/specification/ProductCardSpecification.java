@@ -0,0 +1,35 @@
+package com.backend.specification;
+
+import com.backend.model.ProductCardEntity;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.math.BigDecimal;
+import java.util.Collection;
+
+public class ProductCardSpecification {
+
+    public static Specification<ProductCardEntity> hasKeyword(String keyword) {
+        // Card không lưu mô tả: chỉ tìm theo tên
+        return (root, query, criteriaBuilder) ->
+                criteriaBuilder.like(criteriaBuilder.lower(root.get("name")), "%" + keyword.toLowerCase() + "%");
+    }
+
+    public static Specification<ProductCardEntity> hasCategory(Collection<Long> categoryIds) {
+        // categoryIds là cả cây con (CategoryHierarchyCache)
+        return (root, query, criteriaBuilder) -> categoryIds.size() == 1
+                ? criteriaBuilder.equal(root.get("categoryId"), categoryIds.iterator().next())
+                : root.get("categoryId").in(categoryIds);
+    }
+
+    public static Specification<ProductCardEntity> hasMinPrice(BigDecimal minPrice) {
+        return (root, query, criteriaBuilder) -> criteriaBuilder.greaterThanOrEqualTo(root.get("price"), minPrice);
+    }
+
+    public static Specification<ProductCardEntity> hasMaxPrice(BigDecimal maxPrice) {
+        return (root, query, criteriaBuilder) -> criteriaBuilder.lessThanOrEqualTo(root.get("price"), maxPrice);
+    }
+
+    public static Specification<ProductCardEntity> isInStock() {
+        return (root, query, criteriaBuilder) -> criteriaBuilder.isTrue(root.get("inStock"));
+    }
+}
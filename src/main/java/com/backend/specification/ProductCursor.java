@@ -0,0 +1,73 @@
+package com.backend.specification;
+
+import com.backend.common.ProductSort;
+import com.backend.exception.InvalidDataException;
+import com.backend.model.ProductCardEntity;
+import com.backend.model.ProductEntity;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Date;
+
+/**
+ * Vị trí keyset (giá trị cột sắp xếp + id) của bản ghi cuối cùng trên trang trước.
+ * Được mã hóa thành chuỗi Base64 URL-safe để client gửi lại nguyên vẹn ở tham số "cursor".
+ */
+public record ProductCursor(ProductSort sort, Comparable<?> value, long id) {
+
+    private static final String SEPARATOR = "|";
+
+    public static ProductCursor of(ProductSort sort, ProductEntity last) {
+        Comparable<?> value = switch (sort) {
+            case NEWEST -> last.getCreatedAt();
+            case PRICE_ASC, PRICE_DESC -> last.getPrice();
+            case BEST_SELLING -> last.getSoldCount();
+            case RATING -> last.getAverageRating();
+            case MOST_REVIEWED -> last.getRatingCount();
+            case BEST_SELLING_7D, BEST_SELLING_30D, MOST_VIEWED -> throw new InvalidDataException("Sort " + sort + " is only available for product cards");
+        };
+        return new ProductCursor(sort, value, last.getId());
+    }
+
+    public static ProductCursor of(ProductSort sort, ProductCardEntity last) {
+        Comparable<?> value = switch (sort) {
+            case NEWEST -> last.getCreatedAt();
+            case PRICE_ASC, PRICE_DESC -> last.getPrice();
+            case BEST_SELLING -> last.getSoldCount();
+            case RATING -> last.getAverageRating();
+            case MOST_REVIEWED -> last.getRatingCount();
+            case BEST_SELLING_7D -> last.getSoldLast7Days();
+            case BEST_SELLING_30D -> last.getSoldLast30Days();
+            case MOST_VIEWED -> last.getViewCount();
+        };
+        return new ProductCursor(sort, value, last.getId());
+    }
+
+    public String encode() {
+        String rawValue = value instanceof Date date ? String.valueOf(date.getTime())
+                : value instanceof BigDecimal decimal ? decimal.toPlainString()
+                : String.valueOf(value);
+        String raw = sort.name() + SEPARATOR + rawValue + SEPARATOR + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static ProductCursor decode(ProductSort sort, String token) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+            String[] parts = raw.split("\\" + SEPARATOR);
+            if (parts.length != 3 || !sort.name().equals(parts[0])) {
+                throw new InvalidDataException("Cursor does not match sort " + sort);
+            }
+            Comparable<?> value = switch (sort) {
+                case NEWEST -> new Date(Long.parseLong(parts[1]));
+                case PRICE_ASC, PRICE_DESC -> new BigDecimal(parts[1]);
+                case BEST_SELLING, MOST_REVIEWED, BEST_SELLING_7D, BEST_SELLING_30D, MOST_VIEWED -> Long.valueOf(parts[1]);
+                case RATING -> Double.valueOf(parts[1]);
+            };
+            return new ProductCursor(sort, value, Long.parseLong(parts[2]));
+        } catch (IllegalArgumentException e) { // Base64 hoặc số không hợp lệ
+            throw new InvalidDataException("Invalid cursor: " + token);
+        }
+    }
+}
@@ -1,11 +1,11 @@
 package com.backend.specification; // Giả sử package của bạn
 
 
-import com.backend.model.CategoryEntity;
 import com.backend.model.ProductEntity;
-import jakarta.persistence.criteria.Join;
+import jakarta.persistence.criteria.Path;
 import org.springframework.data.jpa.domain.Specification;
 import java.math.BigDecimal;
+import java.util.Collection;
 
 public class ProductSpecification {
 
@@ -20,12 +20,13 @@ public class ProductSpecification {
         };
     }
 
-    public static Specification<ProductEntity> hasCategory(Long categoryId) {
-        // Lọc theo ID của category (cần join với bảng Category)
-        return (root, query, criteriaBuilder) -> {
-            Join<ProductEntity, CategoryEntity> categoryJoin = root.join("category"); // Giả định tên quan hệ là "category"
-            return criteriaBuilder.equal(categoryJoin.get("id"), categoryId);
-        };
+    public static Specification<ProductEntity> hasCategory(Collection<Long> categoryIds) {
+        // Lọc theo cột category_id trực tiếp, không cần join sang tbl_categories
+        // (để predicate dùng được composite index bắt đầu bằng category_id).
+        // categoryIds là cả cây con (lấy từ CategoryHierarchyCache), nên danh mục cha cũng thấy sản phẩm của con.
+        return (root, query, criteriaBuilder) -> categoryIds.size() == 1
+                ? criteriaBuilder.equal(root.get("category").get("id"), categoryIds.iterator().next())
+                : root.get("category").get("id").in(categoryIds);
     }
 
     public static Specification<ProductEntity> hasMinPrice(BigDecimal minPrice) {
@@ -39,4 +40,29 @@ public class ProductSpecification {
         return (root, query, criteriaBuilder) ->
                 criteriaBuilder.lessThanOrEqualTo(root.get("price"), maxPrice);
     }
-}
\ No newline at end of file
+
+    /**
+     * Keyset predicate: chỉ lấy các bản ghi đứng sau cursor theo thứ tự (cột sắp xếp, id).
+     * Tương đương "(key > v) OR (key = v AND id > lastId)" (đảo chiều với DESC),
+     * nên trang thứ N cũng chỉ là một range scan trên index thay vì OFFSET.
+     * Dùng chung cho tbl_products và tbl_product_cards (cùng tên thuộc tính sắp xếp và "id").
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public static <T> Specification<T> after(ProductCursor cursor) {
+        return (root, query, criteriaBuilder) -> {
+            Path<Comparable> key = root.get(cursor.sort().getProperty());
+            Path<Long> id = root.get("id");
+            Comparable value = cursor.value();
+            if (cursor.sort().getDirection().isAscending()) {
+                return criteriaBuilder.or(
+                        criteriaBuilder.greaterThan(key, value),
+                        criteriaBuilder.and(criteriaBuilder.equal(key, value), criteriaBuilder.greaterThan(id, cursor.id()))
+                );
+            }
+            return criteriaBuilder.or(
+                    criteriaBuilder.lessThan(key, value),
+                    criteriaBuilder.and(criteriaBuilder.equal(key, value), criteriaBuilder.lessThan(id, cursor.id()))
+            );
+        };
+    }
+}
@@ -0,0 +1,49 @@
+package com.backend.specification;
+
+import com.backend.common.ReviewSort;
+import com.backend.exception.InvalidDataException;
+import com.backend.model.ReviewEntity;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Date;
+
+/**
+ * Vị trí keyset (giá trị cột sắp xếp + id) của review cuối cùng trên trang trước,
+ * mã hóa Base64 URL-safe giống ProductCursor.
+ */
+public record ReviewCursor(ReviewSort sort, Comparable<?> value, long id) {
+
+    private static final String SEPARATOR = "|";
+
+    public static ReviewCursor of(ReviewSort sort, ReviewEntity last) {
+        Comparable<?> value = switch (sort) {
+            case NEWEST -> last.getCreatedAt();
+            case HIGHEST_RATING, LOWEST_RATING -> last.getRating();
+        };
+        return new ReviewCursor(sort, value, last.getId());
+    }
+
+    public String encode() {
+        String rawValue = value instanceof Date date ? String.valueOf(date.getTime()) : String.valueOf(value);
+        String raw = sort.name() + SEPARATOR + rawValue + SEPARATOR + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static ReviewCursor decode(ReviewSort sort, String token) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+            String[] parts = raw.split("\\" + SEPARATOR);
+            if (parts.length != 3 || !sort.name().equals(parts[0])) {
+                throw new InvalidDataException("Cursor does not match sort " + sort);
+            }
+            Comparable<?> value = switch (sort) {
+                case NEWEST -> new Date(Long.parseLong(parts[1]));
+                case HIGHEST_RATING, LOWEST_RATING -> Integer.valueOf(parts[1]);
+            };
+            return new ReviewCursor(sort, value, Long.parseLong(parts[2]));
+        } catch (IllegalArgumentException e) { // Base64 hoặc số không hợp lệ
+            throw new InvalidDataException("Invalid cursor: " + token);
+        }
+    }
+}
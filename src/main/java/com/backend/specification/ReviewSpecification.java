@@ -0,0 +1,48 @@
+package com.backend.specification;
+
+import com.backend.model.ReviewEntity;
+import jakarta.persistence.criteria.JoinType;
+import jakarta.persistence.criteria.Path;
+import org.springframework.data.jpa.domain.Specification;
+
+public class ReviewSpecification {
+
+    public static Specification<ReviewEntity> forProduct(Long productId) {
+        // So sánh trực tiếp cột product_id (không join tbl_products) để dùng index (product_id, <cột sắp xếp>, id)
+        return (root, query, criteriaBuilder) -> criteriaBuilder.equal(root.get("product").get("id"), productId);
+    }
+
+    public static Specification<ReviewEntity> fetchUser() {
+        // Lấy người viết trong cùng query (JOIN FETCH) thay vì lazy load từng review.
+        // Không fetch trong query COUNT (Hibernate không cho fetch khi chỉ chọn count)
+        return (root, query, criteriaBuilder) -> {
+            if (query.getResultType() != Long.class && query.getResultType() != long.class) {
+                root.fetch("user", JoinType.INNER);
+            }
+            return null;
+        };
+    }
+
+    /**
+     * Keyset predicate giống ProductSpecification.after: chỉ lấy các review đứng sau cursor
+     * theo thứ tự (cột sắp xếp, id), trang thứ N vẫn là một range scan trên index.
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public static Specification<ReviewEntity> after(ReviewCursor cursor) {
+        return (root, query, criteriaBuilder) -> {
+            Path<Comparable> key = root.get(cursor.sort().getProperty());
+            Path<Long> id = root.get("id");
+            Comparable value = cursor.value();
+            if (cursor.sort().getDirection().isAscending()) {
+                return criteriaBuilder.or(
+                        criteriaBuilder.greaterThan(key, value),
+                        criteriaBuilder.and(criteriaBuilder.equal(key, value), criteriaBuilder.greaterThan(id, cursor.id()))
+                );
+            }
+            return criteriaBuilder.or(
+                    criteriaBuilder.lessThan(key, value),
+                    criteriaBuilder.and(criteriaBuilder.equal(key, value), criteriaBuilder.lessThan(id, cursor.id()))
+            );
+        };
+    }
+}
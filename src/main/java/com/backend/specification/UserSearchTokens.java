@@ -0,0 +1,68 @@
+package com.backend.specification;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * Tách và chuẩn hóa từ cho tbl_user_search_tokens. Dữ liệu user và từ khóa tìm kiếm đi qua cùng một bước chuẩn hóa
+ * (chữ thường, bỏ dấu tiếng Việt, tách theo ký tự không phải chữ/số) nên "Nguyễn" khớp "nguyen", "john.doe@gm" khớp email.
+ * <p>
+ * Số điện thoại được lưu thêm mọi hậu tố (từ {@value #MIN_PHONE_SUFFIX} chữ số) để tìm theo vài số cuối vẫn là tìm tiền tố.
+ */
+public final class UserSearchTokens {
+
+    public static final int MAX_TOKEN_LENGTH = 50; // Trùng độ dài cột token
+    public static final int MAX_TERMS = 5;
+    private static final int MIN_PHONE_SUFFIX = 3;
+
+    private static final Pattern COMBINING_MARKS = Pattern.compile("\\p{M}+");
+    private static final Pattern SEPARATORS = Pattern.compile("[^a-z0-9]+");
+
+    private UserSearchTokens() {
+    }
+
+    public static Set<String> forUser(String firstName, String lastName, String username, String email, String phone) {
+        Set<String> tokens = new LinkedHashSet<>();
+        for (String field : new String[]{firstName, lastName, username, email}) {
+            tokens.addAll(words(field));
+        }
+        if (phone != null) {
+            String digits = phone.replaceAll("\\D", "");
+            for (int start = 0; start <= digits.length() - MIN_PHONE_SUFFIX; start++) {
+                tokens.add(truncate(digits.substring(start)));
+            }
+        }
+        return tokens;
+    }
+
+    // Các từ của từ khóa admin nhập; mỗi từ phải khớp tiền tố của ít nhất một token của user
+    public static List<String> terms(String keyword) {
+        List<String> terms = new ArrayList<>(new LinkedHashSet<>(words(keyword)));
+        return terms.size() > MAX_TERMS ? terms.subList(0, MAX_TERMS) : terms;
+    }
+
+    static List<String> words(String value) {
+        List<String> words = new ArrayList<>();
+        if (value == null || value.isBlank()) {
+            return words;
+        }
+        String normalized = COMBINING_MARKS.matcher(Normalizer.normalize(value, Normalizer.Form.NFD)).replaceAll("")
+                .toLowerCase(Locale.ROOT)
+                .replace('đ', 'd');
+        for (String word : SEPARATORS.split(normalized)) {
+            if (!word.isEmpty()) {
+                words.add(truncate(word));
+            }
+        }
+        return words;
+    }
+
+    private static String truncate(String token) {
+        return token.length() > MAX_TOKEN_LENGTH ? token.substring(0, MAX_TOKEN_LENGTH) : token;
+    }
+}
@@ -0,0 +1,27 @@
+package com.backend.specification;
+
+import com.backend.common.UserStatus;
+import com.backend.model.UserEntity;
+import com.backend.model.UserSearchTokenEntity;
+import jakarta.persistence.criteria.Root;
+import jakarta.persistence.criteria.Subquery;
+import org.springframework.data.jpa.domain.Specification;
+
+public class UserSpecification {
+
+    public static Specification<UserEntity> hasStatus(UserStatus status) {
+        return (root, query, criteriaBuilder) -> criteriaBuilder.equal(root.get("status"), status);
+    }
+
+    // id IN (SELECT user_id FROM tbl_user_search_tokens WHERE token LIKE 'term%'): range scan trên khóa chính (token, user_id)
+    // term đã qua UserSearchTokens.terms nên chỉ gồm [a-z0-9], không cần escape ký tự LIKE
+    public static Specification<UserEntity> hasTokenPrefix(String term) {
+        return (root, query, criteriaBuilder) -> {
+            Subquery<Long> userIds = query.subquery(Long.class);
+            Root<UserSearchTokenEntity> token = userIds.from(UserSearchTokenEntity.class);
+            userIds.select(token.get("userId"))
+                    .where(criteriaBuilder.like(token.get("token"), term + "%"));
+            return root.get("id").in(userIds);
+        };
+    }
+}
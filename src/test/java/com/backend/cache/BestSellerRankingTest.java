@@ -0,0 +1,77 @@
+package com.backend.cache;
+
+import com.backend.common.SalesWindow;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class BestSellerRankingTest {
+
+    private static final long TODAY = 20_000;
+
+    @Test
+    void ranksWithinWindowOnly() {
+        BestSellerRanking ranking = new BestSellerRanking();
+        ranking.add(1L, 10L, TODAY, 5);
+        ranking.add(2L, 10L, TODAY - 3, 8);
+        ranking.add(3L, 10L, TODAY - 20, 50); // Ngoài cửa sổ 7 ngày
+
+        assertEquals(List.of(2L, 1L), ranking.top(Set.of(10L), SalesWindow.LAST_7_DAYS, 10, TODAY));
+        assertEquals(List.of(3L, 2L, 1L), ranking.top(Set.of(10L), SalesWindow.LAST_30_DAYS, 10, TODAY));
+        // Sang ngày mới: số liệu của TODAY - 3 rơi khỏi cửa sổ 7 ngày sau 4 ngày
+        assertEquals(List.of(1L), ranking.top(Set.of(10L), SalesWindow.LAST_7_DAYS, 10, TODAY + 4));
+    }
+
+    @Test
+    void cancellationAndSlotReuseUpdateCachedTop() {
+        BestSellerRanking ranking = new BestSellerRanking();
+        ranking.add(1L, 10L, TODAY, 5);
+        ranking.add(2L, 10L, TODAY, 3);
+        assertEquals(List.of(1L, 2L), ranking.top(Set.of(10L), SalesWindow.LAST_7_DAYS, 10, TODAY));
+
+        ranking.add(1L, 10L, TODAY, -4);
+        assertEquals(List.of(2L, 1L), ranking.top(Set.of(10L), SalesWindow.LAST_7_DAYS, 10, TODAY));
+
+        // Cùng ô vòng (cách 30 ngày): ô cũ bị thay, không cộng dồn
+        ranking.add(2L, 10L, TODAY + SalesWindow.MAX_DAYS, 1);
+        List<BestSellerRanking.Entry> entries = new ArrayList<>();
+        ranking.forEach(TODAY, entries::add);
+        assertEquals(List.of(new BestSellerRanking.Entry(1L, 10L, TODAY, 1),
+                new BestSellerRanking.Entry(2L, 10L, TODAY + SalesWindow.MAX_DAYS, 1)),
+                entries.stream().sorted((a, b) -> Long.compare(a.productId(), b.productId())).toList());
+    }
+
+    @Test
+    void mergesSubtreeAndFollowsCategoryMoves() {
+        BestSellerRanking ranking = new BestSellerRanking();
+        ranking.add(1L, 10L, TODAY, 5);
+        ranking.add(2L, 11L, TODAY, 7);
+        ranking.add(3L, 12L, TODAY, 9);
+
+        assertEquals(List.of(2L, 1L), ranking.top(List.of(10L, 11L), SalesWindow.LAST_7_DAYS, 10, TODAY));
+        assertEquals(List.of(2L), ranking.top(List.of(10L, 11L), SalesWindow.LAST_7_DAYS, 1, TODAY));
+
+        ranking.add(1L, 12L, TODAY, 1);
+        assertEquals(List.of(2L), ranking.top(List.of(10L, 11L), SalesWindow.LAST_7_DAYS, 10, TODAY));
+        assertEquals(List.of(3L, 1L), ranking.top(List.of(12L), SalesWindow.LAST_7_DAYS, 10, TODAY));
+    }
+
+    @Test
+    void replaceDropsOldStateAndAppliesEntriesInOrder() {
+        BestSellerRanking ranking = new BestSellerRanking();
+        ranking.add(1L, 10L, TODAY, 5);
+        ranking.add(9L, 10L, TODAY, 100); // Không còn trong bản mới
+
+        // Dòng từ DB rồi tới chênh lệch chưa ghi (âm = hủy đơn)
+        ranking.replace(List.of(
+                new BestSellerRanking.Entry(1L, 10L, TODAY, 5),
+                new BestSellerRanking.Entry(2L, 10L, TODAY, 4),
+                new BestSellerRanking.Entry(1L, 10L, TODAY, -2)));
+
+        assertEquals(List.of(2L, 1L), ranking.top(Set.of(10L), SalesWindow.LAST_7_DAYS, 10, TODAY));
+    }
+}
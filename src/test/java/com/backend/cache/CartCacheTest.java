@@ -0,0 +1,69 @@
+package com.backend.cache;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CartCacheTest {
+
+    @Test
+    void coalescesQuantityChangesAndRemovals() {
+        CartCache cache = new CartCache(10);
+        CartCache.Cart cart = cache.putIfAbsent(7L, new CartCache.Cart(1L, 0, List.of(
+                new CartCache.Line(11L, 100L, 1), new CartCache.Line(12L, 200L, 2))));
+        cart.setQuantity(11L, 3);
+        cart.setQuantity(11L, 4);
+        cart.setQuantity(12L, 5);
+        cart.removeLine(12L); // Xóa sau khi đổi số lượng: chỉ còn lệnh xóa
+
+        List<CartCache.DirtyCart> dirty = cache.drainDirty();
+        assertEquals(1, dirty.size());
+        assertEquals(Map.of(11L, 4), dirty.get(0).quantities());
+        assertEquals(Set.of(12L), dirty.get(0).deletedIds());
+        assertTrue(cache.drainDirty().isEmpty());
+    }
+
+    @Test
+    void failedWriteIsRetriedWithLatestQuantity() {
+        CartCache cache = new CartCache(10);
+        CartCache.Cart cart = cache.putIfAbsent(7L, new CartCache.Cart(1L, 0, List.of(new CartCache.Line(11L, 100L, 1))));
+        cart.setQuantity(11L, 2);
+        CartCache.DirtyCart failed = cache.drainDirty().get(0);
+        cart.setQuantity(11L, 6);
+        cache.markFailed(failed);
+
+        List<CartCache.DirtyCart> retry = cache.drainDirty();
+        assertEquals(Map.of(11L, 6), retry.get(0).quantities());
+    }
+
+    @Test
+    void dirtyCartEvictedFromLruIsFlushedAndReused() {
+        CartCache cache = new CartCache(1);
+        CartCache.Cart first = cache.putIfAbsent(1L, new CartCache.Cart(1L, 0, List.of(new CartCache.Line(11L, 100L, 1))));
+        first.removeLine(11L);
+        cache.putIfAbsent(2L, new CartCache.Cart(2L, 0, List.of())); // Đẩy user 1 ra khỏi LRU
+
+        assertSame(first, cache.get(1L)); // Chưa ghi: dùng lại giỏ cũ thay vì đọc DB
+        List<CartCache.DirtyCart> dirty = cache.drainDirty();
+        assertEquals(Set.of(11L), dirty.get(0).deletedIds());
+    }
+
+    @Test
+    void newLineOnlyMarksCartAsTouched() {
+        CartCache cache = new CartCache(10);
+        CartCache.Cart cart = cache.putIfAbsent(7L, new CartCache.Cart(1L, 0, List.of()));
+        cart.addLine(new CartCache.Line(11L, 100L, 1)); // Dòng đã được INSERT, chỉ cần cập nhật updated_at của giỏ
+
+        List<CartCache.DirtyCart> dirty = cache.drainDirty();
+        assertEquals(1, dirty.size());
+        assertTrue(dirty.get(0).quantities().isEmpty());
+        assertTrue(dirty.get(0).deletedIds().isEmpty());
+        assertTrue(cache.drainDirty().isEmpty());
+    }
+}
@@ -0,0 +1,69 @@
+package com.backend.cache;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class LongIntHashMapTest {
+
+    @Test
+    void addToRemovesEntryWhenCountDropsToZero() {
+        LongIntHashMap map = new LongIntHashMap();
+        map.addTo(7L, 2);
+        map.addTo(7L, -1);
+        assertEquals(1, map.get(7L));
+
+        map.addTo(7L, -1);
+        assertEquals(0, map.get(7L));
+        assertEquals(0, map.size());
+    }
+
+    @Test
+    void coOccurrenceIndexRanksByCountThenId() {
+        CoOccurrenceIndex index = new CoOccurrenceIndex();
+        index.addOrder(new long[]{1, 2, 3}, 1);
+        index.addOrder(new long[]{1, 3}, 1);
+        index.addOrder(new long[]{1, 4, 4}, 1);
+
+        assertEquals(List.of(3L, 2L, 4L), index.topNeighbours(1L, 10));
+        assertEquals(List.of(3L), index.topNeighbours(1L, 1));
+
+        // Hủy đơn trừ lại đúng các cặp đã cộng
+        index.addOrder(new long[]{1, 3}, -1);
+        index.addOrder(new long[]{1, 2, 3}, -1);
+        assertEquals(List.of(4L), index.topNeighbours(1L, 10));
+    }
+
+    @Test
+    void matchesHashMapUnderRandomUpdates() {
+        LongIntHashMap map = new LongIntHashMap(4);
+        Map<Long, Integer> reference = new HashMap<>();
+        Random random = new Random(42);
+
+        // Khóa dày đặc trong khoảng nhỏ để tạo nhiều va chạm, rehash và xóa dịch lùi
+        for (int i = 0; i < 50_000; i++) {
+            long key = 1 + random.nextInt(500);
+            int delta = random.nextBoolean() ? 1 : -1;
+            map.addTo(key, delta);
+            int updated = reference.getOrDefault(key, 0) + delta;
+            if (updated <= 0) {
+                reference.remove(key);
+            } else {
+                reference.put(key, updated);
+            }
+        }
+
+        assertEquals(reference.size(), map.size());
+        for (long key = 1; key <= 500; key++) {
+            assertEquals(reference.getOrDefault(key, 0), map.get(key), "key " + key);
+        }
+        Map<Long, Integer> iterated = new HashMap<>();
+        map.forEach(iterated::put);
+        assertEquals(reference, iterated);
+    }
+}
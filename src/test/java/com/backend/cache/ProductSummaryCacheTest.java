@@ -0,0 +1,52 @@
+package com.backend.cache;
+
+import com.backend.controller.response.ProductSummaryResponse;
+import com.backend.event.ProductChangedEvent;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ProductSummaryCacheTest {
+
+    private final AtomicLong now = new AtomicLong();
+    private final ProductSummaryCache cache = new ProductSummaryCache(10, 1000, now::get);
+
+    private ProductSummaryResponse summary(long id) {
+        return ProductSummaryResponse.builder().id(id).name("P" + id).price(BigDecimal.TEN).stockQuantity(5).inStock(true).build();
+    }
+
+    private List<Long> misses(Long... ids) {
+        Map<Long, ProductSummaryResponse> hits = new HashMap<>();
+        List<Long> misses = new ArrayList<>();
+        cache.getAll(List.of(ids), hits, misses);
+        return misses;
+    }
+
+    @Test
+    void entriesExpireAfterTtl() {
+        cache.putAll(List.of(summary(1)), cache.currentVersion());
+        now.addAndGet(TimeUnit.MILLISECONDS.toNanos(999));
+        assertTrue(misses(1L).isEmpty());
+
+        now.addAndGet(TimeUnit.MILLISECONDS.toNanos(1)); // Thay đổi trên instance khác không có event cục bộ
+        assertEquals(List.of(1L), misses(1L));
+    }
+
+    @Test
+    void loadsStartedBeforeALocalChangeAreDropped() {
+        long loadedAt = cache.currentVersion();
+        cache.onProductChanged(new ProductChangedEvent(2L));
+        cache.putAll(List.of(summary(2)), loadedAt);
+
+        assertEquals(List.of(2L), misses(2L));
+    }
+}
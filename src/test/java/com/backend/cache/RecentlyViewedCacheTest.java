@@ -0,0 +1,45 @@
+package com.backend.cache;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class RecentlyViewedCacheTest {
+
+    @Test
+    void keepsMostRecentDistinctProductsUpToCapacity() {
+        RecentlyViewedCache cache = new RecentlyViewedCache(10, 3);
+        for (long productId : new long[]{1, 2, 3, 2, 4}) {
+            cache.record(7L, productId);
+        }
+        assertEquals(List.of(4L, 2L, 3L), cache.mergeLoaded(7L, List.of()).productIds());
+    }
+
+    @Test
+    void storedHistoryIsAppendedAfterNewerViews() {
+        RecentlyViewedCache cache = new RecentlyViewedCache(10, 4);
+        cache.record(7L, 5L);
+        assertNull(cache.getLoaded(7L)); // Chưa gộp với bản lưu
+
+        RecentlyViewedCache.History history = cache.mergeLoaded(7L, List.of(9L, 5L, 8L, 6L, 3L));
+        assertEquals(List.of(5L, 9L, 8L, 6L), history.productIds());
+
+        cache.record(7L, 6L);
+        assertEquals(List.of(6L, 5L, 9L, 8L), cache.getLoaded(7L).productIds());
+    }
+
+    @Test
+    void dirtyHistoryEvictedFromLruIsStillFlushed() {
+        RecentlyViewedCache cache = new RecentlyViewedCache(1, 5);
+        cache.record(1L, 10L);
+        cache.record(2L, 20L); // Đẩy user 1 ra khỏi LRU
+
+        List<RecentlyViewedCache.DirtyHistory> dirty = cache.drainDirty();
+        assertEquals(2, dirty.size());
+        dirty.forEach(item -> cache.markWritten(item, List.of()));
+        assertEquals(List.of(), cache.drainDirty());
+    }
+}
@@ -0,0 +1,79 @@
+package com.backend.config;
+
+import com.backend.common.RetryOnConflict;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.aop.framework.ProxyFactory;
+import org.springframework.aop.support.DefaultPointcutAdvisor;
+import org.springframework.aop.support.annotation.AnnotationMatchingPointcut;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class OptimisticRetryInterceptorTest {
+
+    static class Inventory {
+        int calls;
+        int conflicts;
+
+        @RetryOnConflict
+        public String reserve() {
+            calls++;
+            if (calls <= conflicts) {
+                throw new ObjectOptimisticLockingFailureException("ProductEntity", 1L);
+            }
+            return "ok";
+        }
+
+        @RetryOnConflict(maxAttempts = 1)
+        public String reserveOnce() {
+            return reserve();
+        }
+    }
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+    private Inventory proxy(Inventory target) {
+        ProxyFactory factory = new ProxyFactory(target);
+        factory.setProxyTargetClass(true);
+        factory.addAdvisor(new DefaultPointcutAdvisor(AnnotationMatchingPointcut.forMethodAnnotation(RetryOnConflict.class),
+                new OptimisticRetryInterceptor(registry, 3, 1, 2)));
+        return (Inventory) factory.getProxy();
+    }
+
+    private double count(String name) {
+        return registry.counter(name, "operation", "Inventory.reserve").count();
+    }
+
+    @Test
+    void retriesUntilTheConflictGoesAway() {
+        Inventory target = new Inventory();
+        target.conflicts = 2;
+
+        assertEquals("ok", proxy(target).reserve());
+        assertEquals(3, target.calls);
+        assertEquals(2, count("optimistic.lock.conflicts"));
+        assertEquals(2, count("optimistic.lock.retries"));
+        assertEquals(0, count("optimistic.lock.exhausted"));
+    }
+
+    @Test
+    void givesUpAfterMaxAttempts() {
+        Inventory target = new Inventory();
+        target.conflicts = Integer.MAX_VALUE;
+
+        assertThrows(ObjectOptimisticLockingFailureException.class, () -> proxy(target).reserve());
+        assertEquals(3, target.calls);
+        assertEquals(1, count("optimistic.lock.exhausted"));
+    }
+
+    @Test
+    void annotationOverridesDefaultAttempts() {
+        Inventory target = new Inventory();
+        target.conflicts = 1;
+
+        assertThrows(ObjectOptimisticLockingFailureException.class, () -> proxy(target).reserveOnce());
+        assertEquals(1, target.calls);
+    }
+}
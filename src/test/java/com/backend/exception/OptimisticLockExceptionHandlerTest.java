@@ -0,0 +1,35 @@
+package com.backend.exception;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+class OptimisticLockExceptionHandlerTest {
+
+    @RestController
+    static class CheckoutController {
+        @PostMapping("/checkout")
+        public String checkout() {
+            throw new ObjectOptimisticLockingFailureException("ProductEntity", 1L); // Hết số lần retry
+        }
+    }
+
+    @Test
+    void exhaustedConflictIsReturnedAs409() throws Exception {
+        MockMvc mockMvc = MockMvcBuilders.standaloneSetup(new CheckoutController())
+                .setControllerAdvice(new OptimisticLockExceptionHandler())
+                .build();
+
+        mockMvc.perform(post("/checkout"))
+                .andExpect(status().isConflict())
+                .andExpect(jsonPath("$.status").value(409))
+                .andExpect(jsonPath("$.path").value("/checkout"));
+    }
+}
@@ -0,0 +1,57 @@
+package com.backend.security;
+
+import com.backend.exception.InvalidDataException;
+import org.junit.jupiter.api.Test;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class GuestCartTokenCodecTest {
+
+    private static final Instant NOW = Instant.parse("2025-01-01T00:00:00Z");
+
+    private GuestCartTokenCodec codecAt(Instant now) {
+        return new GuestCartTokenCodec("test-secret", Duration.ofDays(30), 3, Clock.fixed(now, ZoneOffset.UTC));
+    }
+
+    @Test
+    void roundTripsItemsInInsertionOrder() {
+        Map<Long, Integer> items = new LinkedHashMap<>();
+        items.put(42L, 2);
+        items.put(7L, 1);
+        GuestCartTokenCodec codec = codecAt(NOW);
+
+        Map<Long, Integer> decoded = codec.decode(codec.encode(items));
+        assertEquals(items, decoded);
+        assertEquals(List.of(42L, 7L), List.copyOf(decoded.keySet()));
+    }
+
+    @Test
+    void rejectsTamperedOrForeignTokens() {
+        GuestCartTokenCodec codec = codecAt(NOW);
+        String token = codec.encode(Map.of(42L, 2));
+        String otherPayload = codec.encode(Map.of(42L, 99)).split("\\.")[0];
+
+        assertThrows(InvalidDataException.class, () -> codec.decode(otherPayload + "." + token.split("\\.")[1]));
+        assertThrows(InvalidDataException.class, () -> codec.decode("not-a-token"));
+        String signedWithOtherKey = new GuestCartTokenCodec("other-secret", Duration.ofDays(30), 3, Clock.fixed(NOW, ZoneOffset.UTC))
+                .encode(Map.of(42L, 2));
+        assertThrows(InvalidDataException.class, () -> codec.decode(signedWithOtherKey));
+    }
+
+    @Test
+    void expiredTokenIsAnEmptyCartAndSizeIsLimited() {
+        String token = codecAt(NOW).encode(Map.of(42L, 2));
+        assertTrue(codecAt(NOW.plus(Duration.ofDays(31))).decode(token).isEmpty());
+        assertThrows(InvalidDataException.class, () -> codecAt(NOW).encode(Map.of(1L, 1, 2L, 1, 3L, 1, 4L, 1)));
+    }
+}
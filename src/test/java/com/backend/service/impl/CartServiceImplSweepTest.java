@@ -0,0 +1,109 @@
+package com.backend.service.impl;
+
+import com.backend.cache.CartCache;
+import com.backend.cache.ProductSummaryCache;
+import com.backend.event.CartClearedEvent;
+import com.backend.repository.CartItemRepository;
+import com.backend.repository.CartRepository;
+import com.backend.repository.ProductRepository;
+import com.backend.repository.UserRepository;
+import com.backend.service.JobLeaseService;
+import com.backend.service.ProductCardService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.Pageable;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+class CartServiceImplSweepTest {
+
+    private static final String SWEEP_JOB = "cart-sweeper";
+
+    private final CartRepository cartRepository = mock(CartRepository.class);
+    private final CartItemRepository cartItemRepository = mock(CartItemRepository.class);
+    private final JobLeaseService jobLeaseService = mock(JobLeaseService.class);
+    private final ApplicationEventPublisher eventPublisher = mock(ApplicationEventPublisher.class);
+    private final CartCache cartCache = new CartCache(10);
+    private CartServiceImpl service;
+
+    @BeforeEach
+    void setUp() {
+        service = new CartServiceImpl(cartRepository, cartItemRepository, mock(UserRepository.class), mock(ProductRepository.class),
+                cartCache, new ProductSummaryCache(10, 60_000), mock(ProductCardService.class), mock(JdbcTemplate.class),
+                new TransactionTemplate(mock(PlatformTransactionManager.class)), eventPublisher, jobLeaseService);
+        ReflectionTestUtils.setField(service, "sweepAbandonedAfterDays", 30);
+        ReflectionTestUtils.setField(service, "sweepBatchSize", 2);
+        ReflectionTestUtils.setField(service, "sweepPauseMs", 0L);
+        ReflectionTestUtils.setField(service, "sweepLeaseMs", 60_000L);
+        when(cartRepository.deleteAbandoned(anyCollection(), any())).thenAnswer(invocation -> ((Collection<?>) invocation.getArgument(0)).size());
+    }
+
+    // (cartId, userId) của một lượt quét
+    private List<Object[]> chunk(long... cartAndUserIds) {
+        List<Object[]> rows = new ArrayList<>();
+        for (int i = 0; i < cartAndUserIds.length; i += 2) {
+            rows.add(new Object[]{cartAndUserIds[i], cartAndUserIds[i + 1]});
+        }
+        return rows;
+    }
+
+    @Test
+    void sweepsChunksUntilExhaustedRenewingTheLeaseAndInvalidatingEveryUser() {
+        when(jobLeaseService.tryAcquire(eq(SWEEP_JOB), any())).thenReturn(true);
+        when(cartRepository.findAbandoned(anyLong(), any(), any(Pageable.class)))
+                .thenReturn(chunk(1, 11, 2, 12), chunk(3, 13));
+        cartCache.putIfAbsent(12L, new CartCache.Cart(2L, 0, List.of())); // Đang dùng trên instance này: để lại
+
+        service.sweepAbandonedCarts();
+
+        ArgumentCaptor<Long> afterIds = ArgumentCaptor.forClass(Long.class);
+        verify(cartRepository, times(2)).findAbandoned(afterIds.capture(), any(), any(Pageable.class));
+        assertEquals(List.of(0L, 2L), afterIds.getAllValues()); // Keyset theo id
+        verify(cartRepository).deleteAbandoned(eq(Set.of(1L)), any());
+        verify(cartRepository).deleteAbandoned(eq(Set.of(3L)), any());
+        verify(eventPublisher).publishEvent(new CartClearedEvent(11L));
+        verify(eventPublisher).publishEvent(new CartClearedEvent(13L));
+        verify(eventPublisher, never()).publishEvent(new CartClearedEvent(12L));
+        verify(jobLeaseService, times(2)).tryAcquire(eq(SWEEP_JOB), any()); // Lấy lease + gia hạn sau lượt đầy
+        verify(jobLeaseService).release(SWEEP_JOB);
+    }
+
+    @Test
+    void stopsWhenTheLeaseCannotBeRenewed() {
+        when(jobLeaseService.tryAcquire(eq(SWEEP_JOB), any())).thenReturn(true, false);
+        when(cartRepository.findAbandoned(anyLong(), any(), any(Pageable.class)))
+                .thenReturn(chunk(1, 11, 2, 12), chunk(3, 13));
+
+        service.sweepAbandonedCarts();
+
+        verify(cartRepository, times(1)).findAbandoned(anyLong(), any(), any(Pageable.class));
+        verify(cartRepository).deleteAbandoned(eq(Set.of(1L, 2L)), any());
+        verify(jobLeaseService).release(SWEEP_JOB);
+    }
+
+    @Test
+    void doesNothingWithoutTheLease() {
+        when(jobLeaseService.tryAcquire(eq(SWEEP_JOB), any())).thenReturn(false);
+
+        service.sweepAbandonedCarts();
+
+        verifyNoInteractions(cartRepository, eventPublisher);
+        verify(jobLeaseService, never()).release(any());
+    }
+}
@@ -0,0 +1,60 @@
+package com.backend.service.impl;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CsvRecordReaderTest {
+
+    private CsvRecordReader reader(String content) {
+        return new CsvRecordReader(new BufferedReader(new StringReader(content)));
+    }
+
+    @Test
+    void quotedValuesKeepCommasAndEscapedQuotes() throws IOException {
+        CsvRecordReader csv = reader("SKU-1,\"Bàn, ghế\",\"Loại \"\"A\"\"\",\"\"\n");
+
+        assertEquals(List.of("SKU-1", "Bàn, ghế", "Loại \"A\"", ""), csv.read());
+        assertNull(csv.read());
+    }
+
+    @Test
+    void embeddedNewlinesAdvanceThePhysicalLineNumber() throws IOException {
+        CsvRecordReader csv = reader("a,\"dòng 1\ndòng 2\ndòng 3\"\nb,c\n");
+
+        assertEquals(List.of("a", "dòng 1\ndòng 2\ndòng 3"), csv.read());
+        assertEquals(3, csv.getLineNumber());
+        assertEquals(List.of("b", "c"), csv.read());
+        assertEquals(4, csv.getLineNumber());
+    }
+
+    @Test
+    void blankLinesAreSingleEmptyRecords() throws IOException {
+        CsvRecordReader csv = reader("a\n\n   \nb");
+
+        assertEquals(List.of("a"), csv.read());
+        assertEquals(List.of(""), csv.read());
+        assertEquals(List.of("   "), csv.read());
+        assertEquals(List.of("b"), csv.read());
+        assertEquals(4, csv.getLineNumber());
+    }
+
+    @Test
+    void quoteLeftOpenAtEndOfFileIsFlagged() throws IOException {
+        CsvRecordReader csv = reader("a,b\nc,\"không đóng\nd");
+
+        assertEquals(List.of("a", "b"), csv.read());
+        assertFalse(csv.isUnterminated());
+        assertEquals(List.of("c", "không đóng\nd"), csv.read());
+        assertTrue(csv.isUnterminated());
+        assertNull(csv.read());
+    }
+}
@@ -0,0 +1,46 @@
+package com.backend.service.impl;
+
+import com.backend.repository.JobLeaseRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@DataJpaTest
+@ActiveProfiles("test")
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+class JobLeaseServiceImplTest {
+
+    private static final Duration TTL = Duration.ofMinutes(10);
+
+    @Autowired
+    private JobLeaseRepository jobLeaseRepository;
+
+    @Test
+    void onlyOneInstanceHoldsTheLeaseUntilReleased() {
+        JobLeaseServiceImpl first = new JobLeaseServiceImpl(jobLeaseRepository);
+        JobLeaseServiceImpl second = new JobLeaseServiceImpl(jobLeaseRepository);
+
+        assertTrue(first.tryAcquire("job", TTL));   // Tạo dòng lease
+        assertFalse(second.tryAcquire("job", TTL));
+        assertTrue(first.tryAcquire("job", TTL));   // Gia hạn bởi chính owner
+        first.release("job");
+        assertTrue(second.tryAcquire("job", TTL));
+        assertFalse(first.tryAcquire("job", TTL));
+    }
+
+    @Test
+    void expiredLeaseIsTakenOver() {
+        JobLeaseServiceImpl crashed = new JobLeaseServiceImpl(jobLeaseRepository);
+        JobLeaseServiceImpl other = new JobLeaseServiceImpl(jobLeaseRepository);
+
+        assertTrue(crashed.tryAcquire("job", Duration.ofMinutes(-1))); // Hết hạn ngay, không release
+        assertTrue(other.tryAcquire("job", TTL));
+    }
+}
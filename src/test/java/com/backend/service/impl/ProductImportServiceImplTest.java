@@ -0,0 +1,97 @@
+package com.backend.service.impl;
+
+import com.backend.common.ProductImportFormat;
+import com.backend.controller.response.ProductImportError;
+import com.backend.controller.response.ProductImportResponse;
+import com.backend.repository.CategoryRepository;
+import com.backend.repository.ProductCardRepository;
+import com.backend.repository.ProductRepository;
+import com.backend.service.CategoryService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.validation.Validation;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class ProductImportServiceImplTest {
+
+    private final ProductRepository productRepository = mock(ProductRepository.class);
+    private final CategoryRepository categoryRepository = mock(CategoryRepository.class);
+    private ProductImportServiceImpl service;
+
+    @BeforeEach
+    void setUp() {
+        // Chỉ kiểm tra phần đọc/báo lỗi: category 1 tồn tại, không SKU nào có sẵn, transaction ghi là mock
+        when(productRepository.findExistingSkus(anyCollection())).thenReturn(List.of());
+        when(categoryRepository.findExistingIds(anyCollection())).thenReturn(List.of(1L));
+        service = new ProductImportServiceImpl(productRepository, categoryRepository, mock(ProductCardRepository.class),
+                mock(JdbcTemplate.class), mock(NamedParameterJdbcTemplate.class), mock(TransactionTemplate.class),
+                new ObjectMapper(), Validation.buildDefaultValidatorFactory().getValidator(), mock(CategoryService.class),
+                mock(ApplicationEventPublisher.class));
+        ReflectionTestUtils.setField(service, "chunkSize", 100);
+        ReflectionTestUtils.setField(service, "maxReportedErrors", 100);
+    }
+
+    private ProductImportResponse importContent(String content, ProductImportFormat format) {
+        return service.importProducts(new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8)), format);
+    }
+
+    @Test
+    void csvMalformedRowsAreReportedWithTheirPhysicalLine() {
+        String csv = "sku,name,price,stockQuantity,categoryId\n"
+                + "SKU-1,\"Bàn, gỗ\",100,5,1\n"
+                + "\n"
+                + "SKU-2,\"Ghế\n\"\"xoay\"\"\",abc,5,1\n"    // Giá trị có nháy kéo dài 2 dòng (4-5)
+                + "SKU-3,,100,5,1\n"
+                + "SKU-4,Tủ,100,5,9\n"
+                + "SKU-1,Bàn,100,5,1\n"
+                + "SKU-5,\"Kệ,100,5,1\n";
+
+        ProductImportResponse response = importContent(csv, ProductImportFormat.CSV);
+
+        assertEquals(6, response.getTotalRows());
+        assertEquals(1, response.getImportedCount());
+        assertEquals(5, response.getFailedCount());
+        List<ProductImportError> errors = response.getErrors();
+        assertEquals(List.of(4L, 6L, 7L, 8L, 9L), errors.stream().map(ProductImportError::getLineNumber).toList());
+        assertTrue(errors.get(0).getMessage().startsWith("Invalid number"));
+        assertEquals("Product name is required", errors.get(1).getMessage());
+        assertEquals("Category not found with ID: 9", errors.get(2).getMessage());
+        assertEquals("Duplicate SKU in upload.", errors.get(3).getMessage());
+        assertEquals("Unterminated quoted value.", errors.get(4).getMessage());
+        assertEquals("SKU-5", errors.get(4).getSku());
+    }
+
+    @Test
+    void ndjsonSkipsBlankLinesAndReportsInvalidJson() {
+        String ndjson = """
+                {"sku":"SKU-1","name":"Bàn","price":100,"stockQuantity":5,"categoryId":1}
+
+                {"sku":"SKU-2","name":
+                {"sku":"SKU-3","name":"Ghế","price":-1,"stockQuantity":5,"categoryId":1}
+                """;
+
+        ProductImportResponse response = importContent(ndjson, ProductImportFormat.NDJSON);
+
+        assertEquals(3, response.getTotalRows());
+        assertEquals(1, response.getImportedCount());
+        List<ProductImportError> errors = response.getErrors();
+        assertEquals(List.of(3L, 4L), errors.stream().map(ProductImportError::getLineNumber).toList());
+        assertTrue(errors.get(0).getMessage().startsWith("Invalid JSON"));
+        assertEquals("Price must be positive", errors.get(1).getMessage());
+    }
+}
@@ -0,0 +1,62 @@
+package com.backend.specification;
+
+import com.backend.common.ProductSort;
+import com.backend.exception.InvalidDataException;
+import com.backend.model.ProductCardEntity;
+import com.backend.model.ProductEntity;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.Date;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class ProductCursorTest {
+
+    private ProductEntity product() {
+        ProductEntity product = new ProductEntity();
+        product.setId(42L);
+        product.setPrice(new BigDecimal("199000.50"));
+        product.setCreatedAt(new Date(1_700_000_000_000L));
+        product.setSoldCount(17L);
+        product.setAverageRating(4.25);
+        product.setRatingCount(8L);
+        return product;
+    }
+
+    private ProductCardEntity card() {
+        ProductCardEntity card = new ProductCardEntity();
+        card.setId(42L);
+        card.setSoldLast7Days(5L);
+        card.setSoldLast30Days(12L);
+        card.setViewCount(345L);
+        return card;
+    }
+
+    @Test
+    void encodeDecodeRoundTripForEverySort() {
+        for (ProductSort sort : ProductSort.values()) {
+            // Các sort chỉ có trên card (bán chạy 7/30 ngày) lấy giá trị từ ProductCardEntity
+            ProductCursor cursor = sort.isCardOnly() ? ProductCursor.of(sort, card()) : ProductCursor.of(sort, product());
+            ProductCursor decoded = ProductCursor.decode(sort, cursor.encode());
+            assertEquals(cursor, decoded, "round trip failed for " + sort);
+        }
+    }
+
+    @Test
+    void cardOnlySortIsRejectedForProducts() {
+        assertThrows(InvalidDataException.class, () -> ProductCursor.of(ProductSort.BEST_SELLING_7D, product()));
+    }
+
+    @Test
+    void cursorFromAnotherSortIsRejected() {
+        String token = ProductCursor.of(ProductSort.PRICE_ASC, product()).encode();
+        assertThrows(InvalidDataException.class, () -> ProductCursor.decode(ProductSort.NEWEST, token));
+    }
+
+    @Test
+    void garbageCursorIsRejected() {
+        assertThrows(InvalidDataException.class, () -> ProductCursor.decode(ProductSort.NEWEST, "not-a-cursor!"));
+    }
+}
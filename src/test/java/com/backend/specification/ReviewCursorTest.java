@@ -0,0 +1,36 @@
+package com.backend.specification;
+
+import com.backend.common.ReviewSort;
+import com.backend.exception.InvalidDataException;
+import com.backend.model.ReviewEntity;
+import org.junit.jupiter.api.Test;
+
+import java.util.Date;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class ReviewCursorTest {
+
+    private ReviewEntity review() {
+        ReviewEntity review = new ReviewEntity();
+        review.setId(7L);
+        review.setRating(4);
+        review.setCreatedAt(new Date(1_700_000_000_123L));
+        return review;
+    }
+
+    @Test
+    void encodeDecodeRoundTripForEverySort() {
+        for (ReviewSort sort : ReviewSort.values()) {
+            ReviewCursor cursor = ReviewCursor.of(sort, review());
+            assertEquals(cursor, ReviewCursor.decode(sort, cursor.encode()), "round trip failed for " + sort);
+        }
+    }
+
+    @Test
+    void cursorFromAnotherSortIsRejected() {
+        String token = ReviewCursor.of(ReviewSort.HIGHEST_RATING, review()).encode();
+        assertThrows(InvalidDataException.class, () -> ReviewCursor.decode(ReviewSort.LOWEST_RATING, token));
+    }
+}
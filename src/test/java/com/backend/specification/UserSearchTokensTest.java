@@ -0,0 +1,36 @@
+package com.backend.specification;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class UserSearchTokensTest {
+
+    @Test
+    void userFieldsAreSplitLowercasedAndStrippedOfAccents() {
+        Set<String> tokens = UserSearchTokens.forUser("Đức Anh", "Nguyễn", "DucAnh_99", "duc.anh@Example.com", null);
+
+        assertEquals(Set.of("duc", "anh", "nguyen", "ducanh", "99", "example", "com"), tokens);
+    }
+
+    @Test
+    void phoneNumbersAreSearchableByAnyPart() {
+        Set<String> tokens = UserSearchTokens.forUser(null, null, "u", "u@x.io", "+84 912-345");
+
+        assertTrue(tokens.contains("84912345"));
+        assertTrue(tokens.contains("345"));
+        assertFalse(tokens.contains("45"));
+    }
+
+    @Test
+    void keywordTermsUseTheSameNormalization() {
+        assertEquals(List.of("nguyen", "duc"), UserSearchTokens.terms("  Nguyễn, ĐỨC nguyen "));
+        assertEquals(List.of(), UserSearchTokens.terms("%_@"));
+        assertEquals(UserSearchTokens.MAX_TERMS, UserSearchTokens.terms("a b c d e f g").size());
+    }
+}